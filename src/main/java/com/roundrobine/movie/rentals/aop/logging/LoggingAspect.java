@@ -8,23 +8,30 @@ import org.aspectj.lang.annotation.AfterThrowing;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.Profiles;
 
+import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Aspect for logging execution of service and repository Spring components.
  *
- * By default, it only runs with the "dev" profile.
+ * By default, it only runs with the "dev" profile. The logger of each method is looked up once, and the
+ * arguments of a call are only stringified when its logger is at debug level.
  */
 @Aspect
 public class LoggingAspect {
 
     private final Environment env;
 
+    private final ConcurrentMap<Method, Logger> loggers = new ConcurrentHashMap<>();
+
     public LoggingAspect(Environment env) {
         this.env = env;
     }
@@ -56,7 +63,8 @@ public class LoggingAspect {
      * @return {@link Logger} associated to the given {@link JoinPoint}.
      */
     private Logger logger(JoinPoint joinPoint) {
-        return LoggerFactory.getLogger(joinPoint.getSignature().getDeclaringTypeName());
+        return loggers.computeIfAbsent(((MethodSignature) joinPoint.getSignature()).getMethod(),
+            method -> LoggerFactory.getLogger(joinPoint.getSignature().getDeclaringTypeName()));
     }
 
     /**
@@ -96,12 +104,13 @@ public class LoggingAspect {
     @Around("applicationPackagePointcut() && springBeanPointcut()")
     public Object logAround(ProceedingJoinPoint joinPoint) throws Throwable {
         Logger log = logger(joinPoint);
-        if (log.isDebugEnabled()) {
+        boolean debug = log.isDebugEnabled();
+        if (debug) {
             log.debug("Enter: {}() with argument[s] = {}", joinPoint.getSignature().getName(), Arrays.toString(joinPoint.getArgs()));
         }
         try {
             Object result = joinPoint.proceed();
-            if (log.isDebugEnabled()) {
+            if (debug) {
                 log.debug("Exit: {}() with result = {}", joinPoint.getSignature().getName(), result);
             }
             return result;
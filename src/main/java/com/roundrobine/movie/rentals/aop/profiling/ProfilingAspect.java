@@ -0,0 +1,88 @@
+package com.roundrobine.movie.rentals.aop.profiling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aspect recording the duration of a random {@code sampleRate} fraction of the calls to repository, service and
+ * REST methods in the {@code method.duration} timer, with a percentile histogram.
+ *
+ * The timer of each method is looked up once, so a call that is not sampled costs a random number. It is only
+ * registered with a positive {@code application.profiler.sample-rate}.
+ */
+@Aspect
+public class ProfilingAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    private final double sampleRate;
+
+    private final ConcurrentMap<Method, Timer> timers = new ConcurrentHashMap<>();
+
+    public ProfilingAspect(MeterRegistry meterRegistry, double sampleRate) {
+        this.meterRegistry = meterRegistry;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Pointcut that matches all repositories, services and Web REST endpoints.
+     */
+    @Pointcut("within(@org.springframework.stereotype.Repository *)" +
+        " || within(@org.springframework.stereotype.Service *)" +
+        " || within(@org.springframework.web.bind.annotation.RestController *)")
+    public void springBeanPointcut() {
+        // Method is empty as this is just a Pointcut, the implementations are in the advices.
+    }
+
+    /**
+     * Pointcut that matches all Spring beans in the application's main packages.
+     */
+    @Pointcut("within(com.roundrobine.movie.rentals.repository..*)"+
+        " || within(com.roundrobine.movie.rentals.service..*)"+
+        " || within(com.roundrobine.movie.rentals.web.rest..*)")
+    public void applicationPackagePointcut() {
+        // Method is empty as this is just a Pointcut, the implementations are in the advices.
+    }
+
+    /**
+     * Advice that records the duration of a sample of the calls.
+     *
+     * @param joinPoint join point for advice.
+     * @return result.
+     * @throws Throwable the exception of the method.
+     */
+    @Around("applicationPackagePointcut() && springBeanPointcut()")
+    public Object profile(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return joinPoint.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            timer(joinPoint).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(ProceedingJoinPoint joinPoint) {
+        return timers.computeIfAbsent(((MethodSignature) joinPoint.getSignature()).getMethod(),
+            method -> Timer.builder("method.duration")
+                .description("Duration of a sample of the calls")
+                .tag("class", joinPoint.getSignature().getDeclaringType().getSimpleName())
+                .tag("method", joinPoint.getSignature().getName())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,203 @@
+package com.roundrobine.movie.rentals.aop.sql;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aspect recording the JDBC work of each REST endpoint and service method, as reported by
+ * {@link SqlRecorder}, in the {@code sql.statements}, {@code sql.rows} and {@code sql.time} meters,
+ * tagged with the {@code layer} ({@code endpoint} or {@code service}) and the {@code method}.
+ * <p>
+ * The work of a service method includes the work of the service methods it calls, and the flush at the commit of
+ * its transaction. The work of an endpoint is the work done on the request thread: statements run by an async task
+ * or a customer lane are recorded against the service methods running them only.
+ * <p>
+ * Requests slower than {@code application.sql-metrics.slow-request-threshold-ms}, or executing at least
+ * {@code application.sql-metrics.slow-request-statements} statements, are logged with their most expensive
+ * statements.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SqlMetricsAspect {
+
+    static final String ENDPOINT = "endpoint";
+
+    static final String SERVICE = "service";
+
+    private final Logger log = LoggerFactory.getLogger(SqlMetricsAspect.class);
+
+    private final MeterRegistry meterRegistry;
+
+    private final ApplicationProperties.SqlMetrics properties;
+
+    private final ConcurrentMap<Method, SqlMeters> endpointMeters = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Method, SqlMeters> serviceMeters = new ConcurrentHashMap<>();
+
+    public SqlMetricsAspect(MeterRegistry meterRegistry, ApplicationProperties applicationProperties) {
+        this.meterRegistry = meterRegistry;
+        this.properties = applicationProperties.getSqlMetrics();
+    }
+
+    /**
+     * Pointcut that matches all Web REST endpoints.
+     */
+    @Pointcut("within(@org.springframework.web.bind.annotation.RestController *)" +
+        " && within(com.roundrobine.movie.rentals.web.rest..*)")
+    public void endpointPointcut() {
+        // Method is empty as this is just a Pointcut, the implementations are in the advices.
+    }
+
+    /**
+     * Pointcut that matches all services.
+     */
+    @Pointcut("within(@org.springframework.stereotype.Service *)" +
+        " && within(com.roundrobine.movie.rentals.service..*)")
+    public void servicePointcut() {
+        // Method is empty as this is just a Pointcut, the implementations are in the advices.
+    }
+
+    /**
+     * Advice that records the JDBC work of a request, and logs it if the request is slow.
+     *
+     * @param joinPoint join point for advice.
+     * @return result.
+     * @throws Throwable the exception of the endpoint.
+     */
+    @Around("endpointPointcut()")
+    public Object measureEndpoint(ProceedingJoinPoint joinPoint) throws Throwable {
+        SqlRecorder recorder = SqlRecorder.current();
+        if (recorder.isBreakingDown()) {
+            // An endpoint called by another one: its work belongs to the outer request.
+            return joinPoint.proceed();
+        }
+        SqlUsage before = recorder.usage();
+        recorder.startBreakdown();
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            long elapsedNanos = System.nanoTime() - start;
+            List<SqlRecorder.StatementUsage> breakdown = recorder.stopBreakdown();
+            SqlUsage usage = recorder.usage().minus(before);
+            meters(endpointMeters, ENDPOINT, joinPoint).record(usage);
+            if (isSlow(elapsedNanos, usage)) {
+                log.warn("Slow request {}(): {} ms, {} statements, {} rows, {} ms executing statements{}",
+                    name(joinPoint), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), usage.getStatements(),
+                    usage.getRows(), TimeUnit.NANOSECONDS.toMillis(usage.getNanos()),
+                    describe(breakdown, properties.getLoggedStatements()));
+            }
+        }
+    }
+
+    /**
+     * Advice that records the JDBC work of a service method.
+     *
+     * @param joinPoint join point for advice.
+     * @return result.
+     * @throws Throwable the exception of the service method.
+     */
+    @Around("servicePointcut()")
+    public Object measureServiceMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+        SqlRecorder recorder = SqlRecorder.current();
+        SqlUsage before = recorder.usage();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            meters(serviceMeters, SERVICE, joinPoint).record(recorder.usage().minus(before));
+        }
+    }
+
+    private boolean isSlow(long elapsedNanos, SqlUsage usage) {
+        return elapsedNanos >= TimeUnit.MILLISECONDS.toNanos(properties.getSlowRequestThresholdMs()) ||
+            (properties.getSlowRequestStatements() > 0 && usage.getStatements() >= properties.getSlowRequestStatements());
+    }
+
+    /**
+     * @param breakdown the statements of a request, most expensive first.
+     * @param limit the maximum number of statements to describe.
+     * @return one line per statement, each starting with a line break.
+     */
+    static String describe(List<SqlRecorder.StatementUsage> breakdown, int limit) {
+        StringBuilder description = new StringBuilder();
+        breakdown.stream().limit(limit).forEach(statementUsage -> description.append("\n  ")
+            .append(statementUsage.getExecutions()).append(" x, ")
+            .append(statementUsage.getRows()).append(" rows, ")
+            .append(TimeUnit.NANOSECONDS.toMillis(statementUsage.getNanos())).append(" ms: ")
+            .append(statementUsage.getSql()));
+        if (breakdown.size() > limit) {
+            description.append("\n  and ").append(breakdown.size() - limit).append(" more statements");
+        }
+        return description.toString();
+    }
+
+    private SqlMeters meters(ConcurrentMap<Method, SqlMeters> meters, String layer, ProceedingJoinPoint joinPoint) {
+        return meters.computeIfAbsent(((MethodSignature) joinPoint.getSignature()).getMethod(),
+            method -> new SqlMeters(meterRegistry, layer, name(joinPoint)));
+    }
+
+    private static String name(ProceedingJoinPoint joinPoint) {
+        return joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+    }
+
+    /**
+     * The meters of one endpoint or service method.
+     */
+    private static final class SqlMeters {
+
+        private final DistributionSummary statements;
+
+        private final DistributionSummary rows;
+
+        private final Timer time;
+
+        SqlMeters(MeterRegistry meterRegistry, String layer, String method) {
+            this.statements = DistributionSummary.builder("sql.statements")
+                .description("Statements executed per call")
+                .baseUnit("statements")
+                .tag("layer", layer)
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+            this.rows = DistributionSummary.builder("sql.rows")
+                .description("Entities loaded, inserted, updated or deleted per call, including second-level cache hits; " +
+                    "DTO projections and bulk updates count no rows")
+                .baseUnit("rows")
+                .tag("layer", layer)
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+            this.time = Timer.builder("sql.time")
+                .description("Time spent executing statements per call")
+                .tag("layer", layer)
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        }
+
+        void record(SqlUsage usage) {
+            statements.record(usage.getStatements());
+            rows.record(usage.getRows());
+            time.record(usage.getNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+}
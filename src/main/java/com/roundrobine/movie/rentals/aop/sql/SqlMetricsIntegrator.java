@@ -0,0 +1,76 @@
+package com.roundrobine.movie.rentals.aop.sql;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Hibernate integrator counting the rows of each statement in the {@link SqlRecorder} of the executing thread:
+ * an entity loaded counts as a row read by the statement executed last, and an entity inserted, updated or
+ * deleted as a row written by the statement prepared last, which is its own even when it is batched.
+ * <p>
+ * Rows are counted per entity, not from the JDBC results: rows read by DTO projections or scalar queries and rows
+ * changed by bulk JPQL statements are not counted, and entities loaded from the second-level cache are.
+ */
+public class SqlMetricsIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        RowListener rowListener = new RowListener();
+        EventListenerRegistry eventListenerRegistry = serviceRegistry.getService(EventListenerRegistry.class);
+        eventListenerRegistry.appendListeners(EventType.POST_LOAD, rowListener);
+        eventListenerRegistry.appendListeners(EventType.POST_INSERT, rowListener);
+        eventListenerRegistry.appendListeners(EventType.POST_UPDATE, rowListener);
+        eventListenerRegistry.appendListeners(EventType.POST_DELETE, rowListener);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        // Nothing to release.
+    }
+
+    private static final class RowListener implements PostLoadEventListener, PostInsertEventListener,
+        PostUpdateEventListener, PostDeleteEventListener {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void onPostLoad(PostLoadEvent event) {
+            SqlRecorder.current().rowRead();
+        }
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            SqlRecorder.current().rowWritten();
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            SqlRecorder.current().rowWritten();
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            SqlRecorder.current().rowWritten();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.roundrobine.movie.rentals.aop.sql;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JDBC work done by one thread through Hibernate: statements executed, rows read or written, and time spent
+ * executing statements, as reported by {@link SqlStatementInspector}, {@link SqlSessionEventListener} and
+ * {@link SqlMetricsIntegrator}.
+ * <p>
+ * The totals only ever grow, so that nested scopes can each take a {@link SqlUsage} on entry and subtract it
+ * on exit. While a request is recorded, the statements are also broken down by SQL for the slow request log,
+ * up to {@value #MAX_BREAKDOWN_SIZE} distinct statements.
+ */
+public final class SqlRecorder {
+
+    /**
+     * Maximum number of distinct statements broken down in a request; later ones only count in the totals.
+     */
+    static final int MAX_BREAKDOWN_SIZE = 100;
+
+    /**
+     * The SQL of statements executed before any was prepared on the thread.
+     */
+    static final String UNKNOWN_SQL = "<unknown>";
+
+    private static final ThreadLocal<SqlRecorder> recorders = ThreadLocal.withInitial(SqlRecorder::new);
+
+    private long statements;
+
+    private long rows;
+
+    private long nanos;
+
+    private Map<String, StatementUsage> breakdown;
+
+    private String preparedSql = UNKNOWN_SQL;
+
+    private StatementUsage lastExecuted;
+
+    SqlRecorder() {
+    }
+
+    /**
+     * @return the recorder of the current thread.
+     */
+    public static SqlRecorder current() {
+        return recorders.get();
+    }
+
+    /**
+     * @return the totals recorded so far by this thread.
+     */
+    public SqlUsage usage() {
+        return new SqlUsage(statements, rows, nanos);
+    }
+
+    /**
+     * @return whether the statements are broken down, that is whether a request is recorded.
+     */
+    public boolean isBreakingDown() {
+        return breakdown != null;
+    }
+
+    /**
+     * Start breaking the statements down by SQL.
+     */
+    public void startBreakdown() {
+        breakdown = new HashMap<>();
+    }
+
+    /**
+     * Stop breaking the statements down.
+     *
+     * @return the statements executed since {@link #startBreakdown()}, by descending execution time.
+     */
+    public List<StatementUsage> stopBreakdown() {
+        List<StatementUsage> statementUsages = new ArrayList<>(breakdown.values());
+        breakdown = null;
+        lastExecuted = null;
+        statementUsages.sort(Comparator.comparingLong(StatementUsage::getNanos).reversed());
+        return statementUsages;
+    }
+
+    /**
+     * Record the preparation of a statement, which the following executions and rows written belong to.
+     *
+     * @param sql the SQL of the statement.
+     */
+    void prepared(String sql) {
+        preparedSql = sql;
+    }
+
+    /**
+     * Record the execution of the statement prepared last, or of a batch of it.
+     *
+     * @param nanos the time spent executing it.
+     */
+    void executed(long nanos) {
+        this.statements++;
+        this.nanos += nanos;
+        lastExecuted = statementUsage(preparedSql);
+        if (lastExecuted != null) {
+            lastExecuted.executions++;
+            lastExecuted.nanos += nanos;
+        }
+    }
+
+    /**
+     * Record a row read from the results of the statement executed last.
+     */
+    void rowRead() {
+        this.rows++;
+        if (lastExecuted != null) {
+            lastExecuted.rows++;
+        }
+    }
+
+    /**
+     * Record a row written by the statement prepared last, which may only be executed later in a batch.
+     */
+    void rowWritten() {
+        this.rows++;
+        StatementUsage statementUsage = statementUsage(preparedSql);
+        if (statementUsage != null) {
+            statementUsage.rows++;
+        }
+    }
+
+    /**
+     * @param sql the SQL of a statement.
+     * @return the breakdown entry of the statement, or {@code null} if the statements are not broken down.
+     */
+    private StatementUsage statementUsage(String sql) {
+        if (breakdown == null) {
+            return null;
+        }
+        StatementUsage statementUsage = breakdown.get(sql);
+        if (statementUsage == null && breakdown.size() < MAX_BREAKDOWN_SIZE) {
+            statementUsage = new StatementUsage(sql);
+            breakdown.put(sql, statementUsage);
+        }
+        return statementUsage;
+    }
+
+    /**
+     * The executions of one SQL statement during a request.
+     */
+    public static final class StatementUsage {
+
+        private final String sql;
+
+        private long executions;
+
+        private long rows;
+
+        private long nanos;
+
+        StatementUsage(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getExecutions() {
+            return executions;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.roundrobine.movie.rentals.aop.sql;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Hibernate session listener reporting the time spent executing each statement and batch of the session to the
+ * {@link SqlRecorder} of the executing thread.
+ * <p>
+ * Hibernate creates one listener per session, and a session is used by one thread at a time, so the start of
+ * the running execution is kept in a plain field.
+ */
+public class SqlSessionEventListener extends BaseSessionEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private long executionStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        SqlRecorder.current().executed(System.nanoTime() - executionStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        executionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        SqlRecorder.current().executed(System.nanoTime() - executionStart);
+    }
+}
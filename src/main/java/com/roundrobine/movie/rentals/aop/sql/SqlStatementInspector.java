@@ -0,0 +1,18 @@
+package com.roundrobine.movie.rentals.aop.sql;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernate statement inspector telling the {@link SqlRecorder} of the executing thread which statement is
+ * prepared, so that its executions and rows are broken down by SQL. The SQL is left unchanged.
+ */
+public class SqlStatementInspector implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String inspect(String sql) {
+        SqlRecorder.current().prepared(sql);
+        return sql;
+    }
+}
@@ -0,0 +1,68 @@
+package com.roundrobine.movie.rentals.aop.sql;
+
+import java.util.Objects;
+
+/**
+ * The JDBC work done by a thread, or during a scope: statements executed, rows read or written, and time spent
+ * executing statements.
+ */
+public final class SqlUsage {
+
+    private final long statements;
+
+    private final long rows;
+
+    private final long nanos;
+
+    public SqlUsage(long statements, long rows, long nanos) {
+        this.statements = statements;
+        this.rows = rows;
+        this.nanos = nanos;
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @param before the usage at the start of a scope.
+     * @return the work done since then.
+     */
+    public SqlUsage minus(SqlUsage before) {
+        return new SqlUsage(statements - before.statements, rows - before.rows, nanos - before.nanos);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SqlUsage)) {
+            return false;
+        }
+        SqlUsage sqlUsage = (SqlUsage) o;
+        return statements == sqlUsage.statements && rows == sqlUsage.rows && nanos == sqlUsage.nanos;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(statements, rows, nanos);
+    }
+
+    @Override
+    public String toString() {
+        return "SqlUsage{" +
+            "statements=" + statements +
+            ", rows=" + rows +
+            ", nanos=" + nanos +
+            "}";
+    }
+}
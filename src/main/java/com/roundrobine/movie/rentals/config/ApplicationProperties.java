@@ -1,7 +1,15 @@
 package com.roundrobine.movie.rentals.config;
 
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Properties specific to Video Rental.
  * <p>
@@ -10,4 +18,503 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final Map<MovieType, Tariff> tariffs = new EnumMap<>(MovieType.class);
+
+    private final SearchOutbox searchOutbox = new SearchOutbox();
+
+    private final SearchBulk searchBulk = new SearchBulk();
+
+    private final SearchReindex searchReindex = new SearchReindex();
+
+    private final OptimisticRetry optimisticRetry = new OptimisticRetry();
+
+    private final CustomerLanes customerLanes = new CustomerLanes();
+
+    private final Catalogue catalogue = new Catalogue();
+
+    private final SqlMetrics sqlMetrics = new SqlMetrics();
+
+    private final Profiler profiler = new Profiler();
+
+    private final VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache();
+
+    private final Cache cache = new Cache();
+
+    private final Cluster cluster = new Cluster();
+
+    private final CataloguePageCache cataloguePageCache = new CataloguePageCache();
+
+    public Map<MovieType, Tariff> getTariffs() {
+        return tariffs;
+    }
+
+    public SearchOutbox getSearchOutbox() {
+        return searchOutbox;
+    }
+
+    public SearchBulk getSearchBulk() {
+        return searchBulk;
+    }
+
+    public SearchReindex getSearchReindex() {
+        return searchReindex;
+    }
+
+    public OptimisticRetry getOptimisticRetry() {
+        return optimisticRetry;
+    }
+
+    public CustomerLanes getCustomerLanes() {
+        return customerLanes;
+    }
+
+    public Catalogue getCatalogue() {
+        return catalogue;
+    }
+
+    public SqlMetrics getSqlMetrics() {
+        return sqlMetrics;
+    }
+
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    public VerifiedTokenCache getVerifiedTokenCache() {
+        return verifiedTokenCache;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public CataloguePageCache getCataloguePageCache() {
+        return cataloguePageCache;
+    }
+
+    /**
+     * The tariff of one movie type. Unset values fall back to the ones built into {@link MovieType}.
+     */
+    public static class Tariff {
+
+        private BigDecimal price;
+
+        private Integer includedRentalDays;
+
+        private Integer bonusPoints;
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        public void setPrice(BigDecimal price) {
+            this.price = price;
+        }
+
+        public Integer getIncludedRentalDays() {
+            return includedRentalDays;
+        }
+
+        public void setIncludedRentalDays(Integer includedRentalDays) {
+            this.includedRentalDays = includedRentalDays;
+        }
+
+        public Integer getBonusPoints() {
+            return bonusPoints;
+        }
+
+        public void setBonusPoints(Integer bonusPoints) {
+            this.bonusPoints = bonusPoints;
+        }
+    }
+
+    /**
+     * How the search outbox is drained into Elasticsearch.
+     */
+    public static class SearchOutbox {
+
+        private int batchSize = 500;
+
+        private long drainDelayMs = 1000;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getDrainDelayMs() {
+            return drainDelayMs;
+        }
+
+        public void setDrainDelayMs(long drainDelayMs) {
+            this.drainDelayMs = drainDelayMs;
+        }
+    }
+
+    /**
+     * How documents are batched into Elasticsearch {@code _bulk} requests.
+     */
+    public static class SearchBulk {
+
+        private int maxBatchSize = 500;
+
+        private long flushIntervalMs = 200;
+
+        private int maxQueueDepth = 5000;
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        public void setMaxQueueDepth(int maxQueueDepth) {
+            this.maxQueueDepth = maxQueueDepth;
+        }
+    }
+
+    /**
+     * How the search indices are rebuilt from the database.
+     */
+    public static class SearchReindex {
+
+        private int chunkSize = 500;
+
+        private long leaseMs = 300_000;
+
+        private int parallelism = 4;
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public long getLeaseMs() {
+            return leaseMs;
+        }
+
+        public void setLeaseMs(long leaseMs) {
+            this.leaseMs = leaseMs;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    /**
+     * Retries of the rental workflows that lost an optimistic locking race.
+     */
+    public static class OptimisticRetry {
+
+        private int maxAttempts = 5;
+
+        private long initialBackoffMs = 5;
+
+        private long maxBackoffMs = 200;
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getInitialBackoffMs() {
+            return initialBackoffMs;
+        }
+
+        public void setInitialBackoffMs(long initialBackoffMs) {
+            this.initialBackoffMs = initialBackoffMs;
+        }
+
+        public long getMaxBackoffMs() {
+            return maxBackoffMs;
+        }
+
+        public void setMaxBackoffMs(long maxBackoffMs) {
+            this.maxBackoffMs = maxBackoffMs;
+        }
+    }
+
+    /**
+     * Lanes running the rentals and returns of each customer one at a time.
+     */
+    public static class CustomerLanes {
+
+        private int lanes = 16;
+
+        private int queueCapacity = 64;
+
+        public int getLanes() {
+            return lanes;
+        }
+
+        public void setLanes(int lanes) {
+            this.lanes = lanes;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /**
+     * Non-blocking database connections of the read-only catalogue API.
+     */
+    public static class Catalogue {
+
+        private String r2dbcUrl;
+
+        private int maxPoolSize = 10;
+
+        public String getR2dbcUrl() {
+            return r2dbcUrl;
+        }
+
+        public void setR2dbcUrl(String r2dbcUrl) {
+            this.r2dbcUrl = r2dbcUrl;
+        }
+
+        public int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public void setMaxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+    }
+
+    /**
+     * Statements, rows and JDBC time recorded per REST endpoint and service method.
+     */
+    public static class SqlMetrics {
+
+        private boolean enabled = true;
+
+        private long slowRequestThresholdMs = 1000;
+
+        private int slowRequestStatements = 50;
+
+        private int loggedStatements = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getSlowRequestThresholdMs() {
+            return slowRequestThresholdMs;
+        }
+
+        public void setSlowRequestThresholdMs(long slowRequestThresholdMs) {
+            this.slowRequestThresholdMs = slowRequestThresholdMs;
+        }
+
+        public int getSlowRequestStatements() {
+            return slowRequestStatements;
+        }
+
+        public void setSlowRequestStatements(int slowRequestStatements) {
+            this.slowRequestStatements = slowRequestStatements;
+        }
+
+        public int getLoggedStatements() {
+            return loggedStatements;
+        }
+
+        public void setLoggedStatements(int loggedStatements) {
+            this.loggedStatements = loggedStatements;
+        }
+    }
+
+    /**
+     * Sampling of the durations of repository, service and REST methods.
+     */
+    public static class Profiler {
+
+        private double sampleRate = 0;
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+    }
+
+    /**
+     * Authentications of the JWT tokens already verified, kept until the tokens expire.
+     */
+    public static class VerifiedTokenCache {
+
+        private int maxSize = 10_000;
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * Policies of the cache regions, by region name without the package of the domain. Regions without a policy,
+     * and unset values, fall back to {@code jhipster.cache.ehcache}.
+     */
+    public static class Cache {
+
+        private final Map<String, CacheRegion> regions = new LinkedHashMap<>();
+
+        public Map<String, CacheRegion> getRegions() {
+            return regions;
+        }
+    }
+
+    /**
+     * The sizing and expiry of one cache region.
+     */
+    public static class CacheRegion {
+
+        private Long heapEntries;
+
+        private Long offHeapMb;
+
+        private Long timeToLiveSeconds;
+
+        private Long timeToIdleSeconds;
+
+        private boolean readOnly;
+
+        public Long getHeapEntries() {
+            return heapEntries;
+        }
+
+        public void setHeapEntries(Long heapEntries) {
+            this.heapEntries = heapEntries;
+        }
+
+        public Long getOffHeapMb() {
+            return offHeapMb;
+        }
+
+        public void setOffHeapMb(Long offHeapMb) {
+            this.offHeapMb = offHeapMb;
+        }
+
+        public Long getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(Long timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        public Long getTimeToIdleSeconds() {
+            return timeToIdleSeconds;
+        }
+
+        public void setTimeToIdleSeconds(Long timeToIdleSeconds) {
+            this.timeToIdleSeconds = timeToIdleSeconds;
+        }
+
+        public boolean isReadOnly() {
+            return readOnly;
+        }
+
+        public void setReadOnly(boolean readOnly) {
+            this.readOnly = readOnly;
+        }
+    }
+
+    /**
+     * The Hazelcast cluster sharing the second-level cache, with the "cluster" profile.
+     */
+    public static class Cluster {
+
+        private String name = "video-rental";
+
+        private int port = 5701;
+
+        private List<String> members = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public List<String> getMembers() {
+            return members;
+        }
+
+        public void setMembers(List<String> members) {
+            this.members = members;
+        }
+    }
+
+    /**
+     * The in-memory results of the movie and movie inventory listing pages and counts.
+     */
+    public static class CataloguePageCache {
+
+        private int maxEntries = 1000;
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
 }
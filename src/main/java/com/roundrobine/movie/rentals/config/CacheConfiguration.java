@@ -1,11 +1,18 @@
 package com.roundrobine.movie.rentals.config;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.ehcache.config.builders.*;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.expiry.ExpiryPolicy;
+import org.ehcache.impl.serialization.PlainJavaSerializer;
 import org.ehcache.jsr107.Eh107Configuration;
 
 import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.jpa.AvailableSettings;
 import io.github.jhipster.config.JHipsterProperties;
 
 import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
@@ -18,51 +25,132 @@ import io.github.jhipster.config.cache.PrefixedKeyGenerator;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.*;
 
+/**
+ * Ehcache regions of the Hibernate second-level cache and of the Spring caches.
+ * <p>
+ * Each region is sized and expires as configured in {@code application.cache.regions}, by region name without the
+ * package of the domain, and otherwise as configured in {@code jhipster.cache.ehcache}: a heap tier of
+ * {@code heap-entries} entries, in front of an off-heap tier of {@code off-heap-mb} megabytes when set, whose entries
+ * expire {@code time-to-idle-seconds} after they were last read when set, otherwise {@code time-to-live-seconds}
+ * after they were written. The statistics of every region are enabled, so that Spring Boot exports their hits,
+ * misses and evictions as the {@code cache.*} meters tagged with the region name.
+ * <p>
+ * With the "cluster" profile, the same regions are held by Hazelcast instead, see {@link HazelcastCacheConfiguration}.
+ */
 @Configuration
 @EnableCaching
 public class CacheConfiguration {
+
+    private static final String DOMAIN_PACKAGE = com.roundrobine.movie.rentals.domain.User.class.getPackageName() + ".";
+
+    /**
+     * The caches of the Spring cache abstraction, then the regions of the Hibernate second-level cache.
+     */
+    static final List<String> CACHE_NAMES = List.of(
+        com.roundrobine.movie.rentals.repository.UserRepository.USERS_BY_LOGIN_CACHE,
+        com.roundrobine.movie.rentals.repository.UserRepository.USERS_BY_EMAIL_CACHE,
+        com.roundrobine.movie.rentals.domain.User.class.getName(),
+        com.roundrobine.movie.rentals.domain.Authority.class.getName(),
+        com.roundrobine.movie.rentals.domain.User.class.getName() + ".authorities",
+        com.roundrobine.movie.rentals.domain.Movie.class.getName(),
+        com.roundrobine.movie.rentals.domain.MovieInventory.class.getName(),
+        com.roundrobine.movie.rentals.domain.RentedCopy.class.getName(),
+        com.roundrobine.movie.rentals.domain.RentalOrder.class.getName(),
+        com.roundrobine.movie.rentals.domain.RentalOrder.class.getName() + ".rentedCopies",
+        com.roundrobine.movie.rentals.domain.Customer.class.getName(),
+        com.roundrobine.movie.rentals.domain.BonusHistory.class.getName());
+
     private GitProperties gitProperties;
     private BuildProperties buildProperties;
-    private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
-
-    public CacheConfiguration(JHipsterProperties jHipsterProperties) {
-        JHipsterProperties.Cache.Ehcache ehcache = jHipsterProperties.getCache().getEhcache();
+    private final JHipsterProperties.Cache.Ehcache defaults;
+    private final Map<String, ApplicationProperties.CacheRegion> regions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
 
-        jcacheConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
-            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
-                ResourcePoolsBuilder.heap(ehcache.getMaxEntries()))
-                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ehcache.getTimeToLiveSeconds())))
-                .build());
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
+        this.defaults = jHipsterProperties.getCache().getEhcache();
+        this.regions.putAll(applicationProperties.getCache().getRegions());
     }
 
     @Bean
+    @Profile("!" + Constants.SPRING_PROFILE_CLUSTER)
     public HibernatePropertiesCustomizer hibernatePropertiesCustomizer(javax.cache.CacheManager cacheManager) {
-        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+        return hibernateProperties -> {
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+            hibernateProperties.putAll(readOnlyCacheSettings(regions));
+        };
     }
 
     @Bean
+    @Profile("!" + Constants.SPRING_PROFILE_CLUSTER)
     public JCacheManagerCustomizer cacheManagerCustomizer() {
-        return cm -> {
-            createCache(cm, com.roundrobine.movie.rentals.repository.UserRepository.USERS_BY_LOGIN_CACHE);
-            createCache(cm, com.roundrobine.movie.rentals.repository.UserRepository.USERS_BY_EMAIL_CACHE);
-            createCache(cm, com.roundrobine.movie.rentals.domain.User.class.getName());
-            createCache(cm, com.roundrobine.movie.rentals.domain.Authority.class.getName());
-            createCache(cm, com.roundrobine.movie.rentals.domain.User.class.getName() + ".authorities");
-            createCache(cm, com.roundrobine.movie.rentals.domain.Movie.class.getName());
-            createCache(cm, com.roundrobine.movie.rentals.domain.MovieInventory.class.getName());
-            createCache(cm, com.roundrobine.movie.rentals.domain.RentedCopy.class.getName());
-            createCache(cm, com.roundrobine.movie.rentals.domain.RentalOrder.class.getName());
-            createCache(cm, com.roundrobine.movie.rentals.domain.RentalOrder.class.getName() + ".rentedCopies");
-            createCache(cm, com.roundrobine.movie.rentals.domain.Customer.class.getName());
-            createCache(cm, com.roundrobine.movie.rentals.domain.BonusHistory.class.getName());
-        };
+        return cm -> CACHE_NAMES.forEach(cacheName -> createCache(cm, cacheName));
     }
 
     private void createCache(javax.cache.CacheManager cm, String cacheName) {
         javax.cache.Cache<Object, Object> cache = cm.getCache(cacheName);
         if (cache == null) {
-            cm.createCache(cacheName, jcacheConfiguration);
+            ApplicationProperties.CacheRegion region = regions.get(regionName(cacheName));
+            cm.createCache(cacheName, Eh107Configuration.fromEhcacheCacheConfiguration(regionConfiguration(region, defaults)));
+        }
+        cm.enableStatistics(cacheName, true);
+    }
+
+    /**
+     * @param cacheName the name of a cache.
+     * @return the name of its policy in {@code application.cache.regions}.
+     */
+    static String regionName(String cacheName) {
+        return cacheName.startsWith(DOMAIN_PACKAGE) ? cacheName.substring(DOMAIN_PACKAGE.length()) : cacheName;
+    }
+
+    /**
+     * @param region the policy of the region, {@code null} to only use the defaults.
+     * @param defaults the size and time to live of the regions without a policy of their own.
+     * @return the Ehcache configuration of the region.
+     */
+    static org.ehcache.config.CacheConfiguration<Object, Object> regionConfiguration(
+        ApplicationProperties.CacheRegion region, JHipsterProperties.Cache.Ehcache defaults) {
+        ApplicationProperties.CacheRegion policy = region != null ? region : new ApplicationProperties.CacheRegion();
+        ResourcePoolsBuilder resourcePools = ResourcePoolsBuilder.heap(
+            policy.getHeapEntries() != null ? policy.getHeapEntries() : defaults.getMaxEntries());
+        CacheConfigurationBuilder<Object, Object> builder;
+        if (policy.getOffHeapMb() != null && policy.getOffHeapMb() > 0) {
+            // Entries moved off heap are serialized: keys and values of both caches are Serializable
+            builder = CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                resourcePools.offheap(policy.getOffHeapMb(), MemoryUnit.MB))
+                .withKeySerializer(new PlainJavaSerializer<>(CacheConfiguration.class.getClassLoader()))
+                .withValueSerializer(new PlainJavaSerializer<>(CacheConfiguration.class.getClassLoader()));
+        } else {
+            builder = CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class, resourcePools);
+        }
+        return builder.withExpiry(expiry(policy, defaults)).build();
+    }
+
+    private static ExpiryPolicy<Object, Object> expiry(ApplicationProperties.CacheRegion policy,
+                                                       JHipsterProperties.Cache.Ehcache defaults) {
+        if (policy.getTimeToIdleSeconds() != null) {
+            return ExpiryPolicyBuilder.timeToIdleExpiration(Duration.ofSeconds(policy.getTimeToIdleSeconds()));
         }
+        return ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(
+            policy.getTimeToLiveSeconds() != null ? policy.getTimeToLiveSeconds() : defaults.getTimeToLiveSeconds()));
+    }
+
+    /**
+     * The Hibernate settings overriding the concurrency strategy of the read-only regions: Hibernate then caches
+     * their entities and collections without locking, and fails on any update of them.
+     *
+     * @param regions the policies of the regions, by region name without the package of the domain.
+     * @return the {@code hibernate.classcache.*} and {@code hibernate.collectioncache.*} settings.
+     */
+    static Map<String, Object> readOnlyCacheSettings(Map<String, ApplicationProperties.CacheRegion> regions) {
+        Map<String, Object> settings = new TreeMap<>();
+        regions.forEach((name, region) -> {
+            if (region.isReadOnly()) {
+                // Collection roles are named after their entity: Entity.collection
+                String prefix = name.contains(".") ? AvailableSettings.COLLECTION_CACHE_PREFIX : AvailableSettings.CLASS_CACHE_PREFIX;
+                settings.put(prefix + "." + DOMAIN_PACKAGE + name, "read-only");
+            }
+        });
+        return settings;
     }
 
     @Autowired(required = false)
@@ -0,0 +1,51 @@
+package com.roundrobine.movie.rentals.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.util.StringUtils;
+
+/**
+ * Configure the non-blocking reads of the catalogue API.
+ * <p>
+ * Controllers returning a {@code Mono} or a {@code Flux} release their servlet thread as soon as the reactive
+ * pipeline is assembled; the database is then read through R2DBC and Elasticsearch through the asynchronous
+ * Jest client, so no thread waits for either. Streamed responses are written by the catalogue controller itself,
+ * see {@link com.roundrobine.movie.rentals.web.rest.util.JsonStreamEmitter}.
+ */
+@Configuration
+public class CatalogueConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(CatalogueConfiguration.class);
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool catalogueConnectionPool(ApplicationProperties applicationProperties,
+                                                  DataSourceProperties dataSourceProperties) {
+        ApplicationProperties.Catalogue properties = applicationProperties.getCatalogue();
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(properties.getR2dbcUrl()).mutate();
+        if (StringUtils.hasText(dataSourceProperties.getUsername())) {
+            options.option(ConnectionFactoryOptions.USER, dataSourceProperties.getUsername());
+        }
+        if (StringUtils.hasText(dataSourceProperties.getPassword())) {
+            options.option(ConnectionFactoryOptions.PASSWORD, dataSourceProperties.getPassword());
+        }
+        log.debug("Creating a pool of {} R2DBC connections for the catalogue", properties.getMaxPoolSize());
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+            .name("catalogue")
+            .initialSize(1)
+            .maxSize(properties.getMaxPoolSize())
+            .build());
+    }
+
+    @Bean
+    public DatabaseClient catalogueDatabaseClient(ConnectionPool catalogueConnectionPool) {
+        return DatabaseClient.create(catalogueConnectionPool);
+    }
+}
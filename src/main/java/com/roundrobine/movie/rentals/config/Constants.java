@@ -12,6 +12,11 @@ public final class Constants {
     public static final String DEFAULT_LANGUAGE = "en";
     public static final String ANONYMOUS_USER = "anonymoususer";
 
+    // Spring profile running requests and async tasks on virtual threads, needs Java 21 or later
+    public static final String SPRING_PROFILE_VIRTUAL_THREADS = "virtual-threads";
+    // Spring profile sharing the second-level cache with the other nodes of a cluster, through Hazelcast
+    public static final String SPRING_PROFILE_CLUSTER = "cluster";
+
     private Constants() {
     }
 }
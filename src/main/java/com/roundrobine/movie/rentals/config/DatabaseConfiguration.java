@@ -1,5 +1,6 @@
 package com.roundrobine.movie.rentals.config;
 
+import com.roundrobine.movie.rentals.repository.KeysetJpaRepository;
 import io.github.jhipster.config.JHipsterConstants;
 import io.github.jhipster.config.h2.H2ConfigurationHelper;
 import org.slf4j.Logger;
@@ -17,7 +18,7 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 import java.sql.SQLException;
 
 @Configuration
-@EnableJpaRepositories("com.roundrobine.movie.rentals.repository")
+@EnableJpaRepositories(value = "com.roundrobine.movie.rentals.repository", repositoryBaseClass = KeysetJpaRepository.class)
 @EnableJpaAuditing(auditorAwareRef = "springSecurityAuditorAware")
 @EnableTransactionManagement
 @EnableElasticsearchRepositories("com.roundrobine.movie.rentals.repository.search")
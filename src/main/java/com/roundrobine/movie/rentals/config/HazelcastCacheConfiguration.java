@@ -0,0 +1,123 @@
+package com.roundrobine.movie.rentals.config;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MaxSizeConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.hibernate.CacheEnvironment;
+import com.hazelcast.hibernate.HazelcastLocalCacheRegionFactory;
+import com.hazelcast.spring.cache.HazelcastCacheManager;
+import io.github.jhipster.config.JHipsterProperties;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Second-level cache shared by the nodes of a cluster, with the "cluster" profile.
+ * <p>
+ * Every node joins the Hazelcast cluster {@code application.cluster.name} through the TCP/IP members
+ * {@code application.cluster.members}. Hibernate regions stay local to each node, with the same names and policies
+ * as with Ehcache, and every update of a cached entity or collection is published to the other nodes, which drop
+ * their copy: reads are served from the heap of the node, and a node reads the database again after another one
+ * updated the row. The Spring caches are distributed Hazelcast maps. Off-heap tiers are an Ehcache feature, and
+ * local regions cannot expire on idle: they expire {@code time-to-idle-seconds} after they were written instead.
+ * <p>
+ * The rest of the in-memory state is not shared, and is either safe per node or turned off:
+ * <ul>
+ * <li>customer lanes only order the commands received by their node, and the conditional updates of customers and
+ * copies, or the version of the customer, make concurrent commands on other nodes fail or retry;</li>
+ * <li>every node drains the search outbox, claiming rows the others skip, except during a reindex, which runs on
+ * the one node holding its lease and is the only one draining meanwhile; the reindex progress is only known to
+ * that node;</li>
+ * <li>tariffs cannot be reloaded, and come from {@code application.tariffs} on every node;</li>
+ * <li>the catalogue page cache is off, in {@code application-cluster.yml};</li>
+ * <li>the movie availability index is off, leaving copies to the database check, and
+ * {@code GET /api/movies/availability} is rejected.</li>
+ * </ul>
+ */
+@Configuration
+@Profile(Constants.SPRING_PROFILE_CLUSTER)
+public class HazelcastCacheConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(HazelcastCacheConfiguration.class);
+
+    private final JHipsterProperties.Cache.Ehcache defaults;
+
+    private final ApplicationProperties.Cluster cluster;
+
+    private final Map<String, ApplicationProperties.CacheRegion> regions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    public HazelcastCacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
+        this.defaults = jHipsterProperties.getCache().getEhcache();
+        this.cluster = applicationProperties.getCluster();
+        this.regions.putAll(applicationProperties.getCache().getRegions());
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public HazelcastInstance hazelcastInstance() {
+        Config config = new Config();
+        config.getGroupConfig().setName(cluster.getName());
+        config.setProperty("hazelcast.logging.type", "slf4j");
+        // Shut down by Spring, after Hibernate
+        config.setProperty(CacheEnvironment.HAZELCAST_SHUTDOWN_HOOK_ENABLED, "false");
+        config.getNetworkConfig().setPort(cluster.getPort()).setPortAutoIncrement(true);
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(true).setMembers(cluster.getMembers());
+        CacheConfiguration.CACHE_NAMES.forEach(cacheName ->
+            config.addMapConfig(mapConfig(cacheName, regions.get(CacheConfiguration.regionName(cacheName)), defaults)));
+        log.info("Joining the Hazelcast cluster {} through {}", cluster.getName(), cluster.getMembers());
+        return Hazelcast.newHazelcastInstance(config);
+    }
+
+    @Bean
+    public CacheManager cacheManager(HazelcastInstance hazelcastInstance) {
+        return new HazelcastCacheManager(hazelcastInstance);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hazelcastHibernatePropertiesCustomizer(HazelcastInstance hazelcastInstance) {
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, HazelcastLocalCacheRegionFactory.class.getName());
+            hibernateProperties.put(CacheEnvironment.HAZELCAST_INSTANCE_NAME, hazelcastInstance.getName());
+            hibernateProperties.put(CacheEnvironment.SHUTDOWN_ON_STOP, "false");
+            hibernateProperties.putAll(CacheConfiguration.readOnlyCacheSettings(regions));
+        };
+    }
+
+    /**
+     * @param cacheName the name of the cache.
+     * @param region the policy of the region, {@code null} to only use the defaults.
+     * @param defaults the size and time to live of the regions without a policy of their own.
+     * @return the Hazelcast configuration of the cache, whose size and time to live also bound the local regions.
+     */
+    static MapConfig mapConfig(String cacheName, ApplicationProperties.CacheRegion region,
+                               JHipsterProperties.Cache.Ehcache defaults) {
+        ApplicationProperties.CacheRegion policy = region != null ? region : new ApplicationProperties.CacheRegion();
+        long heapEntries = policy.getHeapEntries() != null ? policy.getHeapEntries() : defaults.getMaxEntries();
+        MapConfig mapConfig = new MapConfig(cacheName)
+            .setBackupCount(0)
+            .setEvictionPolicy(EvictionPolicy.LRU)
+            .setMaxSizeConfig(new MaxSizeConfig((int) heapEntries, MaxSizeConfig.MaxSizePolicy.PER_NODE));
+        if (policy.getTimeToIdleSeconds() != null) {
+            mapConfig.setMaxIdleSeconds(policy.getTimeToIdleSeconds().intValue());
+            mapConfig.setTimeToLiveSeconds(policy.getTimeToIdleSeconds().intValue());
+        } else {
+            mapConfig.setTimeToLiveSeconds((int) (policy.getTimeToLiveSeconds() != null ?
+                policy.getTimeToLiveSeconds() : defaults.getTimeToLiveSeconds()));
+        }
+        return mapConfig;
+    }
+}
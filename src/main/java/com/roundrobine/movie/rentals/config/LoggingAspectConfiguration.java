@@ -1,9 +1,12 @@
 package com.roundrobine.movie.rentals.config;
 
 import com.roundrobine.movie.rentals.aop.logging.LoggingAspect;
+import com.roundrobine.movie.rentals.aop.profiling.ProfilingAspect;
 
 import io.github.jhipster.config.JHipsterConstants;
+import io.micrometer.core.instrument.MeterRegistry;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.*;
 import org.springframework.core.env.Environment;
 
@@ -16,4 +19,13 @@ public class LoggingAspectConfiguration {
     public LoggingAspect loggingAspect(Environment env) {
         return new LoggingAspect(env);
     }
+
+    /**
+     * Only registered with a positive {@code application.profiler.sample-rate}, whatever the profile.
+     */
+    @Bean
+    @ConditionalOnExpression("${application.profiler.sample-rate:0} > 0")
+    public ProfilingAspect profilingAspect(MeterRegistry meterRegistry, ApplicationProperties applicationProperties) {
+        return new ProfilingAspect(meterRegistry, applicationProperties.getProfiler().getSampleRate());
+    }
 }
@@ -0,0 +1,53 @@
+package com.roundrobine.movie.rentals.config;
+
+import com.roundrobine.movie.rentals.aop.sql.SqlMetricsAspect;
+import com.roundrobine.movie.rentals.aop.sql.SqlMetricsIntegrator;
+import com.roundrobine.movie.rentals.aop.sql.SqlSessionEventListener;
+import com.roundrobine.movie.rentals.aop.sql.SqlStatementInspector;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+
+import java.util.Collections;
+
+/**
+ * Records the statements, rows and JDBC time of each REST endpoint and service method, unless
+ * {@code application.sql-metrics.enabled} is false.
+ * <p>
+ * The statements are reported by Hibernate itself, so the Hikari data source and its connections are used as is.
+ * Statements run by Liquibase or the R2DBC catalogue client are not recorded.
+ */
+@Configuration
+@EnableAspectJAutoProxy
+@ConditionalOnProperty(prefix = "application.sql-metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SqlMetricsConfiguration {
+
+    /**
+     * Register the statement inspector, session listener and integrator reporting every statement run by
+     * Hibernate.
+     *
+     * @return the customizer of the Hibernate properties.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer sqlMetricsHibernatePropertiesCustomizer() {
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementInspector());
+            hibernateProperties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SqlSessionEventListener.class.getName());
+            hibernateProperties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> Collections.singletonList(new SqlMetricsIntegrator()));
+        };
+    }
+
+    @Bean
+    public SqlMetricsAspect sqlMetricsAspect(MeterRegistry meterRegistry, ApplicationProperties applicationProperties) {
+        return new SqlMetricsAspect(meterRegistry, applicationProperties);
+    }
+}
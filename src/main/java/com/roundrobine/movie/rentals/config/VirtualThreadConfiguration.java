@@ -0,0 +1,44 @@
+package com.roundrobine.movie.rentals.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.embedded.undertow.UndertowServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Dispatches servlet requests onto virtual threads instead of the Undertow worker pool.
+ * <p>
+ * Requests blocked on a JDBC connection or on an Elasticsearch call then no longer hold a platform thread, so
+ * the number of requests in flight is bounded by the Hikari pool and the customer lanes rather than by
+ * {@code server.undertow.worker-threads}. A virtual thread blocked inside a {@code synchronized} block of a
+ * driver still pins its carrier thread; run with {@code -Djdk.tracePinnedThreads=short} to find them.
+ * Async tasks are moved onto virtual threads by {@link AsyncConfiguration}, and rentals and returns by the
+ * {@link com.roundrobine.movie.rentals.service.CustomerCommandDispatcher}, whose lanes are raised in
+ * {@code application-virtual-threads.yml}.
+ */
+@Configuration
+@Profile(Constants.SPRING_PROFILE_VIRTUAL_THREADS)
+public class VirtualThreadConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(VirtualThreadConfiguration.class);
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService servletRequestExecutor() {
+        return VirtualThreads.newThreadPerTaskExecutor("http-virtual-");
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<UndertowServletWebServerFactory> virtualThreadUndertowCustomizer(
+        ExecutorService servletRequestExecutor) {
+        return factory -> factory.addDeploymentInfoCustomizers(deploymentInfo -> {
+            log.info("Dispatching servlet requests onto virtual threads");
+            deploymentInfo.setExecutor(servletRequestExecutor);
+            deploymentInfo.setAsyncExecutor(servletRequestExecutor);
+        });
+    }
+}
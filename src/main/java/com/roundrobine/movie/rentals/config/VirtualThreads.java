@@ -0,0 +1,57 @@
+package com.roundrobine.movie.rentals.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads on Java 21 and later.
+ * <p>
+ * The application is compiled for Java 11, which Spring Boot 2.2 can read, so the virtual thread API of the
+ * running JVM is looked up reflectively.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Create a factory of virtual threads named {@code prefix} followed by a counter.
+     *
+     * @param prefix the prefix of the names of the threads.
+     * @return the thread factory.
+     * @throws IllegalStateException if the running JVM has no virtual threads.
+     */
+    public static ThreadFactory threadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (NoSuchMethodException | ClassNotFoundException e) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later, running on Java " +
+                Runtime.version().feature(), e);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create a virtual thread factory", e);
+        }
+    }
+
+    /**
+     * Create an executor starting a new virtual thread for each task.
+     *
+     * @param prefix the prefix of the names of the threads.
+     * @return the executor, to shut down once no longer used.
+     * @throws IllegalStateException if the running JVM has no virtual threads.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        ThreadFactory threadFactory = threadFactory(prefix);
+        try {
+            Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create a virtual thread executor", e);
+        }
+    }
+}
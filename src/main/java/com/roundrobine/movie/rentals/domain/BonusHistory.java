@@ -31,7 +31,7 @@ public class BonusHistory implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "pooledIdGenerator")
     private Long id;
 
     @NotNull
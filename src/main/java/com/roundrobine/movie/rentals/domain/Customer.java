@@ -41,6 +41,10 @@ public class Customer implements Serializable {
     @Column(name = "currency")
     private Currency currency = Currency.SEK;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @OneToOne
     @MapsId
     @JoinColumn(name = "id")
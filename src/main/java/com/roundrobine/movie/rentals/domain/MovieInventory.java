@@ -35,7 +35,7 @@ public class MovieInventory implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "pooledIdGenerator")
     private Long id;
 
     @Column(name = "last_updated_at", nullable = false)
@@ -48,6 +48,10 @@ public class MovieInventory implements Serializable {
     @Column(name = "status", nullable = false)
     private RentalStatus status = RentalStatus.AVAILABLE;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @ManyToOne(optional = false)
     @NotNull
     @JsonIgnoreProperties(value = "movieInventories", allowSetters = true)
@@ -36,7 +36,7 @@ public class RentalOrder implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "pooledIdGenerator")
     @EqualsAndHashCode.Include
     private Long id;
 
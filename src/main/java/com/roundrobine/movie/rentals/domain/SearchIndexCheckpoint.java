@@ -0,0 +1,56 @@
+package com.roundrobine.movie.rentals.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * How far a reindexing job has got, kept so that a restart resumes from there instead of rescanning.
+ * <p>
+ * The position is the {@code id} of the last indexed row. A job that builds a new index version also keeps the
+ * name of that index.
+ * <p>
+ * A checkpoint can also hold the lease of a job that must run on one node at a time: {@code lockedBy} is the
+ * node running it, until {@code lockedUntil} unless the node renews the lease.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Entity
+@Table(name = "search_index_checkpoint")
+public class SearchIndexCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Size(max = 100)
+    @Column(name = "name", length = 100)
+    private String name;
+
+    @Column(name = "last_id")
+    private Long lastId;
+
+    @Column(name = "target_index")
+    private String targetIndex;
+
+    @Size(max = 100)
+    @Column(name = "locked_by", length = 100)
+    private String lockedBy;
+
+    @Column(name = "locked_until")
+    private Instant lockedUntil;
+
+    @NotNull
+    @Column(name = "updated_at", nullable = false)
+    @Builder.Default
+    private Instant updatedAt = Instant.now();
+
+}
@@ -1,9 +1,11 @@
 package com.roundrobine.movie.rentals.domain.enumeration;
 
-import java.math.BigDecimal;
-
 /**
  * The MovieType enumeration.
+ * <p>
+ * The values below are the built-in tariff of each type, in minor currency units (öre). The prices actually
+ * charged come from {@link com.roundrobine.movie.rentals.service.tariff.TariffEngine}, which falls back to
+ * these values for every type that has no configured tariff.
  */
 public enum MovieType {
     NEW_RELEASE(1, Constants.PREMIUM_PRICE, Currency.SEK, 2),
@@ -11,50 +13,36 @@ public enum MovieType {
     OLD_FILM(5, Constants.BASIC_PRICE, Currency.SEK, 1);
 
     private static class Constants {
-        private static final BigDecimal BASIC_PRICE = new BigDecimal(30);
-        private static final BigDecimal PREMIUM_PRICE = new BigDecimal(40);
+        private static final long BASIC_PRICE = 30_00;
+        private static final long PREMIUM_PRICE = 40_00;
     }
 
     private int includedRentalDays;
-    private BigDecimal price;
+    private long priceInMinorUnits;
     private Currency currency;
     private int bonusPoints;
 
 
-    MovieType(int includedRentalDays, BigDecimal price, Currency currency, int bonusPoints) {
+    MovieType(int includedRentalDays, long priceInMinorUnits, Currency currency, int bonusPoints) {
         this.includedRentalDays = includedRentalDays;
-        this.price = price;
+        this.priceInMinorUnits = priceInMinorUnits;
         this.currency = currency;
         this.bonusPoints = bonusPoints;
     }
 
-    public BigDecimal calculateMoviePriceOnRental(int plannedRentalDays) {
-        BigDecimal total = this.price;
-        if (plannedRentalDays > includedRentalDays) {
-            total = total.add(this.price.multiply(new BigDecimal(plannedRentalDays - includedRentalDays)));
-        }
+    public int getIncludedRentalDays() {
+        return includedRentalDays;
+    }
 
-        return total;
+    public long getPriceInMinorUnits() {
+        return priceInMinorUnits;
     }
 
-    public BigDecimal calculateSurchargesOnMovieReturn(int plannedRentalDays, int actualRentalDays) {
-        BigDecimal surcharges = new BigDecimal(0);
-        if (actualRentalDays <= plannedRentalDays){
-            return surcharges;
-        }
-        else {
-            if(actualRentalDays <= includedRentalDays){
-                return surcharges;
-            }
-            return surcharges.add(this.price.multiply(new BigDecimal(actualRentalDays - plannedRentalDays )));
-        }
+    public Currency getCurrency() {
+        return currency;
     }
 
     public int getBonusPoints() {
         return bonusPoints;
     }
-
-    public BigDecimal getPrice(){
-        return price;
-    }
 }
@@ -1,4 +1,23 @@
 /**
  * JPA domain objects.
+ * <p>
+ * Entities written in bulk take their ids from the {@code pooledIdGenerator}, which reserves blocks of
+ * {@code increment_size} ids per table in the {@code id_generator} table. Unlike identity columns, this leaves
+ * Hibernate free to batch their inserts, as {@code hibernate.jdbc.batch_size} asks.
  */
+@GenericGenerator(
+    name = "pooledIdGenerator",
+    strategy = "org.hibernate.id.enhanced.TableGenerator",
+    parameters = {
+        @Parameter(name = "table_name", value = "id_generator"),
+        @Parameter(name = "segment_column_name", value = "sequence_name"),
+        @Parameter(name = "value_column_name", value = "next_val"),
+        @Parameter(name = "prefer_entity_table_as_segment_value", value = "true"),
+        @Parameter(name = "increment_size", value = "50"),
+        @Parameter(name = "optimizer", value = "pooled")
+    }
+)
 package com.roundrobine.movie.rentals.domain;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
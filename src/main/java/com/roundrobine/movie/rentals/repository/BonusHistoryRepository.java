@@ -3,12 +3,34 @@ package com.roundrobine.movie.rentals.repository;
 import com.roundrobine.movie.rentals.domain.BonusHistory;
 
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.*;
+
 /**
  * Spring Data  repository for the BonusHistory entity.
  */
 @SuppressWarnings("unused")
 @Repository
-public interface BonusHistoryRepository extends JpaRepository<BonusHistory, Long> {
+public interface BonusHistoryRepository extends JpaRepository<BonusHistory, Long>, KeysetRepository<BonusHistory, Long> {
+
+    /**
+     * Forward-only stream of the bonus history created in a time range, in id order, with its customer and its
+     * order. The range includes its start and excludes its end.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HINT_READONLY, value = "true"),
+        @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select bonusHistory from BonusHistory bonusHistory join fetch bonusHistory.customer customer " +
+        "join fetch customer.user join fetch bonusHistory.oder rentalOrder join fetch rentalOrder.customer orderCustomer " +
+        "join fetch orderCustomer.user where bonusHistory.createdAt >= :createdFrom and bonusHistory.createdAt < :createdTo " +
+        "order by bonusHistory.id")
+    Stream<BonusHistory> streamForExport(@Param("createdFrom") Instant createdFrom, @Param("createdTo") Instant createdTo);
 }
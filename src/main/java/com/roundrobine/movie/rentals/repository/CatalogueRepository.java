@@ -0,0 +1,103 @@
+package com.roundrobine.movie.rentals.repository;
+
+import com.roundrobine.movie.rentals.domain.Movie;
+import com.roundrobine.movie.rentals.domain.MovieInventory;
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Non-blocking, read-only access to the {@link Movie} and {@link MovieInventory} tables, for the catalogue API.
+ * <p>
+ * The rows are read through R2DBC instead of JPA, so the entities returned are detached copies that are never
+ * written back; all the writes stay on the JPA repositories.
+ */
+@Repository
+public class CatalogueRepository {
+
+    private static final String MOVIE_COLUMNS = "m.id, m.title, m.description, m.type, m.poster_url";
+
+    private final DatabaseClient databaseClient;
+
+    public CatalogueRepository(@Qualifier("catalogueDatabaseClient") DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Read a page of movies, ordered by id.
+     *
+     * @param offset the number of movies to skip.
+     * @param limit the maximum number of movies to read.
+     * @return the movies, as they are read.
+     */
+    public Flux<Movie> findMovies(long offset, int limit) {
+        return databaseClient.execute("select " + MOVIE_COLUMNS + " from movie m order by m.id limit :limit offset :offset")
+            .bind("limit", limit)
+            .bind("offset", offset)
+            .map((row, metadata) -> toMovie(row))
+            .all();
+    }
+
+    /**
+     * Read a movie.
+     *
+     * @param id the id of the movie.
+     * @return the movie, or nothing if there is no such movie.
+     */
+    public Mono<Movie> findMovie(Long id) {
+        return databaseClient.execute("select " + MOVIE_COLUMNS + " from movie m where m.id = :id")
+            .bind("id", id)
+            .map((row, metadata) -> toMovie(row))
+            .one();
+    }
+
+    /**
+     * Read the copies of a movie in a given status, ordered by id.
+     *
+     * @param movieId the id of the movie.
+     * @param status the status of the copies.
+     * @return the copies, with their movie, as they are read.
+     */
+    public Flux<MovieInventory> findMovieInventories(Long movieId, RentalStatus status) {
+        return databaseClient.execute("select i.id as inventory_id, i.last_updated_at, i.created_at, i.status, i.version, " +
+            MOVIE_COLUMNS + " from movie_inventory i join movie m on m.id = i.movie_id " +
+            "where i.movie_id = :movieId and i.status = :status order by i.id")
+            .bind("movieId", movieId)
+            .bind("status", status.name())
+            .map((row, metadata) -> MovieInventory.builder()
+                .id(row.get("inventory_id", Long.class))
+                .lastUpdatedAt(toInstant(row.get("last_updated_at", LocalDateTime.class)))
+                .createdAt(toInstant(row.get("created_at", LocalDateTime.class)))
+                .status(RentalStatus.valueOf(row.get("status", String.class)))
+                .version(row.get("version", Long.class))
+                .movie(toMovie(row))
+                .build())
+            .all();
+    }
+
+    private static Movie toMovie(Row row) {
+        return Movie.builder()
+            .id(row.get("id", Long.class))
+            .title(row.get("title", String.class))
+            .description(row.get("description", String.class))
+            .type(MovieType.valueOf(row.get("type", String.class)))
+            .posterUrl(row.get("poster_url", String.class))
+            .build();
+    }
+
+    /**
+     * Timestamps are stored in UTC, see {@code hibernate.jdbc.time_zone}.
+     */
+    private static Instant toInstant(LocalDateTime timestamp) {
+        return timestamp == null ? null : timestamp.toInstant(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,78 @@
+package com.roundrobine.movie.rentals.repository;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs conditional updates, which check and change their rows in a single statement, and keeps the second-level
+ * cache and the persistence context in step with the rows they may have changed.
+ * <p>
+ * Hibernate evicts the whole cache region of an entity on a JPQL bulk update, since it cannot tell which rows the
+ * statement touches. These updates are native statements declared on a query space of their own, which leaves
+ * the regions alone, and the entries of the updated ids are evicted instead, again once the transaction
+ * completes so that a read racing the transaction cannot put the old row back. Entities of these ids already
+ * loaded by the transaction are refreshed.
+ */
+final class ConditionalUpdates {
+
+    private static final String QUERY_SPACE = "conditional_update";
+
+    private ConditionalUpdates() {
+    }
+
+    /**
+     * @param entityManager the entity manager of the current transaction.
+     * @param entityClass the class of the updated entities.
+     * @param ids the ids of the entities the statement may update.
+     * @param sql the update statement, with named parameters.
+     * @param parameters the values of the named parameters.
+     * @return the number of rows updated.
+     */
+    static int execute(EntityManager entityManager, Class<?> entityClass, Collection<Long> ids, String sql,
+                       Map<String, Object> parameters) {
+        // the statement cannot see the changes Hibernate has not flushed yet, nor have them flushed over its own
+        entityManager.flush();
+        Query query = entityManager.createNativeQuery(sql);
+        parameters.forEach(query::setParameter);
+        query.unwrap(NativeQuery.class).addSynchronizedQuerySpace(QUERY_SPACE);
+        int updated = query.executeUpdate();
+
+        List<Long> updatedIds = new ArrayList<>(ids);
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        updatedIds.forEach(id -> cache.evict(entityClass, id));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    updatedIds.forEach(id -> cache.evict(entityClass, id));
+                }
+            });
+        }
+        if (updated > 0) {
+            refreshManaged(entityManager, entityClass, updatedIds);
+        }
+        return updated;
+    }
+
+    private static void refreshManaged(EntityManager entityManager, Class<?> entityClass, Collection<Long> ids) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(entityClass);
+        for (Long id : ids) {
+            Object managed = session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister));
+            if (managed != null) {
+                entityManager.refresh(managed);
+            }
+        }
+    }
+}
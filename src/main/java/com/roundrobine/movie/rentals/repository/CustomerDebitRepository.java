@@ -0,0 +1,18 @@
+package com.roundrobine.movie.rentals.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Debit of a {@link com.roundrobine.movie.rentals.domain.Customer} in a single conditional statement.
+ */
+public interface CustomerDebitRepository {
+
+    /**
+     * Debit a customer and add bonus points to it in a single statement, if its credit covers the amount.
+     * <p>
+     * Only the second-level cache entry of this customer is evicted.
+     *
+     * @return the number of customers updated, {@code 0} if the credit is too low or the customer does not exist.
+     */
+    int debit(Long id, BigDecimal amount, Long bonusPoints);
+}
@@ -0,0 +1,31 @@
+package com.roundrobine.movie.rentals.repository;
+
+import com.roundrobine.movie.rentals.domain.Customer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link CustomerDebitRepository} on a native conditional update, see {@link ConditionalUpdates}.
+ */
+class CustomerDebitRepositoryImpl implements CustomerDebitRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int debit(Long id, BigDecimal amount, Long bonusPoints) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", id);
+        parameters.put("amount", amount);
+        parameters.put("bonusPoints", bonusPoints);
+        return ConditionalUpdates.execute(entityManager, Customer.class, Collections.singleton(id),
+            "update customer set credit_amount = credit_amount - :amount, " +
+                "bonus_points = coalesce(bonus_points, 0) + :bonusPoints, version = version + 1 " +
+                "where id = :id and credit_amount >= :amount", parameters);
+    }
+}
@@ -3,12 +3,24 @@ package com.roundrobine.movie.rentals.repository;
 import com.roundrobine.movie.rentals.domain.Customer;
 
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.util.Optional;
+
 /**
  * Spring Data  repository for the Customer entity.
  */
 @SuppressWarnings("unused")
 @Repository
-public interface CustomerRepository extends JpaRepository<Customer, Long> {
+public interface CustomerRepository extends JpaRepository<Customer, Long>, KeysetRepository<Customer, Long>,
+    CustomerDebitRepository {
+
+    /**
+     * Get one customer, whose version is incremented when the transaction commits even if it is left unchanged.
+     */
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    @Query("select customer from Customer customer where customer.id = :id")
+    Optional<Customer> findByIdForVersionIncrement(@Param("id") Long id);
 }
@@ -0,0 +1,20 @@
+package com.roundrobine.movie.rentals.repository;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+/**
+ * Thrown when a keyset cannot be used to read a page, typically because it was decoded from a continuation
+ * token which a client made up or which was issued for other entities.
+ */
+public class InvalidKeysetException extends InvalidDataAccessApiUsageException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidKeysetException(String message) {
+        super(message);
+    }
+
+    public InvalidKeysetException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,100 @@
+package com.roundrobine.movie.rentals.repository;
+
+import org.springframework.data.domain.Sort;
+
+import java.util.Objects;
+
+/**
+ * Position of a page in a keyset pagination.
+ * <p>
+ * Rows are sorted on one property, with ties broken by id, and a page starts right after the sort value and
+ * id of the last row of the previous page. Reading a page is then a range scan of an index on the property,
+ * which costs the same however deep the page is, unlike skipping an offset.
+ */
+public final class Keyset {
+
+    private final String property;
+
+    private final Sort.Direction direction;
+
+    private final Object value;
+
+    private final Object id;
+
+    private Keyset(String property, Sort.Direction direction, Object value, Object id) {
+        this.property = Objects.requireNonNull(property, "property");
+        this.direction = Objects.requireNonNull(direction, "direction");
+        this.value = value;
+        this.id = id;
+    }
+
+    /**
+     * @return the position of the first page of rows sorted on a property.
+     */
+    public static Keyset first(String property, Sort.Direction direction) {
+        return new Keyset(property, direction, null, null);
+    }
+
+    /**
+     * @param value the sort value of the last row of the previous page.
+     * @param id the id of the last row of the previous page.
+     * @return the position of the page after that row, with the same sort.
+     */
+    public Keyset after(Object value, Object id) {
+        return new Keyset(property, direction, Objects.requireNonNull(value, "value"), Objects.requireNonNull(id, "id"));
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public Sort.Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return the sort value the page starts after, or {@code null} for the first page.
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * @return the id the page starts after, or {@code null} for the first page.
+     */
+    public Object getId() {
+        return id;
+    }
+
+    public boolean isFirst() {
+        return id == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Keyset)) {
+            return false;
+        }
+        Keyset keyset = (Keyset) o;
+        return property.equals(keyset.property) && direction == keyset.direction &&
+            Objects.equals(value, keyset.value) && Objects.equals(id, keyset.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(property, direction, value, id);
+    }
+
+    @Override
+    public String toString() {
+        return "Keyset{" +
+            "property='" + property + "'" +
+            ", direction=" + direction +
+            ", value=" + value +
+            ", id=" + id +
+            "}";
+    }
+}
@@ -0,0 +1,167 @@
+package com.roundrobine.movie.rentals.repository;
+
+import org.springframework.core.convert.ConversionException;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.format.support.DefaultFormattingConversionService;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class of the Spring Data JPA repositories, adding keyset pagination to {@link SimpleJpaRepository}.
+ *
+ * @param <T> the type of the entities.
+ * @param <ID> the type of the ids of the entities.
+ */
+public class KeysetJpaRepository<T, ID extends Serializable> extends SimpleJpaRepository<T, ID> implements KeysetRepository<T, ID> {
+
+    private static final ConversionService conversionService = new DefaultFormattingConversionService();
+
+    private final JpaEntityInformation<T, ?> entityInformation;
+
+    private final EntityManager entityManager;
+
+    public KeysetJpaRepository(JpaEntityInformation<T, ?> entityInformation, EntityManager entityManager) {
+        super(entityInformation, entityManager);
+        this.entityInformation = entityInformation;
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public KeysetSlice<T> findAll(Keyset keyset, int size) {
+        Assert.isTrue(size > 0, "The size of a page must be positive");
+        SingularAttribute<? super T, ?> sortAttribute = sortAttribute(keyset.getProperty());
+        CriteriaQuery<T> query = entityManager.getCriteriaBuilder().createQuery(getDomainClass());
+        Root<T> root = query.from(getDomainClass());
+        seek(query.select(root), root, keyset, sortAttribute);
+
+        // One more row than the page tells whether there is a next page, without counting.
+        List<T> rows = entityManager.createQuery(query)
+            .setMaxResults(size + 1)
+            .getResultList();
+        if (rows.size() <= size) {
+            return new KeysetSlice<>(rows, null);
+        }
+        List<T> content = new ArrayList<>(rows.subList(0, size));
+        T last = content.get(size - 1);
+        return new KeysetSlice<>(content, keyset.after(read(sortAttribute, last), entityInformation.getId(last)));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public KeysetSlice<ID> findAllIds(Keyset keyset, int size) {
+        Assert.isTrue(size > 0, "The size of a page must be positive");
+        SingularAttribute<? super T, ?> sortAttribute = sortAttribute(keyset.getProperty());
+        CriteriaQuery<Tuple> query = entityManager.getCriteriaBuilder().createTupleQuery();
+        Root<T> root = query.from(getDomainClass());
+        seek(query.multiselect(root.get(entityInformation.getIdAttribute().getName()), root.get(sortAttribute.getName())),
+            root, keyset, sortAttribute);
+
+        List<Tuple> rows = entityManager.createQuery(query)
+            .setMaxResults(size + 1)
+            .getResultList();
+        List<ID> content = new ArrayList<>(Math.min(rows.size(), size));
+        for (Tuple row : rows.subList(0, Math.min(rows.size(), size))) {
+            content.add((ID) row.get(0));
+        }
+        if (rows.size() <= size) {
+            return new KeysetSlice<>(content, null);
+        }
+        Tuple last = rows.get(size - 1);
+        return new KeysetSlice<>(content, keyset.after(last.get(1), last.get(0)));
+    }
+
+    /**
+     * Restrict a query to the rows after a keyset, and sort them on its property then on id.
+     */
+    private void seek(CriteriaQuery<?> query, Root<T> root, Keyset keyset, SingularAttribute<? super T, ?> sortAttribute) {
+        SingularAttribute<? super T, ?> idAttribute = entityInformation.getIdAttribute();
+        boolean sortedById = sortAttribute.getName().equals(idAttribute.getName());
+        boolean ascending = keyset.getDirection().isAscending();
+
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        Path<?> id = root.get(idAttribute.getName());
+        Path<?> sortValue = root.get(sortAttribute.getName());
+        if (!keyset.isFirst()) {
+            Predicate afterId = after(builder, id, convert(keyset.getId(), idAttribute), ascending);
+            if (sortedById) {
+                query.where(afterId);
+            } else {
+                Object value = convert(keyset.getValue(), sortAttribute);
+                query.where(builder.or(
+                    after(builder, sortValue, value, ascending),
+                    builder.and(builder.equal(sortValue, value), afterId)));
+            }
+        }
+        List<Order> orders = new ArrayList<>();
+        if (!sortedById) {
+            orders.add(ascending ? builder.asc(sortValue) : builder.desc(sortValue));
+        }
+        orders.add(ascending ? builder.asc(id) : builder.desc(id));
+        query.orderBy(orders);
+    }
+
+    private SingularAttribute<? super T, ?> sortAttribute(String property) {
+        EntityType<T> entityType = entityManager.getMetamodel().entity(getDomainClass());
+        SingularAttribute<? super T, ?> attribute;
+        try {
+            attribute = entityType.getSingularAttribute(property);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidKeysetException("Cannot sort " + entityType.getName() + " on unknown property " + property, e);
+        }
+        if (attribute.getPersistentAttributeType() != Attribute.PersistentAttributeType.BASIC ||
+            (attribute.isOptional() && !attribute.isId()) ||
+            !Comparable.class.isAssignableFrom(attribute.getJavaType())) {
+            throw new InvalidKeysetException("Cannot sort " + entityType.getName() + " on " + property +
+                ", which is not a mandatory comparable column");
+        }
+        return attribute;
+    }
+
+    private static Object convert(Object value, SingularAttribute<?, ?> attribute) {
+        try {
+            Object converted = conversionService.convert(value, attribute.getJavaType());
+            if (converted == null) {
+                throw new InvalidKeysetException("Missing keyset value of " + attribute.getName());
+            }
+            return converted;
+        } catch (ConversionException e) {
+            throw new InvalidKeysetException("Invalid keyset value of " + attribute.getName() + ": " + value, e);
+        }
+    }
+
+    private static Object read(SingularAttribute<?, ?> attribute, Object entity) {
+        Member member = attribute.getJavaMember();
+        if (member instanceof Method) {
+            ReflectionUtils.makeAccessible((Method) member);
+            return ReflectionUtils.invokeMethod((Method) member, entity);
+        }
+        ReflectionUtils.makeAccessible((Field) member);
+        return ReflectionUtils.getField((Field) member, entity);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate after(CriteriaBuilder builder, Path path, Object value, boolean ascending) {
+        Comparable comparable = (Comparable) value;
+        return ascending ? builder.greaterThan(path, comparable) : builder.lessThan(path, comparable);
+    }
+}
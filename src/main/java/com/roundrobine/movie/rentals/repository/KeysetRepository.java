@@ -0,0 +1,40 @@
+package com.roundrobine.movie.rentals.repository;
+
+import org.springframework.data.repository.NoRepositoryBean;
+
+/**
+ * Repository fragment reading entities a page at a time with keyset pagination, implemented for every
+ * repository by {@link KeysetJpaRepository}.
+ *
+ * @param <T> the type of the entities.
+ * @param <ID> the type of the ids of the entities.
+ */
+@NoRepositoryBean
+public interface KeysetRepository<T, ID> {
+
+    /**
+     * Read the page of entities after a keyset, without an offset and without a count.
+     * <p>
+     * The sort property must be the id or a mandatory, comparable column of the entity itself.
+     *
+     * @param keyset the keyset the page starts after.
+     * @param size the maximum number of entities of the page.
+     * @return the entities of the page, with the keyset of the next page if there are more entities.
+     * @throws InvalidKeysetException if the entities cannot be sorted on the property of the keyset, or the
+     * values of the keyset are not of the types of the sort property and of the id.
+     */
+    KeysetSlice<T> findAll(Keyset keyset, int size);
+
+    /**
+     * Read the ids of the page of entities after a keyset, for the entities to be loaded with a fetch plan
+     * the keyset query cannot have, such as a fetch join of a collection, which does not combine with a limit.
+     *
+     * @param keyset the keyset the page starts after.
+     * @param size the maximum number of ids of the page.
+     * @return the ids of the page, with the keyset of the next page if there are more entities.
+     * @throws InvalidKeysetException if the entities cannot be sorted on the property of the keyset, or the
+     * values of the keyset are not of the types of the sort property and of the id.
+     * @see KeysetSlice#join(java.util.Collection, java.util.function.Function)
+     */
+    KeysetSlice<ID> findAllIds(Keyset keyset, int size);
+}
@@ -0,0 +1,68 @@
+package com.roundrobine.movie.rentals.repository;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A page of rows read after a {@link Keyset}, with the keyset of the next page when there is one.
+ *
+ * @param <T> the type of the rows.
+ */
+public final class KeysetSlice<T> {
+
+    private final List<T> content;
+
+    private final Keyset next;
+
+    public KeysetSlice(List<T> content, Keyset next) {
+        this.content = Collections.unmodifiableList(content);
+        this.next = next;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * @return the keyset the next page starts after, or empty on the last page.
+     */
+    public Optional<Keyset> getNext() {
+        return Optional.ofNullable(next);
+    }
+
+    /**
+     * @param converter the converter of each row.
+     * @param <U> the type of the converted rows.
+     * @return the same page, with its rows converted.
+     */
+    public <U> KeysetSlice<U> map(Function<? super T, ? extends U> converter) {
+        return new KeysetSlice<>(content.stream().map(converter).collect(Collectors.toList()), next);
+    }
+
+    /**
+     * Join a page of ids with the rows loaded for them.
+     *
+     * @param rows the rows of the ids of this page, in any order. Rows deleted since the ids were read are
+     * missing, and are left out of the page.
+     * @param idOf the id of a row.
+     * @param <U> the type of the rows.
+     * @return the page of the rows, in the order of their ids.
+     */
+    public <U> KeysetSlice<U> join(Collection<U> rows, Function<? super U, ? extends T> idOf) {
+        Map<T, U> rowsById = rows.stream().collect(Collectors.toMap(idOf, Function.identity(), (row, same) -> row));
+        return new KeysetSlice<>(content.stream()
+            .map(rowsById::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList()), next);
+    }
+}
@@ -2,6 +2,7 @@ package com.roundrobine.movie.rentals.repository;
 
 import com.roundrobine.movie.rentals.domain.MovieInventory;
 
+import com.roundrobine.movie.rentals.service.dto.MovieInventoryStatusDTO;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
@@ -13,8 +14,16 @@ import java.util.Set;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface MovieInventoryRepository extends JpaRepository<MovieInventory, Long> {
+public interface MovieInventoryRepository extends JpaRepository<MovieInventory, Long>, KeysetRepository<MovieInventory, Long>,
+    MovieInventoryStatusRepository {
 
     List<MovieInventory> findByIdIn(Set<Long> ids);
 
+    /**
+     * The id, movie id, status and version of every movie inventory, without loading the entities.
+     */
+    @Query("select new com.roundrobine.movie.rentals.service.dto.MovieInventoryStatusDTO(movieInventory.id, " +
+        "movieInventory.movie.id, movieInventory.status, movieInventory.version) from MovieInventory movieInventory")
+    List<MovieInventoryStatusDTO> findAllStatuses();
+
 }
@@ -0,0 +1,22 @@
+package com.roundrobine.movie.rentals.repository;
+
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Status change of {@link com.roundrobine.movie.rentals.domain.MovieInventory} in a single conditional statement.
+ */
+public interface MovieInventoryStatusRepository {
+
+    /**
+     * Change the status of the movie inventories that are in an expected status, in a single statement.
+     * <p>
+     * Only the second-level cache entries of these movie inventories are evicted.
+     *
+     * @return the number of movie inventories updated, fewer than the ids when some of them do not exist or are
+     * not in the expected status.
+     */
+    int updateStatus(Collection<Long> ids, RentalStatus expectedStatus, RentalStatus status, Instant updatedAt);
+}
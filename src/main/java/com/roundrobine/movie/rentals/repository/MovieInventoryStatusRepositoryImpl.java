@@ -0,0 +1,32 @@
+package com.roundrobine.movie.rentals.repository;
+
+import com.roundrobine.movie.rentals.domain.MovieInventory;
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link MovieInventoryStatusRepository} on a native conditional update, see {@link ConditionalUpdates}.
+ */
+class MovieInventoryStatusRepositoryImpl implements MovieInventoryStatusRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int updateStatus(Collection<Long> ids, RentalStatus expectedStatus, RentalStatus status, Instant updatedAt) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("ids", ids);
+        parameters.put("expectedStatus", expectedStatus.name());
+        parameters.put("status", status.name());
+        parameters.put("updatedAt", updatedAt);
+        return ConditionalUpdates.execute(entityManager, MovieInventory.class, ids,
+            "update movie_inventory set status = :status, last_updated_at = :updatedAt, version = version + 1 " +
+                "where id in (:ids) and status = :expectedStatus", parameters);
+    }
+}
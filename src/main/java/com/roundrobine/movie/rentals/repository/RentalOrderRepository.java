@@ -2,20 +2,67 @@ package com.roundrobine.movie.rentals.repository;
 
 import com.roundrobine.movie.rentals.domain.MovieInventory;
 import com.roundrobine.movie.rentals.domain.RentalOrder;
+import com.roundrobine.movie.rentals.service.dto.RentalOrderSummaryDTO;
 
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
-import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.*;
 
 /**
  * Spring Data  repository for the RentalOrder entity.
  */
 @SuppressWarnings("unused")
 @Repository
-public interface RentalOrderRepository extends JpaRepository<RentalOrder, Long> {
+public interface RentalOrderRepository extends JpaRepository<RentalOrder, Long>, KeysetRepository<RentalOrder, Long> {
+
+    /**
+     * The rental orders with the given ids, with their customer and their rented copies, each with its movie,
+     * read in a single query.
+     */
+    @QueryHints(@QueryHint(name = HINT_PASS_DISTINCT_THROUGH, value = "false"))
+    @Query("select distinct rentalOrder from RentalOrder rentalOrder join fetch rentalOrder.customer customer " +
+        "join fetch customer.user left join fetch rentalOrder.rentedCopies rentedCopy " +
+        "left join fetch rentedCopy.movieInventory movieInventory left join fetch movieInventory.movie " +
+        "where rentalOrder.id in :ids")
+    List<RentalOrder> findWithRentedCopiesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Flat projections of the rental orders with the given ids, without their rented copies.
+     */
+    @Query("select new com.roundrobine.movie.rentals.service.dto.RentalOrderSummaryDTO(rentalOrder.id, " +
+        "rentalOrder.lateChargedAmount, rentalOrder.totalAmount, rentalOrder.currency, rentalOrder.status, " +
+        "rentalOrder.lastUpdatedAt, rentalOrder.createdAt, rentalOrder.customer.id) " +
+        "from RentalOrder rentalOrder where rentalOrder.id in :ids")
+    List<RentalOrderSummaryDTO> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
 
-    List<RentalOrder> findByIdIn(Set<Long> ids);
+    /**
+     * Forward-only stream of the rental orders created and last updated in two time ranges, in id order,
+     * with their customer and their rented copies, each with its movie. Each range includes its start and
+     * excludes its end.
+     * <p>
+     * The rows of an order and of its copies are adjacent, being sorted by order id, so the stream reads the
+     * copies of each order in the same pass instead of one query per order.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HINT_READONLY, value = "true"),
+        @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select rentalOrder from RentalOrder rentalOrder join fetch rentalOrder.customer customer " +
+        "join fetch customer.user left join fetch rentalOrder.rentedCopies rentedCopy " +
+        "left join fetch rentedCopy.movieInventory movieInventory left join fetch movieInventory.movie " +
+        "where rentalOrder.createdAt >= :createdFrom and rentalOrder.createdAt < :createdTo " +
+        "and rentalOrder.lastUpdatedAt >= :updatedFrom and rentalOrder.lastUpdatedAt < :updatedTo " +
+        "order by rentalOrder.id")
+    Stream<RentalOrder> streamForExport(@Param("createdFrom") Instant createdFrom, @Param("createdTo") Instant createdTo,
+                                        @Param("updatedFrom") Instant updatedFrom, @Param("updatedTo") Instant updatedTo);
 
 }
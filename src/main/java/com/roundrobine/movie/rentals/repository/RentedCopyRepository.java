@@ -2,20 +2,64 @@ package com.roundrobine.movie.rentals.repository;
 
 import com.roundrobine.movie.rentals.domain.MovieInventory;
 import com.roundrobine.movie.rentals.domain.RentedCopy;
+import com.roundrobine.movie.rentals.service.dto.RentedCopyLineDTO;
 
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.*;
 
 /**
  * Spring Data  repository for the RentedCopy entity.
  */
 @SuppressWarnings("unused")
 @Repository
-public interface RentedCopyRepository extends JpaRepository<RentedCopy, Long> {
+public interface RentedCopyRepository extends JpaRepository<RentedCopy, Long>, KeysetRepository<RentedCopy, Long> {
 
+    /**
+     * The copies of the given movie inventories, with their movie and their order and customer, read in a single
+     * query.
+     */
+    @EntityGraph(attributePaths = {"movieInventory.movie", "order.customer.user"})
     List<RentedCopy> findByMovieInventoryIdIn(Set<Long> ids);
 
+    /**
+     * The copies with the given ids, with their movie and their order and customer, read in a single query.
+     */
+    @EntityGraph(attributePaths = {"movieInventory.movie", "order.customer.user"})
+    List<RentedCopy> findWithAssociationsByIdIn(Collection<Long> ids);
+
+    /**
+     * Flat projections of the copies of the given rental orders, in id order.
+     */
+    @Query("select new com.roundrobine.movie.rentals.service.dto.RentedCopyLineDTO(rentedCopy.id, rentedCopy.rentDate, " +
+        "rentedCopy.plannedRentDuration, rentedCopy.extraChargedDays, rentedCopy.returnDate, rentedCopy.order.id, " +
+        "movieInventory.id, movie.id, movie.title, movie.type) " +
+        "from RentedCopy rentedCopy join rentedCopy.movieInventory movieInventory join movieInventory.movie movie " +
+        "where rentedCopy.order.id in :orderIds order by rentedCopy.id")
+    List<RentedCopyLineDTO> findLinesByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * Forward-only stream of the copies rented in a time range, in id order, with their movie inventory and their
+     * order. The range includes its start and excludes its end.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HINT_READONLY, value = "true"),
+        @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select rentedCopy from RentedCopy rentedCopy join fetch rentedCopy.movieInventory movieInventory " +
+        "join fetch movieInventory.movie join fetch rentedCopy.order rentalOrder join fetch rentalOrder.customer customer " +
+        "join fetch customer.user where rentedCopy.rentDate >= :rentedFrom and rentedCopy.rentDate < :rentedTo " +
+        "order by rentedCopy.id")
+    Stream<RentedCopy> streamForExport(@Param("rentedFrom") Instant rentedFrom, @Param("rentedTo") Instant rentedTo);
+
 }
@@ -0,0 +1,38 @@
+package com.roundrobine.movie.rentals.repository;
+
+import com.roundrobine.movie.rentals.domain.SearchIndexCheckpoint;
+
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Spring Data  repository for the SearchIndexCheckpoint entity.
+ */
+@Repository
+public interface SearchIndexCheckpointRepository extends JpaRepository<SearchIndexCheckpoint, String> {
+
+    List<SearchIndexCheckpoint> findByNameStartingWith(String prefix);
+
+    boolean existsByNameStartingWith(String prefix);
+
+    /**
+     * Take or renew the lease of a checkpoint, unless another owner holds it and it has not expired.
+     *
+     * @return 1 if the owner now holds the lease, 0 otherwise or if the checkpoint does not exist.
+     */
+    @Modifying
+    @Query("update SearchIndexCheckpoint checkpoint set checkpoint.lockedBy = :owner, checkpoint.lockedUntil = :until " +
+        "where checkpoint.name = :name and (checkpoint.lockedBy is null or checkpoint.lockedBy = :owner " +
+        "or checkpoint.lockedUntil < :now)")
+    int lock(@Param("name") String name, @Param("owner") String owner, @Param("now") Instant now,
+             @Param("until") Instant until);
+
+    @Modifying
+    @Query("update SearchIndexCheckpoint checkpoint set checkpoint.lockedBy = null, checkpoint.lockedUntil = null " +
+        "where checkpoint.name = :name and checkpoint.lockedBy = :owner")
+    int unlock(@Param("name") String name, @Param("owner") String owner);
+}
@@ -0,0 +1,34 @@
+package com.roundrobine.movie.rentals.repository;
+
+import com.roundrobine.movie.rentals.domain.SearchOutboxEntry;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.List;
+
+/**
+ * Spring Data  repository for the SearchOutboxEntry entity.
+ */
+@Repository
+public interface SearchOutboxEntryRepository extends JpaRepository<SearchOutboxEntry, Long> {
+
+    /**
+     * The lock timeout Hibernate turns into {@code SKIP LOCKED}.
+     */
+    String SKIP_LOCKED = "-2";
+
+    /**
+     * Lock the oldest entries until the end of the transaction, skipping the entries locked by another drain
+     * where the database supports it ({@code FOR UPDATE SKIP LOCKED}), and waiting for them otherwise.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = SKIP_LOCKED))
+    @Query("select entry from SearchOutboxEntry entry order by entry.id")
+    List<SearchOutboxEntry> claimOldest(Pageable pageable);
+
+    long countByEntityTypeAndEntityId(String entityType, Long entityId);
+}
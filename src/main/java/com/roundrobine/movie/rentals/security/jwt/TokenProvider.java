@@ -6,6 +6,7 @@ import java.util.*;
 import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
 
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -34,10 +35,15 @@ public class TokenProvider {
 
     private long tokenValidityInMillisecondsForRememberMe;
 
+    private JwtParser jwtParser;
+
     private final JHipsterProperties jHipsterProperties;
 
-    public TokenProvider(JHipsterProperties jHipsterProperties) {
+    private final VerifiedTokenCache verifiedTokens;
+
+    public TokenProvider(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
         this.jHipsterProperties = jHipsterProperties;
+        this.verifiedTokens = new VerifiedTokenCache(applicationProperties.getVerifiedTokenCache().getMaxSize());
     }
 
     @PostConstruct
@@ -53,6 +59,7 @@ public class TokenProvider {
             keyBytes = Decoders.BASE64.decode(jHipsterProperties.getSecurity().getAuthentication().getJwt().getBase64Secret());
         }
         this.key = Keys.hmacShaKeyFor(keyBytes);
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(key).build();
         this.tokenValidityInMilliseconds =
             1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSeconds();
         this.tokenValidityInMillisecondsForRememberMe =
@@ -81,26 +88,43 @@ public class TokenProvider {
             .compact();
     }
 
-    public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parserBuilder()
-            .setSigningKey(key)
-            .build()
-            .parseClaimsJws(token)
-            .getBody();
-
-        Collection<? extends GrantedAuthority> authorities =
-            Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+    /**
+     * Verify a token and build the authentication it carries, parsing it once. The principals of verified
+     * tokens are cached until the tokens expire, so a token presented again is neither parsed nor verified.
+     * Each call builds its own authentication, without credentials, so that the token is not kept with it.
+     *
+     * @param token the token.
+     * @return the authentication of the token, or empty if the token is invalid or expired.
+     */
+    public Optional<Authentication> authenticate(String token) {
+        long now = System.currentTimeMillis();
+        User principal = verifiedTokens.get(token, now);
+        if (principal != null) {
+            return Optional.of(new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        }
+        try {
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+            principal = toPrincipal(claims);
+            if (claims.getExpiration() != null) {
+                verifiedTokens.put(token, principal, claims.getExpiration().getTime(), now);
+            }
+            return Optional.of(new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        } catch (JwtException | IllegalArgumentException e) {
+            log.info("Invalid JWT token.");
+            log.trace("Invalid JWT token trace.", e);
+        }
+        return Optional.empty();
+    }
 
-        User principal = new User(claims.getSubject(), "", authorities);
+    public Authentication getAuthentication(String token) {
+        User principal = toPrincipal(jwtParser.parseClaimsJws(token).getBody());
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+        return new UsernamePasswordAuthenticationToken(principal, token, principal.getAuthorities());
     }
 
     public boolean validateToken(String authToken) {
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
+            jwtParser.parseClaimsJws(authToken);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             log.info("Invalid JWT token.");
@@ -108,4 +132,14 @@ public class TokenProvider {
         }
         return false;
     }
+
+    private static User toPrincipal(Claims claims) {
+        Collection<? extends GrantedAuthority> authorities =
+            Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
+                .filter(authority -> !authority.trim().isEmpty())
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
+
+        return new User(claims.getSubject(), "", authorities);
+    }
 }
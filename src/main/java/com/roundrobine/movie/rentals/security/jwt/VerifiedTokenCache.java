@@ -0,0 +1,102 @@
+package com.roundrobine.movie.rentals.security.jwt;
+
+import org.springframework.security.core.userdetails.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Principals of the tokens whose signature was already verified, with their authorities, until the tokens expire.
+ * <p>
+ * Entries are keyed by the SHA-256 digest of the token, so that bearer tokens are not kept in memory, and hold no
+ * authentication, so that no request shares one with another. The cache
+ * holds at most {@code maxSize} entries: once full, expired entries are dropped, then arbitrary ones.
+ */
+class VerifiedTokenCache {
+
+    private final int maxSize;
+
+    private final Map<ByteBuffer, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxSize the maximum number of entries, 0 to cache nothing.
+     */
+    VerifiedTokenCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param token a token.
+     * @param now the current time, in milliseconds since the epoch.
+     * @return the principal of the token if it was verified and has not expired, otherwise {@code null}.
+     */
+    User get(String token, long now) {
+        if (maxSize == 0) {
+            return null;
+        }
+        ByteBuffer digest = digest(token);
+        Entry entry = entries.get(digest);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= now) {
+            entries.remove(digest, entry);
+            return null;
+        }
+        return entry.principal;
+    }
+
+    /**
+     * @param token a verified token.
+     * @param principal the principal of the token, with its authorities.
+     * @param expiresAt the expiration of the token, in milliseconds since the epoch.
+     * @param now the current time, in milliseconds since the epoch.
+     */
+    void put(String token, User principal, long expiresAt, long now) {
+        if (maxSize == 0 || expiresAt <= now) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evict(now);
+        }
+        entries.put(digest(token), new Entry(principal, expiresAt));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        Iterator<ByteBuffer> iterator = entries.keySet().iterator();
+        while (entries.size() >= maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static ByteBuffer digest(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class Entry {
+
+        private final User principal;
+
+        private final long expiresAt;
+
+        Entry(User principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -3,8 +3,11 @@ package com.roundrobine.movie.rentals.service;
 import com.roundrobine.movie.rentals.domain.BonusHistory;
 import com.roundrobine.movie.rentals.repository.BonusHistoryRepository;
 import com.roundrobine.movie.rentals.repository.search.BonusHistorySearchRepository;
+import com.roundrobine.movie.rentals.repository.Keyset;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
 import com.roundrobine.movie.rentals.service.dto.BonusHistoryDTO;
 import com.roundrobine.movie.rentals.service.mapper.BonusHistoryMapper;
+import com.roundrobine.movie.rentals.service.search.SearchIndexOutbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,7 +16,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import java.time.Instant;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.elasticsearch.index.query.QueryBuilders.*;
 
@@ -32,10 +39,17 @@ public class BonusHistoryService {
 
     private final BonusHistorySearchRepository bonusHistorySearchRepository;
 
-    public BonusHistoryService(BonusHistoryRepository bonusHistoryRepository, BonusHistoryMapper bonusHistoryMapper, BonusHistorySearchRepository bonusHistorySearchRepository) {
+    private final SearchIndexOutbox searchIndexOutbox;
+
+    private final EntityManager entityManager;
+
+    public BonusHistoryService(BonusHistoryRepository bonusHistoryRepository, BonusHistoryMapper bonusHistoryMapper, BonusHistorySearchRepository bonusHistorySearchRepository,
+                               SearchIndexOutbox searchIndexOutbox, EntityManager entityManager) {
         this.bonusHistoryRepository = bonusHistoryRepository;
         this.bonusHistoryMapper = bonusHistoryMapper;
         this.bonusHistorySearchRepository = bonusHistorySearchRepository;
+        this.searchIndexOutbox = searchIndexOutbox;
+        this.entityManager = entityManager;
     }
 
     /**
@@ -49,7 +63,7 @@ public class BonusHistoryService {
         BonusHistory bonusHistory = bonusHistoryMapper.toEntity(bonusHistoryDTO);
         bonusHistory = bonusHistoryRepository.save(bonusHistory);
         BonusHistoryDTO result = bonusHistoryMapper.toDto(bonusHistory);
-        bonusHistorySearchRepository.save(bonusHistory);
+        searchIndexOutbox.index(bonusHistory);
         return result;
     }
 
@@ -63,23 +77,53 @@ public class BonusHistoryService {
     public BonusHistory save(BonusHistory bonusHistory) {
         log.debug("Request to save BonusHistory : {}", bonusHistory);
         bonusHistory = bonusHistoryRepository.save(bonusHistory);
-        bonusHistorySearchRepository.save(bonusHistory);
+        searchIndexOutbox.index(bonusHistory);
         return bonusHistory;
     }
 
     /**
-     * Get all the bonusHistories.
+     * Get a page of the bonusHistories, after a keyset.
      *
-     * @param pageable the pagination information.
-     * @return the list of entities.
+     * @param keyset the keyset the page starts after.
+     * @param size the maximum number of bonusHistories of the page.
+     * @return the page of entities, with the keyset of the next page if there is one.
      */
     @Transactional(readOnly = true)
-    public Page<BonusHistoryDTO> findAll(Pageable pageable) {
-        log.debug("Request to get all BonusHistories");
-        return bonusHistoryRepository.findAll(pageable)
+    public KeysetSlice<BonusHistoryDTO> findAll(Keyset keyset, int size) {
+        log.debug("Request to get a page of BonusHistories after {}", keyset);
+        return bonusHistoryRepository.findAll(keyset, size)
             .map(bonusHistoryMapper::toDto);
     }
 
+    /**
+     * Count the bonusHistories.
+     *
+     * @return the number of entities.
+     */
+    @Transactional(readOnly = true)
+    public long count() {
+        log.debug("Request to count BonusHistories");
+        return bonusHistoryRepository.count();
+    }
+
+    /**
+     * Export the bonusHistories created in a time range, in id order, in constant memory.
+     * The range includes its start and excludes its end, and unbounded ends default to the epoch and now.
+     *
+     * @param createdFrom the start of the creation range, or {@code null}.
+     * @param createdTo the end of the creation range, or {@code null}.
+     * @param consumer the consumer each exported bonusHistory is handed to, in turn.
+     * @return the number of exported bonusHistories.
+     */
+    @Transactional(readOnly = true)
+    public long export(Instant createdFrom, Instant createdTo, Consumer<? super BonusHistoryDTO> consumer) {
+        log.debug("Request to export BonusHistories created in [{}, {})", createdFrom, createdTo);
+        try (Stream<BonusHistory> bonusHistories = bonusHistoryRepository.streamForExport(
+            EntityExports.from(createdFrom), EntityExports.to(createdTo))) {
+            return EntityExports.export(bonusHistories, entityManager, bonusHistoryMapper::toDto, consumer);
+        }
+    }
+
 
     /**
      * Get one bonusHistory by id.
@@ -102,7 +146,7 @@ public class BonusHistoryService {
     public void delete(Long id) {
         log.debug("Request to delete BonusHistory : {}", id);
         bonusHistoryRepository.deleteById(id);
-        bonusHistorySearchRepository.deleteById(id);
+        searchIndexOutbox.delete(BonusHistory.class, id);
     }
 
     /**
@@ -0,0 +1,308 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import com.roundrobine.movie.rentals.repository.Keyset;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
+import com.roundrobine.movie.rentals.service.dto.MovieDTO;
+import com.roundrobine.movie.rentals.service.dto.MovieInventoryDTO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * In-memory results of the movie and movie inventory listing pages and counts, shared by all users.
+ * <p>
+ * A page is cached by keyset and size until a committed write could change it, and nothing expires on time:
+ * updating movies or movie inventories evicts the pages holding them, and inserting or deleting some evicts
+ * every page and the count of their region, as rows shift between pages. Updates also evict every page and the
+ * count of their region while pages sorted on another property than the id are cached, as the updated rows may
+ * have moved to any of them. A read whose rows were changed while
+ * it ran is not cached. Reads inside a transaction neither use nor fill the cache, as they may see uncommitted
+ * rows. Cached results are shared, and must not be modified.
+ * <p>
+ * Each region exports the {@code catalogue.cache.gets} (hits and misses), {@code catalogue.cache.evictions},
+ * {@code catalogue.cache.size} and {@code catalogue.cache.hit.ratio} meters, tagged with its name.
+ */
+@Component
+public class CataloguePageCache {
+
+    private final Region<MovieDTO> movies;
+
+    private final Region<MovieInventoryDTO> movieInventories;
+
+    public CataloguePageCache(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        int maxEntries = applicationProperties.getCataloguePageCache().getMaxEntries();
+        this.movies = new Region<>("movies", maxEntries, meterRegistry);
+        this.movieInventories = new Region<>("movieInventories", maxEntries, meterRegistry);
+    }
+
+    /**
+     * @param keyset the keyset the page starts after.
+     * @param size the maximum number of movies of the page.
+     * @param query the read of the page, on a miss.
+     * @return the page of movies.
+     */
+    public KeysetSlice<MovieDTO> movies(Keyset keyset, int size, Supplier<KeysetSlice<MovieDTO>> query) {
+        return movies.get(new PageKey(keyset, size), query);
+    }
+
+    /**
+     * @param query the count of the movies, on a miss.
+     * @return the number of movies.
+     */
+    public long movieCount(LongSupplier query) {
+        return movies.get(Region.COUNT, query::getAsLong);
+    }
+
+    /**
+     * @param keyset the keyset the page starts after.
+     * @param size the maximum number of movie inventories of the page.
+     * @param query the read of the page, on a miss.
+     * @return the page of movie inventories.
+     */
+    public KeysetSlice<MovieInventoryDTO> movieInventories(Keyset keyset, int size,
+                                                           Supplier<KeysetSlice<MovieInventoryDTO>> query) {
+        return movieInventories.get(new PageKey(keyset, size), query);
+    }
+
+    /**
+     * @param query the count of the movie inventories, on a miss.
+     * @return the number of movie inventories.
+     */
+    public long movieInventoryCount(LongSupplier query) {
+        return movieInventories.get(Region.COUNT, query::getAsLong);
+    }
+
+    /**
+     * Evict the pages holding updated movies, including the movie inventories of these movies, once the
+     * surrounding transaction commits.
+     *
+     * @param ids the ids of the updated movies.
+     */
+    public void onMoviesUpdated(Collection<Long> ids) {
+        Set<Long> updatedIds = new HashSet<>(ids);
+        afterCommit(() -> {
+            movies.evictRows(MovieDTO::getId, updatedIds);
+            movieInventories.evictRows(CataloguePageCache::movieIdOf, updatedIds);
+        });
+    }
+
+    /**
+     * Evict the pages and the count of the movies once the surrounding transaction commits. Movies with copies
+     * cannot be deleted, so no movie inventory page changes.
+     */
+    public void onMoviesInsertedOrDeleted() {
+        afterCommit(movies::evictAll);
+    }
+
+    /**
+     * Evict the pages holding updated movie inventories once the surrounding transaction commits.
+     *
+     * @param ids the ids of the updated movie inventories.
+     */
+    public void onMovieInventoriesUpdated(Collection<Long> ids) {
+        Set<Long> updatedIds = new HashSet<>(ids);
+        afterCommit(() -> movieInventories.evictRows(MovieInventoryDTO::getId, updatedIds));
+    }
+
+    /**
+     * Evict the pages and the count of the movie inventories once the surrounding transaction commits.
+     */
+    public void onMovieInventoriesInsertedOrDeleted() {
+        afterCommit(movieInventories::evictAll);
+    }
+
+    private static Long movieIdOf(MovieInventoryDTO movieInventory) {
+        return movieInventory.getMovie() != null ? movieInventory.getMovie().getId() : null;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * The pages and the count of one kind of rows.
+     * <p>
+     * Every eviction moves the region to a new generation, and a read only stays cached if the region is still
+     * in the generation it started in, so that it cannot bring back rows evicted while it ran.
+     */
+    static final class Region<T> {
+
+        static final Object COUNT = new Object();
+
+        private final int maxEntries;
+
+        private final Map<Object, Object> entries = new ConcurrentHashMap<>();
+
+        private final AtomicLong generation = new AtomicLong();
+
+        private final LongAdder hits = new LongAdder();
+
+        private final LongAdder misses = new LongAdder();
+
+        private final LongAdder evictions = new LongAdder();
+
+        Region(String name, int maxEntries, MeterRegistry meterRegistry) {
+            this.maxEntries = maxEntries;
+            FunctionCounter.builder("catalogue.cache.gets", hits, LongAdder::sum)
+                .description("Reads of catalogue pages and counts")
+                .tag("region", name)
+                .tag("result", "hit")
+                .register(meterRegistry);
+            FunctionCounter.builder("catalogue.cache.gets", misses, LongAdder::sum)
+                .description("Reads of catalogue pages and counts")
+                .tag("region", name)
+                .tag("result", "miss")
+                .register(meterRegistry);
+            FunctionCounter.builder("catalogue.cache.evictions", evictions, LongAdder::sum)
+                .description("Catalogue pages and counts evicted by writes, or to make room")
+                .tag("region", name)
+                .register(meterRegistry);
+            Gauge.builder("catalogue.cache.size", entries, Map::size)
+                .description("Catalogue pages and counts cached")
+                .tag("region", name)
+                .register(meterRegistry);
+            Gauge.builder("catalogue.cache.hit.ratio", this, Region::hitRatio)
+                .description("Fraction of the reads of catalogue pages and counts served from memory")
+                .tag("region", name)
+                .register(meterRegistry);
+        }
+
+        @SuppressWarnings("unchecked")
+        <V> V get(Object key, Supplier<V> query) {
+            if (maxEntries == 0 || TransactionSynchronizationManager.isActualTransactionActive()) {
+                return query.get();
+            }
+            V cached = (V) entries.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            misses.increment();
+            long readGeneration = generation.get();
+            V result = query.get();
+            if (result != null && generation.get() == readGeneration) {
+                if (entries.size() >= maxEntries) {
+                    evictArbitrary();
+                }
+                entries.put(key, result);
+                // an eviction may have run between the check and the put
+                if (generation.get() != readGeneration) {
+                    entries.remove(key, result);
+                }
+            }
+            return result;
+        }
+
+        void evictRows(Function<? super T, Long> idOf, Set<Long> ids) {
+            if (entries.keySet().stream().anyMatch(Region::isSortedOnMutableProperty)) {
+                evictAll();
+                return;
+            }
+            generation.incrementAndGet();
+            Iterator<Object> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Object entry = iterator.next();
+                if (entry instanceof KeysetSlice && holdsAny((KeysetSlice<?>) entry, idOf, ids)) {
+                    iterator.remove();
+                    evictions.increment();
+                }
+            }
+        }
+
+        void evictAll() {
+            generation.incrementAndGet();
+            for (Object key : new ArrayList<>(entries.keySet())) {
+                if (entries.remove(key) != null) {
+                    evictions.increment();
+                }
+            }
+        }
+
+        private static boolean isSortedOnMutableProperty(Object key) {
+            return key instanceof PageKey && !PageKey.IMMUTABLE_PROPERTY.equals(((PageKey) key).keyset.getProperty());
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean holdsAny(KeysetSlice<?> page, Function<? super T, Long> idOf, Set<Long> ids) {
+            for (Object row : page.getContent()) {
+                if (ids.contains(idOf.apply((T) row))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void evictArbitrary() {
+            Iterator<Object> iterator = entries.keySet().iterator();
+            while (entries.size() >= maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+
+        private double hitRatio() {
+            long hitCount = hits.sum();
+            long total = hitCount + misses.sum();
+            return total == 0 ? 0 : (double) hitCount / total;
+        }
+    }
+
+    private static final class PageKey {
+
+        static final String IMMUTABLE_PROPERTY = "id";
+
+        private final Keyset keyset;
+
+        private final int size;
+
+        PageKey(Keyset keyset, int size) {
+            this.keyset = keyset;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PageKey)) {
+                return false;
+            }
+            PageKey pageKey = (PageKey) o;
+            return size == pageKey.size && keyset.equals(pageKey.keyset);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(keyset, size);
+        }
+    }
+}
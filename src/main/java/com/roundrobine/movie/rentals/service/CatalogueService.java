@@ -0,0 +1,94 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.domain.Movie;
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+import com.roundrobine.movie.rentals.repository.CatalogueRepository;
+import com.roundrobine.movie.rentals.service.dto.MovieDTO;
+import com.roundrobine.movie.rentals.service.dto.MovieInventoryDTO;
+import com.roundrobine.movie.rentals.service.mapper.MovieInventoryMapper;
+import com.roundrobine.movie.rentals.service.mapper.MovieMapper;
+import com.roundrobine.movie.rentals.service.search.ReactiveSearchClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking, read-only browsing of the movie catalogue.
+ * <p>
+ * Nothing here is transactional: movies and their copies are read through R2DBC and searched through the
+ * asynchronous Elasticsearch client, and every method returns as soon as its reads are started.
+ */
+@Service
+public class CatalogueService {
+
+    private final Logger log = LoggerFactory.getLogger(CatalogueService.class);
+
+    private final CatalogueRepository catalogueRepository;
+
+    private final ReactiveSearchClient reactiveSearchClient;
+
+    private final MovieMapper movieMapper;
+
+    private final MovieInventoryMapper movieInventoryMapper;
+
+    public CatalogueService(CatalogueRepository catalogueRepository, ReactiveSearchClient reactiveSearchClient,
+                            MovieMapper movieMapper, MovieInventoryMapper movieInventoryMapper) {
+        this.catalogueRepository = catalogueRepository;
+        this.reactiveSearchClient = reactiveSearchClient;
+        this.movieMapper = movieMapper;
+        this.movieInventoryMapper = movieInventoryMapper;
+    }
+
+    /**
+     * Get a page of movies, ordered by id.
+     *
+     * @param pageable the pagination information, whose sort is ignored.
+     * @return the movies of the page.
+     */
+    public Flux<MovieDTO> findMovies(Pageable pageable) {
+        log.debug("Request to browse a page of Movies : {}", pageable);
+        return catalogueRepository.findMovies(pageable.getOffset(), pageable.getPageSize())
+            .map(movieMapper::toDto);
+    }
+
+    /**
+     * Get one movie by id.
+     *
+     * @param id the id of the movie.
+     * @return the movie, or nothing if there is no such movie.
+     */
+    public Mono<MovieDTO> findMovie(Long id) {
+        log.debug("Request to browse Movie : {}", id);
+        return catalogueRepository.findMovie(id)
+            .map(movieMapper::toDto);
+    }
+
+    /**
+     * Get the copies of a movie in a given status, ordered by id.
+     *
+     * @param movieId the id of the movie.
+     * @param status the status of the copies.
+     * @return the copies.
+     */
+    public Flux<MovieInventoryDTO> findMovieInventories(Long movieId, RentalStatus status) {
+        log.debug("Request to browse the {} MovieInventories of Movie : {}", status, movieId);
+        return catalogueRepository.findMovieInventories(movieId, status)
+            .map(movieInventoryMapper::toDto);
+    }
+
+    /**
+     * Search for the movies corresponding to the query, like {@link MovieService#search}.
+     *
+     * @param query the query of the search.
+     * @param pageable the pagination information.
+     * @return the movies of the page, best matches first.
+     */
+    public Flux<MovieDTO> searchMovies(String query, Pageable pageable) {
+        log.debug("Request to browse a page of Movies for query {}", query);
+        return reactiveSearchClient.search(Movie.class, MovieService.searchQuery(query), pageable)
+            .map(movieMapper::toDto);
+    }
+}
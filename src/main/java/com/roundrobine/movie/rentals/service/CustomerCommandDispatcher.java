@@ -0,0 +1,247 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import com.roundrobine.movie.rentals.config.Constants;
+import com.roundrobine.movie.rentals.config.VirtualThreads;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs the commands of each customer one at a time, and the commands of different customers in parallel.
+ * <p>
+ * Customer ids are hashed onto a fixed number of lanes, each with a single thread and a bounded queue, so two
+ * rentals or returns of the same customer never compete for its credit, bonus points or rental orders,
+ * without holding any database lock. A command is rejected with a {@link CustomerLaneFullException} when the
+ * queue of its lane is full, instead of piling up requests behind a slow customer.
+ * <p>
+ * A command may run in several steps, such as the attempts of a command retried after a backoff. The lane runs
+ * the commands of other customers between the steps, but the later commands of the same customer wait until the
+ * whole command has finished, so they still run in the order they came in.
+ * <p>
+ * The lanes bound the number of commands running at once. With the "virtual-threads" profile each lane runs on a
+ * virtual thread, so that {@code application.customer-lanes.lanes} can be raised to as many lanes as customers
+ * renting at the same time, as {@code application-virtual-threads.yml} does.
+ * <p>
+ * Lanes are local to a node: with the "cluster" profile, two nodes may run commands of the same customer at the
+ * same time, and the conditional updates of the customer and of its copies, or the version of the customer, make
+ * one of them fail or retry instead.
+ */
+@Service
+public class CustomerCommandDispatcher {
+
+    private final Logger log = LoggerFactory.getLogger(CustomerCommandDispatcher.class);
+
+    private final Lane[] lanes;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * The last command of each customer that runs in several steps or waits for one that does, guarded by itself.
+     */
+    private final Map<Long, CompletableFuture<Void>> pinnedCustomers = new HashMap<>();
+
+    public CustomerCommandDispatcher(ApplicationProperties applicationProperties, MeterRegistry meterRegistry,
+                                     Environment env) {
+        ApplicationProperties.CustomerLanes properties = applicationProperties.getCustomerLanes();
+        this.meterRegistry = meterRegistry;
+        this.lanes = new Lane[properties.getLanes()];
+        boolean virtual = env.acceptsProfiles(Profiles.of(Constants.SPRING_PROFILE_VIRTUAL_THREADS));
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i, properties.getQueueCapacity(), virtual);
+        }
+        Gauge.builder("rental.lane.queue.depth", this, CustomerCommandDispatcher::getQueueDepth)
+            .description("Customer commands waiting for their lane")
+            .register(meterRegistry);
+        log.info("Dispatching customer commands on {} {} lanes of {} queued commands", lanes.length,
+            virtual ? "virtual" : "platform", properties.getQueueCapacity());
+    }
+
+    /**
+     * Run a command on the lane of a customer and wait for its result.
+     *
+     * @param customerId the id of the customer the command updates.
+     * @param operation the name of the command, used in metrics.
+     * @param command the command.
+     * @param <T> the type of the result of the command.
+     * @return the result of the command.
+     * @throws CustomerLaneFullException if the lane of the customer has too many queued commands.
+     */
+    public <T> T dispatch(Long customerId, String operation, Supplier<T> command) {
+        return run(customerId, operation, false, lane -> CompletableFuture.supplyAsync(command, lane));
+    }
+
+    /**
+     * Run a command that submits its steps to the lane of a customer, such as the attempts of a command retried
+     * after a backoff, and wait for its result. The lane runs the commands of other customers between the steps;
+     * the next commands of the customer wait until this one has finished.
+     *
+     * @param customerId the id of the customer the command updates.
+     * @param operation the name of the command, used in metrics.
+     * @param command submits its steps to the lane it is given, and returns a future of its result.
+     * @param <T> the type of the result of the command.
+     * @return the result of the command.
+     * @throws CustomerLaneFullException if the lane of the customer has too many queued commands.
+     */
+    public <T> T dispatchOnLane(Long customerId, String operation,
+                                Function<Executor, CompletableFuture<T>> command) {
+        return run(customerId, operation, true, command);
+    }
+
+    private <T> T run(Long customerId, String operation, boolean pin,
+                      Function<Executor, CompletableFuture<T>> command) {
+        Lane lane = lanes[laneOf(customerId, lanes.length)];
+        CompletableFuture<T> result;
+        if (Thread.currentThread() == lane.thread) {
+            // a command dispatching to its own lane would wait for itself
+            result = command.apply(Runnable::run);
+        } else {
+            Timer queueWait = Timer.builder("rental.lane.queue.wait")
+                .description("Time customer commands wait for their lane")
+                .tag("operation", operation)
+                .register(meterRegistry);
+            // every step runs with the security context of the request, whichever thread submits it
+            SecurityContext securityContext = SecurityContextHolder.getContext();
+            Executor laneExecutor = step -> {
+                long queuedAt = System.nanoTime();
+                try {
+                    lane.executor.execute(new DelegatingSecurityContextRunnable(() -> {
+                        queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                        step.run();
+                    }, securityContext));
+                } catch (RejectedExecutionException e) {
+                    throw new CustomerLaneFullException(customerId);
+                }
+            };
+            result = inOrder(customerId, pin, () -> command.apply(laneExecutor));
+        }
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+            throw new IllegalStateException("Interrupted while waiting for a command of customer " + customerId, e);
+        }
+    }
+
+    /**
+     * Start a command right away, unless an earlier command of the same customer is pinned to its lane, in which
+     * case it starts once that command has finished. A command that is pinned itself, or that waits, pins the
+     * customer until it has finished.
+     */
+    private <T> CompletableFuture<T> inOrder(Long customerId, boolean pin, Supplier<CompletableFuture<T>> command) {
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        CompletableFuture<Void> previous;
+        synchronized (pinnedCustomers) {
+            previous = pinnedCustomers.get(customerId);
+            if (previous != null || pin) {
+                pinnedCustomers.put(customerId, finished);
+            }
+        }
+        if (previous == null && !pin) {
+            return command.get();
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        (previous != null ? previous : CompletableFuture.<Void>completedFuture(null)).thenRun(() -> {
+            if (result.isDone()) {
+                // cancelled while waiting
+                unpin(customerId, finished);
+                return;
+            }
+            try {
+                command.get().whenComplete((value, failure) -> {
+                    unpin(customerId, finished);
+                    if (failure != null) {
+                        result.completeExceptionally(failure);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            } catch (RuntimeException | Error e) {
+                unpin(customerId, finished);
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private void unpin(Long customerId, CompletableFuture<Void> finished) {
+        synchronized (pinnedCustomers) {
+            pinnedCustomers.remove(customerId, finished);
+        }
+        finished.complete(null);
+    }
+
+    /**
+     * @return the number of commands waiting in all the lanes.
+     */
+    public int getQueueDepth() {
+        int queueDepth = 0;
+        for (Lane lane : lanes) {
+            queueDepth += lane.executor.getQueue().size();
+        }
+        return queueDepth;
+    }
+
+    /**
+     * Spread customer ids evenly over the lanes, even when they are sequential.
+     */
+    static int laneOf(Long customerId, int laneCount) {
+        long hash = (customerId == null ? 0 : customerId) * 0x9E3779B97F4A7C15L;
+        return Math.floorMod((int) (hash ^ (hash >>> 32)), laneCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.executor.shutdown();
+        }
+    }
+
+    private static final class Lane {
+
+        private final ThreadPoolExecutor executor;
+
+        private volatile Thread thread;
+
+        private Lane(int index, int queueCapacity, boolean virtual) {
+            ThreadFactory virtualThreads = virtual ? VirtualThreads.threadFactory("customer-lane-" + index + "-") : null;
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread laneThread;
+                if (virtualThreads != null) {
+                    laneThread = virtualThreads.newThread(runnable);
+                } else {
+                    laneThread = new Thread(runnable, "customer-lane-" + index);
+                    laneThread.setDaemon(true);
+                }
+                thread = laneThread;
+                return laneThread;
+            });
+        }
+    }
+}
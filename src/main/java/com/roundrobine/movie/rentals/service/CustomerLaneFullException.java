@@ -0,0 +1,11 @@
+package com.roundrobine.movie.rentals.service;
+
+public class CustomerLaneFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CustomerLaneFullException(Long customerId) {
+        super("Too many commands are waiting for customer " + customerId + ", try again later");
+    }
+
+}
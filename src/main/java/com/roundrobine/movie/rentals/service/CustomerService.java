@@ -4,8 +4,11 @@ import com.roundrobine.movie.rentals.domain.Customer;
 import com.roundrobine.movie.rentals.repository.CustomerRepository;
 import com.roundrobine.movie.rentals.repository.UserRepository;
 import com.roundrobine.movie.rentals.repository.search.CustomerSearchRepository;
+import com.roundrobine.movie.rentals.repository.Keyset;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
 import com.roundrobine.movie.rentals.service.dto.CustomerDTO;
 import com.roundrobine.movie.rentals.service.mapper.CustomerMapper;
+import com.roundrobine.movie.rentals.service.search.SearchIndexOutbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,6 +18,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.elasticsearch.index.query.QueryBuilders.*;
@@ -34,13 +38,17 @@ public class CustomerService {
 
     private final CustomerSearchRepository customerSearchRepository;
 
+    private final SearchIndexOutbox searchIndexOutbox;
+
     private final UserRepository userRepository;
 
     public CustomerService(CustomerRepository customerRepository, CustomerMapper customerMapper,
-                           CustomerSearchRepository customerSearchRepository, UserRepository userRepository) {
+                           CustomerSearchRepository customerSearchRepository, UserRepository userRepository,
+                           SearchIndexOutbox searchIndexOutbox) {
         this.customerRepository = customerRepository;
         this.customerMapper = customerMapper;
         this.customerSearchRepository = customerSearchRepository;
+        this.searchIndexOutbox = searchIndexOutbox;
         this.userRepository = userRepository;
     }
 
@@ -57,7 +65,7 @@ public class CustomerService {
         userRepository.findById(userId).ifPresent(customer::withUser);
         customer = customerRepository.save(customer);
         CustomerDTO result = customerMapper.toDto(customer);
-        customerSearchRepository.save(customer);
+        searchIndexOutbox.index(customer);
         return result;
     }
 
@@ -71,23 +79,35 @@ public class CustomerService {
     public Customer saveInternal(Customer customer) {
         log.debug("Request to save Customer internal call: {}", customer);
         customer = customerRepository.save(customer);
-        customerSearchRepository.save(customer);
+        searchIndexOutbox.index(customer);
         return customer;
     }
 
     /**
-     * Get all the customers.
+     * Get a page of the customers, after a keyset.
      *
-     * @param pageable the pagination information.
-     * @return the list of entities.
+     * @param keyset the keyset the page starts after.
+     * @param size the maximum number of customers of the page.
+     * @return the page of entities, with the keyset of the next page if there is one.
      */
     @Transactional(readOnly = true)
-    public Page<CustomerDTO> findAll(Pageable pageable) {
-        log.debug("Request to get all Customers");
-        return customerRepository.findAll(pageable)
+    public KeysetSlice<CustomerDTO> findAll(Keyset keyset, int size) {
+        log.debug("Request to get a page of Customers after {}", keyset);
+        return customerRepository.findAll(keyset, size)
             .map(customerMapper::toDto);
     }
 
+    /**
+     * Count the customers.
+     *
+     * @return the number of entities.
+     */
+    @Transactional(readOnly = true)
+    public long count() {
+        log.debug("Request to count Customers");
+        return customerRepository.count();
+    }
+
 
     /**
      * Get one customer by id.
@@ -102,6 +122,21 @@ public class CustomerService {
     }
 
 
+    /**
+     * Get one customer by id, to update it or its rental orders.
+     * <p>
+     * The version of the customer is incremented on commit even if the customer is left unchanged, so that
+     * concurrent transactions updating the same rental orders fail with an optimistic locking failure.
+     *
+     * @param id the id of the entity.
+     * @return the entity.
+     */
+    public Optional<Customer> findOneInternalForUpdate(Long id) {
+        log.debug("Request to get Customer for update from internal call: {}", id);
+        return customerRepository.findByIdForVersionIncrement(id);
+    }
+
+
     /**
      * Get one customer by id.
      *
@@ -123,7 +158,7 @@ public class CustomerService {
     public void delete(Long id) {
         log.debug("Request to delete Customer : {}", id);
         customerRepository.deleteById(id);
-        customerSearchRepository.deleteById(id);
+        searchIndexOutbox.delete(Customer.class, id);
     }
 
     /**
@@ -140,6 +175,27 @@ public class CustomerService {
             .map(customerMapper::toDto);
     }
 
+    /**
+     * Debit a customer and add bonus points to it, if its credit covers the amount.
+     * <p>
+     * The credit is checked and debited in a single statement, so concurrent debits can never overdraw it, and
+     * only the cache entry of this customer is evicted.
+     *
+     * @param id the id of the customer.
+     * @param amount the amount to debit.
+     * @param bonusPoints the bonus points to add.
+     * @return {@code true} if the customer has been debited, {@code false} if its credit is too low or it does
+     * not exist.
+     */
+    public boolean debit(Long id, BigDecimal amount, Long bonusPoints) {
+        log.debug("Request to debit Customer {} of {}", id, amount);
+        if (customerRepository.debit(id, amount, bonusPoints) != 1) {
+            return false;
+        }
+        searchIndexOutbox.indexAll(Customer.class, Collections.singleton(id));
+        return true;
+    }
+
     public boolean isCustomerAbleToPay(Customer customer, BigDecimal amount) {
         return !(customer.getCreditAmount().compareTo(amount) == -1);
     }
@@ -0,0 +1,64 @@
+package com.roundrobine.movie.rentals.service;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Helpers to export entities read by a forward-only query, in constant memory.
+ */
+final class EntityExports {
+
+    /**
+     * Number of entities exported between two clears of the persistence context.
+     */
+    static final int CLEAR_INTERVAL = 100;
+
+    private EntityExports() {
+    }
+
+    /**
+     * Map each entity of a stream to its DTO and hand the DTO over, clearing the persistence context
+     * every {@link #CLEAR_INTERVAL} entities so that exported entities can be garbage collected.
+     * <p>
+     * Must be called in a read-only transaction, which has nothing to flush before a clear.
+     *
+     * @param entities the entities, streamed from the database.
+     * @param entityManager the entity manager of the transaction.
+     * @param mapper the mapper from an entity to its DTO.
+     * @param consumer the consumer of the DTOs.
+     * @param <E> the type of the entities.
+     * @param <D> the type of the DTOs.
+     * @return the number of exported entities.
+     */
+    static <E, D> long export(Stream<E> entities, EntityManager entityManager, Function<E, D> mapper,
+                              Consumer<? super D> consumer) {
+        long count = 0;
+        Iterator<E> iterator = entities.iterator();
+        while (iterator.hasNext()) {
+            consumer.accept(mapper.apply(iterator.next()));
+            if (++count % CLEAR_INTERVAL == 0) {
+                entityManager.clear();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the start of a time range, the epoch when unbounded.
+     */
+    static Instant from(Instant from) {
+        return from == null ? Instant.EPOCH : from;
+    }
+
+    /**
+     * @return the exclusive end of a time range, now when unbounded, so that an export does not
+     * pick up rows written while it runs.
+     */
+    static Instant to(Instant to) {
+        return to == null ? Instant.now() : to;
+    }
+}
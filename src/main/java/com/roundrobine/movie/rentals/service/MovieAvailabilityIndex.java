@@ -0,0 +1,414 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.config.Constants;
+import com.roundrobine.movie.rentals.domain.MovieInventory;
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+import com.roundrobine.movie.rentals.repository.MovieInventoryRepository;
+import com.roundrobine.movie.rentals.service.dto.MovieAvailabilityDTO;
+import com.roundrobine.movie.rentals.service.dto.MovieInventoryStatusDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of {@link MovieInventory} availability, keyed by inventory id.
+ * <p>
+ * Each known copy owns one bit in a paged, lock-free bitmap, and a set bit means the copy can be rented.
+ * Checkouts claim their copies with a compare-and-set on that bit, so a request for a copy that is already
+ * rented is rejected before a transaction is opened. The database stays the source of truth: the index is
+ * rebuilt from it at startup and {@link MovieInventoryService} feeds it every committed inventory change.
+ * Copies the index does not know about are never rejected here and are left to the database check. Claims wait
+ * while the index is being rebuilt.
+ * <p>
+ * Commits can reach the index in another order than they happened, and the rebuild reads a snapshot that may be
+ * older than the changes applied meanwhile, so every status is kept with the {@code @Version} of its copy and a
+ * status older than the one known is ignored. Deleted copies are remembered, so that no late status brings them
+ * back.
+ * <p>
+ * The index also counts the available and rented copies of each movie from the committed status of every copy,
+ * so that the availability of a movie is read in constant time without touching the database. Copies claimed by
+ * a checkout that has not committed yet still count as available.
+ * <p>
+ * With the "cluster" profile the index is off, as each node would only see its own writes: every copy is left to
+ * the database check, and movie availability is not counted.
+ */
+@Component
+public class MovieAvailabilityIndex {
+
+    private final Logger log = LoggerFactory.getLogger(MovieAvailabilityIndex.class);
+
+    private final MovieInventoryRepository movieInventoryRepository;
+
+    private final ConcurrentBitmap tracked = new ConcurrentBitmap();
+
+    private final ConcurrentBitmap available = new ConcurrentBitmap();
+
+    private final Map<Long, Copy> copies = new ConcurrentHashMap<>();
+
+    private final Map<Long, MovieCounters> movieCounters = new ConcurrentHashMap<>();
+
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    private final boolean enabled;
+
+    public MovieAvailabilityIndex(MovieInventoryRepository movieInventoryRepository, Environment env) {
+        this.movieInventoryRepository = movieInventoryRepository;
+        this.enabled = !env.acceptsProfiles(Profiles.of(Constants.SPRING_PROFILE_CLUSTER));
+    }
+
+    /**
+     * @return {@code false} if the index is off because the application runs as a cluster.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Load the status of every movie inventory from the database, keeping the statuses already known to be newer.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            log.info("Movie availability index is off in a cluster");
+            return;
+        }
+        log.debug("Rebuilding the movie availability index");
+        List<MovieInventoryStatusDTO> statuses;
+        rebuildLock.writeLock().lock();
+        try {
+            statuses = movieInventoryRepository.findAllStatuses();
+            statuses.forEach(m -> apply(m.getId(), m.getMovieId(), m.getStatus(), m.getVersion()));
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+        log.info("Movie availability index loaded with {} copies of {} movies", statuses.size(), movieCounters.size());
+    }
+
+    /**
+     * Claim all the given copies for a checkout, or none of them.
+     * <p>
+     * A successful claim is undone by passing the copies it returned to {@link #release(Collection)}.
+     *
+     * @param inventoryIds the ids of the movie inventories to rent.
+     * @return the ids of the copies this claim took from the index, which leaves out the copies it does not know
+     * about, or empty if at least one of the copies is known to be rented already.
+     */
+    public Optional<List<Long>> tryClaim(Collection<Long> inventoryIds) {
+        rebuildLock.readLock().lock();
+        try {
+            List<Long> claimed = new ArrayList<>(inventoryIds.size());
+            for (Long id : inventoryIds) {
+                if (!isTracked(id)) {
+                    continue;
+                }
+                if (!available.compareAndClear(id)) {
+                    claimed.forEach(available::set);
+                    return Optional.empty();
+                }
+                claimed.add(id);
+            }
+            return Optional.of(claimed);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Give back copies claimed by a checkout that did not go through.
+     * <p>
+     * A copy is only made available again if its committed status still is {@link RentalStatus#AVAILABLE}.
+     *
+     * @param claimedIds the ids returned by a successful {@link #tryClaim(Collection)}.
+     */
+    public void release(Collection<Long> claimedIds) {
+        rebuildLock.readLock().lock();
+        try {
+            for (Long id : claimedIds) {
+                copies.computeIfPresent(id, (copyId, copy) -> {
+                    if (copy.status == RentalStatus.AVAILABLE) {
+                        available.set(id);
+                    }
+                    return copy;
+                });
+            }
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record the status of saved or updated movie inventories once the surrounding transaction commits.
+     * <p>
+     * The status and version are read when the transaction commits, once the version was incremented by the flush.
+     *
+     * @param movieInventories the managed entities.
+     */
+    public void onSaved(Collection<MovieInventory> movieInventories) {
+        if (!enabled) {
+            return;
+        }
+        List<MovieInventory> saved = new ArrayList<>(movieInventories);
+        List<Long> movieIds = new ArrayList<>(saved.size());
+        saved.forEach(m -> movieIds.add(m.getMovie() != null ? m.getMovie().getId() : null));
+        afterCommit(() -> {
+            for (int i = 0; i < saved.size(); i++) {
+                MovieInventory m = saved.get(i);
+                apply(m.getId(), movieIds.get(i), m.getStatus(), m.getVersion());
+            }
+        });
+    }
+
+    /**
+     * Forget a movie inventory once the surrounding transaction commits.
+     *
+     * @param id the id of the deleted entity.
+     */
+    public void onDeleted(Long id) {
+        if (!enabled || id == null || id < 0) {
+            return;
+        }
+        afterCommit(() -> copies.compute(id, (copyId, previous) -> {
+            if (previous != null) {
+                count(previous, -1);
+            }
+            tracked.clear(id);
+            available.clear(id);
+            return Copy.deleted();
+        }));
+    }
+
+    /**
+     * @param movieId the id of the movie.
+     * @return the number of available and rented copies of the movie, zero for a movie without known copies.
+     */
+    public MovieAvailabilityDTO getAvailability(Long movieId) {
+        MovieCounters counters = movieCounters.get(movieId);
+        return counters != null ? counters.toDto(movieId) : new MovieAvailabilityDTO(movieId, 0, 0);
+    }
+
+    /**
+     * @return the number of available and rented copies of every movie with known copies.
+     */
+    public List<MovieAvailabilityDTO> getAvailability() {
+        List<MovieAvailabilityDTO> availability = new ArrayList<>(movieCounters.size());
+        movieCounters.forEach((movieId, counters) -> availability.add(counters.toDto(movieId)));
+        return availability;
+    }
+
+    /**
+     * @param id the id of the movie inventory.
+     * @return {@code true} if the copy is known and available for rent.
+     */
+    public boolean isAvailable(Long id) {
+        return isTracked(id) && available.get(id);
+    }
+
+    private boolean isTracked(Long id) {
+        return id != null && id >= 0 && tracked.get(id);
+    }
+
+    /**
+     * @param movieId the id of the movie of the copy, {@code null} to keep the one already known.
+     * @param version the version of the copy with that status, {@code null} if unknown.
+     */
+    private void apply(Long id, Long movieId, RentalStatus status, Long version) {
+        if (id == null || id < 0 || status == null) {
+            return;
+        }
+        // the counters and bits of a copy are only changed while holding its entry, so that concurrent commits
+        // cannot both count the same transition nor leave the bits of the older one
+        copies.compute(id, (copyId, previous) -> {
+            if (previous != null && !previous.isOlderThan(version)) {
+                return previous;
+            }
+            Copy copy = new Copy(movieId != null ? movieId : previous != null ? previous.movieId : null, status, version);
+            if (previous != null) {
+                count(previous, -1);
+            }
+            count(copy, 1);
+            // the availability bit has to be right before the copy becomes visible to claims
+            if (status == RentalStatus.AVAILABLE) {
+                available.set(id);
+            } else {
+                available.clear(id);
+            }
+            tracked.set(id);
+            return copy;
+        });
+    }
+
+    private void count(Copy copy, int delta) {
+        if (copy.movieId == null || copy.status == null) {
+            return;
+        }
+        MovieCounters counters = movieCounters.computeIfAbsent(copy.movieId, movieId -> new MovieCounters());
+        (copy.status == RentalStatus.AVAILABLE ? counters.available : counters.rented).add(delta);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * The committed movie, status and version of a copy, without status once the copy is deleted.
+     */
+    private static final class Copy {
+
+        private final Long movieId;
+
+        private final RentalStatus status;
+
+        private final Long version;
+
+        Copy(Long movieId, RentalStatus status, Long version) {
+            this.movieId = movieId;
+            this.status = status;
+            this.version = version;
+        }
+
+        static Copy deleted() {
+            return new Copy(null, null, null);
+        }
+
+        /**
+         * @return {@code true} if a status of the given version replaces this one, always when a version is unknown
+         * and never once the copy is deleted.
+         */
+        boolean isOlderThan(Long otherVersion) {
+            return status != null && (version == null || otherVersion == null || version < otherVersion);
+        }
+    }
+
+    /**
+     * The copies of a movie by status, counted with adders so that rentals of popular movies do not contend.
+     */
+    private static final class MovieCounters {
+
+        private final LongAdder available = new LongAdder();
+
+        private final LongAdder rented = new LongAdder();
+
+        MovieAvailabilityDTO toDto(Long movieId) {
+            return new MovieAvailabilityDTO(movieId, available.sum(), rented.sum());
+        }
+    }
+
+    /**
+     * A growable bitmap over non-negative long keys.
+     * <p>
+     * Bits live in fixed-size pages of {@link AtomicLongArray}. Pages are only ever added, and growing the
+     * page directory copies page references, so a compare-and-set on a page is never lost.
+     */
+    static final class ConcurrentBitmap {
+
+        private static final int PAGE_SHIFT = 12;
+
+        private static final int WORDS_PER_PAGE = 1 << (PAGE_SHIFT - 6);
+
+        private volatile AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<>(16);
+
+        boolean get(long key) {
+            AtomicLongArray page = existingPage(key);
+            return page != null && (page.get(word(key)) & mask(key)) != 0;
+        }
+
+        void set(long key) {
+            AtomicLongArray page = page(key);
+            int word = word(key);
+            long mask = mask(key);
+            long current;
+            do {
+                current = page.get(word);
+                if ((current & mask) != 0) {
+                    return;
+                }
+            } while (!page.compareAndSet(word, current, current | mask));
+        }
+
+        void clear(long key) {
+            compareAndClear(key);
+        }
+
+        /**
+         * @return {@code true} if this call flipped the bit from set to cleared.
+         */
+        boolean compareAndClear(long key) {
+            AtomicLongArray page = page(key);
+            int word = word(key);
+            long mask = mask(key);
+            long current;
+            do {
+                current = page.get(word);
+                if ((current & mask) == 0) {
+                    return false;
+                }
+            } while (!page.compareAndSet(word, current, current & ~mask));
+            return true;
+        }
+
+        private static int word(long key) {
+            return (int) (key >>> 6) & (WORDS_PER_PAGE - 1);
+        }
+
+        private static long mask(long key) {
+            return 1L << key;
+        }
+
+        private AtomicLongArray existingPage(long key) {
+            int index = (int) (key >>> PAGE_SHIFT);
+            AtomicReferenceArray<AtomicLongArray> directory = pages;
+            return index < directory.length() ? directory.get(index) : null;
+        }
+
+        private AtomicLongArray page(long key) {
+            AtomicLongArray page = existingPage(key);
+            return page != null ? page : createPage((int) (key >>> PAGE_SHIFT));
+        }
+
+        private synchronized AtomicLongArray createPage(int index) {
+            AtomicReferenceArray<AtomicLongArray> directory = pages;
+            if (index >= directory.length()) {
+                AtomicReferenceArray<AtomicLongArray> grown =
+                    new AtomicReferenceArray<>(Math.max(index + 1, directory.length() * 2));
+                for (int i = 0; i < directory.length(); i++) {
+                    grown.set(i, directory.get(i));
+                }
+                pages = grown;
+                directory = grown;
+            }
+            AtomicLongArray page = directory.get(index);
+            if (page == null) {
+                page = new AtomicLongArray(WORDS_PER_PAGE);
+                directory.set(index, page);
+            }
+            return page;
+        }
+    }
+}
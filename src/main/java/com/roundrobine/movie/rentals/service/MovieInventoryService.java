@@ -1,23 +1,31 @@
 package com.roundrobine.movie.rentals.service;
 
 import com.roundrobine.movie.rentals.domain.MovieInventory;
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
 import com.roundrobine.movie.rentals.repository.MovieInventoryRepository;
 import com.roundrobine.movie.rentals.repository.search.MovieInventorySearchRepository;
+import com.roundrobine.movie.rentals.repository.Keyset;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
 import com.roundrobine.movie.rentals.service.dto.MovieInventoryDTO;
 import com.roundrobine.movie.rentals.service.mapper.MovieInventoryMapper;
+import com.roundrobine.movie.rentals.service.search.SearchIndexOutbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.elasticsearch.index.query.QueryBuilders.*;
 
@@ -36,10 +44,28 @@ public class MovieInventoryService {
 
     private final MovieInventorySearchRepository movieInventorySearchRepository;
 
-    public MovieInventoryService(MovieInventoryRepository movieInventoryRepository, MovieInventoryMapper movieInventoryMapper, MovieInventorySearchRepository movieInventorySearchRepository) {
+    private final SearchIndexOutbox searchIndexOutbox;
+
+    private final MovieAvailabilityIndex movieAvailabilityIndex;
+
+    private final CataloguePageCache cataloguePageCache;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    public MovieInventoryService(MovieInventoryRepository movieInventoryRepository, MovieInventoryMapper movieInventoryMapper,
+                                 MovieInventorySearchRepository movieInventorySearchRepository,
+                                 MovieAvailabilityIndex movieAvailabilityIndex,
+                                 SearchIndexOutbox searchIndexOutbox,
+                                 CataloguePageCache cataloguePageCache,
+                                 PlatformTransactionManager transactionManager) {
         this.movieInventoryRepository = movieInventoryRepository;
         this.movieInventoryMapper = movieInventoryMapper;
         this.movieInventorySearchRepository = movieInventorySearchRepository;
+        this.searchIndexOutbox = searchIndexOutbox;
+        this.movieAvailabilityIndex = movieAvailabilityIndex;
+        this.cataloguePageCache = cataloguePageCache;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     /**
@@ -52,9 +78,15 @@ public class MovieInventoryService {
         log.debug("Request to save MovieInventory : {}", movieInventoryDTO);
         movieInventoryDTO.setLastUpdatedAt(Instant.now());
         MovieInventory movieInventory = movieInventoryMapper.toEntity(movieInventoryDTO);
+        if (movieInventory.getId() == null) {
+            cataloguePageCache.onMovieInventoriesInsertedOrDeleted();
+        } else {
+            cataloguePageCache.onMovieInventoriesUpdated(Collections.singleton(movieInventory.getId()));
+        }
         movieInventory = movieInventoryRepository.save(movieInventory);
         MovieInventoryDTO result = movieInventoryMapper.toDto(movieInventory);
-        movieInventorySearchRepository.save(movieInventory);
+        searchIndexOutbox.index(movieInventory);
+        movieAvailabilityIndex.onSaved(Collections.singletonList(movieInventory));
         return result;
     }
 
@@ -67,22 +99,72 @@ public class MovieInventoryService {
      */
     public boolean saveAll(List<MovieInventory> movieInventoryList) {
         log.debug("Request to save a list of MovieInventory : {}", movieInventoryList);
-        movieInventoryRepository.saveAll(movieInventoryList);
-        movieInventorySearchRepository.saveAll(movieInventoryList);
+        if (movieInventoryList.stream().anyMatch(movieInventory -> movieInventory.getId() == null)) {
+            cataloguePageCache.onMovieInventoriesInsertedOrDeleted();
+        } else {
+            cataloguePageCache.onMovieInventoriesUpdated(movieInventoryList.stream()
+                .map(MovieInventory::getId)
+                .collect(Collectors.toList()));
+        }
+        List<MovieInventory> saved = movieInventoryRepository.saveAll(movieInventoryList);
+        searchIndexOutbox.indexAll(saved);
+        movieAvailabilityIndex.onSaved(saved);
         return true;
     }
 
     /**
-     * Get all the movieInventories.
+     * Change the status of movie inventories in a single statement, if all of them are in an expected status.
+     * <p>
+     * The check and the change are atomic, so two transactions can never both move the same copy out of the
+     * expected status, and only the cache entries of these copies are evicted. The changed copies are then read
+     * in one query. The caller must roll back when none are returned.
      *
-     * @param pageable the pagination information.
-     * @return the list of entities.
+     * @param ids the ids of the movie inventories.
+     * @param expectedStatus the status the movie inventories must be in.
+     * @param status the new status.
+     * @param updatedAt the time of the change.
+     * @return the movie inventories changed, none unless all of them exist and are in the expected status.
      */
-    @Transactional(readOnly = true)
-    public Page<MovieInventoryDTO> findAll(Pageable pageable) {
-        log.debug("Request to get all MovieInventories");
-        return movieInventoryRepository.findAll(pageable)
-            .map(movieInventoryMapper::toDto);
+    public List<MovieInventory> updateStatus(Set<Long> ids, RentalStatus expectedStatus, RentalStatus status,
+                                             Instant updatedAt) {
+        log.debug("Request to change the status of MovieInventories {} from {} to {}", ids, expectedStatus, status);
+        if (movieInventoryRepository.updateStatus(ids, expectedStatus, status, updatedAt) != ids.size()) {
+            return Collections.emptyList();
+        }
+        List<MovieInventory> movieInventories = movieInventoryRepository.findByIdIn(ids);
+        searchIndexOutbox.indexAll(movieInventories);
+        cataloguePageCache.onMovieInventoriesUpdated(ids);
+        movieAvailabilityIndex.onSaved(movieInventories);
+        return movieInventories;
+    }
+
+    /**
+     * Get a page of the movieInventories, after a keyset.
+     * <p>
+     * Pages are served from the {@link CataloguePageCache}, and a transaction is only started to read a missing one.
+     *
+     * @param keyset the keyset the page starts after.
+     * @param size the maximum number of movieInventories of the page.
+     * @return the page of entities, with the keyset of the next page if there is one.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public KeysetSlice<MovieInventoryDTO> findAll(Keyset keyset, int size) {
+        log.debug("Request to get a page of MovieInventories after {}", keyset);
+        return cataloguePageCache.movieInventories(keyset, size, () -> readOnlyTransaction.execute(status ->
+            movieInventoryRepository.findAll(keyset, size)
+                .map(movieInventoryMapper::toDto)));
+    }
+
+    /**
+     * Count the movieInventories.
+     *
+     * @return the number of entities.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public long count() {
+        log.debug("Request to count MovieInventories");
+        return cataloguePageCache.movieInventoryCount(() ->
+            readOnlyTransaction.execute(status -> movieInventoryRepository.count()));
     }
 
 
@@ -132,8 +214,10 @@ public class MovieInventoryService {
      */
     public void delete(Long id) {
         log.debug("Request to delete MovieInventory : {}", id);
+        cataloguePageCache.onMovieInventoriesInsertedOrDeleted();
         movieInventoryRepository.deleteById(id);
-        movieInventorySearchRepository.deleteById(id);
+        searchIndexOutbox.delete(MovieInventory.class, id);
+        movieAvailabilityIndex.onDeleted(id);
     }
 
     /**
@@ -149,16 +233,4 @@ public class MovieInventoryService {
         return movieInventorySearchRepository.search(queryStringQuery(query), pageable)
             .map(movieInventoryMapper::toDto);
     }
-
-
-
-
-    /**
-     * Read all media entities and refresh the data in elastic search
-     */
-    @Scheduled(fixedDelay = 500000)
-    public void refreshSearchRepo() {
-        this.movieInventoryRepository.findAll()
-            .forEach(m -> this.movieInventorySearchRepository.save(m));
-    }
 }
@@ -3,8 +3,11 @@ package com.roundrobine.movie.rentals.service;
 import com.roundrobine.movie.rentals.domain.Movie;
 import com.roundrobine.movie.rentals.repository.MovieRepository;
 import com.roundrobine.movie.rentals.repository.search.MovieSearchRepository;
+import com.roundrobine.movie.rentals.repository.Keyset;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
 import com.roundrobine.movie.rentals.service.dto.MovieDTO;
 import com.roundrobine.movie.rentals.service.mapper.MovieMapper;
+import com.roundrobine.movie.rentals.service.search.SearchIndexOutbox;
 import lombok.extern.slf4j.Slf4j;
 import org.elasticsearch.common.unit.Fuzziness;
 import org.elasticsearch.index.query.QueryBuilder;
@@ -15,8 +18,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -37,11 +44,24 @@ public class MovieService {
 
     private final MovieSearchRepository movieSearchRepository;
 
+    private final SearchIndexOutbox searchIndexOutbox;
+
+    private final CataloguePageCache cataloguePageCache;
+
+    private final TransactionTemplate readOnlyTransaction;
+
     public MovieService(MovieRepository movieRepository, MovieMapper movieMapper,
-                        MovieSearchRepository movieSearchRepository) {
+                        MovieSearchRepository movieSearchRepository,
+                        SearchIndexOutbox searchIndexOutbox,
+                        CataloguePageCache cataloguePageCache,
+                        PlatformTransactionManager transactionManager) {
         this.movieRepository = movieRepository;
         this.movieMapper = movieMapper;
         this.movieSearchRepository = movieSearchRepository;
+        this.searchIndexOutbox = searchIndexOutbox;
+        this.cataloguePageCache = cataloguePageCache;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     /**
@@ -53,23 +73,43 @@ public class MovieService {
     public MovieDTO save(MovieDTO movieDTO) {
         log.debug("Request to save Movie : {}", movieDTO);
         Movie movie = movieMapper.toEntity(movieDTO);
+        if (movie.getId() == null) {
+            cataloguePageCache.onMoviesInsertedOrDeleted();
+        } else {
+            cataloguePageCache.onMoviesUpdated(Collections.singleton(movie.getId()));
+        }
         movie = movieRepository.save(movie);
         MovieDTO result = movieMapper.toDto(movie);
-        movieSearchRepository.save(movie);
+        searchIndexOutbox.index(movie);
         return result;
     }
 
     /**
-     * Get all the movies.
+     * Get a page of the movies, after a keyset.
+     * <p>
+     * Pages are served from the {@link CataloguePageCache}, and a transaction is only started to read a missing one.
      *
-     * @param pageable the pagination information.
-     * @return the list of entities.
+     * @param keyset the keyset the page starts after.
+     * @param size the maximum number of movies of the page.
+     * @return the page of entities, with the keyset of the next page if there is one.
      */
-    @Transactional(readOnly = true)
-    public Page<MovieDTO> findAll(Pageable pageable) {
-        log.debug("Request to get all Movies");
-        return movieRepository.findAll(pageable)
-            .map(movieMapper::toDto);
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public KeysetSlice<MovieDTO> findAll(Keyset keyset, int size) {
+        log.debug("Request to get a page of Movies after {}", keyset);
+        return cataloguePageCache.movies(keyset, size, () -> readOnlyTransaction.execute(status ->
+            movieRepository.findAll(keyset, size)
+                .map(movieMapper::toDto)));
+    }
+
+    /**
+     * Count the movies.
+     *
+     * @return the number of entities.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public long count() {
+        log.debug("Request to count Movies");
+        return cataloguePageCache.movieCount(() -> readOnlyTransaction.execute(status -> movieRepository.count()));
     }
 
 
@@ -93,8 +133,9 @@ public class MovieService {
      */
     public void delete(Long id) {
         log.debug("Request to delete Movie : {}", id);
+        cataloguePageCache.onMoviesInsertedOrDeleted();
         movieRepository.deleteById(id);
-        movieSearchRepository.deleteById(id);
+        searchIndexOutbox.delete(Movie.class, id);
     }
 
     /**
@@ -107,18 +148,25 @@ public class MovieService {
     @Transactional(readOnly = true)
     public Page<MovieDTO> search(String query, Pageable pageable) {
         log.debug("Request to search for a page of Movies for query {}", query);
+        return movieSearchRepository.search(searchQuery(query), pageable)
+            .map(movieMapper::toDto);
+    }
 
+    /**
+     * Build the Elasticsearch query of a movie search, matching titles before descriptions.
+     *
+     * @param query the query of the search.
+     * @return the Elasticsearch query.
+     */
+    static QueryBuilder searchQuery(String query) {
         Map<String, Float> defaultFields = new HashMap<>();
         defaultFields.put("title", 5.0f);
         defaultFields.put("description", 2.0f);
 
-        QueryBuilder queryObject = QueryBuilders.boolQuery()
+        return QueryBuilders.boolQuery()
             .must(QueryBuilders.queryStringQuery(query)
                 .fields(defaultFields)
                 .fuzziness(Fuzziness.AUTO)
                 .phraseSlop(5));
-
-        return movieSearchRepository.search(queryObject, pageable)
-            .map(movieMapper::toDto);
     }
 }
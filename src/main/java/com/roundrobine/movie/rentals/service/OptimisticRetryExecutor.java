@@ -0,0 +1,149 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs a transactional workflow again when it loses a race for a versioned entity.
+ * <p>
+ * {@link com.roundrobine.movie.rentals.domain.Customer} and {@link com.roundrobine.movie.rentals.domain.MovieInventory}
+ * are optimistically locked, so when two workflows update the same entities the last one to commit fails
+ * with a {@link ConcurrencyFailureException} instead of silently overwriting the first. The workflow is then run
+ * again in a new transaction, which sees the committed state, after a random backoff ("full jitter") that
+ * doubles with each attempt so that competing requests spread out instead of colliding again.
+ * <p>
+ * The workflow must open its own transaction: when it is called inside a transaction it is run only once,
+ * because a retry could not roll back the work already done by the surrounding transaction.
+ * <p>
+ * {@link #execute(String, Supplier)} waits for the backoff on the calling thread. A workflow running on a thread
+ * shared with other work, like a customer lane, is run with {@link #submit(String, Supplier, Executor)} instead,
+ * which gives the thread back during the backoff and submits the next attempt to the same executor. On a customer
+ * lane, {@link CustomerCommandDispatcher#dispatchOnLane} keeps the later commands of the customer waiting until
+ * the last attempt, so they do not overtake the retry.
+ */
+@Component
+public class OptimisticRetryExecutor {
+
+    private final Logger log = LoggerFactory.getLogger(OptimisticRetryExecutor.class);
+
+    private final ApplicationProperties.OptimisticRetry properties;
+
+    private final MeterRegistry meterRegistry;
+
+    public OptimisticRetryExecutor(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.properties = applicationProperties.getOptimisticRetry();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Run a workflow, again if it loses an optimistic locking race, up to
+     * {@code application.optimistic-retry.max-attempts} times in total.
+     *
+     * @param operation the name of the workflow, used in logs and metrics.
+     * @param workflow the workflow, opening its own transaction.
+     * @param <T> the type of the result of the workflow.
+     * @return the result of the first attempt that commits.
+     * @throws ConcurrencyFailureException if every attempt lost its race.
+     */
+    public <T> T execute(String operation, Supplier<T> workflow) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return workflow.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return workflow.get();
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= properties.getMaxAttempts()) {
+                    counter("rental.optimistic.exhausted", operation).increment();
+                    log.warn("{} lost an optimistic locking race {} times, giving up", operation, attempt);
+                    throw e;
+                }
+                counter("rental.optimistic.retries", operation).increment();
+                long backoffMs = backoffMs(attempt, properties.getInitialBackoffMs(), properties.getMaxBackoffMs());
+                log.debug("{} lost an optimistic locking race on attempt {}, retrying in {} ms",
+                    operation, attempt, backoffMs);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Run a workflow on an executor, again if it loses an optimistic locking race, up to
+     * {@code application.optimistic-retry.max-attempts} times in total. The executor is free while an attempt
+     * waits for its backoff; the attempt is then submitted to it again.
+     *
+     * @param operation the name of the workflow, used in logs and metrics.
+     * @param workflow the workflow, opening its own transaction.
+     * @param executor the executor running every attempt.
+     * @param <T> the type of the result of the workflow.
+     * @return a future completed with the result of the first attempt that commits, or failed with a
+     * {@link ConcurrencyFailureException} if every attempt lost its race.
+     */
+    public <T> CompletableFuture<T> submit(String operation, Supplier<T> workflow, Executor executor) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        submitAttempt(operation, workflow, executor, 1, result);
+        return result;
+    }
+
+    private <T> void submitAttempt(String operation, Supplier<T> workflow, Executor executor, int attempt,
+                                   CompletableFuture<T> result) {
+        try {
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(workflow.get());
+                } catch (ConcurrencyFailureException e) {
+                    if (attempt >= properties.getMaxAttempts()) {
+                        counter("rental.optimistic.exhausted", operation).increment();
+                        log.warn("{} lost an optimistic locking race {} times, giving up", operation, attempt);
+                        result.completeExceptionally(e);
+                        return;
+                    }
+                    counter("rental.optimistic.retries", operation).increment();
+                    long backoffMs = backoffMs(attempt, properties.getInitialBackoffMs(), properties.getMaxBackoffMs());
+                    log.debug("{} lost an optimistic locking race on attempt {}, retrying in {} ms",
+                        operation, attempt, backoffMs);
+                    CompletableFuture.delayedExecutor(backoffMs, TimeUnit.MILLISECONDS)
+                        .execute(() -> submitAttempt(operation, workflow, executor, attempt + 1, result));
+                } catch (RuntimeException | Error e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * A random backoff between zero and {@code initialBackoffMs * 2^(attempt - 1)}, capped at {@code maxBackoffMs}.
+     */
+    static long backoffMs(int attempt, long initialBackoffMs, long maxBackoffMs) {
+        long ceiling = attempt > 31 ? maxBackoffMs : Math.min(maxBackoffMs, initialBackoffMs << (attempt - 1));
+        return ThreadLocalRandom.current().nextLong(Math.max(ceiling, 0) + 1);
+    }
+
+    private Counter counter(String name, String operation) {
+        return Counter.builder(name)
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+}
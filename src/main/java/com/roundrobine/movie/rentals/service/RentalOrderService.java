@@ -6,10 +6,18 @@ import com.roundrobine.movie.rentals.domain.enumeration.OrderStatus;
 import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
 import com.roundrobine.movie.rentals.repository.RentalOrderRepository;
 import com.roundrobine.movie.rentals.repository.search.RentalOrderSearchRepository;
+import com.roundrobine.movie.rentals.repository.Keyset;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
 import com.roundrobine.movie.rentals.service.dto.CreateRentalOrderDTO;
 import com.roundrobine.movie.rentals.service.dto.RentalOrderDTO;
+import com.roundrobine.movie.rentals.service.dto.RentalOrderSummaryDTO;
+import com.roundrobine.movie.rentals.service.dto.RentedCopyLineDTO;
 import com.roundrobine.movie.rentals.service.dto.ReturnRentedMovieDTO;
 import com.roundrobine.movie.rentals.service.mapper.RentalOrderMapper;
+import com.roundrobine.movie.rentals.service.search.SearchIndexOutbox;
+import com.roundrobine.movie.rentals.service.tariff.MovieTariff;
+import com.roundrobine.movie.rentals.service.tariff.TariffEngine;
+import com.roundrobine.movie.rentals.service.tariff.TariffSnapshot;
 import com.roundrobine.movie.rentals.web.rest.errors.BadRequestAlertException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -17,11 +25,14 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
 
@@ -39,6 +50,8 @@ public class RentalOrderService {
 
     private final RentalOrderSearchRepository rentalOrderSearchRepository;
 
+    private final SearchIndexOutbox searchIndexOutbox;
+
     private final MovieInventoryService movieInventoryService;
 
     private final CustomerService customerService;
@@ -47,20 +60,29 @@ public class RentalOrderService {
 
     private final BonusHistoryService bonusHistoryService;
 
+    private final TariffEngine tariffEngine;
+
+    private final EntityManager entityManager;
+
     public static final String ORDER_RENTAL_SERVICE = "OrderRentalService";
 
 
     public RentalOrderService(RentalOrderRepository rentalOrderRepository, RentalOrderMapper rentalOrderMapper,
                               RentalOrderSearchRepository rentalOrderSearchRepository,
                               MovieInventoryService movieInventoryService, CustomerService customerService,
-                              RentedCopyService rentedCopyService, BonusHistoryService bonusHistoryService) {
+                              RentedCopyService rentedCopyService, BonusHistoryService bonusHistoryService,
+                              TariffEngine tariffEngine, SearchIndexOutbox searchIndexOutbox,
+                              EntityManager entityManager) {
         this.rentalOrderRepository = rentalOrderRepository;
+        this.entityManager = entityManager;
         this.rentalOrderMapper = rentalOrderMapper;
         this.rentalOrderSearchRepository = rentalOrderSearchRepository;
+        this.searchIndexOutbox = searchIndexOutbox;
         this.movieInventoryService = movieInventoryService;
         this.customerService = customerService;
         this.rentedCopyService = rentedCopyService;
         this.bonusHistoryService = bonusHistoryService;
+        this.tariffEngine = tariffEngine;
     }
 
     /**
@@ -74,23 +96,83 @@ public class RentalOrderService {
         RentalOrder rentalOrder = rentalOrderMapper.toEntity(rentalOrderDTO);
         rentalOrder = rentalOrderRepository.save(rentalOrder);
         RentalOrderDTO result = rentalOrderMapper.toDto(rentalOrder);
-        rentalOrderSearchRepository.save(rentalOrder);
+        searchIndexOutbox.index(rentalOrder);
         return result;
     }
 
     /**
-     * Get all the rentalOrders.
+     * Get a page of the rentalOrders, after a keyset.
      *
-     * @param pageable the pagination information.
-     * @return the list of entities.
+     * @param keyset the keyset the page starts after.
+     * @param size the maximum number of rentalOrders of the page.
+     * @return the page of entities, with the keyset of the next page if there is one.
      */
     @Transactional(readOnly = true)
-    public Page<RentalOrderDTO> findAll(Pageable pageable) {
-        log.debug("Request to get all RentalOrders");
-        return rentalOrderRepository.findAll(pageable)
+    public KeysetSlice<RentalOrderDTO> findAll(Keyset keyset, int size) {
+        log.debug("Request to get a page of RentalOrders after {}", keyset);
+        // the ids of the page first, then the orders with their copies in one query, as a fetch join of a
+        // collection cannot be limited
+        KeysetSlice<Long> ids = rentalOrderRepository.findAllIds(keyset, size);
+        return ids.join(rentalOrderRepository.findWithRentedCopiesByIdIn(ids.getContent()), RentalOrder::getId)
             .map(rentalOrderMapper::toDto);
     }
 
+    /**
+     * Get a page of flat summaries of the rentalOrders, after a keyset, in three queries whatever the size
+     * of the page.
+     *
+     * @param keyset the keyset the page starts after.
+     * @param size the maximum number of rentalOrders of the page.
+     * @return the page of summaries, with the keyset of the next page if there is one.
+     */
+    @Transactional(readOnly = true)
+    public KeysetSlice<RentalOrderSummaryDTO> findSummaries(Keyset keyset, int size) {
+        log.debug("Request to get a page of RentalOrder summaries after {}", keyset);
+        KeysetSlice<Long> ids = rentalOrderRepository.findAllIds(keyset, size);
+        KeysetSlice<RentalOrderSummaryDTO> summaries =
+            ids.join(rentalOrderRepository.findSummariesByIdIn(ids.getContent()), RentalOrderSummaryDTO::getId);
+        Map<Long, List<RentedCopyLineDTO>> linesByOrderId = rentedCopyService.findLinesByOrderIdIn(ids.getContent())
+            .stream()
+            .collect(Collectors.groupingBy(RentedCopyLineDTO::getOrderId));
+        summaries.getContent().forEach(summary ->
+            summary.setRentedCopies(linesByOrderId.getOrDefault(summary.getId(), new ArrayList<>())));
+        return summaries;
+    }
+
+    /**
+     * Count the rentalOrders.
+     *
+     * @return the number of entities.
+     */
+    @Transactional(readOnly = true)
+    public long count() {
+        log.debug("Request to count RentalOrders");
+        return rentalOrderRepository.count();
+    }
+
+    /**
+     * Export the rentalOrders created and last updated in two time ranges, in id order, in constant memory.
+     * Each range includes its start and excludes its end, and unbounded ends default to the epoch and now.
+     *
+     * @param createdFrom the start of the creation range, or {@code null}.
+     * @param createdTo the end of the creation range, or {@code null}.
+     * @param updatedFrom the start of the last update range, or {@code null}.
+     * @param updatedTo the end of the last update range, or {@code null}.
+     * @param consumer the consumer each exported rentalOrder is handed to, in turn.
+     * @return the number of exported rentalOrders.
+     */
+    @Transactional(readOnly = true)
+    public long export(Instant createdFrom, Instant createdTo, Instant updatedFrom, Instant updatedTo,
+                       Consumer<? super RentalOrderDTO> consumer) {
+        log.debug("Request to export RentalOrders created in [{}, {}) and updated in [{}, {})",
+            createdFrom, createdTo, updatedFrom, updatedTo);
+        try (Stream<RentalOrder> rentalOrders = rentalOrderRepository.streamForExport(
+            EntityExports.from(createdFrom), EntityExports.to(createdTo),
+            EntityExports.from(updatedFrom), EntityExports.to(updatedTo))) {
+            return EntityExports.export(rentalOrders, entityManager, rentalOrderMapper::toDto, consumer);
+        }
+    }
+
 
     /**
      * Get one rentalOrder by id.
@@ -101,7 +183,8 @@ public class RentalOrderService {
     @Transactional(readOnly = true)
     public Optional<RentalOrderDTO> findOne(Long id) {
         log.debug("Request to get RentalOrder : {}", id);
-        return rentalOrderRepository.findById(id)
+        return rentalOrderRepository.findWithRentedCopiesByIdIn(Collections.singleton(id)).stream()
+            .findFirst()
             .map(rentalOrderMapper::toDto);
     }
 
@@ -113,7 +196,7 @@ public class RentalOrderService {
     public void delete(Long id) {
         log.debug("Request to delete RentalOrder : {}", id);
         rentalOrderRepository.deleteById(id);
-        rentalOrderSearchRepository.deleteById(id);
+        searchIndexOutbox.delete(RentalOrder.class, id);
     }
 
     /**
@@ -136,68 +219,44 @@ public class RentalOrderService {
 
             log.debug("Start processing new rental order {}", createRentalOrderDTO);
 
-             List<MovieInventory> moviesToRent = validateAndGetMovieInventoryList(createRentalOrderDTO);
-             List<MovieInventory> rentedMovies = new ArrayList<>();
+            Instant rentDate = Instant.now();
 
-             Customer customer = lookForCustomer(user);
+            // the copies are rented and the customer is debited with conditional updates, each checking and
+            // changing its rows in one statement, so concurrent checkouts can neither rent a copy twice nor
+            // overdraw a balance
+            Map<Long, MovieInventory> moviesToRent = rentMovieInventories(createRentalOrderDTO, rentDate);
 
-             // Create a new order
-            RentalOrder order = rentalOrderRepository.save(RentalOrder.builder()
+            RentalOrder order = RentalOrder.builder()
                  .currency(Currency.SEK)
-                 .customer(customer)
-                 .build());
+                 .build();
 
-            rentalOrderSearchRepository.save(order);
             BonusHistory bonusHistory = BonusHistory.builder()
-            .customer(customer)
             .oder(order)
             .build();
 
-            List<RentedCopy> movieCopies = new ArrayList<>();
-
-            createRentalOrderDTO.getOrder().forEach(
-                    (movieInventoryId, plannedRentDuration) -> {
-
-                        MovieInventory movieInventory = moviesToRent.stream()
-                                .filter(mi -> mi.getId() == movieInventoryId).collect(Collectors.toList()).get(0);
-
-                        movieCopies.add(
-                            RentedCopy.builder()
-                                .movieInventory(movieInventory)
-                                .plannedRentDuration(plannedRentDuration)
-                                .order(order)
-                                .build());
-
-                        movieInventory.setStatus(RentalStatus.RENTED);
-                        movieInventory.setLastUpdatedAt(Instant.now());
-                        rentedMovies.add(movieInventory);
-
-                        order.setTotalAmount(order.getTotalAmount()
-                            .add(movieInventory.getMovie().getType().calculateMoviePriceOnRental(plannedRentDuration)));
-                        bonusHistory
-                            .setPoints(bonusHistory.getPoints() + movieInventory.getMovie().getType().getBonusPoints());
-                    });
+            List<RentedCopy> movieCopies =
+                assembleRentedCopies(order, bonusHistory, createRentalOrderDTO.getOrder(), moviesToRent,
+                    tariffEngine.current());
 
-
-            if(!customerService.isCustomerAbleToPay(customer, order.getTotalAmount()) ){
+            if (!customerService.debit(user.getId(), order.getTotalAmount(), bonusHistory.getPoints())) {
+                findCustomer(user);
                 throw new BadRequestAlertException("Order will not be created because customer " +
                     "does not have a sufficient balance. " +
                     "Please deposit some money and try again.", ORDER_RENTAL_SERVICE, "customernotvalid");
-            }else {
-                customer.setCreditAmount(customer.getCreditAmount().subtract(order.getTotalAmount()));
-                customer.setBonusPoints(customer.getBonusPoints() + bonusHistory.getPoints());
             }
 
-            movieInventoryService.saveAll(rentedMovies);
-            rentedCopyService.saveAll(movieCopies);
-            bonusHistoryService.save(bonusHistory);
+            // read after the debit, for the order returned to the client
+            Customer customer = findCustomer(user);
+            order.setCustomer(customer);
+            bonusHistory.setCustomer(customer);
 
-            //update order with final data
             order.setRentedCopies(new HashSet<>(movieCopies));
             order.setStatus(OrderStatus.ACTIVE);
-            order.setLastUpdatedAt(Instant.now());
+            order.setLastUpdatedAt(rentDate);
             rentalOrderRepository.save(order);
-            rentalOrderSearchRepository.save(order);
+            rentedCopyService.saveAll(movieCopies);
+            bonusHistoryService.save(bonusHistory);
+            searchIndexOutbox.index(order);
 
             log.info("New order {} for customer {} has been successfully created!", order.getId(), customer);
 
@@ -209,16 +268,16 @@ public class RentalOrderService {
     @Transactional
     public List<RentalOrderDTO> returnRentedMovieCopies(User user, ReturnRentedMovieDTO returnRentedMoviesDTO) {
 
-        List<MovieInventory> moviesToReturn = validateAndGetMoviesToReturn(returnRentedMoviesDTO);
+        Instant returnDate = Instant.now();
+
+        Set<Long> moviesToReturn = returnMovieInventories(returnRentedMoviesDTO, returnDate);
 
         Customer customer = lookForCustomer(user);
 
+        // copies returned earlier are part of the history of the movie inventory, possibly with other customers
         List<RentedCopy> copiesToReturn = rentedCopyService
-            .findByMovieInventoryIdIn(new HashSet<>(returnRentedMoviesDTO.getMovieInventoryIds()));
-
-        validateReturnedMoviesWithCustomer(customer, copiesToReturn);
-
-        copiesToReturn = copiesToReturn.stream()
+            .findByMovieInventoryIdIn(new HashSet<>(returnRentedMoviesDTO.getMovieInventoryIds()))
+            .stream()
             .filter(copy -> copy.getReturnDate() == null)
             .collect(Collectors.toList());
 
@@ -227,41 +286,14 @@ public class RentalOrderService {
                 ORDER_RENTAL_SERVICE, "customernotvalid");
         }
 
-        Set<Long> rentalOrderIds =
-            copiesToReturn.stream().map(copy -> copy.getOrder().getId()).collect(Collectors.toSet());
-
-        List<RentalOrder> rentalOrders = rentalOrderRepository.findByIdIn(rentalOrderIds);
-
-        // Customer may return movies that belong to different orders at once so we need to
-        // accumulate the total surcharges to pay across all orders;
-        BigDecimal totalSurchargesAmountToPay = new BigDecimal("0") ;
-
-
-        for(RentedCopy copy:copiesToReturn) {
-            copy.setReturnDate(Instant.now());
-            long actualRentDurationInDays = Duration.between(copy.getRentDate(), copy.getReturnDate()).toDays();
-
-            BigDecimal surcharges = copy.getMovieInventory().getMovie().getType()
-                .calculateSurchargesOnMovieReturn(copy.getPlannedRentDuration(), (int) actualRentDurationInDays);
-            copy.setExtraChargedDays(surcharges
-                .divide(copy.getMovieInventory().getMovie().getType().getPrice()).intValue());
-
-            rentalOrders = rentalOrders.stream()
-                .map(rentalOrder -> {
-                    if(rentalOrder.getId() == copy.getOrder().getId()){
-                        rentalOrder.setLateChargedAmount(copy.getOrder().getLateChargedAmount().add(surcharges));
-                        rentalOrder.setTotalAmount(copy.getOrder().getTotalAmount()
-                            .add(surcharges));
-                        rentalOrder.setLastUpdatedAt(Instant.now());
-                    }
-                    return rentalOrder;
-                }).collect(Collectors.toList());
-
-
-            totalSurchargesAmountToPay = totalSurchargesAmountToPay.add(surcharges);
-
-        }
+        validateReturnedMoviesWithCustomer(customer, copiesToReturn);
 
+        // Customer may return movies that belong to different orders at once so we accumulate
+        // the surcharges of each order first and apply them to the orders once
+        Map<Long, Long> surchargesByOrderId = chargeReturnedCopies(copiesToReturn, tariffEngine.current(), returnDate);
+        List<RentalOrder> rentalOrders = rentalOrderRepository.findWithRentedCopiesByIdIn(surchargesByOrderId.keySet());
+        BigDecimal totalSurchargesAmountToPay =
+            MovieTariff.toAmount(settleRentalOrders(rentalOrders, surchargesByOrderId, returnDate));
 
         if(!customerService.isCustomerAbleToPay(customer, totalSurchargesAmountToPay) ){
             throw new BadRequestAlertException("Order will not be created because customer " +
@@ -272,82 +304,174 @@ public class RentalOrderService {
             customer.setCreditAmount(customer.getCreditAmount().subtract(totalSurchargesAmountToPay));
         }
 
-
-        moviesToReturn = moviesToReturn.stream().map(movieInventory -> {
-            movieInventory.setStatus(RentalStatus.AVAILABLE);
-            movieInventory.setLastUpdatedAt(Instant.now());
-            return movieInventory;
-        }).collect(Collectors.toList());
-
-
-        movieInventoryService.saveAll(moviesToReturn);
         log.info("Movies are updated to be available for rent {}", moviesToReturn);
+
+        // every entity is saved once: the updates are flushed on commit in JDBC batches of
+        // hibernate.jdbc.batch_size, ordered by table
         rentedCopyService.saveAll(copiesToReturn);
         log.info("Customer rental history has bean updated {}", copiesToReturn);
 
-        List<RentalOrder> updatedRentalOrderList = rentalOrderRepository.saveAll(new ArrayList<>(rentalOrders));
-        rentalOrderSearchRepository.saveAll(updatedRentalOrderList);
+        List<RentalOrder> updatedRentalOrderList = rentalOrderRepository.saveAll(rentalOrders);
+        searchIndexOutbox.indexAll(updatedRentalOrderList);
 
+        log.info("Movie rental copies has been returned and all orders and customer {} balance has been updated", customer);
 
-        //we will need to get all related rented movie copies to the specific order to check if they are all returned
-        // so that we could update order status to completed
+        return rentalOrderMapper.toDto(updatedRentalOrderList);
 
-        updatedRentalOrderList = updatedRentalOrderList.stream().map(order -> {
-            if(order.getRentedCopies().stream().allMatch(copy -> copy.getReturnDate() != null)){
-                order.setStatus(OrderStatus.COMPLETED);
-                order = rentalOrderRepository.save(order);
-                rentalOrderSearchRepository.save(order);
-            }
-            return order;
-        }).collect(Collectors.toList());
+    }
 
-        log.info("Movie rental copies has been returned and all orders and customer {} balance has been updated", customer);
 
-        return rentalOrderMapper.toDto(updatedRentalOrderList);
 
+    /**
+     * Build the rented copies of a new order and price them in a single pass over the requested copies.
+     * <p>
+     * The order total (in minor currency units) and the bonus points are accumulated locally and written back
+     * once at the end. The movie inventories are left untouched, they are rented with a single update.
+     *
+     * @param order the order the copies belong to.
+     * @param bonusHistory the bonus points earned by the order.
+     * @param requestedCopies planned rent duration in days by movie inventory id.
+     * @param moviesToRent the movie inventories by id, one for each requested copy.
+     * @param tariffs the tariffs to price the copies with.
+     * @return the rented copies, not yet persisted.
+     */
+    static List<RentedCopy> assembleRentedCopies(RentalOrder order, BonusHistory bonusHistory,
+                                                 Map<Long, Integer> requestedCopies,
+                                                 Map<Long, MovieInventory> moviesToRent,
+                                                 TariffSnapshot tariffs) {
+        List<RentedCopy> movieCopies = new ArrayList<>(requestedCopies.size());
+        long totalAmountInMinorUnits = 0;
+        long bonusPoints = bonusHistory.getPoints();
+
+        for (Map.Entry<Long, Integer> requestedCopy : requestedCopies.entrySet()) {
+            MovieInventory movieInventory = moviesToRent.get(requestedCopy.getKey());
+            MovieTariff tariff = tariffs.forType(movieInventory.getMovie().getType());
+            Integer plannedRentDuration = requestedCopy.getValue();
+
+            movieCopies.add(
+                RentedCopy.builder()
+                    .movieInventory(movieInventory)
+                    .plannedRentDuration(plannedRentDuration)
+                    .order(order)
+                    .build());
+
+            totalAmountInMinorUnits += tariff.calculateMoviePriceOnRentalInMinorUnits(plannedRentDuration);
+            bonusPoints += tariff.getBonusPoints();
+        }
+
+        order.setTotalAmount(order.getTotalAmount().add(MovieTariff.toAmount(totalAmountInMinorUnits)));
+        bonusHistory.setPoints(bonusPoints);
+        return movieCopies;
     }
 
 
+    /**
+     * Mark the copies as returned and charge their late days, in a single pass over the returned copies.
+     *
+     * @param copiesToReturn the rented copies being returned.
+     * @param tariffs the tariffs to charge the late days with.
+     * @param returnDate the date the copies are returned on.
+     * @return the surcharges in minor currency units by rental order id, with an entry for every order
+     * a returned copy belongs to.
+     */
+    static Map<Long, Long> chargeReturnedCopies(List<RentedCopy> copiesToReturn, TariffSnapshot tariffs,
+                                                Instant returnDate) {
+        Map<Long, Long> surchargesByOrderId = new LinkedHashMap<>();
 
-    private List<MovieInventory> validateAndGetMovieInventoryList(CreateRentalOrderDTO createRentalOrderDTO) {
+        for (RentedCopy copy : copiesToReturn) {
+            MovieTariff tariff = tariffs.forType(copy.getMovieInventory().getMovie().getType());
+            int plannedRentDuration = copy.getPlannedRentDuration();
+            int actualRentDuration = (int) Duration.between(copy.getRentDate(), returnDate).toDays();
 
-        Set<Long> inventoryIds = createRentalOrderDTO.getOrder().keySet();
-        List<MovieInventory> moviesToRent = movieInventoryService.findByIdIn(inventoryIds);
+            copy.setReturnDate(returnDate);
+            copy.setExtraChargedDays(tariff.calculateSurchargedDaysOnMovieReturn(plannedRentDuration, actualRentDuration));
+
+            surchargesByOrderId.merge(copy.getOrder().getId(),
+                tariff.calculateSurchargesOnMovieReturnInMinorUnits(plannedRentDuration, actualRentDuration), Long::sum);
+        }
+
+        return surchargesByOrderId;
+    }
+
+    /**
+     * Apply the surcharges of the returned copies to their rental orders, and complete the orders whose copies
+     * have all been returned.
+     *
+     * @param rentalOrders the rental orders the returned copies belong to.
+     * @param surchargesByOrderId the surcharges in minor currency units by rental order id.
+     * @param returnDate the date the copies are returned on.
+     * @return the surcharges of all the orders in minor currency units.
+     */
+    static long settleRentalOrders(List<RentalOrder> rentalOrders, Map<Long, Long> surchargesByOrderId,
+                                   Instant returnDate) {
+        long totalSurchargesInMinorUnits = 0;
+
+        for (RentalOrder rentalOrder : rentalOrders) {
+            long surchargesInMinorUnits = surchargesByOrderId.getOrDefault(rentalOrder.getId(), 0L);
+            BigDecimal surcharges = MovieTariff.toAmount(surchargesInMinorUnits);
+
+            rentalOrder.setLateChargedAmount(rentalOrder.getLateChargedAmount().add(surcharges));
+            rentalOrder.setTotalAmount(rentalOrder.getTotalAmount().add(surcharges));
+            rentalOrder.setLastUpdatedAt(returnDate);
+            if (rentalOrder.getRentedCopies().stream().allMatch(copy -> copy.getReturnDate() != null)) {
+                rentalOrder.setStatus(OrderStatus.COMPLETED);
+            }
+            totalSurchargesInMinorUnits += surchargesInMinorUnits;
+        }
+
+        return totalSurchargesInMinorUnits;
+    }
 
-        moviesToRent = moviesToRent.stream()
-            .filter(m -> m.getStatus() == RentalStatus.AVAILABLE)
-            .collect(Collectors.toList());
 
-        if(inventoryIds.size() != moviesToRent.size()){
+    private Map<Long, MovieInventory> rentMovieInventories(CreateRentalOrderDTO createRentalOrderDTO, Instant rentDate) {
+
+        Set<Long> inventoryIds = createRentalOrderDTO.getOrder().keySet();
+
+        List<MovieInventory> rented =
+            movieInventoryService.updateStatus(inventoryIds, RentalStatus.AVAILABLE, RentalStatus.RENTED, rentDate);
+        if(rented.size() != inventoryIds.size()){
             throw new BadRequestAlertException("Some of the provided movie ids {} are not valid or already rented, " +
                 "the order will be canceled!",ORDER_RENTAL_SERVICE, "idsnotvalid");
         }
 
+        Map<Long, MovieInventory> moviesToRent = new HashMap<>();
+        for (MovieInventory movieInventory : rented) {
+            moviesToRent.put(movieInventory.getId(), movieInventory);
+        }
         return moviesToRent;
     }
 
 
-    private List<MovieInventory> validateAndGetMoviesToReturn(ReturnRentedMovieDTO returnRentedMoviesDTO) {
+    private Set<Long> returnMovieInventories(ReturnRentedMovieDTO returnRentedMoviesDTO, Instant returnDate) {
 
         Set<Long> inventoryIds = new HashSet<>(returnRentedMoviesDTO.getMovieInventoryIds());
-        List<MovieInventory> moviesToReturn = movieInventoryService.findByIdIn(inventoryIds);
-
-        moviesToReturn = moviesToReturn.stream()
-            .filter(m -> m.getStatus() == RentalStatus.RENTED)
-            .collect(Collectors.toList());
 
-        if(inventoryIds.size() != moviesToReturn.size()){
+        List<MovieInventory> returned =
+            movieInventoryService.updateStatus(inventoryIds, RentalStatus.RENTED, RentalStatus.AVAILABLE, returnDate);
+        if(returned.size() != inventoryIds.size()){
             throw new BadRequestAlertException("Some of the provided movie ids {} are not valid or available for rent, " +
                 "the return movie action will be canceled!",ORDER_RENTAL_SERVICE, "idsnotvalid");
         }
 
-        return moviesToReturn;
+        return inventoryIds;
     }
 
 
+    private Customer findCustomer(User user){
+        log.debug("Find the customer attached to specific user");
+        return customerService.findOneInternal(user.getId())
+            .orElseThrow(() -> new BadRequestAlertException("Customer with this id does not exists!",
+                ORDER_RENTAL_SERVICE, "customernotvalid"));
+    }
+
+
+    /**
+     * Look for the customer attached to a user, to settle its rental orders. The orders are not versioned,
+     * so the version of the customer is incremented instead to serialize concurrent settlements.
+     */
     private Customer lookForCustomer(User user){
         log.debug("Look for the customer attached to specific user");
-        Optional<Customer> customerOpt = customerService.findOneInternal(user.getId());
+        Optional<Customer> customerOpt = customerService.findOneInternalForUpdate(user.getId());
         if(!customerOpt.isPresent()){
             throw new BadRequestAlertException("Customer with this id does not exists!",
                 ORDER_RENTAL_SERVICE, "customernotvalid");
@@ -359,7 +483,7 @@ public class RentalOrderService {
 
     private boolean validateReturnedMoviesWithCustomer(Customer customer, List<RentedCopy> copies){
 
-            if(!copies.stream().allMatch(copy -> copy.getOrder().getCustomer().getId() == customer.getId()))   {
+            if(!copies.stream().allMatch(copy -> Objects.equals(copy.getOrder().getCustomer().getId(), customer.getId())))   {
                 throw new BadRequestAlertException("Some of the returned movies does not belong to the specific customer",
                     ORDER_RENTAL_SERVICE, "customernotvalid");
             }
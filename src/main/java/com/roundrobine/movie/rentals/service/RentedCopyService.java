@@ -4,8 +4,12 @@ import com.roundrobine.movie.rentals.domain.MovieInventory;
 import com.roundrobine.movie.rentals.domain.RentedCopy;
 import com.roundrobine.movie.rentals.repository.RentedCopyRepository;
 import com.roundrobine.movie.rentals.repository.search.RentedCopySearchRepository;
+import com.roundrobine.movie.rentals.repository.Keyset;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
 import com.roundrobine.movie.rentals.service.dto.RentedCopyDTO;
+import com.roundrobine.movie.rentals.service.dto.RentedCopyLineDTO;
 import com.roundrobine.movie.rentals.service.mapper.RentedCopyMapper;
+import com.roundrobine.movie.rentals.service.search.SearchIndexOutbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,9 +18,15 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.elasticsearch.index.query.QueryBuilders.*;
 
@@ -35,11 +45,18 @@ public class RentedCopyService {
 
     private final RentedCopySearchRepository rentedCopySearchRepository;
 
+    private final SearchIndexOutbox searchIndexOutbox;
+
+    private final EntityManager entityManager;
+
     public RentedCopyService(RentedCopyRepository rentedCopyRepository, RentedCopyMapper rentedCopyMapper,
-                             RentedCopySearchRepository rentedCopySearchRepository) {
+                             RentedCopySearchRepository rentedCopySearchRepository,
+                             SearchIndexOutbox searchIndexOutbox, EntityManager entityManager) {
         this.rentedCopyRepository = rentedCopyRepository;
         this.rentedCopyMapper = rentedCopyMapper;
         this.rentedCopySearchRepository = rentedCopySearchRepository;
+        this.searchIndexOutbox = searchIndexOutbox;
+        this.entityManager = entityManager;
     }
 
     /**
@@ -53,7 +70,7 @@ public class RentedCopyService {
         RentedCopy rentedCopy = rentedCopyMapper.toEntity(rentedCopyDTO);
         rentedCopy = rentedCopyRepository.save(rentedCopy);
         RentedCopyDTO result = rentedCopyMapper.toDto(rentedCopy);
-        rentedCopySearchRepository.save(rentedCopy);
+        searchIndexOutbox.index(rentedCopy);
         return result;
     }
 
@@ -67,7 +84,7 @@ public class RentedCopyService {
     public RentedCopy save(RentedCopy rentedCopy) {
         log.debug("Request to save RentedCopy from internal call: {}", rentedCopy);
         rentedCopy = rentedCopyRepository.save(rentedCopy);
-        rentedCopySearchRepository.save(rentedCopy);
+        searchIndexOutbox.index(rentedCopy);
         return rentedCopy;
     }
 
@@ -82,23 +99,54 @@ public class RentedCopyService {
     public List<RentedCopy> saveAll(List<RentedCopy> rentedCopyList) {
         log.debug("Request to save a list of RentedCopies: {}", rentedCopyList);
         rentedCopyList = rentedCopyRepository.saveAll(rentedCopyList);
-        rentedCopySearchRepository.saveAll(rentedCopyList);
+        searchIndexOutbox.indexAll(rentedCopyList);
         return rentedCopyList;
     }
 
     /**
-     * Get all the rentedCopies.
+     * Get a page of the rentedCopies, after a keyset.
      *
-     * @param pageable the pagination information.
-     * @return the list of entities.
+     * @param keyset the keyset the page starts after.
+     * @param size the maximum number of rentedCopies of the page.
+     * @return the page of entities, with the keyset of the next page if there is one.
      */
     @Transactional(readOnly = true)
-    public Page<RentedCopyDTO> findAll(Pageable pageable) {
-        log.debug("Request to get all RentedCopies");
-        return rentedCopyRepository.findAll(pageable)
+    public KeysetSlice<RentedCopyDTO> findAll(Keyset keyset, int size) {
+        log.debug("Request to get a page of RentedCopies after {}", keyset);
+        KeysetSlice<Long> ids = rentedCopyRepository.findAllIds(keyset, size);
+        return ids.join(rentedCopyRepository.findWithAssociationsByIdIn(ids.getContent()), RentedCopy::getId)
             .map(rentedCopyMapper::toDto);
     }
 
+    /**
+     * Count the rentedCopies.
+     *
+     * @return the number of entities.
+     */
+    @Transactional(readOnly = true)
+    public long count() {
+        log.debug("Request to count RentedCopies");
+        return rentedCopyRepository.count();
+    }
+
+    /**
+     * Export the rentedCopies rented in a time range, in id order, in constant memory.
+     * The range includes its start and excludes its end, and unbounded ends default to the epoch and now.
+     *
+     * @param rentedFrom the start of the rent date range, or {@code null}.
+     * @param rentedTo the end of the rent date range, or {@code null}.
+     * @param consumer the consumer each exported rentedCopy is handed to, in turn.
+     * @return the number of exported rentedCopies.
+     */
+    @Transactional(readOnly = true)
+    public long export(Instant rentedFrom, Instant rentedTo, Consumer<? super RentedCopyDTO> consumer) {
+        log.debug("Request to export RentedCopies rented in [{}, {})", rentedFrom, rentedTo);
+        try (Stream<RentedCopy> rentedCopies = rentedCopyRepository.streamForExport(
+            EntityExports.from(rentedFrom), EntityExports.to(rentedTo))) {
+            return EntityExports.export(rentedCopies, entityManager, rentedCopyMapper::toDto, consumer);
+        }
+    }
+
 
     /**
      * Get one rentedCopy by id.
@@ -109,7 +157,8 @@ public class RentedCopyService {
     @Transactional(readOnly = true)
     public Optional<RentedCopyDTO> findOne(Long id) {
         log.debug("Request to get RentedCopy : {}", id);
-        return rentedCopyRepository.findById(id)
+        return rentedCopyRepository.findWithAssociationsByIdIn(Collections.singleton(id)).stream()
+            .findFirst()
             .map(rentedCopyMapper::toDto);
     }
 
@@ -126,6 +175,18 @@ public class RentedCopyService {
         return rentedCopyRepository.findByMovieInventoryIdIn(ids);
     }
 
+    /**
+     * Get flat projections of the rentedCopies of rental orders.
+     *
+     * @param orderIds the ids of the rental orders.
+     * @return the list of projections, in id order.
+     */
+    @Transactional(readOnly = true)
+    public List<RentedCopyLineDTO> findLinesByOrderIdIn(Collection<Long> orderIds) {
+        log.debug("Request to get the RentedCopy lines of RentalOrders : {}", orderIds);
+        return rentedCopyRepository.findLinesByOrderIdIn(orderIds);
+    }
+
 
     /**
      * Get one rentedCopy by id.
@@ -148,7 +209,7 @@ public class RentedCopyService {
     public void delete(Long id) {
         log.debug("Request to delete RentedCopy : {}", id);
         rentedCopyRepository.deleteById(id);
-        rentedCopySearchRepository.deleteById(id);
+        searchIndexOutbox.delete(RentedCopy.class, id);
     }
 
     /**
@@ -7,11 +7,10 @@ import com.roundrobine.movie.rentals.domain.User;
 import com.roundrobine.movie.rentals.repository.AuthorityRepository;
 import com.roundrobine.movie.rentals.repository.CustomerRepository;
 import com.roundrobine.movie.rentals.repository.UserRepository;
-import com.roundrobine.movie.rentals.repository.search.CustomerSearchRepository;
-import com.roundrobine.movie.rentals.repository.search.UserSearchRepository;
 import com.roundrobine.movie.rentals.security.AuthoritiesConstants;
 import com.roundrobine.movie.rentals.security.SecurityUtils;
 import com.roundrobine.movie.rentals.service.dto.UserDTO;
+import com.roundrobine.movie.rentals.service.search.SearchIndexOutbox;
 
 import io.github.jhipster.security.RandomUtil;
 
@@ -43,29 +42,25 @@ public class UserService {
 
     private final PasswordEncoder passwordEncoder;
 
-    private final UserSearchRepository userSearchRepository;
-
     private final AuthorityRepository authorityRepository;
 
     private final CacheManager cacheManager;
 
     private final CustomerRepository customerRepository;
 
-    private final CustomerSearchRepository customerSearchRepository;
+    private final SearchIndexOutbox searchIndexOutbox;
 
     private final String DEFAULT_PASSWORD = "passpass";
 
     public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
-                       UserSearchRepository userSearchRepository, AuthorityRepository authorityRepository,
-                       CacheManager cacheManager, CustomerRepository customerRepository,
-                       CustomerSearchRepository customerSearchRepository) {
+                       AuthorityRepository authorityRepository, CacheManager cacheManager,
+                       CustomerRepository customerRepository, SearchIndexOutbox searchIndexOutbox) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
-        this.userSearchRepository = userSearchRepository;
         this.authorityRepository = authorityRepository;
         this.cacheManager = cacheManager;
         this.customerRepository = customerRepository;
-        this.customerSearchRepository = customerSearchRepository;
+        this.searchIndexOutbox = searchIndexOutbox;
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -75,7 +70,7 @@ public class UserService {
                 // activate given user for the registration key.
                 user.setActivated(true);
                 user.setActivationKey(null);
-                userSearchRepository.save(user);
+                searchIndexOutbox.index(user);
                 this.clearUserCaches(user);
                 log.debug("Activated user: {}", user);
                 return user;
@@ -140,7 +135,7 @@ public class UserService {
         authorityRepository.findById(AuthoritiesConstants.USER).ifPresent(authorities::add);
         newUser.setAuthorities(authorities);
         userRepository.save(newUser);
-        userSearchRepository.save(newUser);
+        searchIndexOutbox.index(newUser);
         this.clearUserCaches(newUser);
         log.debug("Created Information for User: {}", newUser);
 
@@ -148,7 +143,7 @@ public class UserService {
         Customer newUserExtra = new Customer();
         newUserExtra.setUser(newUser);
         customerRepository.save(newUserExtra);
-        customerSearchRepository.save(newUserExtra);
+        searchIndexOutbox.index(newUserExtra);
         log.debug("Created Information for Customer: {}", newUserExtra);
         return newUser;
     }
@@ -158,7 +153,7 @@ public class UserService {
         if (existingUser.isActivated()) {
             return false;
         }
-        customerRepository.delete(Customer.builder().id(existingUser.getId()).build());
+        customerRepository.findById(existingUser.getId()).ifPresent(customerRepository::delete);
         userRepository.delete(existingUser);
         userRepository.flush();
         this.clearUserCaches(existingUser);
@@ -194,13 +189,13 @@ public class UserService {
             user.setAuthorities(authorities);
         }
         userRepository.save(user);
-        userSearchRepository.save(user);
+        searchIndexOutbox.index(user);
 
         // Create and save the extra customer data entity
         Customer newUserExtra = new Customer();
         newUserExtra.setUser(user);
         customerRepository.save(newUserExtra);
-        customerSearchRepository.save(newUserExtra);
+        searchIndexOutbox.index(newUserExtra);
         log.debug("Created Information for Customer: {}", newUserExtra);
         this.clearUserCaches(user);
         log.debug("Created Information for User: {}", user);
@@ -236,7 +231,7 @@ public class UserService {
                     .filter(Optional::isPresent)
                     .map(Optional::get)
                     .forEach(managedAuthorities::add);
-                userSearchRepository.save(user);
+                searchIndexOutbox.index(user);
                 this.clearUserCaches(user);
                 log.debug("Changed Information for User: {}", user);
                 return user;
@@ -247,10 +242,10 @@ public class UserService {
     @Transactional
     public void deleteUser(String login) {
         userRepository.findOneByLogin(login).ifPresent(user -> {
-            customerRepository.delete(Customer.builder().id(user.getId()).build());
-            customerSearchRepository.delete(Customer.builder().id(user.getId()).build());
+            customerRepository.findById(user.getId()).ifPresent(customerRepository::delete);
+            searchIndexOutbox.delete(Customer.class, user.getId());
             userRepository.delete(user);
-            userSearchRepository.delete(user);
+            searchIndexOutbox.delete(User.class, user.getId());
             this.clearUserCaches(user);
             log.debug("Deleted User with his customer information: {}", user);
         });
@@ -276,7 +271,7 @@ public class UserService {
                 }
                 user.setLangKey(langKey);
                 user.setImageUrl(imageUrl);
-                userSearchRepository.save(user);
+                searchIndexOutbox.index(user);
                 this.clearUserCaches(user);
                 log.debug("Changed Information for User: {}", user);
             });
@@ -326,8 +321,9 @@ public class UserService {
             .forEach(user -> {
                 log.debug("Deleting not activated user {}", user.getLogin());
                 userRepository.delete(user);
-                userSearchRepository.delete(user);
-                customerRepository.delete(Customer.builder().id(user.getId()).build());
+                searchIndexOutbox.delete(User.class, user.getId());
+                customerRepository.findById(user.getId()).ifPresent(customerRepository::delete);
+                searchIndexOutbox.delete(Customer.class, user.getId());
                 this.clearUserCaches(user);
             });
     }
@@ -25,5 +25,6 @@ public class CustomerDTO implements Serializable {
     private BigDecimal creditAmount;
     private Currency currency;
     private User user;
+    private Long version;
 
 }
@@ -0,0 +1,25 @@
+package com.roundrobine.movie.rentals.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * The number of available and rented copies of a {@link com.roundrobine.movie.rentals.domain.Movie}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MovieAvailabilityDTO implements Serializable {
+
+    private Long movieId;
+
+    private long available;
+
+    private long rented;
+
+}
@@ -34,4 +34,6 @@ public class MovieInventoryDTO implements Serializable {
     @NotNull
     private Movie movie;
 
+    private Long version;
+
 }
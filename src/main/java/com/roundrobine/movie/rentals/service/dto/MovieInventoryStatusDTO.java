@@ -0,0 +1,29 @@
+package com.roundrobine.movie.rentals.service.dto;
+
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * A flat projection of a {@link com.roundrobine.movie.rentals.domain.MovieInventory}, with the id of its movie,
+ * its status and its version only.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MovieInventoryStatusDTO implements Serializable {
+
+    private Long id;
+
+    private Long movieId;
+
+    private RentalStatus status;
+
+    private Long version;
+
+}
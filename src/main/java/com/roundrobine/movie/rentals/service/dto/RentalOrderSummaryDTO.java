@@ -0,0 +1,53 @@
+package com.roundrobine.movie.rentals.service.dto;
+
+import com.roundrobine.movie.rentals.domain.enumeration.Currency;
+import com.roundrobine.movie.rentals.domain.enumeration.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A flat projection of a {@link com.roundrobine.movie.rentals.domain.RentalOrder}, with the id of its customer and
+ * the lines of its rented copies instead of the entities.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class RentalOrderSummaryDTO implements Serializable {
+
+    private Long id;
+
+    private BigDecimal lateChargedAmount;
+
+    private BigDecimal totalAmount;
+
+    private Currency currency;
+
+    private OrderStatus status;
+
+    private Instant lastUpdatedAt;
+
+    private Instant createdAt;
+
+    private Long customerId;
+
+    @Builder.Default
+    private List<RentedCopyLineDTO> rentedCopies = new ArrayList<>();
+
+    /**
+     * Constructor of the JPQL projection, the rented copies being read by another query.
+     */
+    public RentalOrderSummaryDTO(Long id, BigDecimal lateChargedAmount, BigDecimal totalAmount, Currency currency,
+                                 OrderStatus status, Instant lastUpdatedAt, Instant createdAt, Long customerId) {
+        this(id, lateChargedAmount, totalAmount, currency, status, lastUpdatedAt, createdAt, customerId, new ArrayList<>());
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.roundrobine.movie.rentals.service.dto;
+
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A flat projection of a {@link com.roundrobine.movie.rentals.domain.RentedCopy}, with the ids of its order and
+ * movie inventory and the title and type of its movie, read in the same query as the copy.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class RentedCopyLineDTO implements Serializable {
+
+    private Long id;
+
+    private Instant rentDate;
+
+    private Integer plannedRentDuration;
+
+    private Integer extraChargedDays;
+
+    private Instant returnDate;
+
+    private Long orderId;
+
+    private Long movieInventoryId;
+
+    private Long movieId;
+
+    private String movieTitle;
+
+    private MovieType movieType;
+
+}
@@ -0,0 +1,32 @@
+package com.roundrobine.movie.rentals.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A DTO for the progress of the full reindex of one search index.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class SearchReindexProgressDTO implements Serializable {
+
+    private String indexName;
+
+    private String targetIndex;
+
+    private long indexedRows;
+
+    private double rowsPerSecond;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+}
@@ -0,0 +1,46 @@
+package com.roundrobine.movie.rentals.service.dto;
+
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+import com.roundrobine.movie.rentals.service.tariff.MovieTariff;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * A DTO for the {@link MovieTariff} of one {@link MovieType}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TariffDTO implements Serializable {
+
+    @NotNull
+    private MovieType movieType;
+
+    @NotNull
+    @DecimalMin(value = "0.01")
+    private BigDecimal price;
+
+    @NotNull
+    @Min(value = 1)
+    private Integer includedRentalDays;
+
+    @NotNull
+    @Min(value = 0)
+    private Integer bonusPoints;
+
+    public TariffDTO(MovieTariff movieTariff) {
+        this.movieType = movieTariff.getMovieType();
+        this.price = movieTariff.getPrice();
+        this.includedRentalDays = movieTariff.getIncludedRentalDays();
+        this.bonusPoints = movieTariff.getBonusPoints();
+    }
+}
@@ -0,0 +1,387 @@
+package com.roundrobine.movie.rentals.service.search;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.EntityMapper;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.data.mapping.MappingException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes documents to Elasticsearch in {@code _bulk} requests.
+ * <p>
+ * Writes are queued and flushed by a single background thread, in batches of at most
+ * {@code application.search-bulk.max-batch-size} documents and at least every
+ * {@code application.search-bulk.flush-interval-ms}. A document written again before it is flushed is
+ * coalesced with the queued write, so only its last version is sent. Once
+ * {@code application.search-bulk.max-queue-depth} documents are queued, writers block until a flush makes room,
+ * except the writers that must not block, which go over the depth instead.
+ * <p>
+ * Documents are serialized when they are written, in the calling thread, and each write returns a future that
+ * completes when its batch is written, or fails with the error of the batch.
+ * <p>
+ * A document written with a version uses it as its Elasticsearch external version, so a write that arrives after
+ * a newer version of the same document is rejected by Elasticsearch. Such a write is already superseded and
+ * completes normally.
+ */
+@Service
+public class BulkIndexingService {
+
+    private static final String VERSION_CONFLICT = "version_conflict_engine_exception";
+
+    private final Logger log = LoggerFactory.getLogger(BulkIndexingService.class);
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    private final EntityMapper entityMapper;
+
+    private final int maxBatchSize;
+
+    private final int maxQueueDepth;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notFull = lock.newCondition();
+
+    private final Map<String, PendingWrite> pending = new LinkedHashMap<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-bulk-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Timer flushTimer;
+
+    private final DistributionSummary batchSizeSummary;
+
+    private final Counter coalescedWrites;
+
+    private final Counter staleWrites;
+
+    public BulkIndexingService(ElasticsearchOperations elasticsearchOperations, EntityMapper entityMapper,
+                               ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.entityMapper = entityMapper;
+        ApplicationProperties.SearchBulk searchBulk = applicationProperties.getSearchBulk();
+        this.maxBatchSize = searchBulk.getMaxBatchSize();
+        this.maxQueueDepth = Math.max(searchBulk.getMaxQueueDepth(), maxBatchSize);
+
+        this.flushTimer = Timer.builder("search.bulk.flush")
+            .description("Time taken to write a batch of documents to Elasticsearch")
+            .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("search.bulk.batch.size")
+            .description("Number of documents written to Elasticsearch per batch")
+            .register(meterRegistry);
+        this.coalescedWrites = Counter.builder("search.bulk.coalesced")
+            .description("Document writes coalesced with a write waiting to be flushed")
+            .register(meterRegistry);
+        this.staleWrites = Counter.builder("search.bulk.stale")
+            .description("Document writes rejected because a newer version was already indexed")
+            .register(meterRegistry);
+        Gauge.builder("search.bulk.queue.depth", this, BulkIndexingService::getQueueDepth)
+            .description("Number of documents waiting to be written to Elasticsearch")
+            .register(meterRegistry);
+
+        long flushIntervalMs = searchBulk.getFlushIntervalMs();
+        flusher.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Index a document.
+     *
+     * @param documentType the document class, which gives the index to write to.
+     * @param id the id of the document.
+     * @param document the document.
+     * @return a future completed when the document is written.
+     */
+    public CompletableFuture<Void> index(Class<?> documentType, String id, Object document) {
+        return index(documentType, id, document, null);
+    }
+
+    /**
+     * Index a version of a document.
+     *
+     * @param documentType the document class, which gives the index to write to.
+     * @param id the id of the document.
+     * @param document the document.
+     * @param version the version of the document, or {@code null} to let Elasticsearch version it.
+     * @return a future completed when the document is written, or found older than the indexed one.
+     */
+    public CompletableFuture<Void> index(Class<?> documentType, String id, Object document, Long version) {
+        return index(documentType, elasticsearchOperations.getPersistentEntityFor(documentType).getIndexName(), id,
+            toSource(document), version);
+    }
+
+    /**
+     * Index a document already serialized, into a given index.
+     *
+     * @param documentType the document class, which gives the type of the document.
+     * @param indexName the index, or alias, to write to.
+     * @param id the id of the document.
+     * @param source the document as JSON.
+     * @param version the version of the document, or {@code null} to let Elasticsearch version it.
+     * @return a future completed when the document is written, or found older than the indexed one.
+     */
+    public CompletableFuture<Void> index(Class<?> documentType, String indexName, String id, String source,
+                                         Long version) {
+        return enqueue(new PendingWrite(documentType, indexName, id, indexQuery(documentType, indexName, id, source,
+            version)), true);
+    }
+
+    /**
+     * Index a document already serialized, into a given index, without waiting for room in the queue.
+     * <p>
+     * For writers holding a lock other writers wait for, which would stall them all while the queue is full. The
+     * queue goes over {@code application.search-bulk.max-queue-depth} by the documents written this way, so the
+     * writer should wait for their futures once it has released its lock.
+     *
+     * @param documentType the document class, which gives the type of the document.
+     * @param indexName the index, or alias, to write to.
+     * @param id the id of the document.
+     * @param source the document as JSON.
+     * @param version the version of the document, or {@code null} to let Elasticsearch version it.
+     * @return a future completed when the document is written, or found older than the indexed one.
+     */
+    public CompletableFuture<Void> indexWithoutWaiting(Class<?> documentType, String indexName, String id,
+                                                       String source, Long version) {
+        return enqueue(new PendingWrite(documentType, indexName, id, indexQuery(documentType, indexName, id, source,
+            version)), false);
+    }
+
+    /**
+     * Remove a document.
+     *
+     * @param documentType the document class, which gives the index to remove from.
+     * @param id the id of the document.
+     * @return a future completed when the document is removed.
+     */
+    public CompletableFuture<Void> delete(Class<?> documentType, String id) {
+        return delete(documentType, elasticsearchOperations.getPersistentEntityFor(documentType).getIndexName(), id);
+    }
+
+    /**
+     * Remove a document from a given index.
+     *
+     * @param documentType the document class, which gives the type of the document.
+     * @param indexName the index, or alias, to remove from.
+     * @param id the id of the document.
+     * @return a future completed when the document is removed.
+     */
+    public CompletableFuture<Void> delete(Class<?> documentType, String indexName, String id) {
+        return enqueue(new PendingWrite(documentType, indexName, id, null), true);
+    }
+
+    /**
+     * Remove a document from a given index, without waiting for room in the queue, see
+     * {@link #indexWithoutWaiting(Class, String, String, String, Long)}.
+     *
+     * @param documentType the document class, which gives the type of the document.
+     * @param indexName the index, or alias, to remove from.
+     * @param id the id of the document.
+     * @return a future completed when the document is removed.
+     */
+    public CompletableFuture<Void> deleteWithoutWaiting(Class<?> documentType, String indexName, String id) {
+        return enqueue(new PendingWrite(documentType, indexName, id, null), false);
+    }
+
+    /**
+     * Serialize a document the way it is written to Elasticsearch.
+     *
+     * @param document the document.
+     * @return the document as JSON.
+     */
+    public String toSource(Object document) {
+        try {
+            return entityMapper.mapToString(document);
+        } catch (IOException e) {
+            throw new MappingException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write all the queued documents now.
+     *
+     * @return a future completed when the queued documents are written.
+     */
+    public Future<?> flush() {
+        return flusher.submit(this::flushAll);
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.execute(this::flushAll);
+        flusher.shutdown();
+        if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("{} documents were not written to Elasticsearch before shutdown", getQueueDepth());
+        }
+    }
+
+    private IndexQuery indexQuery(Class<?> documentType, String indexName, String id, String source, Long version) {
+        return new IndexQueryBuilder()
+            .withIndexName(indexName)
+            .withType(elasticsearchOperations.getPersistentEntityFor(documentType).getIndexType())
+            .withId(id)
+            .withSource(source)
+            .withVersion(version)
+            .build();
+    }
+
+    private CompletableFuture<Void> enqueue(PendingWrite write, boolean waitForRoom) {
+        String key = write.indexName + '#' + write.id;
+        boolean batchFull;
+        lock.lock();
+        try {
+            PendingWrite queued = pending.get(key);
+            if (queued != null) {
+                if (!isOlder(write.indexQuery, queued.indexQuery)) {
+                    queued.indexQuery = write.indexQuery;
+                }
+                coalescedWrites.increment();
+                return queued.future;
+            }
+            while (waitForRoom && pending.size() >= maxQueueDepth) {
+                notFull.await();
+            }
+            pending.put(key, write);
+            batchFull = pending.size() == maxBatchSize;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to queue a document for Elasticsearch", e);
+        } finally {
+            lock.unlock();
+        }
+        if (batchFull) {
+            flusher.execute(this::flushFullBatches);
+        }
+        return write.future;
+    }
+
+    private void flushAll() {
+        List<PendingWrite> batch;
+        while (!(batch = takeBatch()).isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void flushFullBatches() {
+        while (getQueueDepth() >= maxBatchSize) {
+            write(takeBatch());
+        }
+    }
+
+    private List<PendingWrite> takeBatch() {
+        lock.lock();
+        try {
+            List<PendingWrite> batch = new ArrayList<>(Math.min(pending.size(), maxBatchSize));
+            Iterator<PendingWrite> queued = pending.values().iterator();
+            while (queued.hasNext() && batch.size() < maxBatchSize) {
+                batch.add(queued.next());
+                queued.remove();
+            }
+            notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(List<PendingWrite> batch) {
+        long start = System.nanoTime();
+        RuntimeException failure = null;
+        try {
+            List<IndexQuery> indexQueries = new ArrayList<>(batch.size());
+            for (PendingWrite write : batch) {
+                if (write.indexQuery != null) {
+                    indexQueries.add(write.indexQuery);
+                } else {
+                    elasticsearchOperations.delete(write.indexName,
+                        elasticsearchOperations.getPersistentEntityFor(write.documentType).getIndexType(), write.id);
+                }
+            }
+            if (!indexQueries.isEmpty()) {
+                bulkIndex(indexQueries);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to write {} documents to Elasticsearch: {}", batch.size(), e.getMessage());
+            failure = e;
+        }
+        // the batch is measured before its writers are released, so they see it in the metrics
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSizeSummary.record(batch.size());
+        for (PendingWrite write : batch) {
+            if (failure == null) {
+                write.future.complete(null);
+            } else {
+                write.future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void bulkIndex(List<IndexQuery> indexQueries) {
+        try {
+            elasticsearchOperations.bulkIndex(indexQueries);
+        } catch (ElasticsearchException e) {
+            Map<String, String> failedDocuments = e.getFailedDocuments();
+            if (failedDocuments == null || failedDocuments.isEmpty()
+                || !failedDocuments.values().stream().allMatch(error -> error.contains(VERSION_CONFLICT))) {
+                throw e;
+            }
+            staleWrites.increment(failedDocuments.size());
+            log.debug("Skipped {} documents older than their indexed version", failedDocuments.size());
+        }
+    }
+
+    /**
+     * @return whether the write is an older version of the document than the queued write.
+     */
+    private static boolean isOlder(IndexQuery write, IndexQuery queued) {
+        return write != null && queued != null && write.getVersion() != null && queued.getVersion() != null
+            && write.getVersion() < queued.getVersion();
+    }
+
+    private static final class PendingWrite {
+
+        private final Class<?> documentType;
+
+        private final String indexName;
+
+        private final String id;
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private IndexQuery indexQuery;
+
+        private PendingWrite(Class<?> documentType, String indexName, String id, IndexQuery indexQuery) {
+            this.documentType = documentType;
+            this.indexName = indexName;
+            this.id = id;
+            this.indexQuery = indexQuery;
+        }
+    }
+}
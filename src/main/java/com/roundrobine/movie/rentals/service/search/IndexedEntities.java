@@ -0,0 +1,49 @@
+package com.roundrobine.movie.rentals.service.search;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.data.elasticsearch.annotations.Document;
+
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.Metamodel;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The JPA entities that are also Elasticsearch documents.
+ */
+final class IndexedEntities {
+
+    private IndexedEntities() {
+    }
+
+    /**
+     * @param metamodel the JPA metamodel.
+     * @return the indexed entity classes by entity name, sorted by name.
+     */
+    static Map<String, Class<?>> byEntityName(Metamodel metamodel) {
+        Map<String, Class<?>> documentTypes = new TreeMap<>();
+        for (EntityType<?> entityType : metamodel.getEntities()) {
+            if (entityType.getJavaType().isAnnotationPresent(Document.class)) {
+                documentTypes.put(entityType.getName(), entityType.getJavaType());
+            }
+        }
+        return documentTypes;
+    }
+
+    /**
+     * @param session the session the entity belongs to.
+     * @param entity the entity.
+     * @return the {@code @Version} of the entity, used as the external version of its document, or {@code null}
+     * if the entity is not versioned.
+     */
+    static Long versionOf(Session session, Object entity) {
+        EntityPersister persister = ((SessionImplementor) session).getEntityPersister(null, entity);
+        if (!persister.isVersioned()) {
+            return null;
+        }
+        Object version = persister.getVersion(entity);
+        return version != null ? ((Number) version).longValue() : null;
+    }
+}
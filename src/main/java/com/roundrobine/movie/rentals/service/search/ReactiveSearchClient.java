@@ -0,0 +1,89 @@
+package com.roundrobine.movie.rentals.service.search;
+
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResultHandler;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchResult;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.EntityMapper;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Searches Elasticsearch without blocking the calling thread.
+ * <p>
+ * Requests are sent with the asynchronous API of the {@link JestClient}, whose I/O threads complete the returned
+ * publishers, and documents are read with the same {@link EntityMapper} the repositories write them with.
+ */
+@Component
+public class ReactiveSearchClient {
+
+    private final JestClient jestClient;
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    private final EntityMapper entityMapper;
+
+    public ReactiveSearchClient(JestClient jestClient, ElasticsearchOperations elasticsearchOperations,
+                                EntityMapper entityMapper) {
+        this.jestClient = jestClient;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.entityMapper = entityMapper;
+    }
+
+    /**
+     * Search for a page of documents.
+     *
+     * @param documentType the document class, which gives the index to search.
+     * @param query the query.
+     * @param pageable the pagination information.
+     * @param <T> the type of the documents.
+     * @return the documents of the page, in the order of the search.
+     */
+    public <T> Flux<T> search(Class<T> documentType, QueryBuilder query, Pageable pageable) {
+        SearchSourceBuilder source = new SearchSourceBuilder().query(query);
+        if (pageable.isPaged()) {
+            source.from((int) pageable.getOffset()).size(pageable.getPageSize());
+        }
+        pageable.getSort().forEach(order ->
+            source.sort(order.getProperty(), order.isAscending() ? SortOrder.ASC : SortOrder.DESC));
+        Search search = new Search.Builder(source.toString())
+            .addIndex(elasticsearchOperations.getPersistentEntityFor(documentType).getIndexName())
+            .build();
+
+        return Mono.<SearchResult>create(sink -> jestClient.executeAsync(search, new JestResultHandler<SearchResult>() {
+            @Override
+            public void completed(SearchResult result) {
+                if (result.isSucceeded()) {
+                    sink.success(result);
+                } else {
+                    sink.error(new IllegalStateException("Search of " + documentType.getSimpleName() +
+                        " failed: " + result.getErrorMessage()));
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                sink.error(e);
+            }
+        }))
+            .flatMapIterable(SearchResult::getSourceAsStringList)
+            .map(document -> read(document, documentType));
+    }
+
+    private <T> T read(String document, Class<T> documentType) {
+        try {
+            return entityMapper.mapToObject(document, documentType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.roundrobine.movie.rentals.service.search;
+
+import com.roundrobine.movie.rentals.domain.SearchOutboxEntry;
+import com.roundrobine.movie.rentals.repository.SearchOutboxEntryRepository;
+import org.hibernate.Hibernate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Records the entities to (re)index into Elasticsearch in the {@code search_outbox} table, as part of the
+ * transaction that changes them.
+ * <p>
+ * Nothing is sent to Elasticsearch here: the {@link SearchOutboxIndexer} drains the outbox in the background
+ * and indexes the committed state of each entity, or removes its document if the entity no longer exists.
+ * A rolled back transaction therefore leaves the index untouched. An entity is recorded once per transaction,
+ * however many times it is saved.
+ */
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class SearchIndexOutbox {
+
+    private final SearchOutboxEntryRepository searchOutboxEntryRepository;
+
+    private final EntityManager entityManager;
+
+    private final PersistenceUnitUtil persistenceUnitUtil;
+
+    public SearchIndexOutbox(SearchOutboxEntryRepository searchOutboxEntryRepository, EntityManager entityManager) {
+        this.searchOutboxEntryRepository = searchOutboxEntryRepository;
+        this.entityManager = entityManager;
+        this.persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+    }
+
+    /**
+     * Index an entity once the current transaction commits.
+     *
+     * @param entity the saved entity.
+     */
+    public void index(Object entity) {
+        record(Hibernate.getClass(entity), (Long) persistenceUnitUtil.getIdentifier(entity));
+    }
+
+    /**
+     * Index entities once the current transaction commits.
+     *
+     * @param entities the saved entities.
+     */
+    public void indexAll(Iterable<?> entities) {
+        for (Object entity : entities) {
+            index(entity);
+        }
+    }
+
+    /**
+     * Index entities changed by a bulk update once the current transaction commits.
+     *
+     * @param entityClass the class of the updated entities.
+     * @param ids the ids of the updated entities.
+     */
+    public void indexAll(Class<?> entityClass, Collection<Long> ids) {
+        for (Long id : ids) {
+            record(entityClass, id);
+        }
+    }
+
+    /**
+     * Remove the document of an entity once the current transaction commits.
+     *
+     * @param entityClass the class of the deleted entity.
+     * @param id the id of the deleted entity.
+     */
+    public void delete(Class<?> entityClass, Long id) {
+        record(entityClass, id);
+    }
+
+    private void record(Class<?> entityClass, Long id) {
+        String entityType = entityManager.getMetamodel().entity(entityClass).getName();
+        if (recordedInTransaction().add(entityType + '#' + id)) {
+            searchOutboxEntryRepository.save(SearchOutboxEntry.builder()
+                .entityType(entityType)
+                .entityId(id)
+                .createdAt(Instant.now())
+                .build());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> recordedInTransaction() {
+        Set<String> recorded = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (recorded == null) {
+            recorded = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, recorded);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResource(SearchIndexOutbox.this);
+                }
+            });
+        }
+        return recorded;
+    }
+}
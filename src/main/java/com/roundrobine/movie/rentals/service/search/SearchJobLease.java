@@ -0,0 +1,87 @@
+package com.roundrobine.movie.rentals.service.search;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import com.roundrobine.movie.rentals.domain.SearchIndexCheckpoint;
+import com.roundrobine.movie.rentals.repository.SearchIndexCheckpointRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Leases that let a search job run on one node at a time, kept in {@link SearchIndexCheckpoint} rows.
+ * <p>
+ * A lease is taken with a conditional update, so two nodes can never both hold it. It expires after
+ * {@code application.search-reindex.lease-ms} unless the node holding it renews it, so the job is taken over
+ * when that node crashes.
+ */
+@Component
+public class SearchJobLease {
+
+    private final Logger log = LoggerFactory.getLogger(SearchJobLease.class);
+
+    private final SearchIndexCheckpointRepository searchIndexCheckpointRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long leaseMs;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    public SearchJobLease(SearchIndexCheckpointRepository searchIndexCheckpointRepository,
+                          PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties) {
+        this.searchIndexCheckpointRepository = searchIndexCheckpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.leaseMs = applicationProperties.getSearchReindex().getLeaseMs();
+    }
+
+    /**
+     * Take a lease, or renew it if this node already holds it.
+     *
+     * @param name the name of the lease.
+     * @return whether this node holds the lease.
+     */
+    public boolean acquire(String name) {
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                Instant now = Instant.now();
+                Instant until = now.plusMillis(leaseMs);
+                if (searchIndexCheckpointRepository.lock(name, owner, now, until) == 1) {
+                    return true;
+                }
+                if (searchIndexCheckpointRepository.existsById(name)) {
+                    return false;
+                }
+                searchIndexCheckpointRepository.saveAndFlush(SearchIndexCheckpoint.builder()
+                    .name(name)
+                    .lockedBy(owner)
+                    .lockedUntil(until)
+                    .build());
+                return true;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Lease {} was taken by another node", name);
+            return false;
+        }
+    }
+
+    /**
+     * Give a lease back, if this node holds it.
+     *
+     * @param name the name of the lease.
+     */
+    public void release(String name) {
+        transactionTemplate.execute(status -> searchIndexCheckpointRepository.unlock(name, owner));
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+}
@@ -0,0 +1,130 @@
+package com.roundrobine.movie.rentals.service.search;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import com.roundrobine.movie.rentals.domain.SearchOutboxEntry;
+import com.roundrobine.movie.rentals.repository.SearchOutboxEntryRepository;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Drains the {@code search_outbox} table into Elasticsearch.
+ * <p>
+ * Each batch of entries is coalesced by entity, the entities are loaded in one query per type and written
+ * through the {@link BulkIndexingService}, also into the new version of their index when the
+ * {@link SearchReindexJob} is rebuilding it; entities that no longer exist have their document removed. The
+ * entries are deleted in the same transaction once their documents are written, so a batch that fails is
+ * retried on the next run.
+ * <p>
+ * A batch is claimed with row locks that other drains skip, so drains running at the same time, on this node
+ * or another one, never index the same entries. Versioned entities are indexed with their {@code @Version} as
+ * the external version of their document, so when two drains index the same entity, the older state cannot
+ * overwrite the newer one. While the indices are rebuilt, only the node rebuilding them drains the outbox.
+ */
+@Component
+public class SearchOutboxIndexer {
+
+    private final Logger log = LoggerFactory.getLogger(SearchOutboxIndexer.class);
+
+    private final SearchOutboxEntryRepository searchOutboxEntryRepository;
+
+    private final BulkIndexingService bulkIndexingService;
+
+    private final SearchReindexJob searchReindexJob;
+
+    private final EntityManager entityManager;
+
+    private final PersistenceUnitUtil persistenceUnitUtil;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    private final Map<String, Class<?>> documentTypes;
+
+    public SearchOutboxIndexer(SearchOutboxEntryRepository searchOutboxEntryRepository,
+                               BulkIndexingService bulkIndexingService, SearchReindexJob searchReindexJob,
+                               EntityManager entityManager,
+                               PlatformTransactionManager transactionManager,
+                               ApplicationProperties applicationProperties) {
+        this.searchOutboxEntryRepository = searchOutboxEntryRepository;
+        this.bulkIndexingService = bulkIndexingService;
+        this.searchReindexJob = searchReindexJob;
+        this.entityManager = entityManager;
+        this.persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = applicationProperties.getSearchOutbox().getBatchSize();
+        this.documentTypes = IndexedEntities.byEntityName(entityManager.getMetamodel());
+    }
+
+    /**
+     * Index the outbox entries until the outbox is empty.
+     */
+    @Scheduled(fixedDelayString = "${application.search-outbox.drain-delay-ms:1000}")
+    public void drain() {
+        if (!searchReindexJob.canDrain()) {
+            return;
+        }
+        int drained;
+        do {
+            drained = transactionTemplate.execute(status -> drainBatch());
+        } while (drained == batchSize);
+    }
+
+    private int drainBatch() {
+        List<SearchOutboxEntry> entries = searchOutboxEntryRepository.claimOldest(PageRequest.of(0, batchSize));
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Set<Long>> changedIdsByType = new LinkedHashMap<>();
+        for (SearchOutboxEntry entry : entries) {
+            changedIdsByType.computeIfAbsent(entry.getEntityType(), type -> new LinkedHashSet<>()).add(entry.getEntityId());
+        }
+
+        List<CompletableFuture<Void>> writes = new ArrayList<>(entries.size());
+        int deleted = 0;
+        for (Map.Entry<String, Set<Long>> changedIds : changedIdsByType.entrySet()) {
+            Class<?> documentType = documentTypes.get(changedIds.getKey());
+            if (documentType == null) {
+                log.warn("Skipping {} outbox entries of {}, which is not indexed", changedIds.getValue().size(),
+                    changedIds.getKey());
+                continue;
+            }
+
+            Session session = entityManager.unwrap(Session.class);
+            Set<Long> removedIds = new HashSet<>(changedIds.getValue());
+            List<?> entities = entityManager
+                .createQuery("select e from " + changedIds.getKey() + " e where e.id in :ids")
+                .setParameter("ids", changedIds.getValue())
+                .getResultList();
+            for (Object entity : entities) {
+                Object id = persistenceUnitUtil.getIdentifier(entity);
+                removedIds.remove(id);
+                writes.addAll(searchReindexJob.index(documentType, String.valueOf(id), bulkIndexingService.toSource(entity),
+                    IndexedEntities.versionOf(session, entity)));
+            }
+            for (Long id : removedIds) {
+                writes.addAll(searchReindexJob.delete(documentType, String.valueOf(id)));
+                deleted++;
+            }
+        }
+
+        // a failed write rolls the transaction back, so the entries are drained again on the next run
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+        searchOutboxEntryRepository.deleteInBatch(entries);
+        log.debug("Drained {} search outbox entries: {} documents indexed, {} removed", entries.size(),
+            entries.size() - deleted, deleted);
+        return entries.size();
+    }
+}
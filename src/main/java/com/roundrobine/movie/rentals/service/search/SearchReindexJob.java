@@ -0,0 +1,451 @@
+package com.roundrobine.movie.rentals.service.search;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import com.roundrobine.movie.rentals.domain.SearchIndexCheckpoint;
+import com.roundrobine.movie.rentals.repository.SearchIndexCheckpointRepository;
+import com.roundrobine.movie.rentals.service.dto.SearchReindexProgressDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.indices.aliases.AddAliasMapping;
+import io.searchbox.indices.aliases.AliasMapping;
+import io.searchbox.indices.aliases.GetAliases;
+import io.searchbox.indices.aliases.ModifyAliases;
+import io.searchbox.indices.aliases.RemoveAliasMapping;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Rebuilds every search index from the database, for instance after a mapping change.
+ * <p>
+ * Each index is rebuilt into a new version named after the index and the time the rebuild started. Rows are
+ * read in keyset-paginated chunks through a forward-only Hibernate cursor and copied into JSON trees on the
+ * reading thread, so the session is never used by another thread; the trees are turned into documents on a
+ * bounded fork-join pool and written through the {@link BulkIndexingService}. Once all the rows are copied, the index
+ * name is moved atomically to the new version, as an alias, and the previous version is dropped.
+ * <p>
+ * The position of each rebuild is saved with every chunk in a {@link SearchIndexCheckpoint}, and a rebuild
+ * interrupted by a crash resumes from there when the application starts again. A reindex runs on one node at
+ * a time, the one holding the {@link SearchJobLease}, which every node asks for when it starts. Changes made while an index
+ * is being rebuilt are also written to the new version by {@link #index(Class, String, String, Long)} and
+ * {@link #delete(Class, String)}, so that nothing is lost when the alias moves. Only the node running the rebuild
+ * knows its new versions, so the other nodes leave the outbox to it meanwhile, see {@link #canDrain()}.
+ */
+@Service
+public class SearchReindexJob {
+
+    static final String CHECKPOINT_PREFIX = "reindex-";
+
+    static final String LEASE_NAME = "search-reindex";
+
+    private static final DateTimeFormatter VERSION_FORMAT =
+        DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+
+    private final Logger log = LoggerFactory.getLogger(SearchReindexJob.class);
+
+    private final EntityManager entityManager;
+
+    private final SearchIndexCheckpointRepository searchIndexCheckpointRepository;
+
+    private final BulkIndexingService bulkIndexingService;
+
+    private final SearchJobLease searchJobLease;
+
+    private final ObjectMapper objectMapper;
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    private final JestClient jestClient;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int chunkSize;
+
+    private final ForkJoinPool transformPool;
+
+    private final Map<String, Class<?>> documentTypes;
+
+    /**
+     * Copying a chunk, from reading its rows to queueing its documents, excludes queueing the live changes,
+     * so a live change is never overwritten by an older copy of its row. Writes queued under the lock never wait
+     * for room in the queue of the {@link BulkIndexingService}, so a full queue cannot stall the live writes.
+     */
+    private final ReentrantReadWriteLock copyLock = new ReentrantReadWriteLock();
+
+    private final Map<Class<?>, String> targetIndices = new ConcurrentHashMap<>();
+
+    private final Map<String, SearchReindexProgressDTO> progress = new ConcurrentSkipListMap<>();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-reindex");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SearchReindexJob(EntityManager entityManager,
+                            SearchIndexCheckpointRepository searchIndexCheckpointRepository,
+                            BulkIndexingService bulkIndexingService, SearchJobLease searchJobLease,
+                            ObjectMapper objectMapper, ElasticsearchOperations elasticsearchOperations,
+                            JestClient jestClient, PlatformTransactionManager transactionManager,
+                            ApplicationProperties applicationProperties) {
+        this.entityManager = entityManager;
+        this.searchIndexCheckpointRepository = searchIndexCheckpointRepository;
+        this.bulkIndexingService = bulkIndexingService;
+        this.searchJobLease = searchJobLease;
+        this.objectMapper = objectMapper;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.jestClient = jestClient;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = applicationProperties.getSearchReindex().getChunkSize();
+        this.transformPool = new ForkJoinPool(applicationProperties.getSearchReindex().getParallelism());
+        this.documentTypes = IndexedEntities.byEntityName(entityManager.getMetamodel());
+    }
+
+    /**
+     * Resume the rebuilds interrupted by a crash or a shutdown.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        try {
+            List<SearchIndexCheckpoint> checkpoints =
+                searchIndexCheckpointRepository.findByNameStartingWith(CHECKPOINT_PREFIX);
+            if (!checkpoints.isEmpty()) {
+                if (start()) {
+                    log.info("Resuming the reindex of {}", checkpoints);
+                } else {
+                    log.info("The reindex of {} is resumed by another node", checkpoints);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not look for an interrupted reindex: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Whether this node may drain the search outbox: always, unless another node is rebuilding the indices, since
+     * only that node writes the changes to their new versions. A rebuild whose node stopped renewing its lease is
+     * resumed here first.
+     *
+     * @return {@code false} if the outbox is left to the node rebuilding the indices.
+     */
+    public boolean canDrain() {
+        if (running.get() || !searchIndexCheckpointRepository.existsByNameStartingWith(CHECKPOINT_PREFIX)) {
+            return true;
+        }
+        if (start()) {
+            log.info("Resuming a reindex left by another node");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Start rebuilding every search index, in the background. Indices whose rebuild was interrupted are resumed.
+     *
+     * @return {@code false} if a reindex is already running, on this node or another one.
+     */
+    public boolean start() {
+        if (running.get() || !searchJobLease.acquire(LEASE_NAME)) {
+            return false;
+        }
+        // interrupted rebuilds get the live changes again right away, not only once the job reaches them
+        for (SearchIndexCheckpoint checkpoint : searchIndexCheckpointRepository.findByNameStartingWith(CHECKPOINT_PREFIX)) {
+            documentTypes.values().stream()
+                .filter(documentType -> checkpoint.getName().equals(CHECKPOINT_PREFIX + indexName(documentType)))
+                .findFirst()
+                .ifPresent(documentType -> targetIndices.put(documentType, checkpoint.getTargetIndex()));
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        progress.clear();
+        runner.execute(() -> {
+            try {
+                documentTypes.forEach(this::reindex);
+                log.info("Reindex completed: {}", progress.values());
+            } catch (RuntimeException e) {
+                log.error("Reindex failed, it will resume from its last checkpoint when started again", e);
+            } finally {
+                searchJobLease.release(LEASE_NAME);
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return the progress of the indices rebuilt by the last reindex run on this node.
+     */
+    public List<SearchReindexProgressDTO> getProgress() {
+        return new ArrayList<>(progress.values());
+    }
+
+    /**
+     * Index a change into the search index, and into its new version if it is being rebuilt.
+     *
+     * @param documentType the document class.
+     * @param id the id of the document.
+     * @param source the document as JSON.
+     * @param version the version of the document, or {@code null} if it is not versioned.
+     * @return the futures of the writes.
+     */
+    public List<CompletableFuture<Void>> index(Class<?> documentType, String id, String source, Long version) {
+        List<CompletableFuture<Void>> writes = new ArrayList<>(2);
+        writes.add(bulkIndexingService.index(documentType, indexName(documentType), id, source, version));
+        copyLock.readLock().lock();
+        try {
+            String targetIndex = targetIndices.get(documentType);
+            if (targetIndex != null) {
+                writes.add(bulkIndexingService.indexWithoutWaiting(documentType, targetIndex, id, source, version));
+            }
+        } finally {
+            copyLock.readLock().unlock();
+        }
+        return writes;
+    }
+
+    /**
+     * Remove a document from the search index, and from its new version if it is being rebuilt.
+     *
+     * @param documentType the document class.
+     * @param id the id of the document.
+     * @return the futures of the writes.
+     */
+    public List<CompletableFuture<Void>> delete(Class<?> documentType, String id) {
+        List<CompletableFuture<Void>> writes = new ArrayList<>(2);
+        writes.add(bulkIndexingService.delete(documentType, indexName(documentType), id));
+        copyLock.readLock().lock();
+        try {
+            String targetIndex = targetIndices.get(documentType);
+            if (targetIndex != null) {
+                writes.add(bulkIndexingService.deleteWithoutWaiting(documentType, targetIndex, id));
+            }
+        } finally {
+            copyLock.readLock().unlock();
+        }
+        return writes;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+        transformPool.shutdownNow();
+    }
+
+    private void reindex(String entityName, Class<?> documentType) {
+        String indexName = indexName(documentType);
+        SearchIndexCheckpoint checkpoint = transactionTemplate.execute(status -> searchIndexCheckpointRepository
+            .findById(CHECKPOINT_PREFIX + indexName)
+            .orElseGet(() -> searchIndexCheckpointRepository.save(SearchIndexCheckpoint.builder()
+                .name(CHECKPOINT_PREFIX + indexName)
+                .targetIndex(indexName + "_" + VERSION_FORMAT.format(Instant.now()))
+                .lastId(0L)
+                .build())));
+        String targetIndex = checkpoint.getTargetIndex();
+        if (!elasticsearchOperations.indexExists(targetIndex)) {
+            elasticsearchOperations.createIndex(targetIndex);
+            elasticsearchOperations.putMapping(targetIndex, indexType(documentType), documentType);
+        }
+        targetIndices.put(documentType, targetIndex);
+
+        Instant startedAt = Instant.now();
+        long indexedRows = 0;
+        int copied;
+        do {
+            if (!searchJobLease.acquire(LEASE_NAME)) {
+                throw new IllegalStateException("The reindex lease was taken over by another node");
+            }
+            copied = transactionTemplate.execute(status -> copyChunk(entityName, documentType, checkpoint));
+            indexedRows += copied;
+            progress.put(indexName, progress(indexName, targetIndex, indexedRows, startedAt, null));
+            log.debug("Reindexed {} rows into {}", indexedRows, targetIndex);
+        } while (copied == chunkSize);
+
+        moveAlias(indexName, targetIndex);
+        targetIndices.remove(documentType);
+        transactionTemplate.execute(status -> {
+            searchIndexCheckpointRepository.deleteById(checkpoint.getName());
+            return null;
+        });
+        SearchReindexProgressDTO done = progress(indexName, targetIndex, indexedRows, startedAt, Instant.now());
+        progress.put(indexName, done);
+        log.info("Reindexed {} rows into {} at {} rows/s", indexedRows, targetIndex, Math.round(done.getRowsPerSecond()));
+    }
+
+    private int copyChunk(String entityName, Class<?> documentType, SearchIndexCheckpoint checkpoint) {
+        Session session = entityManager.unwrap(Session.class);
+        List<CompletableFuture<Void>> writes = new ArrayList<>(chunkSize);
+        long lastId = checkpoint.getLastId();
+
+        copyLock.writeLock().lock();
+        try (ScrollableResults rows = session
+            .createQuery("select e from " + entityName + " e where e.id > :lastId order by e.id")
+            .setParameter("lastId", lastId)
+            .setMaxResults(chunkSize)
+            .setFetchSize(chunkSize)
+            .setReadOnly(true)
+            .scroll(ScrollMode.FORWARD_ONLY)) {
+
+            List<Long> ids = new ArrayList<>(chunkSize);
+            List<Long> versions = new ArrayList<>(chunkSize);
+            List<ForkJoinTask<String>> documents = new ArrayList<>(chunkSize);
+            while (rows.next()) {
+                Object row = rows.get(0);
+                ids.add((Long) session.getIdentifier(row));
+                versions.add(IndexedEntities.versionOf(session, row));
+                JsonNode document = objectMapper.valueToTree(row);
+                documents.add(transformPool.submit(() -> bulkIndexingService.toSource(document)));
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                writes.add(bulkIndexingService.indexWithoutWaiting(documentType, checkpoint.getTargetIndex(),
+                    String.valueOf(ids.get(i)), documents.get(i).join(), versions.get(i)));
+            }
+            if (!ids.isEmpty()) {
+                lastId = ids.get(ids.size() - 1);
+            }
+        } finally {
+            copyLock.writeLock().unlock();
+        }
+
+        // the chunk went over the depth of the queue, and is written before the next one is read
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+        session.clear();
+
+        checkpoint.setLastId(lastId);
+        checkpoint.setUpdatedAt(Instant.now());
+        searchIndexCheckpointRepository.save(checkpoint);
+        return writes.size();
+    }
+
+    /**
+     * Point the alias to the new index version in a single request, dropping the previous version. The first
+     * time, the index name belongs to the index Spring Data created, which is dropped the same way.
+     */
+    private void moveAlias(String alias, String targetIndex) {
+        Set<String> previousIndices = indicesOfAlias(alias);
+        List<AliasMapping> actions = aliasActions(alias, targetIndex, previousIndices,
+            previousIndices.isEmpty() && elasticsearchOperations.indexExists(alias));
+
+        copyLock.writeLock().lock();
+        try {
+            execute(new ModifyAliases.Builder(actions).build());
+        } finally {
+            copyLock.writeLock().unlock();
+        }
+        previousIndices.stream()
+            .filter(previousIndex -> !previousIndex.equals(targetIndex))
+            .forEach(elasticsearchOperations::deleteIndex);
+        log.info("Search index {} now points to {}", alias, targetIndex);
+    }
+
+    static List<AliasMapping> aliasActions(String alias, String targetIndex, Set<String> previousIndices,
+                                           boolean aliasIsIndex) {
+        List<AliasMapping> actions = new ArrayList<>();
+        if (aliasIsIndex) {
+            actions.add(new RemoveIndexMapping(alias));
+        }
+        for (String previousIndex : previousIndices) {
+            actions.add(new RemoveAliasMapping.Builder(previousIndex, alias).build());
+        }
+        actions.add(new AddAliasMapping.Builder(targetIndex, alias).build());
+        return actions;
+    }
+
+    private Set<String> indicesOfAlias(String alias) {
+        JestResult result;
+        try {
+            result = jestClient.execute(new GetAliases.Builder().addAlias(alias).build());
+        } catch (IOException e) {
+            throw new ElasticsearchException("Failed to get the indices of alias " + alias, e);
+        }
+        // a missing alias is answered with a 404
+        if (!result.isSucceeded()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(result.getJsonObject().keySet());
+    }
+
+    private void execute(ModifyAliases modifyAliases) {
+        try {
+            JestResult result = jestClient.execute(modifyAliases);
+            if (!result.isSucceeded()) {
+                throw new ElasticsearchException("Failed to move alias: " + result.getErrorMessage());
+            }
+        } catch (IOException e) {
+            throw new ElasticsearchException("Failed to move alias", e);
+        }
+    }
+
+    private String indexName(Class<?> documentType) {
+        return elasticsearchOperations.getPersistentEntityFor(documentType).getIndexName();
+    }
+
+    private String indexType(Class<?> documentType) {
+        return elasticsearchOperations.getPersistentEntityFor(documentType).getIndexType();
+    }
+
+    private static SearchReindexProgressDTO progress(String indexName, String targetIndex, long indexedRows,
+                                                     Instant startedAt, Instant finishedAt) {
+        long elapsedMillis = Math.max(1, Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now())
+            .toMillis());
+        return SearchReindexProgressDTO.builder()
+            .indexName(indexName)
+            .targetIndex(targetIndex)
+            .indexedRows(indexedRows)
+            .rowsPerSecond(indexedRows * 1000.0 / elapsedMillis)
+            .startedAt(startedAt)
+            .finishedAt(finishedAt)
+            .build();
+    }
+
+    /**
+     * The {@code remove_index} alias action, which drops an index in the same request as the alias changes.
+     */
+    private static final class RemoveIndexMapping extends AliasMapping {
+
+        private final String index;
+
+        private RemoveIndexMapping(String index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getType() {
+            return "remove_index";
+        }
+
+        @Override
+        public List<Map<String, Object>> getData() {
+            return Collections.singletonList(Collections.singletonMap(getType(), Collections.singletonMap("index", index)));
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Elasticsearch indexing through a transactional outbox.
+ */
+package com.roundrobine.movie.rentals.service.search;
@@ -0,0 +1,160 @@
+package com.roundrobine.movie.rentals.service.tariff;
+
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+
+import java.math.BigDecimal;
+
+/**
+ * The compiled price rules of one {@link MovieType}.
+ * <p>
+ * Instances are immutable. Prices are kept in minor currency units (öre) and every price a rental can produce
+ * is computed once, when the tariff is built, so pricing a copy on checkout or on return does not allocate.
+ */
+public final class MovieTariff {
+
+    private static final int MINOR_UNIT_SCALE = 2;
+
+    // same bound as RentedCopy.plannedRentDuration
+    private static final int MAX_PLANNED_RENTAL_DAYS = 14;
+
+    private static final int MAX_TABULATED_LATE_DAYS = 60;
+
+    private final MovieType movieType;
+
+    private final long priceInMinorUnits;
+
+    private final BigDecimal price;
+
+    private final int includedRentalDays;
+
+    private final int bonusPoints;
+
+    private final long[] rentalPricesInMinorUnits = new long[MAX_PLANNED_RENTAL_DAYS + 1];
+
+    private final BigDecimal[] rentalPrices = new BigDecimal[MAX_PLANNED_RENTAL_DAYS + 1];
+
+    private final BigDecimal[] surchargesByLateDays = new BigDecimal[MAX_TABULATED_LATE_DAYS + 1];
+
+    public MovieTariff(MovieType movieType, long priceInMinorUnits, int includedRentalDays, int bonusPoints) {
+        if (movieType == null) {
+            throw new IllegalArgumentException("A tariff needs a movie type");
+        }
+        if (priceInMinorUnits <= 0 || includedRentalDays < 1 || bonusPoints < 0) {
+            throw new IllegalArgumentException("Invalid tariff for " + movieType + ": the price must be positive, " +
+                "at least one rental day must be included and bonus points cannot be negative");
+        }
+        this.movieType = movieType;
+        this.priceInMinorUnits = priceInMinorUnits;
+        this.price = toAmount(priceInMinorUnits);
+        this.includedRentalDays = includedRentalDays;
+        this.bonusPoints = bonusPoints;
+
+        for (int days = 0; days <= MAX_PLANNED_RENTAL_DAYS; days++) {
+            rentalPricesInMinorUnits[days] = computeRentalPrice(days);
+            rentalPrices[days] = toAmount(rentalPricesInMinorUnits[days]);
+        }
+        for (int lateDays = 0; lateDays <= MAX_TABULATED_LATE_DAYS; lateDays++) {
+            surchargesByLateDays[lateDays] = toAmount(priceInMinorUnits * lateDays);
+        }
+    }
+
+    /**
+     * @param movieType the movie type.
+     * @return the tariff built into the {@link MovieType} enumeration.
+     */
+    public static MovieTariff defaultFor(MovieType movieType) {
+        return new MovieTariff(movieType, movieType.getPriceInMinorUnits(), movieType.getIncludedRentalDays(),
+            movieType.getBonusPoints());
+    }
+
+    /**
+     * Convert an amount in minor currency units to the {@link BigDecimal} exposed by the API.
+     *
+     * @param minorUnits the amount in öre.
+     * @return the amount in SEK.
+     */
+    public static BigDecimal toAmount(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, MINOR_UNIT_SCALE);
+    }
+
+    /**
+     * Convert an amount exposed by the API to minor currency units.
+     *
+     * @param amount the amount in SEK.
+     * @return the amount in öre.
+     * @throws ArithmeticException if the amount has a fraction of an öre.
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.movePointRight(MINOR_UNIT_SCALE).longValueExact();
+    }
+
+    public long calculateMoviePriceOnRentalInMinorUnits(int plannedRentalDays) {
+        if (plannedRentalDays >= 0 && plannedRentalDays <= MAX_PLANNED_RENTAL_DAYS) {
+            return rentalPricesInMinorUnits[plannedRentalDays];
+        }
+        return computeRentalPrice(plannedRentalDays);
+    }
+
+    public BigDecimal calculateMoviePriceOnRental(int plannedRentalDays) {
+        if (plannedRentalDays >= 0 && plannedRentalDays <= MAX_PLANNED_RENTAL_DAYS) {
+            return rentalPrices[plannedRentalDays];
+        }
+        return toAmount(computeRentalPrice(plannedRentalDays));
+    }
+
+    /**
+     * @return the number of days charged on top of the planned rent duration.
+     */
+    public int calculateSurchargedDaysOnMovieReturn(int plannedRentalDays, int actualRentalDays) {
+        if (actualRentalDays <= plannedRentalDays || actualRentalDays <= includedRentalDays) {
+            return 0;
+        }
+        return actualRentalDays - plannedRentalDays;
+    }
+
+    public long calculateSurchargesOnMovieReturnInMinorUnits(int plannedRentalDays, int actualRentalDays) {
+        return priceInMinorUnits * calculateSurchargedDaysOnMovieReturn(plannedRentalDays, actualRentalDays);
+    }
+
+    public BigDecimal calculateSurchargesOnMovieReturn(int plannedRentalDays, int actualRentalDays) {
+        int lateDays = calculateSurchargedDaysOnMovieReturn(plannedRentalDays, actualRentalDays);
+        if (lateDays <= MAX_TABULATED_LATE_DAYS) {
+            return surchargesByLateDays[lateDays];
+        }
+        return toAmount(priceInMinorUnits * lateDays);
+    }
+
+    public MovieType getMovieType() {
+        return movieType;
+    }
+
+    public long getPriceInMinorUnits() {
+        return priceInMinorUnits;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public int getIncludedRentalDays() {
+        return includedRentalDays;
+    }
+
+    public int getBonusPoints() {
+        return bonusPoints;
+    }
+
+    private long computeRentalPrice(int plannedRentalDays) {
+        return priceInMinorUnits + priceInMinorUnits * Math.max(0, plannedRentalDays - includedRentalDays);
+    }
+
+    @Override
+    public String toString() {
+        return "MovieTariff{" +
+            "movieType=" + movieType +
+            ", price=" + price +
+            ", includedRentalDays=" + includedRentalDays +
+            ", bonusPoints=" + bonusPoints +
+            "}";
+    }
+}
@@ -0,0 +1,71 @@
+package com.roundrobine.movie.rentals.service.tariff;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import com.roundrobine.movie.rentals.config.Constants;
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link TariffEngine} that starts from the {@code application.tariffs} properties.
+ * <p>
+ * Tariffs are compiled into an immutable {@link TariffSnapshot} held in an {@link AtomicReference}: readers
+ * never lock, and {@link #reload(Collection)} swaps in a new snapshot atomically. Reloaded tariffs are kept
+ * in memory only, so a restart goes back to the configured ones. With the "cluster" profile, tariffs cannot be
+ * reloaded, since the other nodes would keep charging the configured ones.
+ */
+@Service
+public class PropertiesTariffEngine implements TariffEngine {
+
+    private final Logger log = LoggerFactory.getLogger(PropertiesTariffEngine.class);
+
+    private final AtomicReference<TariffSnapshot> snapshot;
+
+    private final boolean reloadable;
+
+    public PropertiesTariffEngine(ApplicationProperties applicationProperties, Environment env) {
+        this.snapshot = new AtomicReference<>(TariffSnapshot.defaults()
+            .with(compile(applicationProperties.getTariffs())));
+        this.reloadable = !env.acceptsProfiles(Profiles.of(Constants.SPRING_PROFILE_CLUSTER));
+        log.info("Loaded tariffs {}", snapshot.get().getTariffs());
+    }
+
+    @Override
+    public TariffSnapshot current() {
+        return snapshot.get();
+    }
+
+    @Override
+    public boolean isReloadable() {
+        return reloadable;
+    }
+
+    @Override
+    public TariffSnapshot reload(Collection<MovieTariff> tariffs) {
+        if (!reloadable) {
+            throw new IllegalStateException("Tariffs cannot be reloaded on a single node of a cluster");
+        }
+        TariffSnapshot reloaded = snapshot.updateAndGet(current -> current.with(tariffs));
+        log.info("Tariffs reloaded to version {}: {}", reloaded.getVersion(), reloaded.getTariffs());
+        return reloaded;
+    }
+
+    private static List<MovieTariff> compile(Map<MovieType, ApplicationProperties.Tariff> configured) {
+        List<MovieTariff> tariffs = new ArrayList<>(configured.size());
+        configured.forEach((movieType, tariff) -> tariffs.add(new MovieTariff(
+            movieType,
+            tariff.getPrice() != null ? MovieTariff.toMinorUnits(tariff.getPrice()) : movieType.getPriceInMinorUnits(),
+            tariff.getIncludedRentalDays() != null ? tariff.getIncludedRentalDays() : movieType.getIncludedRentalDays(),
+            tariff.getBonusPoints() != null ? tariff.getBonusPoints() : movieType.getBonusPoints())));
+        return tariffs;
+    }
+}
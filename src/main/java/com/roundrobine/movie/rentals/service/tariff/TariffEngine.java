@@ -0,0 +1,31 @@
+package com.roundrobine.movie.rentals.service.tariff;
+
+import java.util.Collection;
+
+/**
+ * Source of the prices, included rental days and bonus points charged for each
+ * {@link com.roundrobine.movie.rentals.domain.enumeration.MovieType}.
+ * <p>
+ * Implementations must make {@link #current()} cheap and lock-free: it is called on every checkout and return.
+ */
+public interface TariffEngine {
+
+    /**
+     * @return the tariffs in force.
+     */
+    TariffSnapshot current();
+
+    /**
+     * @return whether {@link #reload(Collection)} is supported.
+     */
+    boolean isReloadable();
+
+    /**
+     * Put new tariffs in force for every following call to {@link #current()}.
+     *
+     * @param tariffs the new tariffs; types that are left out keep their current tariff.
+     * @return the snapshot now in force.
+     * @throws IllegalStateException if the tariffs are not reloadable.
+     */
+    TariffSnapshot reload(Collection<MovieTariff> tariffs);
+}
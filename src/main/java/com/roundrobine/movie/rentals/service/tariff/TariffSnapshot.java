@@ -0,0 +1,74 @@
+package com.roundrobine.movie.rentals.service.tariff;
+
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable set of {@link MovieTariff}s, one for every {@link MovieType}.
+ * <p>
+ * A checkout or a return reads one snapshot and prices every copy with it, so a tariff change that happens
+ * in the middle of a request never mixes old and new prices.
+ */
+public final class TariffSnapshot {
+
+    private final MovieTariff[] tariffsByType;
+
+    private final long version;
+
+    private final Instant loadedAt;
+
+    private TariffSnapshot(MovieTariff[] tariffsByType, long version) {
+        this.tariffsByType = tariffsByType;
+        this.version = version;
+        this.loadedAt = Instant.now();
+    }
+
+    /**
+     * @return a snapshot of the tariffs built into the {@link MovieType} enumeration.
+     */
+    public static TariffSnapshot defaults() {
+        return new TariffSnapshot(defaultTariffs(), 0);
+    }
+
+    /**
+     * Build the snapshot that follows this one.
+     *
+     * @param tariffs the new tariffs; types that are left out keep their current tariff.
+     * @return the new snapshot.
+     */
+    public TariffSnapshot with(Collection<MovieTariff> tariffs) {
+        MovieTariff[] next = tariffsByType.clone();
+        tariffs.forEach(tariff -> next[tariff.getMovieType().ordinal()] = tariff);
+        return new TariffSnapshot(next, version + 1);
+    }
+
+    public MovieTariff forType(MovieType movieType) {
+        return tariffsByType[movieType.ordinal()];
+    }
+
+    public List<MovieTariff> getTariffs() {
+        return Collections.unmodifiableList(Arrays.asList(tariffsByType));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    private static MovieTariff[] defaultTariffs() {
+        MovieType[] movieTypes = MovieType.values();
+        MovieTariff[] tariffs = new MovieTariff[movieTypes.length];
+        for (MovieType movieType : movieTypes) {
+            tariffs[movieType.ordinal()] = MovieTariff.defaultFor(movieType);
+        }
+        return tariffs;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Tariffs charged for each movie type and the engine that keeps them up to date.
+ */
+package com.roundrobine.movie.rentals.service.tariff;
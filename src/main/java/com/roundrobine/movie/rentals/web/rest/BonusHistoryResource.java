@@ -1,9 +1,14 @@
 package com.roundrobine.movie.rentals.web.rest;
 
+import com.roundrobine.movie.rentals.security.AuthoritiesConstants;
 import com.roundrobine.movie.rentals.service.BonusHistoryService;
 import com.roundrobine.movie.rentals.web.rest.errors.BadRequestAlertException;
+import com.roundrobine.movie.rentals.web.rest.util.KeysetPaginationUtil;
+import com.roundrobine.movie.rentals.web.rest.util.NdjsonWriter;
 import com.roundrobine.movie.rentals.service.dto.BonusHistoryDTO;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.jhipster.web.util.HeaderUtil;
 import io.github.jhipster.web.util.PaginationUtil;
 import io.github.jhipster.web.util.ResponseUtil;
@@ -16,11 +21,15 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.StreamSupport;
@@ -43,8 +52,11 @@ public class BonusHistoryResource {
 
     private final BonusHistoryService bonusHistoryService;
 
-    public BonusHistoryResource(BonusHistoryService bonusHistoryService) {
+    private final ObjectMapper objectMapper;
+
+    public BonusHistoryResource(BonusHistoryService bonusHistoryService, ObjectMapper objectMapper) {
         this.bonusHistoryService = bonusHistoryService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -88,17 +100,45 @@ public class BonusHistoryResource {
     }
 
     /**
-     * {@code GET  /bonus-histories} : get all the bonusHistories.
+     * {@code GET  /bonus-histories} : get a page of the bonusHistories, read after the keyset of a continuation token
+     * rather than after an offset, so that every page costs the same.
      *
-     * @param pageable the pagination information.
+     * @param continuation the continuation token of the page, none for the first page.
+     * @param count whether to count all the bonusHistories in an {@code X-Total-Count} header, which scans them.
+     * @param pageable the size of the page, and the sort of the first page.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of bonusHistories in body.
      */
     @GetMapping("/bonus-histories")
-    public ResponseEntity<List<BonusHistoryDTO>> getAllBonusHistories(Pageable pageable) {
+    public ResponseEntity<List<BonusHistoryDTO>> getAllBonusHistories(@RequestParam(name = KeysetPaginationUtil.CONTINUATION_PARAMETER, required = false) String continuation,
+        @RequestParam(name = KeysetPaginationUtil.PAGE_PARAMETER, required = false) String page,
+        @RequestParam(defaultValue = "false") boolean count, Pageable pageable) {
         log.debug("REST request to get a page of BonusHistories");
-        Page<BonusHistoryDTO> page = bonusHistoryService.findAll(pageable);
-        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
-        return ResponseEntity.ok().headers(headers).body(page.getContent());
+        KeysetSlice<BonusHistoryDTO> slice = bonusHistoryService.findAll(KeysetPaginationUtil.keyset(continuation, page, pageable.getSort()), pageable.getPageSize());
+        HttpHeaders headers = KeysetPaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice,
+            count ? bonusHistoryService.count() : null);
+        return ResponseEntity.ok().headers(headers).body(slice.getContent());
+    }
+
+    /**
+     * {@code GET  /bonus-histories/export} : export the bonusHistories created in a time range, in id order,
+     * as newline-delimited JSON streamed while they are read.
+     *
+     * @param createdFrom the start of the creation range, included, the epoch by default.
+     * @param createdTo the end of the creation range, excluded, now by default.
+     * @param response the response the bonusHistories are written to.
+     * @throws IOException if the response cannot be written.
+     */
+    @GetMapping(value = "/bonus-histories/export", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public void exportBonusHistories(@RequestParam(required = false) Instant createdFrom,
+                                     @RequestParam(required = false) Instant createdTo,
+                                     HttpServletResponse response) throws IOException {
+        log.debug("REST request to export BonusHistories created in [{}, {})", createdFrom, createdTo);
+        response.setContentType(NdjsonWriter.APPLICATION_NDJSON_VALUE);
+        try (NdjsonWriter writer = new NdjsonWriter(objectMapper, response.getOutputStream())) {
+            long count = bonusHistoryService.export(createdFrom, createdTo, writer);
+            log.debug("Exported {} BonusHistories", count);
+        }
     }
 
     /**
@@ -0,0 +1,135 @@
+package com.roundrobine.movie.rentals.web.rest;
+
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+import com.roundrobine.movie.rentals.service.CatalogueService;
+import com.roundrobine.movie.rentals.service.dto.MovieDTO;
+import com.roundrobine.movie.rentals.service.dto.MovieInventoryDTO;
+import com.roundrobine.movie.rentals.web.rest.util.JsonStreamEmitter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Read-only REST controller for browsing the movie catalogue without blocking a servlet thread.
+ * <p>
+ * Lists are returned as a JSON array by default. With {@code Accept: application/stream+json} they are streamed
+ * as one JSON document per line instead, by the {@code taskExecutor}, and each document is read only once the
+ * previous one is written, so a slow client never makes the server buffer a whole page. Lists have no
+ * {@code X-Total-Count} header: a page shorter than its size is the last one.
+ */
+@RestController
+@RequestMapping("/api/catalogue")
+public class CatalogueResource {
+
+    private final Logger log = LoggerFactory.getLogger(CatalogueResource.class);
+
+    private final CatalogueService catalogueService;
+
+    private final Executor taskExecutor;
+
+    public CatalogueResource(CatalogueService catalogueService, @Qualifier("taskExecutor") Executor taskExecutor) {
+        this.catalogueService = catalogueService;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * {@code GET  /catalogue/movies} : get a page of movies, ordered by id.
+     *
+     * @param pageable the pagination information, whose sort is ignored.
+     * @return the movies of the page.
+     */
+    @GetMapping(value = "/movies", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<MovieDTO> getMovies(Pageable pageable) {
+        log.debug("REST request to browse a page of Movies");
+        return catalogueService.findMovies(pageable);
+    }
+
+    /**
+     * {@code GET  /catalogue/movies} : stream a page of movies, ordered by id, one JSON document per line.
+     *
+     * @param pageable the pagination information, whose sort is ignored.
+     * @return the emitter writing the movies of the page.
+     */
+    @GetMapping(value = "/movies", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public ResponseBodyEmitter streamMovies(Pageable pageable) {
+        return JsonStreamEmitter.stream(getMovies(pageable), taskExecutor);
+    }
+
+    /**
+     * {@code GET  /catalogue/movies/:id} : get the "id" movie.
+     *
+     * @param id the id of the movie to retrieve.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the movieDTO, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/movies/{id}")
+    public Mono<ResponseEntity<MovieDTO>> getMovie(@PathVariable Long id) {
+        log.debug("REST request to browse Movie : {}", id);
+        return catalogueService.findMovie(id)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * {@code GET  /catalogue/movies/:id/inventories} : get the copies of the "id" movie in a given status.
+     *
+     * @param id the id of the movie.
+     * @param status the status of the copies, {@code AVAILABLE} by default.
+     * @return the copies, ordered by id.
+     */
+    @GetMapping(value = "/movies/{id}/inventories", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<MovieInventoryDTO> getMovieInventories(@PathVariable Long id,
+                                                       @RequestParam(defaultValue = "AVAILABLE") RentalStatus status) {
+        log.debug("REST request to browse the {} MovieInventories of Movie : {}", status, id);
+        return catalogueService.findMovieInventories(id, status);
+    }
+
+    /**
+     * {@code GET  /catalogue/movies/:id/inventories} : stream the copies of the "id" movie in a given status, one
+     * JSON document per line.
+     *
+     * @param id the id of the movie.
+     * @param status the status of the copies, {@code AVAILABLE} by default.
+     * @return the emitter writing the copies, ordered by id.
+     */
+    @GetMapping(value = "/movies/{id}/inventories", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public ResponseBodyEmitter streamMovieInventories(@PathVariable Long id,
+                                                      @RequestParam(defaultValue = "AVAILABLE") RentalStatus status) {
+        return JsonStreamEmitter.stream(getMovieInventories(id, status), taskExecutor);
+    }
+
+    /**
+     * {@code SEARCH  /catalogue/_search/movies?query=:query} : search for the movies corresponding to the query.
+     *
+     * @param query the query of the movie search.
+     * @param pageable the pagination information.
+     * @return the movies of the page, best matches first.
+     */
+    @GetMapping(value = "/_search/movies", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<MovieDTO> searchMovies(@RequestParam String query, Pageable pageable) {
+        log.debug("REST request to browse a page of Movies for query {}", query);
+        return catalogueService.searchMovies(query, pageable);
+    }
+
+    /**
+     * {@code SEARCH  /catalogue/_search/movies?query=:query} : stream the movies corresponding to the query, one
+     * JSON document per line.
+     *
+     * @param query the query of the movie search.
+     * @param pageable the pagination information.
+     * @return the emitter writing the movies of the page, best matches first.
+     */
+    @GetMapping(value = "/_search/movies", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public ResponseBodyEmitter streamSearchMovies(@RequestParam String query, Pageable pageable) {
+        return JsonStreamEmitter.stream(searchMovies(query, pageable), taskExecutor);
+    }
+}
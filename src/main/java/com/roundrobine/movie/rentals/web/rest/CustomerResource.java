@@ -3,6 +3,8 @@ package com.roundrobine.movie.rentals.web.rest;
 import com.roundrobine.movie.rentals.service.CustomerService;
 import com.roundrobine.movie.rentals.web.rest.errors.BadRequestAlertException;
 import com.roundrobine.movie.rentals.service.dto.CustomerDTO;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
+import com.roundrobine.movie.rentals.web.rest.util.KeysetPaginationUtil;
 
 import io.github.jhipster.web.util.HeaderUtil;
 import io.github.jhipster.web.util.PaginationUtil;
@@ -64,6 +66,9 @@ public class CustomerResource {
         if (customerDTO.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
+        if (customerDTO.getVersion() == null) {
+            throw new BadRequestAlertException("Invalid version", ENTITY_NAME, "versionnull");
+        }
         if (customerDTO.getUser() != null && customerDTO.getUser().getId() != null
             && customerDTO.getUser().getId() != customerDTO.getId()) {
             throw new BadRequestAlertException("Not a valid customer, ids do not match", ENTITY_NAME, "idnonotmatch");
@@ -75,17 +80,23 @@ public class CustomerResource {
     }
 
     /**
-     * {@code GET  /customers} : get all the customers.
+     * {@code GET  /customers} : get a page of the customers, read after the keyset of a continuation token
+     * rather than after an offset, so that every page costs the same.
      *
-     * @param pageable the pagination information.
+     * @param continuation the continuation token of the page, none for the first page.
+     * @param count whether to count all the customers in an {@code X-Total-Count} header, which scans them.
+     * @param pageable the size of the page, and the sort of the first page.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of customers in body.
      */
     @GetMapping("/customers")
-    public ResponseEntity<List<CustomerDTO>> getAllCustomers(Pageable pageable) {
+    public ResponseEntity<List<CustomerDTO>> getAllCustomers(@RequestParam(name = KeysetPaginationUtil.CONTINUATION_PARAMETER, required = false) String continuation,
+        @RequestParam(name = KeysetPaginationUtil.PAGE_PARAMETER, required = false) String page,
+        @RequestParam(defaultValue = "false") boolean count, Pageable pageable) {
         log.debug("REST request to get a page of Customers");
-        Page<CustomerDTO> page = customerService.findAll(pageable);
-        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
-        return ResponseEntity.ok().headers(headers).body(page.getContent());
+        KeysetSlice<CustomerDTO> slice = customerService.findAll(KeysetPaginationUtil.keyset(continuation, page, pageable.getSort()), pageable.getPageSize());
+        HttpHeaders headers = KeysetPaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice,
+            count ? customerService.count() : null);
+        return ResponseEntity.ok().headers(headers).body(slice.getContent());
     }
 
     /**
@@ -3,6 +3,8 @@ package com.roundrobine.movie.rentals.web.rest;
 import com.roundrobine.movie.rentals.service.MovieInventoryService;
 import com.roundrobine.movie.rentals.web.rest.errors.BadRequestAlertException;
 import com.roundrobine.movie.rentals.service.dto.MovieInventoryDTO;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
+import com.roundrobine.movie.rentals.web.rest.util.KeysetPaginationUtil;
 
 import io.github.jhipster.web.util.HeaderUtil;
 import io.github.jhipster.web.util.PaginationUtil;
@@ -81,6 +83,9 @@ public class MovieInventoryResource {
         if (movieInventoryDTO.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
+        if (movieInventoryDTO.getVersion() == null) {
+            throw new BadRequestAlertException("Invalid version", ENTITY_NAME, "versionnull");
+        }
         MovieInventoryDTO result = movieInventoryService.save(movieInventoryDTO);
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, movieInventoryDTO.getId().toString()))
@@ -88,17 +93,23 @@ public class MovieInventoryResource {
     }
 
     /**
-     * {@code GET  /movie-inventories} : get all the movieInventories.
+     * {@code GET  /movie-inventories} : get a page of the movieInventories, read after the keyset of a continuation token
+     * rather than after an offset, so that every page costs the same.
      *
-     * @param pageable the pagination information.
+     * @param continuation the continuation token of the page, none for the first page.
+     * @param count whether to count all the movieInventories in an {@code X-Total-Count} header, which scans them.
+     * @param pageable the size of the page, and the sort of the first page.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of movieInventories in body.
      */
     @GetMapping("/movie-inventories")
-    public ResponseEntity<List<MovieInventoryDTO>> getAllMovieInventories(Pageable pageable) {
+    public ResponseEntity<List<MovieInventoryDTO>> getAllMovieInventories(@RequestParam(name = KeysetPaginationUtil.CONTINUATION_PARAMETER, required = false) String continuation,
+        @RequestParam(name = KeysetPaginationUtil.PAGE_PARAMETER, required = false) String page,
+        @RequestParam(defaultValue = "false") boolean count, Pageable pageable) {
         log.debug("REST request to get a page of MovieInventories");
-        Page<MovieInventoryDTO> page = movieInventoryService.findAll(pageable);
-        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
-        return ResponseEntity.ok().headers(headers).body(page.getContent());
+        KeysetSlice<MovieInventoryDTO> slice = movieInventoryService.findAll(KeysetPaginationUtil.keyset(continuation, page, pageable.getSort()), pageable.getPageSize());
+        HttpHeaders headers = KeysetPaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice,
+            count ? movieInventoryService.count() : null);
+        return ResponseEntity.ok().headers(headers).body(slice.getContent());
     }
 
     /**
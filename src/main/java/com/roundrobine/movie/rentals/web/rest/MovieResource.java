@@ -1,8 +1,12 @@
 package com.roundrobine.movie.rentals.web.rest;
 
+import com.roundrobine.movie.rentals.service.MovieAvailabilityIndex;
 import com.roundrobine.movie.rentals.service.MovieService;
 import com.roundrobine.movie.rentals.web.rest.errors.BadRequestAlertException;
+import com.roundrobine.movie.rentals.service.dto.MovieAvailabilityDTO;
 import com.roundrobine.movie.rentals.service.dto.MovieDTO;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
+import com.roundrobine.movie.rentals.web.rest.util.KeysetPaginationUtil;
 
 import io.github.jhipster.web.util.HeaderUtil;
 import io.github.jhipster.web.util.PaginationUtil;
@@ -23,6 +27,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import static org.elasticsearch.index.query.QueryBuilders.*;
@@ -43,8 +48,11 @@ public class MovieResource {
 
     private final MovieService movieService;
 
-    public MovieResource(MovieService movieService) {
+    private final MovieAvailabilityIndex movieAvailabilityIndex;
+
+    public MovieResource(MovieService movieService, MovieAvailabilityIndex movieAvailabilityIndex) {
         this.movieService = movieService;
+        this.movieAvailabilityIndex = movieAvailabilityIndex;
     }
 
     /**
@@ -88,17 +96,46 @@ public class MovieResource {
     }
 
     /**
-     * {@code GET  /movies} : get all the movies.
+     * {@code GET  /movies} : get a page of the movies, read after the keyset of a continuation token
+     * rather than after an offset, so that every page costs the same.
      *
-     * @param pageable the pagination information.
+     * @param continuation the continuation token of the page, none for the first page.
+     * @param count whether to count all the movies in an {@code X-Total-Count} header, which scans them.
+     * @param pageable the size of the page, and the sort of the first page.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of movies in body.
      */
     @GetMapping("/movies")
-    public ResponseEntity<List<MovieDTO>> getAllMovies(Pageable pageable) {
+    public ResponseEntity<List<MovieDTO>> getAllMovies(@RequestParam(name = KeysetPaginationUtil.CONTINUATION_PARAMETER, required = false) String continuation,
+        @RequestParam(name = KeysetPaginationUtil.PAGE_PARAMETER, required = false) String page,
+        @RequestParam(defaultValue = "false") boolean count, Pageable pageable) {
         log.debug("REST request to get a page of Movies");
-        Page<MovieDTO> page = movieService.findAll(pageable);
-        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
-        return ResponseEntity.ok().headers(headers).body(page.getContent());
+        KeysetSlice<MovieDTO> slice = movieService.findAll(KeysetPaginationUtil.keyset(continuation, page, pageable.getSort()), pageable.getPageSize());
+        HttpHeaders headers = KeysetPaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice,
+            count ? movieService.count() : null);
+        return ResponseEntity.ok().headers(headers).body(slice.getContent());
+    }
+
+    /**
+     * {@code GET  /movies/availability} : get the number of available and rented copies of movies, counted in
+     * memory as copies are rented and returned.
+     *
+     * @param ids the ids of the movies, none for every movie with copies.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the availability of the movies in body,
+     * or with status {@code 400 (Bad Request)} if availability is not counted because the application runs as a
+     * cluster.
+     */
+    @GetMapping("/movies/availability")
+    public ResponseEntity<List<MovieAvailabilityDTO>> getMoviesAvailability(@RequestParam(required = false) List<Long> ids) {
+        log.debug("REST request to get the availability of Movies : {}", ids);
+        if (!movieAvailabilityIndex.isEnabled()) {
+            throw new BadRequestAlertException("Movie availability is not counted in a cluster", ENTITY_NAME,
+                "availabilitynotcounted");
+        }
+        if (ids == null || ids.isEmpty()) {
+            return ResponseEntity.ok(movieAvailabilityIndex.getAvailability());
+        }
+        return ResponseEntity.ok(ids.stream().distinct().map(movieAvailabilityIndex::getAvailability)
+            .collect(Collectors.toList()));
     }
 
     /**
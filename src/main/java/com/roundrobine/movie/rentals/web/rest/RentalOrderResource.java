@@ -1,13 +1,22 @@
 package com.roundrobine.movie.rentals.web.rest;
 
 import com.roundrobine.movie.rentals.domain.User;
+import com.roundrobine.movie.rentals.security.AuthoritiesConstants;
+import com.roundrobine.movie.rentals.service.CustomerCommandDispatcher;
+import com.roundrobine.movie.rentals.service.MovieAvailabilityIndex;
+import com.roundrobine.movie.rentals.service.OptimisticRetryExecutor;
 import com.roundrobine.movie.rentals.service.RentalOrderService;
 import com.roundrobine.movie.rentals.service.UserService;
 import com.roundrobine.movie.rentals.service.dto.CreateRentalOrderDTO;
 import com.roundrobine.movie.rentals.service.dto.ReturnRentedMovieDTO;
 import com.roundrobine.movie.rentals.web.rest.errors.BadRequestAlertException;
+import com.roundrobine.movie.rentals.web.rest.util.KeysetPaginationUtil;
+import com.roundrobine.movie.rentals.web.rest.util.NdjsonWriter;
 import com.roundrobine.movie.rentals.service.dto.RentalOrderDTO;
+import com.roundrobine.movie.rentals.service.dto.RentalOrderSummaryDTO;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.jhipster.web.util.HeaderUtil;
 import io.github.jhipster.web.util.PaginationUtil;
 import io.github.jhipster.web.util.ResponseUtil;
@@ -20,13 +29,18 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.StreamSupport;
 
 import static org.elasticsearch.index.query.QueryBuilders.*;
@@ -47,10 +61,21 @@ public class RentalOrderResource {
 
     private final RentalOrderService rentalOrderService;
     private final UserService userService;
+    private final MovieAvailabilityIndex movieAvailabilityIndex;
+    private final OptimisticRetryExecutor optimisticRetryExecutor;
+    private final CustomerCommandDispatcher customerCommandDispatcher;
+    private final ObjectMapper objectMapper;
 
-    public RentalOrderResource(RentalOrderService rentalOrderService, UserService userService) {
+    public RentalOrderResource(RentalOrderService rentalOrderService, UserService userService,
+                               MovieAvailabilityIndex movieAvailabilityIndex,
+                               OptimisticRetryExecutor optimisticRetryExecutor,
+                               CustomerCommandDispatcher customerCommandDispatcher, ObjectMapper objectMapper) {
         this.rentalOrderService = rentalOrderService;
+        this.objectMapper = objectMapper;
         this.userService = userService;
+        this.movieAvailabilityIndex = movieAvailabilityIndex;
+        this.optimisticRetryExecutor = optimisticRetryExecutor;
+        this.customerCommandDispatcher = customerCommandDispatcher;
     }
 
 
@@ -59,20 +84,40 @@ public class RentalOrderResource {
      *
      * @param createRentalOrderDTO the rentalOrderDTO to create.
      * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new rentalOrderDTO, or
-     * with status {@code 400 (Bad Request)} if the rentalOrder can not be created
+     * with status {@code 400 (Bad Request)} if the rentalOrder can not be created,
+     * or with status {@code 503 (Service Unavailable)} if too many requests of the customer are waiting.
      */
     @PostMapping("/rental-orders")
     public ResponseEntity<RentalOrderDTO> createRentalOrder(@Valid @RequestBody CreateRentalOrderDTO createRentalOrderDTO)
         throws URISyntaxException {
         log.debug("REST request to create a full RentalOrder : {}", createRentalOrderDTO);
 
-        final Optional<User> isUser = userService.getUserWithAuthorities();
-        if(!isUser.isPresent()) {
-            log.error("User is not logged in");
-            throw new BadRequestAlertException("User does not exist!", ENTITY_NAME, "userunavailable");
+        // reject copies that are already rented before touching the database
+        Set<Long> inventoryIds = createRentalOrderDTO.getOrder().keySet();
+        List<Long> claimedIds = movieAvailabilityIndex.tryClaim(inventoryIds).orElse(null);
+        if (claimedIds == null) {
+            throw new BadRequestAlertException("Some of the provided movie ids are already rented, " +
+                "the order will be canceled!", RentalOrderService.ORDER_RENTAL_SERVICE, "idsnotvalid");
         }
 
-        RentalOrderDTO result = rentalOrderService.processRentalOrder(isUser.get(),createRentalOrderDTO);
+        RentalOrderDTO result;
+        try {
+            final Optional<User> isUser = userService.getUserWithAuthorities();
+            if(!isUser.isPresent()) {
+                log.error("User is not logged in");
+                throw new BadRequestAlertException("User does not exist!", ENTITY_NAME, "userunavailable");
+            }
+
+            // the commands of a customer run one at a time on its lane; a concurrent change of the same copies
+            // makes this one fail on commit, it is then queued on the lane again after a backoff and run
+            // against the committed state, before any later command of the customer
+            User user = isUser.get();
+            result = customerCommandDispatcher.dispatchOnLane(user.getId(), "rent", lane -> optimisticRetryExecutor
+                .submit("rent", () -> rentalOrderService.processRentalOrder(user, createRentalOrderDTO), lane));
+        } catch (RuntimeException e) {
+            movieAvailabilityIndex.release(claimedIds);
+            throw e;
+        }
         return ResponseEntity.created(new URI("/api/rental-orders/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, false, ENTITY_NAME, result.getId().toString()))
             .body(result);
@@ -85,7 +130,8 @@ public class RentalOrderResource {
      * @param returnRentedMoviesDTO the list of movie copies to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated rentalOrderDTO,
      * or with status {@code 400 (Bad Request)} if the rentalOrderDTO is not valid,
-     * or with status {@code 500 (Internal Server Error)} if the rentalOrderDTO couldn't be updated.
+     * or with status {@code 500 (Internal Server Error)} if the rentalOrderDTO couldn't be updated,
+     * or with status {@code 503 (Service Unavailable)} if too many requests of the customer are waiting.
      */
     @PutMapping("/rental-orders/return")
     public ResponseEntity<List<RentalOrderDTO>> returnRentedMovies(@Valid @RequestBody ReturnRentedMovieDTO returnRentedMoviesDTO){
@@ -97,23 +143,77 @@ public class RentalOrderResource {
             throw new BadRequestAlertException("User does not exist!", ENTITY_NAME, "userunavailable");
         }
 
-        List<RentalOrderDTO> result = rentalOrderService.returnRentedMovieCopies(isUser.get(), returnRentedMoviesDTO);
+        User user = isUser.get();
+        List<RentalOrderDTO> result = customerCommandDispatcher.dispatchOnLane(user.getId(), "return",
+            lane -> optimisticRetryExecutor.submit("return",
+                () -> rentalOrderService.returnRentedMovieCopies(user, returnRentedMoviesDTO), lane));
         return ResponseEntity.ok()
             .body(result);
     }
 
     /**
-     * {@code GET  /rental-orders} : get all the rentalOrders.
+     * {@code GET  /rental-orders} : get a page of the rentalOrders, read after the keyset of a continuation token
+     * rather than after an offset, so that every page costs the same.
      *
-     * @param pageable the pagination information.
+     * @param continuation the continuation token of the page, none for the first page.
+     * @param count whether to count all the rentalOrders in an {@code X-Total-Count} header, which scans them.
+     * @param pageable the size of the page, and the sort of the first page.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of rentalOrders in body.
      */
     @GetMapping("/rental-orders")
-    public ResponseEntity<List<RentalOrderDTO>> getAllRentalOrders(Pageable pageable) {
+    public ResponseEntity<List<RentalOrderDTO>> getAllRentalOrders(@RequestParam(name = KeysetPaginationUtil.CONTINUATION_PARAMETER, required = false) String continuation,
+        @RequestParam(name = KeysetPaginationUtil.PAGE_PARAMETER, required = false) String page,
+        @RequestParam(defaultValue = "false") boolean count, Pageable pageable) {
         log.debug("REST request to get a page of RentalOrders");
-        Page<RentalOrderDTO> page = rentalOrderService.findAll(pageable);
-        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
-        return ResponseEntity.ok().headers(headers).body(page.getContent());
+        KeysetSlice<RentalOrderDTO> slice = rentalOrderService.findAll(KeysetPaginationUtil.keyset(continuation, page, pageable.getSort()), pageable.getPageSize());
+        HttpHeaders headers = KeysetPaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice,
+            count ? rentalOrderService.count() : null);
+        return ResponseEntity.ok().headers(headers).body(slice.getContent());
+    }
+
+    /**
+     * {@code GET  /rental-orders/summaries} : get a page of flat summaries of the rentalOrders, with the ids of their
+     * customer and movies instead of the entities, read after the keyset of a continuation token.
+     *
+     * @param continuation the continuation token of the page, none for the first page.
+     * @param pageable the size of the page, and the sort of the first page.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of summaries in body.
+     */
+    @GetMapping("/rental-orders/summaries")
+    public ResponseEntity<List<RentalOrderSummaryDTO>> getRentalOrderSummaries(
+        @RequestParam(name = KeysetPaginationUtil.CONTINUATION_PARAMETER, required = false) String continuation,
+        @RequestParam(name = KeysetPaginationUtil.PAGE_PARAMETER, required = false) String page, Pageable pageable) {
+        log.debug("REST request to get a page of RentalOrder summaries");
+        KeysetSlice<RentalOrderSummaryDTO> slice = rentalOrderService.findSummaries(KeysetPaginationUtil.keyset(continuation, page, pageable.getSort()), pageable.getPageSize());
+        HttpHeaders headers = KeysetPaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice, null);
+        return ResponseEntity.ok().headers(headers).body(slice.getContent());
+    }
+
+    /**
+     * {@code GET  /rental-orders/export} : export the rentalOrders created and last updated in two time ranges,
+     * in id order, as newline-delimited JSON streamed while they are read.
+     *
+     * @param createdFrom the start of the creation range, included, the epoch by default.
+     * @param createdTo the end of the creation range, excluded, now by default.
+     * @param updatedFrom the start of the last update range, included, the epoch by default.
+     * @param updatedTo the end of the last update range, excluded, now by default.
+     * @param response the response the rentalOrders are written to.
+     * @throws IOException if the response cannot be written.
+     */
+    @GetMapping(value = "/rental-orders/export", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public void exportRentalOrders(@RequestParam(required = false) Instant createdFrom,
+                                   @RequestParam(required = false) Instant createdTo,
+                                   @RequestParam(required = false) Instant updatedFrom,
+                                   @RequestParam(required = false) Instant updatedTo,
+                                   HttpServletResponse response) throws IOException {
+        log.debug("REST request to export RentalOrders created in [{}, {}) and updated in [{}, {})",
+            createdFrom, createdTo, updatedFrom, updatedTo);
+        response.setContentType(NdjsonWriter.APPLICATION_NDJSON_VALUE);
+        try (NdjsonWriter writer = new NdjsonWriter(objectMapper, response.getOutputStream())) {
+            long count = rentalOrderService.export(createdFrom, createdTo, updatedFrom, updatedTo, writer);
+            log.debug("Exported {} RentalOrders", count);
+        }
     }
 
     /**
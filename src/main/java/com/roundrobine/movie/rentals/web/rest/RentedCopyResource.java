@@ -1,9 +1,14 @@
 package com.roundrobine.movie.rentals.web.rest;
 
+import com.roundrobine.movie.rentals.security.AuthoritiesConstants;
 import com.roundrobine.movie.rentals.service.RentedCopyService;
 import com.roundrobine.movie.rentals.web.rest.errors.BadRequestAlertException;
+import com.roundrobine.movie.rentals.web.rest.util.KeysetPaginationUtil;
+import com.roundrobine.movie.rentals.web.rest.util.NdjsonWriter;
 import com.roundrobine.movie.rentals.service.dto.RentedCopyDTO;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.jhipster.web.util.HeaderUtil;
 import io.github.jhipster.web.util.PaginationUtil;
 import io.github.jhipster.web.util.ResponseUtil;
@@ -16,11 +21,15 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.StreamSupport;
@@ -43,8 +52,11 @@ public class RentedCopyResource {
 
     private final RentedCopyService rentedCopyService;
 
-    public RentedCopyResource(RentedCopyService rentedCopyService) {
+    private final ObjectMapper objectMapper;
+
+    public RentedCopyResource(RentedCopyService rentedCopyService, ObjectMapper objectMapper) {
         this.rentedCopyService = rentedCopyService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -88,17 +100,45 @@ public class RentedCopyResource {
     }
 
     /**
-     * {@code GET  /rented-copies} : get all the rentedCopies.
+     * {@code GET  /rented-copies} : get a page of the rentedCopies, read after the keyset of a continuation token
+     * rather than after an offset, so that every page costs the same.
      *
-     * @param pageable the pagination information.
+     * @param continuation the continuation token of the page, none for the first page.
+     * @param count whether to count all the rentedCopies in an {@code X-Total-Count} header, which scans them.
+     * @param pageable the size of the page, and the sort of the first page.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of rentedCopies in body.
      */
     @GetMapping("/rented-copies")
-    public ResponseEntity<List<RentedCopyDTO>> getAllRentedCopies(Pageable pageable) {
+    public ResponseEntity<List<RentedCopyDTO>> getAllRentedCopies(@RequestParam(name = KeysetPaginationUtil.CONTINUATION_PARAMETER, required = false) String continuation,
+        @RequestParam(name = KeysetPaginationUtil.PAGE_PARAMETER, required = false) String page,
+        @RequestParam(defaultValue = "false") boolean count, Pageable pageable) {
         log.debug("REST request to get a page of RentedCopies");
-        Page<RentedCopyDTO> page = rentedCopyService.findAll(pageable);
-        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
-        return ResponseEntity.ok().headers(headers).body(page.getContent());
+        KeysetSlice<RentedCopyDTO> slice = rentedCopyService.findAll(KeysetPaginationUtil.keyset(continuation, page, pageable.getSort()), pageable.getPageSize());
+        HttpHeaders headers = KeysetPaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice,
+            count ? rentedCopyService.count() : null);
+        return ResponseEntity.ok().headers(headers).body(slice.getContent());
+    }
+
+    /**
+     * {@code GET  /rented-copies/export} : export the rentedCopies rented in a time range, in id order,
+     * as newline-delimited JSON streamed while they are read.
+     *
+     * @param rentedFrom the start of the rent date range, included, the epoch by default.
+     * @param rentedTo the end of the rent date range, excluded, now by default.
+     * @param response the response the rentedCopies are written to.
+     * @throws IOException if the response cannot be written.
+     */
+    @GetMapping(value = "/rented-copies/export", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public void exportRentedCopies(@RequestParam(required = false) Instant rentedFrom,
+                                   @RequestParam(required = false) Instant rentedTo,
+                                   HttpServletResponse response) throws IOException {
+        log.debug("REST request to export RentedCopies rented in [{}, {})", rentedFrom, rentedTo);
+        response.setContentType(NdjsonWriter.APPLICATION_NDJSON_VALUE);
+        try (NdjsonWriter writer = new NdjsonWriter(objectMapper, response.getOutputStream())) {
+            long count = rentedCopyService.export(rentedFrom, rentedTo, writer);
+            log.debug("Exported {} RentedCopies", count);
+        }
     }
 
     /**
@@ -0,0 +1,60 @@
+package com.roundrobine.movie.rentals.web.rest;
+
+import com.roundrobine.movie.rentals.security.AuthoritiesConstants;
+import com.roundrobine.movie.rentals.service.dto.SearchReindexProgressDTO;
+import com.roundrobine.movie.rentals.service.search.SearchReindexJob;
+import com.roundrobine.movie.rentals.web.rest.errors.BadRequestAlertException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST controller for rebuilding the search indices with the {@link SearchReindexJob}.
+ */
+@RestController
+@RequestMapping("/api")
+@PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+public class SearchReindexResource {
+
+    private final Logger log = LoggerFactory.getLogger(SearchReindexResource.class);
+
+    private static final String ENTITY_NAME = "searchReindex";
+
+    private final SearchReindexJob searchReindexJob;
+
+    public SearchReindexResource(SearchReindexJob searchReindexJob) {
+        this.searchReindexJob = searchReindexJob;
+    }
+
+    /**
+     * {@code POST  /search/reindex} : Rebuild every search index in the background.
+     * Indices whose rebuild was interrupted are resumed from their last checkpoint.
+     *
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)},
+     * or with status {@code 400 (Bad Request)} if a reindex is already running.
+     */
+    @PostMapping("/search/reindex")
+    public ResponseEntity<Void> startReindex() {
+        log.debug("REST request to reindex all search indices");
+        if (!searchReindexJob.start()) {
+            throw new BadRequestAlertException("A reindex is already running", ENTITY_NAME, "reindexrunning");
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * {@code GET  /search/reindex} : get the progress of the last reindex.
+     *
+     * @return the rows indexed so far and the rows per second of each index.
+     */
+    @GetMapping("/search/reindex")
+    public List<SearchReindexProgressDTO> getReindexProgress() {
+        log.debug("REST request to get the reindex progress");
+        return searchReindexJob.getProgress();
+    }
+}
@@ -0,0 +1,94 @@
+package com.roundrobine.movie.rentals.web.rest;
+
+import com.roundrobine.movie.rentals.security.AuthoritiesConstants;
+import com.roundrobine.movie.rentals.service.dto.TariffDTO;
+import com.roundrobine.movie.rentals.service.tariff.MovieTariff;
+import com.roundrobine.movie.rentals.service.tariff.TariffEngine;
+import com.roundrobine.movie.rentals.service.tariff.TariffSnapshot;
+import com.roundrobine.movie.rentals.web.rest.errors.BadRequestAlertException;
+
+import io.github.jhipster.web.util.HeaderUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * REST controller for managing the {@link MovieTariff}s charged for each movie type.
+ */
+@RestController
+@RequestMapping("/api")
+@Validated
+public class TariffResource {
+
+    private final Logger log = LoggerFactory.getLogger(TariffResource.class);
+
+    private static final String ENTITY_NAME = "tariff";
+
+    @Value("${jhipster.clientApp.name}")
+    private String applicationName;
+
+    private final TariffEngine tariffEngine;
+
+    public TariffResource(TariffEngine tariffEngine) {
+        this.tariffEngine = tariffEngine;
+    }
+
+    /**
+     * {@code GET  /tariffs} : get the tariffs in force.
+     *
+     * @return the tariff of every movie type.
+     */
+    @GetMapping("/tariffs")
+    public List<TariffDTO> getAllTariffs() {
+        log.debug("REST request to get all Tariffs");
+        return toDto(tariffEngine.current());
+    }
+
+    /**
+     * {@code PUT  /tariffs} : Put new tariffs in force without a restart.
+     * Movie types that are left out keep their current tariff.
+     *
+     * @param tariffDTOs the tariffs to put in force.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body all the tariffs now in force,
+     * or with status {@code 400 (Bad Request)} if a tariff is not valid, or if the tariffs cannot be reloaded
+     * because the application runs as a cluster.
+     */
+    @PutMapping("/tariffs")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<List<TariffDTO>> updateTariffs(@RequestBody List<@Valid TariffDTO> tariffDTOs) {
+        log.debug("REST request to update Tariffs : {}", tariffDTOs);
+        if (!tariffEngine.isReloadable()) {
+            throw new BadRequestAlertException("Tariffs are set by application.tariffs in a cluster", ENTITY_NAME,
+                "tariffsnotreloadable");
+        }
+        List<MovieTariff> tariffs = new ArrayList<>(tariffDTOs.size());
+        try {
+            for (TariffDTO tariffDTO : tariffDTOs) {
+                tariffs.add(new MovieTariff(tariffDTO.getMovieType(), MovieTariff.toMinorUnits(tariffDTO.getPrice()),
+                    tariffDTO.getIncludedRentalDays(), tariffDTO.getBonusPoints()));
+            }
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            throw new BadRequestAlertException("Invalid tariff: " + e.getMessage(), ENTITY_NAME, "tariffnotvalid");
+        }
+        TariffSnapshot snapshot = tariffEngine.reload(tariffs);
+        return ResponseEntity.ok()
+            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME,
+                String.valueOf(snapshot.getVersion())))
+            .body(toDto(snapshot));
+    }
+
+    private static List<TariffDTO> toDto(TariffSnapshot snapshot) {
+        return snapshot.getTariffs().stream()
+            .map(TariffDTO::new)
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,56 @@
+package com.roundrobine.movie.rentals.web.rest.util;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * Streams the elements of a {@link Flux} as {@code application/stream+json}, one JSON document per line.
+ * <p>
+ * The elements are written one at a time by the executor given to {@link #stream(Flux, Executor)}, which
+ * requests the next element only once the previous one is written. Controllers that return the emitter pick
+ * the executor of their own streams, instead of the one Spring MVC uses for every asynchronous request.
+ */
+public final class JsonStreamEmitter {
+
+    private JsonStreamEmitter() {
+    }
+
+    /**
+     * @param elements the elements to write.
+     * @param executor the executor writing the elements.
+     * @return the emitter to return from the controller.
+     */
+    public static ResponseBodyEmitter stream(Flux<?> elements, Executor executor) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter() {
+            @Override
+            protected void extendResponse(ServerHttpResponse outputMessage) {
+                // the elements are written as JSON, which would otherwise become the content type of the stream
+                outputMessage.getHeaders().setContentType(MediaType.APPLICATION_STREAM_JSON);
+            }
+        };
+        Disposable subscription = elements
+            .publishOn(Schedulers.fromExecutor(executor), 1)
+            .subscribe(element -> send(emitter, element), emitter::completeWithError, emitter::complete);
+        // a client that goes away cancels the stream
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(error -> subscription.dispose());
+        return emitter;
+    }
+
+    private static void send(ResponseBodyEmitter emitter, Object element) {
+        try {
+            emitter.send(element, MediaType.APPLICATION_JSON);
+            emitter.send("\n", MediaType.TEXT_PLAIN);
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+}
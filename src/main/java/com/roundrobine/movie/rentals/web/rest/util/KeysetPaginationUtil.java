@@ -0,0 +1,150 @@
+package com.roundrobine.movie.rentals.web.rest.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.roundrobine.movie.rentals.repository.InvalidKeysetException;
+import com.roundrobine.movie.rentals.repository.Keyset;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
+
+import org.springframework.core.convert.ConversionService;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.support.DefaultFormattingConversionService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Utility class for keyset pagination with opaque continuation tokens.
+ * <p>
+ * A client reads the first page of a list with the usual {@code size} and {@code sort} parameters, and each
+ * next page by passing back the token of the {@value #CONTINUATION_HEADER} header, or by following the
+ * {@code next} link, until a page comes without one. A token carries the sort of the first page, which
+ * {@code sort} parameters cannot change. Page numbers are rejected, rather than silently ignored.
+ */
+public final class KeysetPaginationUtil {
+
+    /**
+     * Name of the request parameter of continuation tokens.
+     */
+    public static final String CONTINUATION_PARAMETER = "continuation";
+
+    /**
+     * Name of the response header of the continuation token of the next page.
+     */
+    public static final String CONTINUATION_HEADER = "X-Continuation";
+
+    /**
+     * Name of the request parameter of page numbers, which keyset pagination does not support.
+     */
+    public static final String PAGE_PARAMETER = "page";
+
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    private static final String ID = "id";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final ConversionService conversionService = new DefaultFormattingConversionService();
+
+    private KeysetPaginationUtil() {
+    }
+
+    /**
+     * Resolve the keyset of the page requested by a client.
+     *
+     * @param continuation the continuation token of the page, or {@code null} for the first page.
+     * @param page the page number requested by the client, which must be {@code null}.
+     * @param sort the sort of the first page, on a single property with ties broken by id; by id if unsorted.
+     * @return the keyset of the page.
+     * @throws InvalidKeysetException if a page number is given, the token is malformed, or the sort is on several
+     * properties.
+     */
+    public static Keyset keyset(String continuation, String page, Sort sort) {
+        if (page != null) {
+            throw new InvalidKeysetException("Pages are read with the " + CONTINUATION_PARAMETER +
+                " parameter, not by page number");
+        }
+        if (continuation != null && !continuation.isEmpty()) {
+            return decode(continuation);
+        }
+        List<Sort.Order> orders = sort.stream().collect(Collectors.toList());
+        if (orders.isEmpty()) {
+            return Keyset.first(ID, Sort.Direction.ASC);
+        }
+        Sort.Order order = orders.get(0);
+        if (orders.stream().skip(1).anyMatch(tieBreaker -> !tieBreaker.getProperty().equals(ID))) {
+            throw new InvalidKeysetException("Pages can only be sorted on a single property, with ties broken by id");
+        }
+        return Keyset.first(order.getProperty(), order.getDirection());
+    }
+
+    /**
+     * Generate pagination headers for a page read after a keyset: the continuation token and the link of the
+     * next page, if there is one, and the total count, if it was asked for.
+     *
+     * @param uriBuilder the builder of the URI of the request.
+     * @param slice the page.
+     * @param totalCount the total number of rows, or {@code null} if not counted.
+     * @return the headers.
+     */
+    public static HttpHeaders generatePaginationHttpHeaders(UriComponentsBuilder uriBuilder, KeysetSlice<?> slice,
+                                                            Long totalCount) {
+        HttpHeaders headers = new HttpHeaders();
+        slice.getNext().ifPresent(next -> {
+            String continuation = encode(next);
+            headers.add(CONTINUATION_HEADER, continuation);
+            String link = uriBuilder
+                .replaceQueryParam(PAGE_PARAMETER)
+                .replaceQueryParam("sort")
+                .replaceQueryParam(CONTINUATION_PARAMETER, continuation)
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + link + ">; rel=\"next\"");
+        });
+        if (totalCount != null) {
+            headers.add(TOTAL_COUNT_HEADER, Long.toString(totalCount));
+        }
+        return headers;
+    }
+
+    /**
+     * @param keyset a keyset after a row.
+     * @return the continuation token of the keyset, URL-safe.
+     */
+    static String encode(Keyset keyset) {
+        ObjectNode token = objectMapper.createObjectNode()
+            .put("p", keyset.getProperty())
+            .put("d", keyset.getDirection().name())
+            .put("v", conversionService.convert(keyset.getValue(), String.class))
+            .put("i", conversionService.convert(keyset.getId(), String.class));
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(token));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode " + keyset, e);
+        }
+    }
+
+    /**
+     * @param continuation a continuation token.
+     * @return the keyset of the token, whose values are strings.
+     * @throws InvalidKeysetException if the token is malformed.
+     */
+    static Keyset decode(String continuation) {
+        try {
+            JsonNode token = objectMapper.readTree(new String(Base64.getUrlDecoder().decode(continuation), StandardCharsets.UTF_8));
+            if (!token.path("p").isTextual() || !token.path("d").isTextual() ||
+                !token.path("v").isTextual() || !token.path("i").isTextual()) {
+                throw new InvalidKeysetException("Invalid continuation token " + continuation);
+            }
+            return Keyset.first(token.get("p").asText(), Sort.Direction.fromString(token.get("d").asText()))
+                .after(token.get("v").asText(), token.get("i").asText());
+        } catch (IOException | IllegalArgumentException e) {
+            throw new InvalidKeysetException("Invalid continuation token " + continuation, e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.roundrobine.movie.rentals.web.rest.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes values to a stream as newline-delimited JSON, one compact JSON document per line.
+ * <p>
+ * Each value is serialized straight to the stream as it is accepted, so a writer holds no more than the
+ * buffer of its generator, whatever the number of values. The stream is flushed when the writer is closed,
+ * but not closed.
+ */
+public class NdjsonWriter implements Consumer<Object>, Closeable {
+
+    /**
+     * The media type of newline-delimited JSON.
+     */
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final ObjectWriter objectWriter;
+
+    private final JsonGenerator generator;
+
+    public NdjsonWriter(ObjectMapper objectMapper, OutputStream outputStream) throws IOException {
+        this.objectWriter = objectMapper.writer()
+            .without(SerializationFeature.INDENT_OUTPUT)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.generator = objectMapper.getFactory().createGenerator(outputStream)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .setRootValueSeparator(null);
+    }
+
+    /**
+     * Write a value on its own line.
+     *
+     * @param value the value.
+     * @throws UncheckedIOException if the value cannot be written.
+     */
+    @Override
+    public void accept(Object value) {
+        try {
+            objectWriter.writeValue(generator, value);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
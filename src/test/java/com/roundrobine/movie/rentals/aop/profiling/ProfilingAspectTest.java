@@ -0,0 +1,62 @@
+package com.roundrobine.movie.rentals.aop.profiling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ProfilingAspect}.
+ */
+public class ProfilingAspectTest {
+
+    private MeterRegistry meterRegistry;
+
+    private ProceedingJoinPoint joinPoint;
+
+    @BeforeEach
+    public void setUp() throws Throwable {
+        meterRegistry = new SimpleMeterRegistry();
+        MethodSignature signature = mock(MethodSignature.class);
+        when(signature.getMethod()).thenReturn(ProfilingAspectTest.class.getDeclaredMethod("findAll"));
+        when(signature.getDeclaringType()).thenReturn(ProfilingAspectTest.class);
+        when(signature.getDeclaringTypeName()).thenReturn(ProfilingAspectTest.class.getName());
+        when(signature.getName()).thenReturn("findAll");
+        joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.proceed()).thenReturn("result");
+    }
+
+    @Test
+    public void recordsTheDurationOfEverySampledCall() throws Throwable {
+        ProfilingAspect profilingAspect = new ProfilingAspect(meterRegistry, 1);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(profilingAspect.profile(joinPoint)).isEqualTo("result");
+        }
+
+        assertThat(meterRegistry.get("method.duration").tag("class", "ProfilingAspectTest").tag("method", "findAll")
+            .timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    public void neitherTimesNorReadsTheArgumentsOfUnsampledCalls() throws Throwable {
+        ProfilingAspect profilingAspect = new ProfilingAspect(meterRegistry, 0);
+
+        assertThat(profilingAspect.profile(joinPoint)).isEqualTo("result");
+
+        assertThat(meterRegistry.find("method.duration").timer()).isNull();
+        verify(joinPoint, never()).getArgs();
+    }
+
+    void findAll() {
+    }
+}
@@ -0,0 +1,116 @@
+package com.roundrobine.movie.rentals.aop.sql;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SqlMetricsAspect}.
+ */
+public class SqlMetricsAspectTest {
+
+    private MeterRegistry meterRegistry;
+
+    private SqlMetricsAspect sqlMetricsAspect;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sqlMetricsAspect = new SqlMetricsAspect(meterRegistry, new ApplicationProperties());
+    }
+
+    @Test
+    public void recordsTheStatementsOfAServiceMethod() throws Throwable {
+        ProceedingJoinPoint joinPoint = joinPoint("findAll", invocation -> {
+            for (int i = 0; i < 2; i++) {
+                execute(SqlRecorder.current(), "select * from movie", 1000, 4);
+            }
+            return null;
+        });
+
+        sqlMetricsAspect.measureServiceMethod(joinPoint);
+        sqlMetricsAspect.measureServiceMethod(joinPoint);
+
+        assertThat(meterRegistry.get("sql.statements").tag("layer", SqlMetricsAspect.SERVICE)
+            .tag("method", "SqlMetricsAspectTest.findAll").summary().totalAmount()).isEqualTo(4);
+        assertThat(meterRegistry.get("sql.rows").tag("method", "SqlMetricsAspectTest.findAll").summary().totalAmount())
+            .isEqualTo(16);
+        assertThat(meterRegistry.get("sql.time").tag("method", "SqlMetricsAspectTest.findAll").timer().count())
+            .isEqualTo(2);
+    }
+
+    @Test
+    public void recordsTheRequestOnceWhenEndpointsAreNested() throws Throwable {
+        ProceedingJoinPoint inner = joinPoint("findAll", invocation -> {
+            execute(SqlRecorder.current(), "select * from movie", 1000, 1);
+            return null;
+        });
+        ProceedingJoinPoint outer = joinPoint("findOne", invocation -> sqlMetricsAspect.measureEndpoint(inner));
+
+        sqlMetricsAspect.measureEndpoint(outer);
+
+        assertThat(SqlRecorder.current().isBreakingDown()).isFalse();
+        assertThat(meterRegistry.get("sql.statements").tag("layer", SqlMetricsAspect.ENDPOINT)
+            .tag("method", "SqlMetricsAspectTest.findOne").summary().totalAmount()).isEqualTo(1);
+        assertThat(meterRegistry.find("sql.statements").tag("method", "SqlMetricsAspectTest.findAll").summary())
+            .isNull();
+    }
+
+    @Test
+    public void describesTheMostExpensiveStatements() {
+        SqlRecorder recorder = new SqlRecorder();
+        recorder.startBreakdown();
+        execute(recorder, "select 1", 1_000_000, 0);
+        execute(recorder, "select 2", 3_000_000, 0);
+        execute(recorder, "select 2", 3_000_000, 0);
+        recorder.prepared("update 3");
+        for (int i = 0; i < 5; i++) {
+            recorder.rowWritten();
+        }
+        recorder.executed(2_000_000);
+
+        String description = SqlMetricsAspect.describe(recorder.stopBreakdown(), 2);
+
+        assertThat(Arrays.asList(description.split("\n"))).containsExactly(
+            "",
+            "  2 x, 0 rows, 6 ms: select 2",
+            "  1 x, 5 rows, 2 ms: update 3",
+            "  and 1 more statements");
+    }
+
+    private static void execute(SqlRecorder recorder, String sql, long nanos, int rowsRead) {
+        recorder.prepared(sql);
+        recorder.executed(nanos);
+        for (int i = 0; i < rowsRead; i++) {
+            recorder.rowRead();
+        }
+    }
+
+    private static ProceedingJoinPoint joinPoint(String name, Answer<Object> body) throws Throwable {
+        MethodSignature signature = mock(MethodSignature.class);
+        when(signature.getMethod()).thenReturn(SqlMetricsAspectTest.class.getDeclaredMethod(name));
+        when(signature.getDeclaringType()).thenReturn(SqlMetricsAspectTest.class);
+        when(signature.getName()).thenReturn(name);
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.proceed()).thenAnswer(body);
+        return joinPoint;
+    }
+
+    void findAll() {
+    }
+
+    void findOne() {
+    }
+}
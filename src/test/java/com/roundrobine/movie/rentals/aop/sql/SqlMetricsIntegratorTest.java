@@ -0,0 +1,117 @@
+package com.roundrobine.movie.rentals.aop.sql;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.BootstrapServiceRegistryBuilder;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.H2Dialect;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Unit tests for {@link SqlMetricsIntegrator}, {@link SqlStatementInspector} and {@link SqlSessionEventListener},
+ * on an in-memory H2 database.
+ * <p>
+ * The entity of the test is mapped in {@code config/sql-metrics-orm.xml} rather than annotated, so that the
+ * application contexts of the other tests do not find it.
+ */
+public class SqlMetricsIntegratorTest {
+
+    private SessionFactory sessionFactory;
+
+    private SqlRecorder recorder;
+
+    @BeforeEach
+    public void setUp() {
+        sessionFactory = new MetadataSources(new StandardServiceRegistryBuilder(
+            new BootstrapServiceRegistryBuilder().applyIntegrator(new SqlMetricsIntegrator()).build())
+            .applySetting(AvailableSettings.URL, "jdbc:h2:mem:sqlmetrics;DB_CLOSE_DELAY=-1")
+            .applySetting(AvailableSettings.DIALECT, H2Dialect.class.getName())
+            .applySetting(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+            .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, 25)
+            .applySetting(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementInspector())
+            .applySetting(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SqlSessionEventListener.class.getName())
+            .build())
+            .addResource("config/sql-metrics-orm.xml")
+            .buildMetadata()
+            .buildSessionFactory();
+        recorder = SqlRecorder.current();
+        recorder.startBreakdown();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (recorder.isBreakingDown()) {
+            recorder.stopBreakdown();
+        }
+        sessionFactory.close();
+    }
+
+    @Test
+    public void recordsBatchedInsertsAsOneStatement() {
+        SqlUsage before = recorder.usage();
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            for (long id = 1; id <= 3; id++) {
+                session.persist(new Item(id));
+            }
+            session.getTransaction().commit();
+        }
+
+        SqlUsage usage = recorder.usage().minus(before);
+        assertThat(usage.getStatements()).isEqualTo(1);
+        assertThat(usage.getRows()).isEqualTo(3);
+        assertThat(usage.getNanos()).isPositive();
+        assertThat(recorder.stopBreakdown())
+            .extracting(SqlRecorder.StatementUsage::getExecutions, SqlRecorder.StatementUsage::getRows)
+            .containsExactly(tuple(1L, 3L));
+    }
+
+    @Test
+    public void breaksQueriesDownBySql() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            for (long id = 1; id <= 2; id++) {
+                session.persist(new Item(id));
+            }
+            session.getTransaction().commit();
+        }
+        for (int i = 0; i < 2; i++) {
+            try (Session session = sessionFactory.openSession()) {
+                assertThat(session.createQuery("select item from Item item", Item.class).list()).hasSize(2);
+            }
+        }
+
+        List<SqlRecorder.StatementUsage> breakdown = recorder.stopBreakdown();
+
+        assertThat(breakdown).hasSize(2);
+        assertThat(breakdown).filteredOn(statementUsage -> statementUsage.getSql().startsWith("select"))
+            .extracting(SqlRecorder.StatementUsage::getExecutions, SqlRecorder.StatementUsage::getRows)
+            .containsExactly(tuple(2L, 4L));
+    }
+
+    public static class Item {
+
+        private Long id;
+
+        public Item() {
+        }
+
+        Item(Long id) {
+            this.id = id;
+        }
+
+        public Long getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.roundrobine.movie.rentals.config;
+
+import io.github.jhipster.config.JHipsterProperties;
+import org.ehcache.config.ResourceType;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.expiry.ExpiryPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Unit tests for {@link CacheConfiguration}.
+ */
+public class CacheConfigurationTest {
+
+    private JHipsterProperties.Cache.Ehcache defaults;
+
+    @BeforeEach
+    public void setUp() {
+        defaults = new JHipsterProperties().getCache().getEhcache();
+        defaults.setMaxEntries(100);
+        defaults.setTimeToLiveSeconds(3600);
+    }
+
+    @Test
+    public void regionsWithoutPolicyUseTheDefaults() {
+        org.ehcache.config.CacheConfiguration<Object, Object> configuration = CacheConfiguration.regionConfiguration(null, defaults);
+
+        assertThat(configuration.getResourcePools().getResourceTypeSet()).containsExactly(ResourceType.Core.HEAP);
+        assertThat(configuration.getResourcePools().getPoolForResource(ResourceType.Core.HEAP).getSize()).isEqualTo(100);
+        assertThat(configuration.getExpiryPolicy().getExpiryForCreation(1L, 1L)).isEqualTo(Duration.ofSeconds(3600));
+        assertThat(configuration.getExpiryPolicy().getExpiryForAccess(1L, () -> 1L)).isNull();
+    }
+
+    @Test
+    public void regionsAreTieredOnHeapAndOffHeap() {
+        ApplicationProperties.CacheRegion region = new ApplicationProperties.CacheRegion();
+        region.setHeapEntries(1000L);
+        region.setOffHeapMb(32L);
+        region.setTimeToLiveSeconds(86400L);
+
+        org.ehcache.config.CacheConfiguration<Object, Object> configuration = CacheConfiguration.regionConfiguration(region, defaults);
+
+        assertThat(configuration.getResourcePools().getPoolForResource(ResourceType.Core.HEAP).getSize()).isEqualTo(1000);
+        assertThat(configuration.getResourcePools().getPoolForResource(ResourceType.Core.HEAP).getUnit()).isEqualTo(EntryUnit.ENTRIES);
+        assertThat(configuration.getResourcePools().getPoolForResource(ResourceType.Core.OFFHEAP).getSize()).isEqualTo(32);
+        assertThat(configuration.getResourcePools().getPoolForResource(ResourceType.Core.OFFHEAP).getUnit()).isEqualTo(MemoryUnit.MB);
+        assertThat(configuration.getExpiryPolicy().getExpiryForCreation(1L, 1L)).isEqualTo(Duration.ofSeconds(86400));
+    }
+
+    @Test
+    public void entriesOfRegionsWithTimeToIdleExpireAfterTheirLastRead() {
+        ApplicationProperties.CacheRegion region = new ApplicationProperties.CacheRegion();
+        region.setTimeToIdleSeconds(300L);
+
+        ExpiryPolicy<? super Object, ? super Object> expiry = CacheConfiguration.regionConfiguration(region, defaults).getExpiryPolicy();
+
+        assertThat(expiry.getExpiryForCreation(1L, 1L)).isEqualTo(Duration.ofSeconds(300));
+        assertThat(expiry.getExpiryForAccess(1L, () -> 1L)).isEqualTo(Duration.ofSeconds(300));
+    }
+
+    @Test
+    public void readOnlyRegionsOverrideTheConcurrencyStrategyOfTheirEntityOrCollection() {
+        ApplicationProperties.CacheRegion readOnly = new ApplicationProperties.CacheRegion();
+        readOnly.setReadOnly(true);
+        Map<String, ApplicationProperties.CacheRegion> regions = new LinkedHashMap<>();
+        regions.put("Authority", readOnly);
+        regions.put("User.authorities", readOnly);
+        regions.put("Movie", new ApplicationProperties.CacheRegion());
+
+        assertThat(CacheConfiguration.readOnlyCacheSettings(regions)).containsOnly(
+            entry("hibernate.ejb.classcache.com.roundrobine.movie.rentals.domain.Authority", "read-only"),
+            entry("hibernate.ejb.collectioncache.com.roundrobine.movie.rentals.domain.User.authorities", "read-only"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.roundrobine.movie.rentals.config;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.roundrobine.movie.rentals.VideoRentalApp;
+import com.roundrobine.movie.rentals.domain.Movie;
+import com.roundrobine.movie.rentals.domain.MovieInventory;
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+import com.roundrobine.movie.rentals.web.rest.MovieResourceIT;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests of the "cluster" profile: two nodes started in this JVM share a database, and an update on
+ * one node evicts the entity from the second-level cache of the other one.
+ */
+public class HazelcastCacheConfigurationIT {
+
+    private static final Duration MAX_INVALIDATION_LATENCY = Duration.ofSeconds(2);
+
+    private static ConfigurableApplicationContext node1;
+
+    private static ConfigurableApplicationContext node2;
+
+    @BeforeAll
+    public static void startNodes() {
+        String cluster = "video-rental-" + UUID.randomUUID();
+        node1 = startNode(cluster);
+        node2 = startNode(cluster);
+    }
+
+    @AfterAll
+    public static void stopNodes() {
+        if (node2 != null) {
+            node2.close();
+        }
+        if (node1 != null) {
+            node1.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext startNode(String cluster) {
+        return new SpringApplicationBuilder(VideoRentalApp.class)
+            .profiles(Constants.SPRING_PROFILE_CLUSTER)
+            .run("--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:videoRentalCluster;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+                "--application.cluster.name=" + cluster,
+                "--application.cluster.members=127.0.0.1");
+    }
+
+    @Test
+    public void nodesJoinOneCluster() {
+        assertThat(node1.getBean(HazelcastInstance.class).getCluster().getMembers()).hasSize(2);
+        assertThat(node2.getBean(HazelcastInstance.class).getCluster().getMembers()).hasSize(2);
+    }
+
+    @Test
+    public void updateOnOneNodeEvictsTheEntityCachedByTheOtherNode() throws InterruptedException {
+        Long id = inTransaction(node1, em -> {
+            Movie movie = MovieResourceIT.createEntity(em);
+            em.persist(movie);
+            MovieInventory movieInventory = MovieInventory.builder()
+                .createdAt(Instant.now())
+                .lastUpdatedAt(Instant.now())
+                .status(RentalStatus.AVAILABLE)
+                .movie(movie)
+                .build();
+            em.persist(movieInventory);
+            return movieInventory.getId();
+        });
+        RentalStatus cachedStatus = inTransaction(node2, em -> em.find(MovieInventory.class, id).getStatus());
+        assertThat(cachedStatus).isEqualTo(RentalStatus.AVAILABLE);
+        assertThat(secondLevelCache(node2).contains(MovieInventory.class, id)).isTrue();
+
+        inTransaction(node1, em -> {
+            em.find(MovieInventory.class, id).setStatus(RentalStatus.RENTED);
+            return null;
+        });
+        long updatedAt = System.nanoTime();
+        while (secondLevelCache(node2).contains(MovieInventory.class, id)) {
+            assertThat(Duration.ofNanos(System.nanoTime() - updatedAt)).isLessThan(MAX_INVALIDATION_LATENCY);
+            Thread.sleep(1);
+        }
+
+        RentalStatus status = inTransaction(node2, em -> em.find(MovieInventory.class, id).getStatus());
+        assertThat(status).isEqualTo(RentalStatus.RENTED);
+    }
+
+    private static <T> T inTransaction(ConfigurableApplicationContext node, Function<EntityManager, T> work) {
+        EntityManagerFactory entityManagerFactory = node.getBean(EntityManagerFactory.class);
+        return new TransactionTemplate(node.getBean(PlatformTransactionManager.class)).execute(status ->
+            work.apply(EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory)));
+    }
+
+    private static Cache secondLevelCache(ConfigurableApplicationContext node) {
+        return node.getBean(EntityManagerFactory.class).getCache();
+    }
+}
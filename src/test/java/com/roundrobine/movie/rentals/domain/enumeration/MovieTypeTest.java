@@ -0,0 +1,32 @@
+package com.roundrobine.movie.rentals.domain.enumeration;
+
+import com.roundrobine.movie.rentals.service.tariff.MovieTariff;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MovieTypeTest {
+
+    @Test
+    public void testBuiltInTariffs() {
+        assertThat(MovieType.NEW_RELEASE.getPriceInMinorUnits()).isEqualTo(40_00);
+        assertThat(MovieType.NEW_RELEASE.getIncludedRentalDays()).isEqualTo(1);
+        assertThat(MovieType.NEW_RELEASE.getBonusPoints()).isEqualTo(2);
+        assertThat(MovieType.REGULAR_FILM.getPriceInMinorUnits()).isEqualTo(30_00);
+        assertThat(MovieType.REGULAR_FILM.getIncludedRentalDays()).isEqualTo(3);
+        assertThat(MovieType.REGULAR_FILM.getBonusPoints()).isEqualTo(1);
+        assertThat(MovieType.OLD_FILM.getPriceInMinorUnits()).isEqualTo(30_00);
+        assertThat(MovieType.OLD_FILM.getIncludedRentalDays()).isEqualTo(5);
+        assertThat(MovieType.OLD_FILM.getBonusPoints()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEveryTypeIsPricedInSek() {
+        for (MovieType movieType : MovieType.values()) {
+            assertThat(movieType.getCurrency()).isEqualTo(Currency.SEK);
+            assertThat(MovieTariff.defaultFor(movieType).getPrice())
+                .isEqualByComparingTo(MovieTariff.toAmount(movieType.getPriceInMinorUnits()));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.roundrobine.movie.rentals.repository;
+
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link CatalogueRepository}, against an in-memory H2 database.
+ */
+public class CatalogueRepositoryTest {
+
+    private ConnectionPool connectionPool;
+
+    private DatabaseClient databaseClient;
+
+    private CatalogueRepository catalogueRepository;
+
+    @BeforeEach
+    public void setup() {
+        connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(
+            ConnectionFactories.get("r2dbc:h2:mem:///catalogueRepositoryTest?options=DB_CLOSE_DELAY=-1"))
+            .initialSize(1)
+            .maxSize(2)
+            .build());
+        databaseClient = DatabaseClient.create(connectionPool);
+        Flux.just(
+            "create table movie (id bigint primary key, title varchar(100) not null, description varchar(1000), " +
+                "type varchar(255) not null, poster_url varchar(255))",
+            "create table movie_inventory (id bigint primary key, last_updated_at timestamp not null, " +
+                "created_at timestamp not null, status varchar(255) not null, version bigint not null, " +
+                "movie_id bigint not null)",
+            "insert into movie values (1, 'Alien', 'In space', 'OLD_FILM', null)",
+            "insert into movie values (2, 'Aliens', null, 'REGULAR_FILM', 'aliens.jpg')",
+            "insert into movie values (3, 'Alien 3', null, 'NEW_RELEASE', null)",
+            "insert into movie_inventory values (10, '2020-10-17 12:00:00', '2020-10-01 08:30:00', 'AVAILABLE', 3, 2)",
+            "insert into movie_inventory values (11, '2020-10-17 12:00:00', '2020-10-01 08:30:00', 'RENTED', 4, 2)",
+            "insert into movie_inventory values (12, '2020-10-17 13:00:00', '2020-10-01 08:30:00', 'AVAILABLE', 0, 2)",
+            "insert into movie_inventory values (13, '2020-10-17 13:00:00', '2020-10-01 08:30:00', 'AVAILABLE', 0, 3)")
+            .concatMap(sql -> databaseClient.execute(sql).then())
+            .blockLast();
+        catalogueRepository = new CatalogueRepository(databaseClient);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        databaseClient.execute("drop all objects").then().block();
+        connectionPool.dispose();
+    }
+
+    @Test
+    public void testFindMoviesReadsAPageOrderedById() {
+        StepVerifier.create(catalogueRepository.findMovies(1, 2))
+            .assertNext(movie -> {
+                assertThat(movie.getId()).isEqualTo(2L);
+                assertThat(movie.getTitle()).isEqualTo("Aliens");
+                assertThat(movie.getType()).isEqualTo(MovieType.REGULAR_FILM);
+                assertThat(movie.getPosterUrl()).isEqualTo("aliens.jpg");
+            })
+            .assertNext(movie -> assertThat(movie.getId()).isEqualTo(3L))
+            .verifyComplete();
+    }
+
+    @Test
+    public void testFindMovie() {
+        StepVerifier.create(catalogueRepository.findMovie(1L))
+            .assertNext(movie -> {
+                assertThat(movie.getTitle()).isEqualTo("Alien");
+                assertThat(movie.getDescription()).isEqualTo("In space");
+            })
+            .verifyComplete();
+        StepVerifier.create(catalogueRepository.findMovie(4L)).verifyComplete();
+    }
+
+    @Test
+    public void testFindMovieInventoriesReadsTheCopiesOfAMovieInAStatus() {
+        StepVerifier.create(catalogueRepository.findMovieInventories(2L, RentalStatus.AVAILABLE))
+            .assertNext(movieInventory -> {
+                assertThat(movieInventory.getId()).isEqualTo(10L);
+                assertThat(movieInventory.getStatus()).isEqualTo(RentalStatus.AVAILABLE);
+                assertThat(movieInventory.getVersion()).isEqualTo(3L);
+                assertThat(movieInventory.getCreatedAt()).isEqualTo(Instant.parse("2020-10-01T08:30:00Z"));
+                assertThat(movieInventory.getLastUpdatedAt()).isEqualTo(Instant.parse("2020-10-17T12:00:00Z"));
+                assertThat(movieInventory.getMovie().getId()).isEqualTo(2L);
+                assertThat(movieInventory.getMovie().getTitle()).isEqualTo("Aliens");
+            })
+            .assertNext(movieInventory -> assertThat(movieInventory.getId()).isEqualTo(12L))
+            .verifyComplete();
+        StepVerifier.create(catalogueRepository.findMovieInventories(2L, RentalStatus.RENTED))
+            .assertNext(movieInventory -> assertThat(movieInventory.getId()).isEqualTo(11L))
+            .verifyComplete();
+    }
+}
@@ -0,0 +1,102 @@
+package com.roundrobine.movie.rentals.security.jwt;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import com.roundrobine.movie.rentals.security.AuthoritiesConstants;
+
+import io.github.jhipster.config.JHipsterProperties;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+
+import java.security.Key;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Measures {@link JWTFilter} on a request carrying a valid token, with the verified-token cache (a token seen
+ * before) and without it (a token seen for the first time, parsed and verified once), against the original
+ * filter, which parsed and verified the token twice.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JWTFilterBenchmark {
+
+    @Param({"0", "10000"})
+    public int verifiedTokenCacheSize;
+
+    private Key key;
+
+    private TokenProvider tokenProvider;
+
+    private JWTFilter jwtFilter;
+
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setup() {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt()
+            .setBase64Secret("fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8");
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getVerifiedTokenCache().setMaxSize(verifiedTokenCacheSize);
+        tokenProvider = new TokenProvider(jHipsterProperties, applicationProperties);
+        tokenProvider.init();
+        key = (Key) ReflectionTestUtils.getField(tokenProvider, "key");
+        jwtFilter = new JWTFilter(tokenProvider);
+        String jwt = tokenProvider.createToken(new UsernamePasswordAuthenticationToken("user", "user", Arrays.asList(
+            new SimpleGrantedAuthority(AuthoritiesConstants.USER), new SimpleGrantedAuthority(AuthoritiesConstants.ADMIN))),
+            false);
+        request = new MockHttpServletRequest();
+        request.addHeader(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
+    }
+
+    @Benchmark
+    public Object filter() throws Exception {
+        jwtFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Benchmark
+    public Object originalFilter() {
+        String jwt = request.getHeader(JWTFilter.AUTHORIZATION_HEADER).substring(7);
+        try {
+            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(jwt);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(jwt).getBody();
+        Collection<? extends GrantedAuthority> authorities =
+            Arrays.stream(claims.get("auth").toString().split(","))
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
+        User principal = new User(claims.getSubject(), "", authorities);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(principal, jwt, authorities));
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(JWTFilterBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -1,5 +1,6 @@
 package com.roundrobine.movie.rentals.security.jwt;
 
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
 import com.roundrobine.movie.rentals.security.AuthoritiesConstants;
 
 import java.security.Key;
@@ -25,16 +26,20 @@ public class TokenProviderTest {
 
     private static final long ONE_MINUTE = 60000;
 
+    private static final String BASE64_SECRET =
+        "fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8";
+
     private Key key;
     private TokenProvider tokenProvider;
 
     @BeforeEach
     public void setup() {
-        tokenProvider = new TokenProvider( new JHipsterProperties());
-        key = Keys.hmacShaKeyFor(Decoders.BASE64
-            .decode("fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8"));
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(BASE64_SECRET);
+        tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties());
+        tokenProvider.init();
+        key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(BASE64_SECRET));
 
-        ReflectionTestUtils.setField(tokenProvider, "key", key);
         ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", ONE_MINUTE);
     }
 
@@ -83,6 +88,51 @@ public class TokenProviderTest {
         assertThat(isTokenValid).isEqualTo(false);
     }
 
+    @Test
+    public void testAuthenticateReturnsTheAuthoritiesOfTheToken() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        Optional<Authentication> authentication = tokenProvider.authenticate(token);
+
+        assertThat(authentication).hasValueSatisfying(value -> {
+            assertThat(value.getName()).isEqualTo("anonymous");
+            assertThat(value.getCredentials()).isNull();
+            assertThat(value.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactly(AuthoritiesConstants.ANONYMOUS);
+        });
+    }
+
+    @Test
+    public void testAuthenticateReusesThePrincipalOfAVerifiedToken() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        Authentication first = tokenProvider.authenticate(token).get();
+        Authentication second = tokenProvider.authenticate(new String(token.toCharArray())).get();
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getPrincipal()).isSameAs(first.getPrincipal());
+        assertThat(second.getCredentials()).isNull();
+        assertThat(second.getAuthorities()).isEqualTo(first.getAuthorities());
+    }
+
+    @Test
+    public void testAuthenticateRejectsInvalidTokens() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(tokenProvider.authenticate(token.substring(1))).isEmpty();
+        assertThat(tokenProvider.authenticate(createTokenWithDifferentSignature())).isEmpty();
+        assertThat(tokenProvider.authenticate(createUnsupportedToken())).isEmpty();
+    }
+
+    @Test
+    public void testAuthenticateRejectsExpiredTokens() {
+        ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", -ONE_MINUTE);
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(tokenProvider.authenticate(token)).isEmpty();
+        assertThat(tokenProvider.authenticate(token)).isEmpty();
+    }
+
     private Authentication createAuthentication() {
         Collection<GrantedAuthority> authorities = new ArrayList<>();
         authorities.add(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS));
@@ -0,0 +1,67 @@
+package com.roundrobine.movie.rentals.security.jwt;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link VerifiedTokenCache}.
+ */
+public class VerifiedTokenCacheTest {
+
+    private static final long NOW = 1_000_000;
+
+    @Test
+    public void returnsThePrincipalUntilTheTokenExpires() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        User principal = principal("a");
+
+        cache.put("token-a", principal, NOW + 100, NOW);
+
+        assertThat(cache.get("token-a", NOW + 99)).isSameAs(principal);
+        assertThat(cache.get("token-b", NOW + 99)).isNull();
+        assertThat(cache.get("token-a", NOW + 100)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void dropsExpiredEntriesFirstOnceFull() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(2);
+        cache.put("token-a", principal("a"), NOW + 10, NOW);
+        cache.put("token-b", principal("b"), NOW + 1000, NOW);
+
+        cache.put("token-c", principal("c"), NOW + 1000, NOW + 10);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("token-b", NOW + 10)).isNotNull();
+        assertThat(cache.get("token-c", NOW + 10)).isNotNull();
+    }
+
+    @Test
+    public void neverHoldsMoreThanItsMaximumSize() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(3);
+
+        for (int i = 0; i < 10; i++) {
+            cache.put("token-" + i, principal(Integer.toString(i)), NOW + 1000, NOW);
+        }
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.get("token-9", NOW)).isNotNull();
+    }
+
+    @Test
+    public void cachesNothingWhenDisabled() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(0);
+
+        cache.put("token-a", principal("a"), NOW + 100, NOW);
+
+        assertThat(cache.get("token-a", NOW)).isNull();
+    }
+
+    private static User principal(String name) {
+        return new User(name, "", Collections.emptyList());
+    }
+}
@@ -0,0 +1,155 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import com.roundrobine.movie.rentals.domain.Movie;
+import com.roundrobine.movie.rentals.repository.Keyset;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
+import com.roundrobine.movie.rentals.service.dto.MovieDTO;
+import com.roundrobine.movie.rentals.service.dto.MovieInventoryDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link CataloguePageCache}.
+ */
+public class CataloguePageCacheTest {
+
+    private static final Keyset FIRST = Keyset.first("id", Sort.Direction.ASC);
+
+    private static final Keyset SECOND = FIRST.after(2L, 2L);
+
+    private MeterRegistry meterRegistry;
+
+    private CataloguePageCache cataloguePageCache;
+
+    private AtomicInteger queries;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cataloguePageCache = new CataloguePageCache(new ApplicationProperties(), meterRegistry);
+        queries = new AtomicInteger();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    public void pagesAreReadOnceUntilEvicted() {
+        KeysetSlice<MovieDTO> page = movies(FIRST, 1L, 2L);
+
+        assertThat(movies(FIRST, 1L, 2L)).isSameAs(page);
+        assertThat(queries.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("catalogue.cache.gets").tag("region", "movies").tag("result", "hit")
+            .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("catalogue.cache.hit.ratio").tag("region", "movies").gauge().value())
+            .isEqualTo(0.5);
+    }
+
+    @Test
+    public void updatesOnlyEvictThePagesHoldingTheUpdatedRows() {
+        movies(FIRST, 1L, 2L);
+        movies(SECOND, 3L, 4L);
+        cataloguePageCache.movieCount(queries::incrementAndGet);
+
+        cataloguePageCache.onMoviesUpdated(Collections.singleton(3L));
+
+        movies(FIRST, 1L, 2L);
+        movies(SECOND, 3L, 4L);
+        cataloguePageCache.movieCount(queries::incrementAndGet);
+        assertThat(queries.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void updatesEvictEveryPageWhilePagesAreSortedOnAMutableProperty() {
+        Keyset byTitle = Keyset.first("title", Sort.Direction.ASC);
+        movies(FIRST, 1L, 2L);
+        movies(byTitle, 3L, 4L);
+
+        cataloguePageCache.onMoviesUpdated(Collections.singleton(5L));
+
+        movies(FIRST, 1L, 2L);
+        movies(byTitle, 4L, 5L);
+        assertThat(queries.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void insertsAndDeletesEvictEveryPageAndTheCount() {
+        movies(FIRST, 1L, 2L);
+        movies(SECOND, 3L, 4L);
+        cataloguePageCache.movieCount(queries::incrementAndGet);
+
+        cataloguePageCache.onMoviesInsertedOrDeleted();
+
+        movies(FIRST, 1L, 2L);
+        movies(SECOND, 3L, 4L);
+        cataloguePageCache.movieCount(queries::incrementAndGet);
+        assertThat(queries.get()).isEqualTo(6);
+    }
+
+    @Test
+    public void movieUpdatesEvictThePagesOfTheirCopies() {
+        KeysetSlice<MovieInventoryDTO> page = new KeysetSlice<>(Arrays.asList(
+            MovieInventoryDTO.builder().id(10L).movie(Movie.builder().id(1L).build()).build(),
+            MovieInventoryDTO.builder().id(11L).movie(Movie.builder().id(2L).build()).build()), null);
+        cataloguePageCache.movieInventories(FIRST, 2, () -> {
+            queries.incrementAndGet();
+            return page;
+        });
+
+        cataloguePageCache.onMoviesUpdated(Collections.singleton(2L));
+
+        cataloguePageCache.movieInventories(FIRST, 2, () -> {
+            queries.incrementAndGet();
+            return page;
+        });
+        assertThat(queries.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void readsRacingAnEvictionAreNotCached() {
+        cataloguePageCache.movies(FIRST, 2, () -> {
+            cataloguePageCache.onMoviesUpdated(Collections.singleton(1L));
+            return page(1L, 2L);
+        });
+
+        movies(FIRST, 1L, 2L);
+        assertThat(queries.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void readsInsideATransactionBypassTheCache() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        movies(FIRST, 1L, 2L);
+        movies(FIRST, 1L, 2L);
+
+        assertThat(queries.get()).isEqualTo(2);
+    }
+
+    private KeysetSlice<MovieDTO> movies(Keyset keyset, Long... ids) {
+        return cataloguePageCache.movies(keyset, ids.length, () -> {
+            queries.incrementAndGet();
+            return page(ids);
+        });
+    }
+
+    private static KeysetSlice<MovieDTO> page(Long... ids) {
+        return new KeysetSlice<>(Arrays.stream(ids).map(id -> MovieDTO.builder().id(id).build())
+            .collect(Collectors.toList()), null);
+    }
+}
@@ -0,0 +1,202 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link CustomerCommandDispatcher}.
+ */
+public class CustomerCommandDispatcherTest {
+
+    private MeterRegistry meterRegistry;
+
+    private CustomerCommandDispatcher customerCommandDispatcher;
+
+    private ExecutorService requests;
+
+    @BeforeEach
+    public void setUp() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getCustomerLanes().setLanes(4);
+        applicationProperties.getCustomerLanes().setQueueCapacity(2);
+        meterRegistry = new SimpleMeterRegistry();
+        customerCommandDispatcher = new CustomerCommandDispatcher(applicationProperties, meterRegistry,
+            new MockEnvironment());
+        requests = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        requests.shutdownNow();
+        customerCommandDispatcher.shutdown();
+    }
+
+    @Test
+    public void commandsOfACustomerRunOneAtATime() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            int command = i;
+            results.add(requests.submit(() -> customerCommandDispatcher.dispatch(1L, "rent", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(50);
+                running.decrementAndGet();
+                return command;
+            })));
+        }
+
+        assertThat(results.get(0).get(5, TimeUnit.SECONDS)).isEqualTo(0);
+        assertThat(results.get(1).get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(maxRunning).hasValue(1);
+        assertThat(meterRegistry.timer("rental.lane.queue.wait", "operation", "rent").count()).isEqualTo(2);
+    }
+
+    @Test
+    public void commandsOfCustomersOnDifferentLanesRunInParallel() throws Exception {
+        long first = 1L;
+        long second = 2L;
+        while (CustomerCommandDispatcher.laneOf(second, 4) == CustomerCommandDispatcher.laneOf(first, 4)) {
+            second++;
+        }
+        long secondCustomer = second;
+        CyclicBarrier bothRunning = new CyclicBarrier(2);
+        Future<Boolean> firstResult = requests.submit(() ->
+            customerCommandDispatcher.dispatch(first, "rent", () -> await(bothRunning)));
+        Future<Boolean> secondResult = requests.submit(() ->
+            customerCommandDispatcher.dispatch(secondCustomer, "rent", () -> await(bothRunning)));
+
+        assertThat(firstResult.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(secondResult.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void commandsAreRejectedOnceTheLaneIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        requests.submit(() -> customerCommandDispatcher.dispatch(1L, "rent", () -> {
+            started.countDown();
+            return await(release);
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 2; i++) {
+            requests.submit(() -> customerCommandDispatcher.dispatch(1L, "rent", () -> true));
+        }
+        while (customerCommandDispatcher.getQueueDepth() < 2) {
+            Thread.sleep(1);
+        }
+
+        assertThatThrownBy(() -> customerCommandDispatcher.dispatch(1L, "rent", () -> true))
+            .isInstanceOf(CustomerLaneFullException.class);
+        release.countDown();
+    }
+
+    @Test
+    public void failuresOfACommandAreRethrown() {
+        assertThatThrownBy(() -> customerCommandDispatcher.dispatch(1L, "return", () -> {
+            throw new IllegalArgumentException("not rented");
+        })).isInstanceOf(IllegalArgumentException.class).hasMessage("not rented");
+    }
+
+    @Test
+    public void theLaneRunsCommandsOfOtherCustomersBetweenTheStepsOfACommand() throws Exception {
+        long otherCustomer = 2L;
+        while (CustomerCommandDispatcher.laneOf(otherCustomer, 4) != CustomerCommandDispatcher.laneOf(1L, 4)) {
+            otherCustomer++;
+        }
+        CountDownLatch otherCommandRan = new CountDownLatch(1);
+        Future<Boolean> stepped = requests.submit(() -> customerCommandDispatcher.dispatchOnLane(1L, "rent", lane -> {
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            // the second step is queued on the lane a while after the first one, like a retry after a backoff
+            lane.execute(() -> CompletableFuture.delayedExecutor(300, TimeUnit.MILLISECONDS)
+                .execute(() -> lane.execute(() -> result.complete(await(otherCommandRan)))));
+            return result;
+        }));
+        Thread.sleep(20);
+
+        assertThat(customerCommandDispatcher.dispatch(otherCustomer, "return", () -> true)).isTrue();
+        otherCommandRan.countDown();
+        assertThat(stepped.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.timer("rental.lane.queue.wait", "operation", "rent").count()).isEqualTo(2);
+    }
+
+    @Test
+    public void laterCommandsOfACustomerWaitForEveryStepOfItsCommand() throws Exception {
+        List<String> ran = new CopyOnWriteArrayList<>();
+        CountDownLatch firstStepRan = new CountDownLatch(1);
+        Future<Boolean> stepped = requests.submit(() -> customerCommandDispatcher.dispatchOnLane(1L, "rent", lane -> {
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            lane.execute(() -> {
+                ran.add("rent attempt 1");
+                firstStepRan.countDown();
+                CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS).execute(() -> lane.execute(() -> {
+                    ran.add("rent attempt 2");
+                    result.complete(true);
+                }));
+            });
+            return result;
+        }));
+        assertThat(firstStepRan.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Future<Boolean> returned = requests.submit(() -> customerCommandDispatcher.dispatch(1L, "return", () -> {
+            ran.add("return");
+            return true;
+        }));
+        Thread.sleep(20);
+        Future<Boolean> rentedAgain = requests.submit(() -> customerCommandDispatcher.dispatch(1L, "rent", () -> {
+            ran.add("rent");
+            return true;
+        }));
+
+        assertThat(stepped.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(returned.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(rentedAgain.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(ran).containsExactly("rent attempt 1", "rent attempt 2", "return", "rent");
+    }
+
+    @Test
+    public void sequentialCustomersAreSpreadOverAllLanes() {
+        Set<Integer> lanes = new HashSet<>();
+        for (long customerId = 1; customerId <= 16; customerId++) {
+            lanes.add(CustomerCommandDispatcher.laneOf(customerId, 4));
+        }
+        assertThat(lanes).containsExactlyInAnyOrder(0, 1, 2, 3);
+    }
+
+    private static boolean await(CyclicBarrier barrier) {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+            return true;
+        } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
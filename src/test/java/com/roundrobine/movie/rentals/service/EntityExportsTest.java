@@ -0,0 +1,45 @@
+package com.roundrobine.movie.rentals.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link EntityExports}.
+ */
+public class EntityExportsTest {
+
+    @Test
+    public void testEntitiesAreMappedInOrderAndThePersistenceContextIsCleared() {
+        EntityManager entityManager = mock(EntityManager.class);
+        List<String> exported = new ArrayList<>();
+        Stream<Long> entities = LongStream.rangeClosed(1, 2 * EntityExports.CLEAR_INTERVAL + 1).boxed();
+
+        long count = EntityExports.export(entities, entityManager, id -> "dto-" + id, exported::add);
+
+        assertThat(count).isEqualTo(2 * EntityExports.CLEAR_INTERVAL + 1);
+        assertThat(exported).hasSize(2 * EntityExports.CLEAR_INTERVAL + 1);
+        assertThat(exported.get(0)).isEqualTo("dto-1");
+        assertThat(exported.get(exported.size() - 1)).isEqualTo("dto-" + (2 * EntityExports.CLEAR_INTERVAL + 1));
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    public void testUnboundedRangesDefaultToTheEpochAndNow() {
+        Instant before = Instant.now();
+
+        assertThat(EntityExports.from(null)).isEqualTo(Instant.EPOCH);
+        assertThat(EntityExports.to(null)).isBetween(before, Instant.now());
+        assertThat(EntityExports.from(before)).isEqualTo(before);
+        assertThat(EntityExports.to(before)).isEqualTo(before);
+    }
+}
@@ -0,0 +1,249 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.domain.Movie;
+import com.roundrobine.movie.rentals.domain.MovieInventory;
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+import com.roundrobine.movie.rentals.repository.MovieInventoryRepository;
+import com.roundrobine.movie.rentals.service.dto.MovieAvailabilityDTO;
+import com.roundrobine.movie.rentals.service.dto.MovieInventoryStatusDTO;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MovieAvailabilityIndexTest {
+
+    private MovieInventoryRepository movieInventoryRepository;
+
+    private MovieAvailabilityIndex movieAvailabilityIndex;
+
+    @BeforeEach
+    public void setup() {
+        movieInventoryRepository = mock(MovieInventoryRepository.class);
+        when(movieInventoryRepository.findAllStatuses()).thenReturn(Arrays.asList(
+            new MovieInventoryStatusDTO(1L, 10L, RentalStatus.AVAILABLE, 1L),
+            new MovieInventoryStatusDTO(2L, 10L, RentalStatus.AVAILABLE, 1L),
+            new MovieInventoryStatusDTO(100_000L, 20L, RentalStatus.AVAILABLE, 1L),
+            new MovieInventoryStatusDTO(3L, 10L, RentalStatus.RENTED, 1L)));
+        movieAvailabilityIndex = new MovieAvailabilityIndex(movieInventoryRepository, new MockEnvironment());
+        movieAvailabilityIndex.rebuild();
+    }
+
+    @Test
+    public void testClaimIsAllOrNothing() {
+        assertThat(movieAvailabilityIndex.tryClaim(Arrays.asList(1L, 3L))).isEmpty();
+        assertThat(movieAvailabilityIndex.isAvailable(1L)).isTrue();
+
+        Optional<List<Long>> claim = movieAvailabilityIndex.tryClaim(Arrays.asList(1L, 100_000L));
+        assertThat(claim).contains(Arrays.asList(1L, 100_000L));
+        assertThat(movieAvailabilityIndex.isAvailable(1L)).isFalse();
+        assertThat(movieAvailabilityIndex.tryClaim(Collections.singletonList(100_000L))).isEmpty();
+
+        movieAvailabilityIndex.release(claim.get());
+        assertThat(movieAvailabilityIndex.isAvailable(1L)).isTrue();
+        assertThat(movieAvailabilityIndex.isAvailable(100_000L)).isTrue();
+    }
+
+    @Test
+    public void testUnknownCopiesAreLeftToTheDatabase() {
+        assertThat(movieAvailabilityIndex.tryClaim(Collections.singletonList(42L))).contains(Collections.emptyList());
+        assertThat(movieAvailabilityIndex.isAvailable(42L)).isFalse();
+    }
+
+    @Test
+    public void testReleaseOnlyGivesBackTheCopiesTheClaimTook() {
+        List<Long> claimedIds = movieAvailabilityIndex.tryClaim(Arrays.asList(1L, 42L)).get();
+        movieAvailabilityIndex.onSaved(Collections.singletonList(
+            MovieInventory.builder().id(42L).status(RentalStatus.RENTED).version(1L).build()));
+        save(2L, RentalStatus.RENTED, 1L);
+
+        movieAvailabilityIndex.release(claimedIds);
+
+        assertThat(movieAvailabilityIndex.isAvailable(42L)).isFalse();
+        assertThat(movieAvailabilityIndex.isAvailable(1L)).isFalse();
+    }
+
+    @Test
+    public void testClaimsWaitForTheRebuild() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch readDone = new CountDownLatch(1);
+        MovieInventoryRepository movieInventoryRepository = mock(MovieInventoryRepository.class);
+        when(movieInventoryRepository.findAllStatuses()).thenAnswer(invocation -> {
+            reading.countDown();
+            readDone.await();
+            return Collections.singletonList(new MovieInventoryStatusDTO(7L, 10L, RentalStatus.RENTED, 1L));
+        });
+        MovieAvailabilityIndex index = new MovieAvailabilityIndex(movieInventoryRepository, new MockEnvironment());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> rebuild = executor.submit(index::rebuild);
+        reading.await(10, TimeUnit.SECONDS);
+
+        Future<Optional<List<Long>>> claim = executor.submit(() -> index.tryClaim(Collections.singletonList(7L)));
+        assertThatThrownBy(() -> claim.get(100, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+        readDone.countDown();
+
+        rebuild.get(10, TimeUnit.SECONDS);
+        assertThat(claim.get(10, TimeUnit.SECONDS)).isEmpty();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testSavedAndDeletedInventoriesUpdateTheIndex() {
+        movieAvailabilityIndex.onSaved(Arrays.asList(
+            MovieInventory.builder().id(3L).status(RentalStatus.AVAILABLE).version(2L).build(),
+            MovieInventory.builder().id(2L).status(RentalStatus.RENTED).version(2L).build()));
+        assertThat(movieAvailabilityIndex.isAvailable(3L)).isTrue();
+        assertThat(movieAvailabilityIndex.tryClaim(Collections.singletonList(2L))).isEmpty();
+
+        movieAvailabilityIndex.onDeleted(3L);
+        assertThat(movieAvailabilityIndex.isAvailable(3L)).isFalse();
+    }
+
+    @Test
+    public void testStatusChangesUpdateTheIndex() {
+        save(2L, RentalStatus.RENTED, 1L, 2L);
+        assertThat(movieAvailabilityIndex.isAvailable(1L)).isFalse();
+        assertThat(movieAvailabilityIndex.isAvailable(2L)).isFalse();
+
+        save(2L, RentalStatus.AVAILABLE, 3L);
+        assertThat(movieAvailabilityIndex.isAvailable(3L)).isTrue();
+    }
+
+    @Test
+    public void testOlderStatusesAreIgnored() {
+        save(3L, RentalStatus.RENTED, 1L);
+        save(2L, RentalStatus.AVAILABLE, 1L);
+        assertThat(movieAvailabilityIndex.isAvailable(1L)).isFalse();
+        assertThat(movieAvailabilityIndex.getAvailability(10L)).isEqualTo(new MovieAvailabilityDTO(10L, 1, 2));
+
+        movieAvailabilityIndex.onDeleted(2L);
+        save(2L, RentalStatus.AVAILABLE, 2L);
+        assertThat(movieAvailabilityIndex.isAvailable(2L)).isFalse();
+        assertThat(movieAvailabilityIndex.getAvailability(10L)).isEqualTo(new MovieAvailabilityDTO(10L, 0, 2));
+    }
+
+    @Test
+    public void testRebuildKeepsTheNewerStatuses() {
+        save(2L, RentalStatus.RENTED, 1L);
+        movieAvailabilityIndex.onDeleted(2L);
+
+        movieAvailabilityIndex.rebuild();
+
+        assertThat(movieAvailabilityIndex.isAvailable(1L)).isFalse();
+        assertThat(movieAvailabilityIndex.isAvailable(2L)).isFalse();
+        assertThat(movieAvailabilityIndex.getAvailability(10L)).isEqualTo(new MovieAvailabilityDTO(10L, 0, 2));
+    }
+
+    @Test
+    public void testIndexIsOffInACluster() {
+        MovieAvailabilityIndex index = new MovieAvailabilityIndex(movieInventoryRepository,
+            new MockEnvironment().withProperty("spring.profiles.active", "cluster"));
+        index.rebuild();
+        index.onSaved(Collections.singletonList(
+            MovieInventory.builder().id(1L).status(RentalStatus.RENTED).version(2L).build()));
+
+        assertThat(index.isEnabled()).isFalse();
+        assertThat(index.tryClaim(Arrays.asList(1L, 3L))).contains(Collections.emptyList());
+        assertThat(index.getAvailability()).isEmpty();
+    }
+
+    @Test
+    public void testMovieAvailabilityIsCountedFromTheCommittedStatuses() {
+        assertThat(movieAvailabilityIndex.getAvailability()).containsExactlyInAnyOrder(
+            new MovieAvailabilityDTO(10L, 2, 1), new MovieAvailabilityDTO(20L, 1, 0));
+        assertThat(movieAvailabilityIndex.getAvailability(30L)).isEqualTo(new MovieAvailabilityDTO(30L, 0, 0));
+
+        movieAvailabilityIndex.tryClaim(Collections.singletonList(1L));
+        assertThat(movieAvailabilityIndex.getAvailability(10L)).isEqualTo(new MovieAvailabilityDTO(10L, 2, 1));
+
+        save(2L, RentalStatus.RENTED, 1L, 2L);
+        assertThat(movieAvailabilityIndex.getAvailability(10L)).isEqualTo(new MovieAvailabilityDTO(10L, 0, 3));
+
+        // a status that did not change is not counted twice
+        save(2L, RentalStatus.RENTED, 3L);
+        save(3L, RentalStatus.AVAILABLE, 1L, 3L);
+        assertThat(movieAvailabilityIndex.getAvailability(10L)).isEqualTo(new MovieAvailabilityDTO(10L, 2, 1));
+    }
+
+    @Test
+    public void testSavedAndDeletedInventoriesUpdateTheMovieAvailability() {
+        movieAvailabilityIndex.onSaved(Arrays.asList(
+            MovieInventory.builder().id(4L).status(RentalStatus.AVAILABLE).version(1L).movie(Movie.builder().id(20L).build()).build(),
+            MovieInventory.builder().id(2L).status(RentalStatus.AVAILABLE).version(2L).movie(Movie.builder().id(20L).build()).build()));
+        assertThat(movieAvailabilityIndex.getAvailability(10L)).isEqualTo(new MovieAvailabilityDTO(10L, 1, 1));
+        assertThat(movieAvailabilityIndex.getAvailability(20L)).isEqualTo(new MovieAvailabilityDTO(20L, 3, 0));
+
+        movieAvailabilityIndex.onDeleted(3L);
+        movieAvailabilityIndex.onDeleted(42L);
+        assertThat(movieAvailabilityIndex.getAvailability(10L)).isEqualTo(new MovieAvailabilityDTO(10L, 1, 0));
+    }
+
+    @Test
+    public void testConcurrentRentalsAndReturnsKeepTheCountsExact() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong versions = new AtomicLong(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < 1000; j++) {
+                    save(versions.incrementAndGet(), RentalStatus.RENTED, 1L, 2L);
+                    save(versions.incrementAndGet(), RentalStatus.AVAILABLE, 1L, 2L);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        save(versions.incrementAndGet(), RentalStatus.AVAILABLE, 1L, 2L);
+
+        assertThat(movieAvailabilityIndex.getAvailability(10L)).isEqualTo(new MovieAvailabilityDTO(10L, 2, 1));
+    }
+
+    @Test
+    public void testConcurrentClaimsRentACopyOnlyOnce() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger successfulClaims = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                if (movieAvailabilityIndex.tryClaim(Arrays.asList(1L, 2L)).isPresent()) {
+                    successfulClaims.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(successfulClaims.get()).isEqualTo(1);
+    }
+
+    private void save(long version, RentalStatus status, Long... ids) {
+        movieAvailabilityIndex.onSaved(Arrays.stream(ids)
+            .map(id -> MovieInventory.builder().id(id).status(status).version(version).build())
+            .collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,120 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link OptimisticRetryExecutor}.
+ */
+public class OptimisticRetryExecutorTest {
+
+    private MeterRegistry meterRegistry;
+
+    private OptimisticRetryExecutor optimisticRetryExecutor;
+
+    @BeforeEach
+    public void setUp() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getOptimisticRetry().setMaxAttempts(3);
+        applicationProperties.getOptimisticRetry().setInitialBackoffMs(1);
+        applicationProperties.getOptimisticRetry().setMaxBackoffMs(2);
+        meterRegistry = new SimpleMeterRegistry();
+        optimisticRetryExecutor = new OptimisticRetryExecutor(applicationProperties, meterRegistry);
+    }
+
+    @Test
+    public void retriesUntilTheWorkflowCommits() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = optimisticRetryExecutor.execute("rent", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Customer", 1L);
+            }
+            return "rented";
+        });
+
+        assertThat(result).isEqualTo("rented");
+        assertThat(attempts).hasValue(3);
+        assertThat(meterRegistry.counter("rental.optimistic.retries", "operation", "rent").count()).isEqualTo(2);
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> optimisticRetryExecutor.execute("return", () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("MovieInventory", 1L);
+        })).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+
+        assertThat(attempts).hasValue(3);
+        assertThat(meterRegistry.counter("rental.optimistic.exhausted", "operation", "return").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void doesNotRetryOtherFailures() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> optimisticRetryExecutor.execute("rent", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("not a race");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    public void submittedWorkflowIsRetriedOnItsExecutor() throws Exception {
+        ExecutorService lane = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "lane"));
+        AtomicInteger attempts = new AtomicInteger();
+        List<String> threads = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<String> result = optimisticRetryExecutor.submit("rent", () -> {
+            threads.add(Thread.currentThread().getName());
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Customer", 1L);
+            }
+            return "rented";
+        }, lane);
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("rented");
+        assertThat(threads).containsExactly("lane", "lane", "lane");
+        assertThat(meterRegistry.counter("rental.optimistic.retries", "operation", "rent").count()).isEqualTo(2);
+        lane.shutdown();
+    }
+
+    @Test
+    public void submittedWorkflowFailsAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = optimisticRetryExecutor.submit("return", () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("MovieInventory", 1L);
+        }, Runnable::run);
+
+        assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+            .hasCauseInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(attempts).hasValue(3);
+        assertThat(meterRegistry.counter("rental.optimistic.exhausted", "operation", "return").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void backoffIsJitteredBelowADoublingCeiling() {
+        for (int i = 0; i < 1000; i++) {
+            assertThat(OptimisticRetryExecutor.backoffMs(1, 5, 200)).isBetween(0L, 5L);
+            assertThat(OptimisticRetryExecutor.backoffMs(3, 5, 200)).isBetween(0L, 20L);
+            assertThat(OptimisticRetryExecutor.backoffMs(40, 5, 200)).isBetween(0L, 200L);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.domain.*;
+import com.roundrobine.movie.rentals.domain.enumeration.Currency;
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+import com.roundrobine.movie.rentals.service.tariff.TariffSnapshot;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the single-pass order assembly of {@link RentalOrderService} with the original
+ * scan-per-copy implementation, for orders of 1, 10 and 100 copies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RentalOrderAssemblyBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int copies;
+
+    private Map<Long, Integer> requestedCopies;
+
+    private Map<Long, MovieInventory> moviesToRentById;
+
+    private List<MovieInventory> moviesToRent;
+
+    private final TariffSnapshot tariffs = TariffSnapshot.defaults();
+
+    @Setup
+    public void setup() {
+        MovieType[] movieTypes = MovieType.values();
+        requestedCopies = new LinkedHashMap<>();
+        moviesToRentById = new HashMap<>();
+        moviesToRent = new ArrayList<>();
+        // ids stay inside the Integer cache, otherwise the original == comparison finds nothing
+        for (long id = 1; id <= copies; id++) {
+            MovieInventory movieInventory = MovieInventory.builder()
+                .id(id)
+                .status(RentalStatus.AVAILABLE)
+                .movie(Movie.builder().id(id).type(movieTypes[(int) id % movieTypes.length]).build())
+                .build();
+            requestedCopies.put(id, (int) (id % 14) + 1);
+            moviesToRentById.put(id, movieInventory);
+            moviesToRent.add(movieInventory);
+        }
+    }
+
+    @Benchmark
+    public List<RentedCopy> singlePass() {
+        RentalOrder order = RentalOrder.builder().currency(Currency.SEK).build();
+        BonusHistory bonusHistory = BonusHistory.builder().oder(order).build();
+        return RentalOrderService.assembleRentedCopies(order, bonusHistory, requestedCopies, moviesToRentById,
+            tariffs);
+    }
+
+    @Benchmark
+    public List<RentedCopy> scanPerCopy() {
+        RentalOrder order = RentalOrder.builder().currency(Currency.SEK).build();
+        BonusHistory bonusHistory = BonusHistory.builder().oder(order).build();
+        List<MovieInventory> rentedMovies = new ArrayList<>();
+        List<RentedCopy> movieCopies = new ArrayList<>();
+
+        requestedCopies.forEach(
+            (movieInventoryId, plannedRentDuration) -> {
+
+                MovieInventory movieInventory = moviesToRent.stream()
+                    .filter(mi -> mi.getId() == movieInventoryId).collect(Collectors.toList()).get(0);
+
+                movieCopies.add(
+                    RentedCopy.builder()
+                        .movieInventory(movieInventory)
+                        .plannedRentDuration(plannedRentDuration)
+                        .order(order)
+                        .build());
+
+                movieInventory.setStatus(RentalStatus.RENTED);
+                movieInventory.setLastUpdatedAt(Instant.now());
+                rentedMovies.add(movieInventory);
+
+                order.setTotalAmount(order.getTotalAmount()
+                    .add(tariffs.forType(movieInventory.getMovie().getType()).calculateMoviePriceOnRental(plannedRentDuration)));
+                bonusHistory
+                    .setPoints(bonusHistory.getPoints() + tariffs.forType(movieInventory.getMovie().getType()).getBonusPoints());
+            });
+
+        return movieCopies;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(RentalOrderAssemblyBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,259 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.VideoRentalApp;
+import com.roundrobine.movie.rentals.domain.*;
+import com.roundrobine.movie.rentals.domain.enumeration.Currency;
+import com.roundrobine.movie.rentals.domain.enumeration.OrderStatus;
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+import com.roundrobine.movie.rentals.service.dto.CreateRentalOrderDTO;
+import com.roundrobine.movie.rentals.service.dto.RentalOrderDTO;
+import com.roundrobine.movie.rentals.service.dto.ReturnRentedMovieDTO;
+import com.roundrobine.movie.rentals.web.rest.MovieResourceIT;
+import com.roundrobine.movie.rentals.web.rest.UserResourceIT;
+import com.roundrobine.movie.rentals.web.rest.errors.BadRequestAlertException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stress tests of concurrent checkouts and returns of the same copies and customers, through
+ * {@link OptimisticRetryExecutor} and {@link RentalOrderService} as the {@code /api/rental-orders} endpoints call them.
+ * <p>
+ * Every test commits its own data from several threads, so the tests are not transactional and the data
+ * is deleted after each test.
+ */
+@SpringBootTest(classes = VideoRentalApp.class)
+public class RentalOrderConcurrencyIT {
+
+    private static final int THREADS = 12;
+
+    private static final BigDecimal INITIAL_CREDIT = new BigDecimal("10000.00");
+
+    @Autowired
+    private RentalOrderService rentalOrderService;
+
+    @Autowired
+    private OptimisticRetryExecutor optimisticRetryExecutor;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Long> customerIds = new ArrayList<>();
+
+    private final List<Long> movieInventoryIds = new ArrayList<>();
+
+    private Long movieId;
+
+    @AfterEach
+    public void deleteTestData() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            if (!customerIds.isEmpty()) {
+                em.createQuery("delete from BonusHistory b where b.customer.id in :ids")
+                    .setParameter("ids", customerIds).executeUpdate();
+                em.createQuery("delete from RentedCopy c where c.order.id in " +
+                    "(select o.id from RentalOrder o where o.customer.id in :ids)")
+                    .setParameter("ids", customerIds).executeUpdate();
+                em.createQuery("delete from RentalOrder o where o.customer.id in :ids")
+                    .setParameter("ids", customerIds).executeUpdate();
+                em.createQuery("delete from Customer c where c.id in :ids")
+                    .setParameter("ids", customerIds).executeUpdate();
+                em.createQuery("delete from User u where u.id in :ids")
+                    .setParameter("ids", customerIds).executeUpdate();
+            }
+            if (!movieInventoryIds.isEmpty()) {
+                em.createQuery("delete from MovieInventory m where m.id in :ids")
+                    .setParameter("ids", movieInventoryIds).executeUpdate();
+            }
+            if (movieId != null) {
+                em.createQuery("delete from Movie m where m.id = :id").setParameter("id", movieId).executeUpdate();
+            }
+        });
+    }
+
+    @Test
+    public void concurrentCheckoutsRentACopyOnce() throws Exception {
+        List<User> users = createCustomers(THREADS);
+        Long copyId = createMovieInventories(1).get(0);
+
+        List<Object> outcomes = runConcurrently(users, user -> optimisticRetryExecutor.execute("rent",
+            () -> rentalOrderService.processRentalOrder(user, rentCopies(copyId))));
+
+        List<RentalOrderDTO> orders = successes(outcomes);
+        assertThat(orders).hasSize(1);
+        assertThat(outcomes).allMatch(outcome -> outcome instanceof RentalOrderDTO
+            || outcome instanceof BadRequestAlertException || outcome instanceof ConcurrencyFailureException);
+
+        assertThat(status(copyId)).isEqualTo(RentalStatus.RENTED);
+        assertThat(count("select count(c) from RentedCopy c where c.movieInventory.id = :id", copyId)).isEqualTo(1);
+        assertThat(totalCredit()).isEqualByComparingTo(
+            INITIAL_CREDIT.multiply(BigDecimal.valueOf(THREADS)).subtract(orders.get(0).getTotalAmount()));
+    }
+
+    @Test
+    public void concurrentCheckoutsOfOneCustomerDoNotLoseCreditUpdates() throws Exception {
+        User user = createCustomers(1).get(0);
+        List<Long> copyIds = createMovieInventories(THREADS);
+
+        List<Object> outcomes = runConcurrently(copyIds, copyId -> optimisticRetryExecutor.execute("rent",
+            () -> rentalOrderService.processRentalOrder(user, rentCopies(copyId))));
+
+        List<RentalOrderDTO> orders = successes(outcomes);
+        assertThat(orders).isNotEmpty();
+        assertThat(outcomes).allMatch(outcome -> outcome instanceof RentalOrderDTO
+            || outcome instanceof ConcurrencyFailureException);
+
+        BigDecimal charged = orders.stream().map(RentalOrderDTO::getTotalAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        Customer customer = findCustomer(user.getId());
+        assertThat(customer.getCreditAmount()).isEqualByComparingTo(INITIAL_CREDIT.subtract(charged));
+        assertThat(customer.getBonusPoints())
+            .isEqualTo(count("select coalesce(sum(b.points), 0) from BonusHistory b where b.customer.id = :id", user.getId()));
+        assertThat(count("select count(c) from RentedCopy c where c.order.customer.id = :id", user.getId()))
+            .isEqualTo(orders.size());
+    }
+
+    @Test
+    public void concurrentReturnsOfOneOrderCompleteIt() throws Exception {
+        User user = createCustomers(1).get(0);
+        List<Long> copyIds = createMovieInventories(THREADS);
+        Map<Long, Integer> order = copyIds.stream().collect(Collectors.toMap(Function.identity(), copyId -> 1));
+        RentalOrderDTO rentalOrder = rentalOrderService.processRentalOrder(user, new CreateRentalOrderDTO(order));
+
+        // each copy is returned twice at the same time
+        List<Long> returns = new ArrayList<>(copyIds);
+        returns.addAll(copyIds);
+        List<Object> outcomes = runConcurrently(returns, copyId -> optimisticRetryExecutor.execute("return",
+            () -> rentalOrderService.returnRentedMovieCopies(user,
+                new ReturnRentedMovieDTO(Collections.singletonList(copyId)))));
+
+        assertThat(successes(outcomes).size()).isLessThanOrEqualTo(THREADS);
+        assertThat(outcomes).allMatch(outcome -> outcome instanceof List
+            || outcome instanceof BadRequestAlertException || outcome instanceof ConcurrencyFailureException);
+
+        long returned = count("select count(c) from RentedCopy c where c.order.id = :id and c.returnDate is not null",
+            rentalOrder.getId());
+        long available = copyIds.stream().filter(copyId -> status(copyId) == RentalStatus.AVAILABLE).count();
+        assertThat(returned).isEqualTo(available);
+        RentalOrder settled = new TransactionTemplate(transactionManager).execute(status ->
+            em.find(RentalOrder.class, rentalOrder.getId()));
+        assertThat(settled.getStatus()).isEqualTo(returned == THREADS ? OrderStatus.COMPLETED : OrderStatus.ACTIVE);
+    }
+
+    private <T> List<Object> runConcurrently(List<T> inputs, Function<T, Object> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(inputs.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (T input : inputs) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        return task.apply(input);
+                    } catch (RuntimeException e) {
+                        return e;
+                    }
+                }));
+            }
+            start.countDown();
+            List<Object> outcomes = new ArrayList<>();
+            for (Future<Object> future : futures) {
+                outcomes.add(future.get(1, TimeUnit.MINUTES));
+            }
+            return outcomes;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<User> createCustomers(int count) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            List<User> users = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                User user = UserResourceIT.createEntity(em);
+                em.persist(user);
+                Customer customer = Customer.builder()
+                    .bonusPoints(0L)
+                    .creditAmount(INITIAL_CREDIT)
+                    .currency(Currency.SEK)
+                    .user(user)
+                    .build();
+                em.persist(customer);
+                em.flush();
+                customerIds.add(customer.getId());
+                users.add(user);
+            }
+            return users;
+        });
+    }
+
+    private List<Long> createMovieInventories(int count) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Movie movie = MovieResourceIT.createEntity(em);
+            em.persist(movie);
+            movieId = movie.getId();
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                MovieInventory movieInventory = MovieInventory.builder()
+                    .movie(movie)
+                    .status(RentalStatus.AVAILABLE)
+                    .createdAt(Instant.now())
+                    .lastUpdatedAt(Instant.now())
+                    .build();
+                em.persist(movieInventory);
+                ids.add(movieInventory.getId());
+            }
+            movieInventoryIds.addAll(ids);
+            return ids;
+        });
+    }
+
+    private static CreateRentalOrderDTO rentCopies(Long copyId) {
+        return new CreateRentalOrderDTO(Collections.singletonMap(copyId, 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> successes(List<Object> outcomes) {
+        return outcomes.stream()
+            .filter(outcome -> !(outcome instanceof RuntimeException))
+            .map(outcome -> (T) outcome)
+            .collect(Collectors.toList());
+    }
+
+    private RentalStatus status(Long copyId) {
+        return new TransactionTemplate(transactionManager).execute(status ->
+            em.find(MovieInventory.class, copyId).getStatus());
+    }
+
+    private Customer findCustomer(Long id) {
+        return new TransactionTemplate(transactionManager).execute(status -> em.find(Customer.class, id));
+    }
+
+    private BigDecimal totalCredit() {
+        return new TransactionTemplate(transactionManager).execute(status ->
+            em.createQuery("select sum(c.creditAmount) from Customer c where c.id in :ids", BigDecimal.class)
+                .setParameter("ids", customerIds)
+                .getSingleResult());
+    }
+
+    private long count(String query, Long id) {
+        return new TransactionTemplate(transactionManager).execute(status ->
+            ((Number) em.createQuery(query).setParameter("id", id).getSingleResult()).longValue());
+    }
+}
@@ -0,0 +1,165 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.VideoRentalApp;
+import com.roundrobine.movie.rentals.domain.*;
+import com.roundrobine.movie.rentals.domain.enumeration.Currency;
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+import com.roundrobine.movie.rentals.repository.Keyset;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
+import com.roundrobine.movie.rentals.service.dto.RentalOrderDTO;
+import com.roundrobine.movie.rentals.service.dto.RentalOrderSummaryDTO;
+import com.roundrobine.movie.rentals.service.dto.RentedCopyDTO;
+import com.roundrobine.movie.rentals.web.rest.MovieResourceIT;
+import com.roundrobine.movie.rentals.web.rest.UserResourceIT;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests of the number of queries the reads of {@link RentalOrderService} and {@link RentedCopyService}
+ * issue, counted by the Hibernate statistics, which must not grow with the number of rows read.
+ */
+@SpringBootTest(classes = VideoRentalApp.class, properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+public class RentalOrderQueryCountIT {
+
+    /**
+     * More orders than an export reads between two clears of the persistence context, so that it goes on
+     * scrolling over its fetch join after each clear.
+     */
+    private static final int ORDERS = EntityExports.CLEAR_INTERVAL * 2 + 10;
+
+    private static final int COPIES_PER_ORDER = 2;
+
+    @Autowired
+    private RentalOrderService rentalOrderService;
+
+    @Autowired
+    private RentedCopyService rentedCopyService;
+
+    @Autowired
+    private EntityManager em;
+
+    private Statistics statistics;
+
+    private final List<Long> rentalOrderIds = new ArrayList<>();
+
+    @BeforeEach
+    public void createRentalOrders() {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Movie movie = MovieResourceIT.createEntity(em);
+            em.persist(movie);
+            movies.add(movie);
+        }
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            User user = UserResourceIT.createEntity(em);
+            em.persist(user);
+            Customer customer = Customer.builder()
+                .bonusPoints(0L)
+                .creditAmount(new BigDecimal("100.00"))
+                .currency(Currency.SEK)
+                .user(user)
+                .build();
+            em.persist(customer);
+            customers.add(customer);
+        }
+        for (int i = 0; i < ORDERS; i++) {
+            RentalOrder rentalOrder = RentalOrder.builder()
+                .currency(Currency.SEK)
+                .customer(customers.get(i % customers.size()))
+                .build();
+            em.persist(rentalOrder);
+            rentalOrderIds.add(rentalOrder.getId());
+            for (int j = 0; j < COPIES_PER_ORDER; j++) {
+                MovieInventory movieInventory = MovieInventory.builder()
+                    .createdAt(Instant.now())
+                    .lastUpdatedAt(Instant.now())
+                    .status(RentalStatus.RENTED)
+                    .movie(movies.get((i + j) % movies.size()))
+                    .build();
+                em.persist(movieInventory);
+                em.persist(RentedCopy.builder()
+                    .movieInventory(movieInventory)
+                    .order(rentalOrder)
+                    .plannedRentDuration(3)
+                    .build());
+            }
+        }
+        em.flush();
+        em.clear();
+        statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void aPageOfRentalOrdersIsReadInTwoQueries() {
+        KeysetSlice<RentalOrderDTO> page = rentalOrderService.findAll(Keyset.first("createdAt", Sort.Direction.DESC), ORDERS);
+
+        assertThat(page.getContent()).hasSize(ORDERS);
+        assertThat(page.getContent()).allSatisfy(rentalOrder -> {
+            assertThat(rentalOrder.getCustomer().getUser().getLogin()).isNotNull();
+            assertThat(rentalOrder.getRentedCopies()).hasSize(COPIES_PER_ORDER)
+                .allSatisfy(rentedCopy -> assertThat(rentedCopy.getMovieInventory().getMovie().getTitle()).isNotNull());
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void aPageOfRentalOrderSummariesIsReadInThreeQueries() {
+        KeysetSlice<RentalOrderSummaryDTO> page = rentalOrderService.findSummaries(Keyset.first("id", Sort.Direction.ASC), ORDERS);
+
+        assertThat(page.getContent()).hasSize(ORDERS);
+        assertThat(page.getContent()).allSatisfy(summary -> {
+            assertThat(summary.getCustomerId()).isNotNull();
+            assertThat(summary.getRentedCopies()).hasSize(COPIES_PER_ORDER)
+                .allSatisfy(line -> assertThat(line.getMovieTitle()).isNotNull());
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void aPageOfRentedCopiesIsReadInTwoQueries() {
+        KeysetSlice<RentedCopyDTO> page = rentedCopyService.findAll(Keyset.first("rentDate", Sort.Direction.ASC), ORDERS);
+
+        assertThat(page.getContent()).hasSize(ORDERS);
+        assertThat(page.getContent()).allSatisfy(rentedCopy -> {
+            assertThat(rentedCopy.getMovieInventory().getMovie().getTitle()).isNotNull();
+            assertThat(rentedCopy.getOrder().getCustomer().getUser().getLogin()).isNotNull();
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void aRentalOrderIsReadInOneQuery() {
+        assertThat(rentalOrderService.findOne(rentalOrderIds.get(0)))
+            .hasValueSatisfying(rentalOrder -> assertThat(rentalOrder.getRentedCopies()).hasSize(COPIES_PER_ORDER));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void rentalOrdersAreExportedInOneQuery() {
+        List<RentalOrderDTO> exported = new ArrayList<>();
+
+        rentalOrderService.export(null, null, null, null, exported::add);
+
+        assertThat(exported).extracting(RentalOrderDTO::getId).containsExactlyInAnyOrderElementsOf(rentalOrderIds);
+        assertThat(exported).allSatisfy(rentalOrder -> assertThat(rentalOrder.getRentedCopies()).hasSize(COPIES_PER_ORDER));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,128 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.domain.*;
+import com.roundrobine.movie.rentals.domain.enumeration.Currency;
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+import com.roundrobine.movie.rentals.domain.enumeration.OrderStatus;
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+import com.roundrobine.movie.rentals.service.tariff.MovieTariff;
+import com.roundrobine.movie.rentals.service.tariff.TariffSnapshot;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the grouped return settlement of {@link RentalOrderService} with the original implementation that
+ * re-streams the rental orders for every returned copy, for a customer returning 50 to 200 copies across
+ * 20 orders.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RentalOrderReturnBenchmark {
+
+    private static final int ORDERS = 20;
+
+    @Param({"50", "100", "200"})
+    public int copies;
+
+    private List<RentedCopy> copiesToReturn;
+
+    private List<RentalOrder> rentalOrders;
+
+    private final TariffSnapshot tariffs = TariffSnapshot.defaults();
+
+    @Setup
+    public void setup() {
+        MovieType[] movieTypes = MovieType.values();
+        Instant now = Instant.now();
+        rentalOrders = new ArrayList<>(ORDERS);
+        copiesToReturn = new ArrayList<>(copies);
+        // ids stay inside the Long cache, otherwise the original == comparison finds nothing
+        for (long id = 1; id <= ORDERS; id++) {
+            RentalOrder rentalOrder = RentalOrder.builder().id(id).currency(Currency.SEK).build();
+            rentalOrder.setRentedCopies(new HashSet<>());
+            rentalOrders.add(rentalOrder);
+        }
+        for (long id = 1; id <= copies; id++) {
+            RentalOrder rentalOrder = rentalOrders.get((int) (id % ORDERS));
+            RentedCopy copy = RentedCopy.builder()
+                .id(id)
+                .movieInventory(MovieInventory.builder()
+                    .id(id)
+                    .status(RentalStatus.RENTED)
+                    .movie(Movie.builder().id(id).type(movieTypes[(int) id % movieTypes.length]).build())
+                    .build())
+                .plannedRentDuration((int) (id % 5) + 1)
+                .rentDate(now.minus(id % 10, ChronoUnit.DAYS))
+                .order(rentalOrder)
+                .build();
+            rentalOrder.getRentedCopies().add(copy);
+            copiesToReturn.add(copy);
+        }
+    }
+
+    @Benchmark
+    public long groupedByOrder() {
+        Instant returnDate = Instant.now();
+        Map<Long, Long> surchargesByOrderId = RentalOrderService.chargeReturnedCopies(copiesToReturn, tariffs,
+            returnDate);
+        return RentalOrderService.settleRentalOrders(rentalOrders, surchargesByOrderId, returnDate);
+    }
+
+    @Benchmark
+    public BigDecimal streamPerCopy() {
+        List<RentalOrder> rentalOrders = this.rentalOrders;
+        BigDecimal totalSurchargesAmountToPay = new BigDecimal("0");
+
+        for (RentedCopy copy : copiesToReturn) {
+            copy.setReturnDate(Instant.now());
+            long actualRentDurationInDays = Duration.between(copy.getRentDate(), copy.getReturnDate()).toDays();
+
+            MovieTariff tariff = tariffs.forType(copy.getMovieInventory().getMovie().getType());
+            BigDecimal surcharges = tariff
+                .calculateSurchargesOnMovieReturn(copy.getPlannedRentDuration(), (int) actualRentDurationInDays);
+            copy.setExtraChargedDays(tariff
+                .calculateSurchargedDaysOnMovieReturn(copy.getPlannedRentDuration(), (int) actualRentDurationInDays));
+
+            rentalOrders = rentalOrders.stream()
+                .map(rentalOrder -> {
+                    if (rentalOrder.getId() == copy.getOrder().getId()) {
+                        rentalOrder.setLateChargedAmount(copy.getOrder().getLateChargedAmount().add(surcharges));
+                        rentalOrder.setTotalAmount(copy.getOrder().getTotalAmount().add(surcharges));
+                        rentalOrder.setLastUpdatedAt(Instant.now());
+                    }
+                    return rentalOrder;
+                }).collect(Collectors.toList());
+
+            totalSurchargesAmountToPay = totalSurchargesAmountToPay.add(surcharges);
+        }
+
+        for (RentalOrder order : rentalOrders) {
+            if (order.getRentedCopies().stream().allMatch(copy -> copy.getReturnDate() != null)) {
+                order.setStatus(OrderStatus.COMPLETED);
+            }
+        }
+
+        return totalSurchargesAmountToPay;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(RentalOrderReturnBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,89 @@
+package com.roundrobine.movie.rentals.service;
+
+import com.roundrobine.movie.rentals.VideoRentalApp;
+import com.roundrobine.movie.rentals.aop.sql.SqlRecorder;
+import com.roundrobine.movie.rentals.domain.*;
+import com.roundrobine.movie.rentals.domain.enumeration.Currency;
+import com.roundrobine.movie.rentals.domain.enumeration.RentalStatus;
+import com.roundrobine.movie.rentals.web.rest.MovieResourceIT;
+import com.roundrobine.movie.rentals.web.rest.UserResourceIT;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Integration tests of the round trips of the inserts of a checkout: the rented copies of an order are inserted
+ * in a single JDBC batch, whatever their number up to {@code hibernate.jdbc.batch_size}.
+ */
+@SpringBootTest(classes = VideoRentalApp.class)
+@Transactional
+public class RentedCopyInsertBatchingIT {
+
+    private static final String INSERT_RENTED_COPY = "insert into rented_copy";
+
+    @Autowired
+    private RentedCopyService rentedCopyService;
+
+    @Autowired
+    private EntityManager em;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 10, 25})
+    public void rentedCopiesOfAnOrderAreInsertedInOneRoundTrip(int copies) {
+        Movie movie = MovieResourceIT.createEntity(em);
+        em.persist(movie);
+        User user = UserResourceIT.createEntity(em);
+        em.persist(user);
+        Customer customer = Customer.builder()
+            .bonusPoints(0L)
+            .creditAmount(new BigDecimal("100.00"))
+            .currency(Currency.SEK)
+            .user(user)
+            .build();
+        em.persist(customer);
+        RentalOrder rentalOrder = RentalOrder.builder()
+            .currency(Currency.SEK)
+            .customer(customer)
+            .build();
+        em.persist(rentalOrder);
+        List<RentedCopy> rentedCopies = new ArrayList<>();
+        for (int i = 0; i < copies; i++) {
+            MovieInventory movieInventory = MovieInventory.builder()
+                .createdAt(Instant.now())
+                .lastUpdatedAt(Instant.now())
+                .status(RentalStatus.RENTED)
+                .movie(movie)
+                .build();
+            em.persist(movieInventory);
+            rentedCopies.add(RentedCopy.builder()
+                .movieInventory(movieInventory)
+                .order(rentalOrder)
+                .plannedRentDuration(3)
+                .build());
+        }
+        em.flush();
+
+        SqlRecorder recorder = SqlRecorder.current();
+        recorder.startBreakdown();
+        rentedCopyService.saveAll(rentedCopies);
+        em.flush();
+        List<SqlRecorder.StatementUsage> statements = recorder.stopBreakdown();
+
+        assertThat(statements)
+            .filteredOn(statementUsage -> statementUsage.getSql().startsWith(INSERT_RENTED_COPY))
+            .extracting(SqlRecorder.StatementUsage::getExecutions, SqlRecorder.StatementUsage::getRows)
+            .containsExactly(tuple(1L, (long) copies));
+    }
+}
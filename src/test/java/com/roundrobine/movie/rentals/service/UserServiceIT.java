@@ -4,6 +4,7 @@ import com.roundrobine.movie.rentals.VideoRentalApp;
 import com.roundrobine.movie.rentals.config.Constants;
 import com.roundrobine.movie.rentals.domain.User;
 import com.roundrobine.movie.rentals.repository.search.UserSearchRepository;
+import com.roundrobine.movie.rentals.repository.SearchOutboxEntryRepository;
 import com.roundrobine.movie.rentals.repository.UserRepository;
 import com.roundrobine.movie.rentals.service.dto.UserDTO;
 
@@ -66,6 +67,9 @@ public class UserServiceIT {
     @Autowired
     private UserSearchRepository mockUserSearchRepository;
 
+    @Autowired
+    private SearchOutboxEntryRepository searchOutboxEntryRepository;
+
     @Autowired
     private AuditingHandler auditingHandler;
 
@@ -182,7 +186,7 @@ public class UserServiceIT {
         assertThat(users).isEmpty();
 
         // Verify Elasticsearch mock
-        verify(mockUserSearchRepository, times(1)).delete(user);
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("User", user.getId())).isEqualTo(1);
     }
 
     @Test
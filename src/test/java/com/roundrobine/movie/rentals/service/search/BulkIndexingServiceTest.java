@@ -0,0 +1,208 @@
+package com.roundrobine.movie.rentals.service.search;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import com.roundrobine.movie.rentals.domain.Movie;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.EntityMapper;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class BulkIndexingServiceTest {
+
+    private ElasticsearchOperations elasticsearchOperations;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private BulkIndexingService bulkIndexingService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        elasticsearchOperations = mock(ElasticsearchOperations.class);
+        ElasticsearchPersistentEntity persistentEntity = mock(ElasticsearchPersistentEntity.class);
+        when(persistentEntity.getIndexName()).thenReturn("movie");
+        when(persistentEntity.getIndexType()).thenReturn("movie");
+        when(elasticsearchOperations.getPersistentEntityFor(Movie.class)).thenReturn(persistentEntity);
+        EntityMapper entityMapper = mock(EntityMapper.class);
+        when(entityMapper.mapToString(any())).thenAnswer(invocation -> {
+            Movie movie = invocation.getArgument(0);
+            return "{\"id\":" + movie.getId() + ",\"title\":\"" + movie.getTitle() + "\"}";
+        });
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSearchBulk().setMaxBatchSize(2);
+        applicationProperties.getSearchBulk().setMaxQueueDepth(3);
+        applicationProperties.getSearchBulk().setFlushIntervalMs(60_000);
+        meterRegistry = new SimpleMeterRegistry();
+        bulkIndexingService = new BulkIndexingService(elasticsearchOperations, entityMapper, applicationProperties,
+            meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        bulkIndexingService.shutdown();
+    }
+
+    @Test
+    public void testRepeatedWritesAreCoalesced() throws Exception {
+        CompletableFuture<Void> first = bulkIndexingService.index(Movie.class, "1", Movie.builder().id(1L).title("A").build());
+        CompletableFuture<Void> second = bulkIndexingService.index(Movie.class, "1", Movie.builder().id(1L).title("B").build());
+        assertThat(second).isSameAs(first);
+        assertThat(bulkIndexingService.getQueueDepth()).isEqualTo(1);
+
+        bulkIndexingService.flush().get(5, TimeUnit.SECONDS);
+
+        assertThat(first).isCompleted();
+        List<IndexQuery> indexQueries = captureBulkIndex(1).get(0);
+        assertThat(indexQueries).hasSize(1);
+        assertThat(indexQueries.get(0).getSource()).contains("\"B\"");
+        assertThat(meterRegistry.get("search.bulk.coalesced").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFullBatchIsFlushedWithoutWaitingForInterval() throws Exception {
+        CompletableFuture<Void> first = bulkIndexingService.index(Movie.class, "1", Movie.builder().id(1L).build());
+        CompletableFuture<Void> second = bulkIndexingService.delete(Movie.class, "2");
+
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+        assertThat(captureBulkIndex(1).get(0)).hasSize(1);
+        verify(elasticsearchOperations).delete("movie", "movie", "2");
+        assertThat(meterRegistry.get("search.bulk.batch.size").summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testWritersBlockWhenQueueIsFull() throws Exception {
+        CountDownLatch elasticsearchBlocked = new CountDownLatch(1);
+        CountDownLatch releaseElasticsearch = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            elasticsearchBlocked.countDown();
+            releaseElasticsearch.await();
+            return null;
+        }).when(elasticsearchOperations).bulkIndex(anyList());
+
+        bulkIndexingService.index(Movie.class, "1", Movie.builder().id(1L).build());
+        bulkIndexingService.index(Movie.class, "2", Movie.builder().id(2L).build());
+        assertThat(elasticsearchBlocked.await(5, TimeUnit.SECONDS)).isTrue();
+        for (long id = 3; id <= 5; id++) {
+            bulkIndexingService.index(Movie.class, String.valueOf(id), Movie.builder().id(id).build());
+        }
+
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        Future<CompletableFuture<Void>> blocked =
+            writer.submit(() -> bulkIndexingService.index(Movie.class, "6", Movie.builder().id(6L).build()));
+        assertThat(catchTimeout(blocked)).isTrue();
+
+        releaseElasticsearch.countDown();
+        assertThat(blocked.get(5, TimeUnit.SECONDS)).isNotNull();
+        writer.shutdown();
+    }
+
+    @Test
+    public void testWritersThatMustNotWaitGoOverTheQueueDepth() throws Exception {
+        CountDownLatch elasticsearchBlocked = new CountDownLatch(1);
+        CountDownLatch releaseElasticsearch = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            elasticsearchBlocked.countDown();
+            releaseElasticsearch.await();
+            return null;
+        }).when(elasticsearchOperations).bulkIndex(anyList());
+
+        bulkIndexingService.index(Movie.class, "1", Movie.builder().id(1L).build());
+        bulkIndexingService.index(Movie.class, "2", Movie.builder().id(2L).build());
+        assertThat(elasticsearchBlocked.await(5, TimeUnit.SECONDS)).isTrue();
+        for (long id = 3; id <= 5; id++) {
+            bulkIndexingService.index(Movie.class, String.valueOf(id), Movie.builder().id(id).build());
+        }
+
+        CompletableFuture<Void> write = bulkIndexingService.indexWithoutWaiting(Movie.class, "movie_20201017000000",
+            "6", "{}", null);
+        CompletableFuture<Void> delete = bulkIndexingService.deleteWithoutWaiting(Movie.class, "movie_20201017000000",
+            "7");
+        assertThat(bulkIndexingService.getQueueDepth()).isEqualTo(5);
+
+        releaseElasticsearch.countDown();
+        bulkIndexingService.flush().get(5, TimeUnit.SECONDS);
+        CompletableFuture.allOf(write, delete).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFailedBatchFailsItsWrites() throws Exception {
+        doThrow(new IllegalStateException("unavailable")).when(elasticsearchOperations).bulkIndex(anyList());
+
+        CompletableFuture<Void> write = bulkIndexingService.index(Movie.class, "1", Movie.builder().id(1L).build());
+        bulkIndexingService.flush().get(5, TimeUnit.SECONDS);
+
+        assertThat(write).isCompletedExceptionally();
+        assertThat(bulkIndexingService.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void testOlderVersionDoesNotReplaceQueuedWrite() throws Exception {
+        bulkIndexingService.index(Movie.class, "1", Movie.builder().id(1L).title("B").build(), 2L);
+        bulkIndexingService.index(Movie.class, "1", Movie.builder().id(1L).title("A").build(), 1L);
+
+        bulkIndexingService.flush().get(5, TimeUnit.SECONDS);
+
+        IndexQuery indexQuery = captureBulkIndex(1).get(0).get(0);
+        assertThat(indexQuery.getSource()).contains("\"B\"");
+        assertThat(indexQuery.getVersion()).isEqualTo(2L);
+    }
+
+    @Test
+    public void testWriteOlderThanIndexedVersionCompletes() throws Exception {
+        doThrow(new ElasticsearchException("Bulk indexing has failures", Collections.singletonMap("1",
+            "{\"type\":\"version_conflict_engine_exception\",\"reason\":\"[movie][1]: version conflict\"}")))
+            .when(elasticsearchOperations).bulkIndex(anyList());
+
+        CompletableFuture<Void> write = bulkIndexingService.index(Movie.class, "1", Movie.builder().id(1L).build(), 1L);
+        bulkIndexingService.flush().get(5, TimeUnit.SECONDS);
+
+        assertThat(write).isCompleted();
+        assertThat(write).isNotCompletedExceptionally();
+        assertThat(meterRegistry.get("search.bulk.stale").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOtherDocumentFailuresFailTheBatch() throws Exception {
+        Map<String, String> failedDocuments = new HashMap<>();
+        failedDocuments.put("1", "{\"type\":\"version_conflict_engine_exception\"}");
+        failedDocuments.put("2", "{\"type\":\"mapper_parsing_exception\"}");
+        doThrow(new ElasticsearchException("Bulk indexing has failures", failedDocuments))
+            .when(elasticsearchOperations).bulkIndex(anyList());
+
+        CompletableFuture<Void> write = bulkIndexingService.index(Movie.class, "1", Movie.builder().id(1L).build(), 1L);
+        bulkIndexingService.flush().get(5, TimeUnit.SECONDS);
+
+        assertThat(write).isCompletedExceptionally();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<IndexQuery>> captureBulkIndex(int times) {
+        ArgumentCaptor<List<IndexQuery>> indexQueries = ArgumentCaptor.forClass(List.class);
+        verify(elasticsearchOperations, times(times)).bulkIndex(indexQueries.capture());
+        return indexQueries.getAllValues();
+    }
+
+    private static boolean catchTimeout(Future<?> future) throws Exception {
+        try {
+            future.get(200, TimeUnit.MILLISECONDS);
+            return false;
+        } catch (TimeoutException e) {
+            return true;
+        }
+    }
+}
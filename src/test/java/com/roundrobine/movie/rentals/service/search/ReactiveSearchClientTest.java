@@ -0,0 +1,107 @@
+package com.roundrobine.movie.rentals.service.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import com.roundrobine.movie.rentals.config.ElasticsearchConfiguration;
+import com.roundrobine.movie.rentals.domain.Movie;
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResultHandler;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchResult;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ReactiveSearchClient}.
+ */
+public class ReactiveSearchClientTest {
+
+    private JestClient jestClient;
+
+    private ReactiveSearchClient reactiveSearchClient;
+
+    @BeforeEach
+    public void setup() {
+        jestClient = mock(JestClient.class);
+        ElasticsearchOperations elasticsearchOperations = mock(ElasticsearchOperations.class);
+        ElasticsearchPersistentEntity persistentEntity = mock(ElasticsearchPersistentEntity.class);
+        when(persistentEntity.getIndexName()).thenReturn("movie");
+        when(elasticsearchOperations.getPersistentEntityFor(Movie.class)).thenReturn(persistentEntity);
+        ObjectMapper objectMapper = new ObjectMapper();
+        reactiveSearchClient = new ReactiveSearchClient(jestClient, elasticsearchOperations,
+            new ElasticsearchConfiguration(objectMapper).getEntityMapper());
+    }
+
+    @Test
+    public void testSearchReadsTheDocumentsOfThePage() throws IOException {
+        SearchResult result = new SearchResult(new Gson());
+        result.setSucceeded(true);
+        result.setPathToResult("hits/hits/_source");
+        result.setJsonObject(JsonParser.parseString("{\"hits\":{\"total\":2,\"hits\":[" +
+            "{\"_id\":\"1\",\"_source\":{\"id\":1,\"title\":\"Alien\",\"type\":\"OLD_FILM\"}}," +
+            "{\"_id\":\"2\",\"_source\":{\"id\":2,\"title\":\"Aliens\",\"type\":\"REGULAR_FILM\"}}]}}").getAsJsonObject());
+        complete(handler -> handler.completed(result));
+
+        StepVerifier.create(reactiveSearchClient.search(Movie.class, matchAllQuery(),
+            PageRequest.of(2, 10, Sort.by("title"))))
+            .assertNext(movie -> {
+                assertThat(movie.getId()).isEqualTo(1L);
+                assertThat(movie.getTitle()).isEqualTo("Alien");
+                assertThat(movie.getType()).isEqualTo(MovieType.OLD_FILM);
+            })
+            .assertNext(movie -> assertThat(movie.getId()).isEqualTo(2L))
+            .verifyComplete();
+
+        ArgumentCaptor<Search> search = ArgumentCaptor.forClass(Search.class);
+        verify(jestClient).executeAsync(search.capture(), any());
+        assertThat(search.getValue().getIndex()).isEqualTo("movie");
+        String body = search.getValue().getData(new Gson());
+        assertThat(body).contains("\"from\":20", "\"size\":10", "\"match_all\"", "\"title\"");
+        verify(jestClient, never()).execute(any());
+    }
+
+    @Test
+    public void testSearchFailsWithTheClient() {
+        IOException failure = new IOException("connection refused");
+        complete(handler -> handler.failed(failure));
+
+        StepVerifier.create(reactiveSearchClient.search(Movie.class, matchAllQuery(), PageRequest.of(0, 10)))
+            .verifyErrorMatches(e -> e == failure);
+    }
+
+    @Test
+    public void testSearchFailsWhenElasticsearchRejectsIt() {
+        SearchResult result = new SearchResult(new Gson());
+        result.setSucceeded(false);
+        result.setErrorMessage("index_not_found_exception");
+        complete(handler -> handler.completed(result));
+
+        StepVerifier.create(reactiveSearchClient.search(Movie.class, matchAllQuery(), PageRequest.of(0, 10)))
+            .verifyErrorMatches(e -> e.getMessage().contains("index_not_found_exception"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(Consumer<JestResultHandler<SearchResult>> completion) {
+        doAnswer(invocation -> {
+            completion.accept(invocation.getArgument(1));
+            return null;
+        }).when(jestClient).executeAsync(any(Search.class), any(JestResultHandler.class));
+    }
+}
@@ -0,0 +1,72 @@
+package com.roundrobine.movie.rentals.service.search;
+
+import com.roundrobine.movie.rentals.domain.Movie;
+import com.roundrobine.movie.rentals.domain.SearchOutboxEntry;
+import com.roundrobine.movie.rentals.repository.SearchOutboxEntryRepository;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class SearchIndexOutboxTest {
+
+    private SearchOutboxEntryRepository searchOutboxEntryRepository;
+
+    private SearchIndexOutbox searchIndexOutbox;
+
+    @BeforeEach
+    public void setup() {
+        searchOutboxEntryRepository = mock(SearchOutboxEntryRepository.class);
+        EntityManager entityManager = mock(EntityManager.class, RETURNS_DEEP_STUBS);
+        when(entityManager.getMetamodel().entity(Movie.class).getName()).thenReturn("Movie");
+        when(entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(any()))
+            .thenAnswer(invocation -> ((Movie) invocation.getArgument(0)).getId());
+        searchIndexOutbox = new SearchIndexOutbox(searchOutboxEntryRepository, entityManager);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            completeTransaction();
+        }
+    }
+
+    @Test
+    public void testEntityIsRecordedOncePerTransaction() {
+        searchIndexOutbox.index(Movie.builder().id(1L).build());
+        searchIndexOutbox.index(Movie.builder().id(1L).build());
+        searchIndexOutbox.delete(Movie.class, 1L);
+        searchIndexOutbox.index(Movie.builder().id(2L).build());
+
+        ArgumentCaptor<SearchOutboxEntry> entries = ArgumentCaptor.forClass(SearchOutboxEntry.class);
+        verify(searchOutboxEntryRepository, times(2)).save(entries.capture());
+        assertThat(entries.getAllValues()).extracting(SearchOutboxEntry::getEntityType).containsOnly("Movie");
+        assertThat(entries.getAllValues()).extracting(SearchOutboxEntry::getEntityId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void testEntityIsRecordedAgainInNextTransaction() {
+        searchIndexOutbox.index(Movie.builder().id(1L).build());
+        completeTransaction();
+
+        TransactionSynchronizationManager.initSynchronization();
+        searchIndexOutbox.index(Movie.builder().id(1L).build());
+
+        verify(searchOutboxEntryRepository, times(2)).save(any(SearchOutboxEntry.class));
+    }
+
+    private void completeTransaction() {
+        TransactionSynchronizationManager.getSynchronizations()
+            .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+}
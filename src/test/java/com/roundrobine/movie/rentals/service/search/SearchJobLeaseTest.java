@@ -0,0 +1,105 @@
+package com.roundrobine.movie.rentals.service.search;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import com.roundrobine.movie.rentals.domain.SearchIndexCheckpoint;
+import com.roundrobine.movie.rentals.repository.SearchIndexCheckpointRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class SearchJobLeaseTest {
+
+    private final Map<String, SearchIndexCheckpoint> checkpoints = new HashMap<>();
+
+    private SearchIndexCheckpointRepository searchIndexCheckpointRepository;
+
+    private ApplicationProperties applicationProperties;
+
+    @BeforeEach
+    public void setup() {
+        searchIndexCheckpointRepository = mock(SearchIndexCheckpointRepository.class);
+        when(searchIndexCheckpointRepository.lock(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            SearchIndexCheckpoint checkpoint = checkpoints.get(invocation.<String>getArgument(0));
+            String owner = invocation.getArgument(1);
+            Instant now = invocation.getArgument(2);
+            if (checkpoint == null || (checkpoint.getLockedBy() != null && !checkpoint.getLockedBy().equals(owner)
+                && !checkpoint.getLockedUntil().isBefore(now))) {
+                return 0;
+            }
+            checkpoint.setLockedBy(owner);
+            checkpoint.setLockedUntil(invocation.getArgument(3));
+            return 1;
+        });
+        when(searchIndexCheckpointRepository.unlock(anyString(), anyString())).thenAnswer(invocation -> {
+            SearchIndexCheckpoint checkpoint = checkpoints.get(invocation.<String>getArgument(0));
+            if (checkpoint == null || !invocation.getArgument(1).equals(checkpoint.getLockedBy())) {
+                return 0;
+            }
+            checkpoint.setLockedBy(null);
+            checkpoint.setLockedUntil(null);
+            return 1;
+        });
+        when(searchIndexCheckpointRepository.existsById(anyString()))
+            .thenAnswer(invocation -> checkpoints.containsKey(invocation.<String>getArgument(0)));
+        when(searchIndexCheckpointRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            SearchIndexCheckpoint checkpoint = invocation.getArgument(0);
+            if (checkpoints.putIfAbsent(checkpoint.getName(), checkpoint) != null) {
+                throw new DataIntegrityViolationException("duplicate key " + checkpoint.getName());
+            }
+            return checkpoint;
+        });
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getSearchReindex().setLeaseMs(60_000);
+    }
+
+    @Test
+    public void testOnlyOneNodeHoldsTheLease() {
+        SearchJobLease first = lease();
+        SearchJobLease second = lease();
+
+        assertThat(first.acquire("search-reindex")).isTrue();
+        assertThat(second.acquire("search-reindex")).isFalse();
+        // renewing a lease already held
+        assertThat(first.acquire("search-reindex")).isTrue();
+
+        first.release("search-reindex");
+        assertThat(second.acquire("search-reindex")).isTrue();
+        assertThat(first.acquire("search-reindex")).isFalse();
+    }
+
+    @Test
+    public void testExpiredLeaseIsTakenOver() {
+        checkpoints.put("search-reindex", SearchIndexCheckpoint.builder()
+            .name("search-reindex")
+            .lockedBy("crashed-node")
+            .lockedUntil(Instant.now().minusSeconds(1))
+            .build());
+
+        assertThat(lease().acquire("search-reindex")).isTrue();
+    }
+
+    @Test
+    public void testLeaseCreatedConcurrentlyIsNotHeld() {
+        SearchJobLease first = lease();
+        SearchJobLease second = lease();
+        when(searchIndexCheckpointRepository.existsById(anyString())).thenReturn(false);
+
+        assertThat(first.acquire("search-reindex")).isTrue();
+        assertThat(second.acquire("search-reindex")).isFalse();
+    }
+
+    private SearchJobLease lease() {
+        return new SearchJobLease(searchIndexCheckpointRepository, mock(PlatformTransactionManager.class),
+            applicationProperties);
+    }
+}
@@ -0,0 +1,322 @@
+package com.roundrobine.movie.rentals.service.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.gson.Gson;
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import com.roundrobine.movie.rentals.domain.Movie;
+import com.roundrobine.movie.rentals.domain.SearchIndexCheckpoint;
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+import com.roundrobine.movie.rentals.repository.SearchIndexCheckpointRepository;
+import com.roundrobine.movie.rentals.service.dto.SearchReindexProgressDTO;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.indices.aliases.AliasMapping;
+import io.searchbox.indices.aliases.GetAliases;
+import io.searchbox.indices.aliases.ModifyAliases;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.H2Dialect;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SearchReindexJob}, reading the rows from an in-memory H2 database.
+ */
+public class SearchReindexJobTest {
+
+    private static final int CHUNK_SIZE = 2;
+
+    private SessionFactory sessionFactory;
+
+    private Session session;
+
+    private final Map<String, SearchIndexCheckpoint> checkpoints = new ConcurrentHashMap<>();
+
+    private final List<Long> savedLastIds = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<String> targetWrites = Collections.synchronizedList(new ArrayList<>());
+
+    private CompletableFuture<Void> targetWritten;
+
+    private SearchIndexCheckpointRepository searchIndexCheckpointRepository;
+
+    private BulkIndexingService bulkIndexingService;
+
+    private SearchJobLease searchJobLease;
+
+    private ElasticsearchOperations elasticsearchOperations;
+
+    private JestClient jestClient;
+
+    private SearchReindexJob searchReindexJob;
+
+    private List<Long> ids;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        sessionFactory = new MetadataSources(new StandardServiceRegistryBuilder()
+            .applySetting(AvailableSettings.URL, "jdbc:h2:mem:searchreindex;DB_CLOSE_DELAY=-1")
+            .applySetting(AvailableSettings.DIALECT, H2Dialect.class.getName())
+            .applySetting(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+            .applySetting(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false")
+            .build())
+            .addPackage("com.roundrobine.movie.rentals.domain")
+            .addAnnotatedClass(Movie.class)
+            .buildMetadata()
+            .buildSessionFactory();
+        session = sessionFactory.openSession();
+        session.beginTransaction();
+        ids = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Movie movie = Movie.builder().title("Movie " + i).type(MovieType.REGULAR_FILM).build();
+            session.persist(movie);
+            ids.add(movie.getId());
+        }
+        session.getTransaction().commit();
+        session.clear();
+
+        searchIndexCheckpointRepository = mock(SearchIndexCheckpointRepository.class);
+        when(searchIndexCheckpointRepository.findById(anyString()))
+            .thenAnswer(invocation -> Optional.ofNullable(checkpoints.get(invocation.<String>getArgument(0))));
+        when(searchIndexCheckpointRepository.findByNameStartingWith(anyString()))
+            .thenAnswer(invocation -> checkpoints.values().stream()
+                .filter(checkpoint -> checkpoint.getName().startsWith(invocation.getArgument(0)))
+                .collect(Collectors.toList()));
+        when(searchIndexCheckpointRepository.save(any())).thenAnswer(invocation -> {
+            SearchIndexCheckpoint checkpoint = invocation.getArgument(0);
+            checkpoints.put(checkpoint.getName(), checkpoint);
+            savedLastIds.add(checkpoint.getLastId());
+            return checkpoint;
+        });
+        doAnswer(invocation -> checkpoints.remove(invocation.<String>getArgument(0)))
+            .when(searchIndexCheckpointRepository).deleteById(anyString());
+
+        targetWritten = CompletableFuture.completedFuture(null);
+        bulkIndexingService = mock(BulkIndexingService.class);
+        when(bulkIndexingService.toSource(any())).thenAnswer(invocation -> invocation.getArgument(0).toString());
+        when(bulkIndexingService.index(any(), anyString(), anyString(), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(null));
+        when(bulkIndexingService.delete(any(), anyString(), anyString()))
+            .thenReturn(CompletableFuture.completedFuture(null));
+        when(bulkIndexingService.indexWithoutWaiting(any(), anyString(), anyString(), any(), any()))
+            .thenAnswer(invocation -> {
+                targetWrites.add(invocation.getArgument(1) + "/" + invocation.getArgument(2));
+                return targetWritten;
+            });
+        when(bulkIndexingService.deleteWithoutWaiting(any(), anyString(), anyString()))
+            .thenAnswer(invocation -> {
+                targetWrites.add("delete " + invocation.getArgument(1) + "/" + invocation.getArgument(2));
+                return targetWritten;
+            });
+
+        searchJobLease = mock(SearchJobLease.class);
+        when(searchJobLease.acquire(SearchReindexJob.LEASE_NAME)).thenReturn(true);
+
+        ElasticsearchPersistentEntity<?> persistentEntity = mock(ElasticsearchPersistentEntity.class);
+        when(persistentEntity.getIndexName()).thenReturn("movie");
+        when(persistentEntity.getIndexType()).thenReturn("movie");
+        elasticsearchOperations = mock(ElasticsearchOperations.class);
+        doReturn(persistentEntity).when(elasticsearchOperations).getPersistentEntityFor(Movie.class);
+        when(elasticsearchOperations.indexExists("movie")).thenReturn(true);
+
+        JestResult missingAlias = mock(JestResult.class);
+        when(missingAlias.isSucceeded()).thenReturn(false);
+        JestResult aliasesModified = mock(JestResult.class);
+        when(aliasesModified.isSucceeded()).thenReturn(true);
+        jestClient = mock(JestClient.class);
+        when(jestClient.execute(any(GetAliases.class))).thenReturn(missingAlias);
+        when(jestClient.execute(any(ModifyAliases.class))).thenReturn(aliasesModified);
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSearchReindex().setChunkSize(CHUNK_SIZE);
+        applicationProperties.getSearchReindex().setParallelism(2);
+        searchReindexJob = new SearchReindexJob(session, searchIndexCheckpointRepository, bulkIndexingService,
+            searchJobLease, new ObjectMapper().registerModule(new JavaTimeModule()), elasticsearchOperations,
+            jestClient, mock(PlatformTransactionManager.class), applicationProperties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        searchReindexJob.shutdown();
+        session.close();
+        sessionFactory.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void copiesRowsInKeysetChunksIntoNewVersionAndMovesAlias() throws Exception {
+        assertThat(searchReindexJob.start()).isTrue();
+        awaitCompletion();
+
+        assertThat(targetWrites).hasSize(5);
+        String targetIndex = targetWrites.get(0).substring(0, targetWrites.get(0).indexOf('/'));
+        assertThat(targetIndex).matches("movie_\\d{14}");
+        assertThat(targetWrites).containsExactlyElementsOf(ids.stream()
+            .map(id -> targetIndex + "/" + id)
+            .collect(Collectors.toList()));
+        // the copy never waits for room in the queue while it holds the copy lock
+        verify(bulkIndexingService, never()).index(eq(Movie.class), startsWith("movie_"), anyString(), any(), any());
+        verify(elasticsearchOperations).createIndex(targetIndex);
+        verify(elasticsearchOperations).putMapping(targetIndex, "movie", Movie.class);
+
+        // the new checkpoint, then one save per chunk
+        assertThat(savedLastIds).containsExactly(0L, ids.get(1), ids.get(3), ids.get(4));
+        assertThat(checkpoints).isEmpty();
+
+        ArgumentCaptor<Action<JestResult>> actions = ArgumentCaptor.forClass(Action.class);
+        verify(jestClient, times(2)).execute(actions.capture());
+        assertThat(actions.getAllValues().get(0)).isInstanceOf(GetAliases.class);
+        assertThat(actions.getAllValues().get(1)).isInstanceOf(ModifyAliases.class);
+        assertThat(actions.getValue().getData(new Gson()))
+            .contains("\"remove_index\":{\"index\":\"movie\"}")
+            .contains("\"add\":{\"index\":\"" + targetIndex + "\",\"alias\":\"movie\"}");
+
+        assertThat(searchReindexJob.getProgress()).hasSize(1);
+        SearchReindexProgressDTO progress = searchReindexJob.getProgress().get(0);
+        assertThat(progress.getTargetIndex()).isEqualTo(targetIndex);
+        assertThat(progress.getIndexedRows()).isEqualTo(5);
+        assertThat(progress.getFinishedAt()).isNotNull();
+        verify(searchJobLease).release(SearchReindexJob.LEASE_NAME);
+    }
+
+    @Test
+    public void resumesFromCheckpoint() throws Exception {
+        checkpoints.put("reindex-movie", SearchIndexCheckpoint.builder()
+            .name("reindex-movie")
+            .targetIndex("movie_20201017000000")
+            .lastId(ids.get(1))
+            .updatedAt(Instant.now())
+            .build());
+        when(elasticsearchOperations.indexExists("movie_20201017000000")).thenReturn(true);
+
+        searchReindexJob.resume();
+        awaitCompletion();
+
+        assertThat(targetWrites).containsExactly(
+            "movie_20201017000000/" + ids.get(2),
+            "movie_20201017000000/" + ids.get(3),
+            "movie_20201017000000/" + ids.get(4));
+        verify(elasticsearchOperations, never()).createIndex(anyString());
+        assertThat(checkpoints).isEmpty();
+        assertThat(searchReindexJob.getProgress()).extracting(SearchReindexProgressDTO::getIndexedRows)
+            .containsExactly(3L);
+    }
+
+    @Test
+    public void lostLeaseKeepsCheckpointAndAlias() throws Exception {
+        when(searchJobLease.acquire(SearchReindexJob.LEASE_NAME)).thenReturn(true, true, false);
+
+        searchReindexJob.start();
+        awaitCompletion();
+
+        assertThat(targetWrites).hasSize(2);
+        assertThat(checkpoints.get("reindex-movie").getLastId()).isEqualTo(ids.get(1));
+        verify(jestClient, never()).execute(any(ModifyAliases.class));
+        verify(searchJobLease).release(SearchReindexJob.LEASE_NAME);
+    }
+
+    @Test
+    public void writesLiveChangesToBothVersionsWhileCopying() throws Exception {
+        CountDownLatch copying = new CountDownLatch(1);
+        targetWritten = new CompletableFuture<>();
+        doAnswer(invocation -> {
+            targetWrites.add(invocation.getArgument(1) + "/" + invocation.getArgument(2));
+            copying.countDown();
+            return targetWritten;
+        }).when(bulkIndexingService).indexWithoutWaiting(any(), anyString(), anyString(), any(), any());
+
+        searchReindexJob.start();
+        assertThat(copying.await(10, TimeUnit.SECONDS)).isTrue();
+        // the copy waits for its first chunk to be written, and the live changes go to both versions meanwhile
+        searchReindexJob.index(Movie.class, "42", "{\"title\":\"Live\"}", null);
+        searchReindexJob.delete(Movie.class, "43");
+        targetWritten.complete(null);
+        awaitCompletion();
+
+        String targetIndex = targetWrites.get(0).substring(0, targetWrites.get(0).indexOf('/'));
+        verify(bulkIndexingService).index(Movie.class, "movie", "42", "{\"title\":\"Live\"}", null);
+        verify(bulkIndexingService).delete(Movie.class, "movie", "43");
+        assertThat(targetWrites).contains(targetIndex + "/42", "delete " + targetIndex + "/43");
+        // the live change is queued after the rows of the chunk read before it
+        assertThat(targetWrites.indexOf(targetIndex + "/42"))
+            .isGreaterThan(targetWrites.indexOf(targetIndex + "/" + ids.get(1)));
+
+        // once the alias moved, changes go to the search index only
+        searchReindexJob.index(Movie.class, "44", "{}", null);
+        verify(bulkIndexingService).index(Movie.class, "movie", "44", "{}", null);
+        assertThat(targetWrites).noneMatch(write -> write.endsWith("/44"));
+    }
+
+    @Test
+    public void firstReindexReplacesConcreteIndexWithAlias() {
+        List<AliasMapping> actions = SearchReindexJob.aliasActions("movie", "movie_20201017110000",
+            Collections.emptySet(), true);
+
+        String body = new ModifyAliases.Builder(actions).build().getData(new Gson());
+
+        assertThat(actions).hasSize(2);
+        assertThat(body).contains("\"remove_index\":{\"index\":\"movie\"}");
+        assertThat(body).contains("\"add\":{\"index\":\"movie_20201017110000\",\"alias\":\"movie\"}");
+    }
+
+    @Test
+    public void laterReindexMovesAliasFromPreviousIndices() {
+        Set<String> previousIndices = new TreeSet<>(List.of("movie_20201016000000", "movie_20201016120000"));
+
+        List<AliasMapping> actions = SearchReindexJob.aliasActions("movie", "movie_20201017110000",
+            previousIndices, false);
+
+        String body = new ModifyAliases.Builder(actions).build().getData(new Gson());
+
+        assertThat(actions).hasSize(3);
+        assertThat(body).doesNotContain("remove_index");
+        assertThat(body).contains("\"remove\":{\"index\":\"movie_20201016000000\",\"alias\":\"movie\"}");
+        assertThat(body).contains("\"remove\":{\"index\":\"movie_20201016120000\",\"alias\":\"movie\"}");
+        assertThat(body.indexOf("\"add\"")).isGreaterThan(body.lastIndexOf("\"remove\""));
+    }
+
+    private void awaitCompletion() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (searchReindexJob.isRunning() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(searchReindexJob.isRunning()).isFalse();
+    }
+}
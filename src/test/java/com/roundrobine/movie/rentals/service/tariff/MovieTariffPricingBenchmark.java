@@ -0,0 +1,77 @@
+package com.roundrobine.movie.rentals.service.tariff;
+
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the precomputed {@link MovieTariff} price tables with the per-call {@link BigDecimal} arithmetic
+ * they replaced. Run with the GC profiler ({@code -prof gc}, enabled by {@link #main(String[])}): the
+ * {@code gc.alloc.rate.norm} of the table lookups is expected to be zero bytes per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieTariffPricingBenchmark {
+
+    private static final BigDecimal BASIC_PRICE = new BigDecimal(30);
+
+    private static final int INCLUDED_RENTAL_DAYS = 3;
+
+    private final MovieTariff tariff = MovieTariff.defaultFor(MovieType.REGULAR_FILM);
+
+    private int plannedRentalDays;
+
+    private int actualRentalDays;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        plannedRentalDays = 7;
+        actualRentalDays = 10;
+    }
+
+    @Benchmark
+    public void priceTable(Blackhole blackhole) {
+        blackhole.consume(tariff.calculateMoviePriceOnRental(plannedRentalDays));
+        blackhole.consume(tariff.calculateSurchargesOnMovieReturn(plannedRentalDays, actualRentalDays));
+    }
+
+    @Benchmark
+    public void priceTableInMinorUnits(Blackhole blackhole) {
+        blackhole.consume(tariff.calculateMoviePriceOnRentalInMinorUnits(plannedRentalDays));
+        blackhole.consume(tariff.calculateSurchargesOnMovieReturnInMinorUnits(plannedRentalDays, actualRentalDays));
+    }
+
+    @Benchmark
+    public void bigDecimalArithmetic(Blackhole blackhole) {
+        BigDecimal total = BASIC_PRICE;
+        if (plannedRentalDays > INCLUDED_RENTAL_DAYS) {
+            total = total.add(BASIC_PRICE.multiply(new BigDecimal(plannedRentalDays - INCLUDED_RENTAL_DAYS)));
+        }
+        blackhole.consume(total);
+
+        BigDecimal surcharges = new BigDecimal(0);
+        if (actualRentalDays > plannedRentalDays && actualRentalDays > INCLUDED_RENTAL_DAYS) {
+            surcharges = surcharges.add(BASIC_PRICE.multiply(new BigDecimal(actualRentalDays - plannedRentalDays)));
+        }
+        blackhole.consume(surcharges);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(MovieTariffPricingBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,70 @@
+package com.roundrobine.movie.rentals.service.tariff;
+
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MovieTariffTest {
+
+    @Test
+    public void testRentalPrices() {
+        assertThat(tariff(MovieType.NEW_RELEASE).calculateMoviePriceOnRental(1)).isEqualByComparingTo("40");
+        assertThat(tariff(MovieType.NEW_RELEASE).calculateMoviePriceOnRental(3)).isEqualByComparingTo("120");
+        assertThat(tariff(MovieType.REGULAR_FILM).calculateMoviePriceOnRental(3)).isEqualByComparingTo("30");
+        assertThat(tariff(MovieType.REGULAR_FILM).calculateMoviePriceOnRental(5)).isEqualByComparingTo("90");
+        assertThat(tariff(MovieType.OLD_FILM).calculateMoviePriceOnRental(7)).isEqualByComparingTo("90");
+        assertThat(tariff(MovieType.OLD_FILM).calculateMoviePriceOnRental(30)).isEqualByComparingTo("780");
+        assertThat(tariff(MovieType.OLD_FILM).calculateMoviePriceOnRentalInMinorUnits(7)).isEqualTo(90_00);
+    }
+
+    @Test
+    public void testPriceTablesMatchThePricingRules() {
+        for (MovieType movieType : MovieType.values()) {
+            MovieTariff tariff = tariff(movieType);
+            for (int planned = 1; planned <= 14; planned++) {
+                BigDecimal expectedPrice = tariff.getPrice()
+                    .multiply(BigDecimal.valueOf(1 + Math.max(0, planned - movieType.getIncludedRentalDays())));
+                assertThat(tariff.calculateMoviePriceOnRental(planned)).isEqualByComparingTo(expectedPrice);
+                assertThat(tariff.calculateMoviePriceOnRental(planned))
+                    .isSameAs(tariff.calculateMoviePriceOnRental(planned));
+            }
+        }
+    }
+
+    @Test
+    public void testSurchargesOnReturn() {
+        assertThat(tariff(MovieType.NEW_RELEASE).calculateSurchargesOnMovieReturn(2, 2)).isEqualByComparingTo("0");
+        assertThat(tariff(MovieType.NEW_RELEASE).calculateSurchargesOnMovieReturn(2, 4)).isEqualByComparingTo("80");
+        assertThat(tariff(MovieType.REGULAR_FILM).calculateSurchargesOnMovieReturn(1, 3)).isEqualByComparingTo("0");
+        assertThat(tariff(MovieType.REGULAR_FILM).calculateSurchargesOnMovieReturn(1, 4)).isEqualByComparingTo("90");
+        assertThat(tariff(MovieType.OLD_FILM).calculateSurchargesOnMovieReturn(5, 100)).isEqualByComparingTo("2850");
+        assertThat(tariff(MovieType.OLD_FILM).calculateSurchargedDaysOnMovieReturn(5, 100)).isEqualTo(95);
+        assertThat(tariff(MovieType.OLD_FILM).calculateSurchargesOnMovieReturnInMinorUnits(5, 7)).isEqualTo(60_00);
+    }
+
+    @Test
+    public void testCustomTariff() {
+        MovieTariff tariff = new MovieTariff(MovieType.NEW_RELEASE, MovieTariff.toMinorUnits(new BigDecimal("49.50")), 2, 3);
+
+        assertThat(tariff.calculateMoviePriceOnRental(2)).isEqualByComparingTo("49.50");
+        assertThat(tariff.calculateMoviePriceOnRental(4)).isEqualByComparingTo("148.50");
+        assertThat(tariff.calculateSurchargesOnMovieReturn(2, 3)).isEqualByComparingTo("49.50");
+        assertThat(tariff.getBonusPoints()).isEqualTo(3);
+    }
+
+    @Test
+    public void testInvalidTariffsAreRejected() {
+        assertThatThrownBy(() -> new MovieTariff(MovieType.OLD_FILM, 0, 1, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MovieTariff(MovieType.OLD_FILM, 100, 0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MovieTariff.toMinorUnits(new BigDecimal("10.005"))).isInstanceOf(ArithmeticException.class);
+    }
+
+    private static MovieTariff tariff(MovieType movieType) {
+        return MovieTariff.defaultFor(movieType);
+    }
+}
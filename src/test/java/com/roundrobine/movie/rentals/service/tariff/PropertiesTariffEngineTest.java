@@ -0,0 +1,58 @@
+package com.roundrobine.movie.rentals.service.tariff;
+
+import com.roundrobine.movie.rentals.config.ApplicationProperties;
+import com.roundrobine.movie.rentals.config.Constants;
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PropertiesTariffEngineTest {
+
+    @Test
+    public void testConfiguredTariffsOverrideTheDefaults() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Tariff tariff = new ApplicationProperties.Tariff();
+        tariff.setPrice(new BigDecimal("45.50"));
+        applicationProperties.getTariffs().put(MovieType.NEW_RELEASE, tariff);
+
+        TariffSnapshot snapshot = new PropertiesTariffEngine(applicationProperties, new MockEnvironment()).current();
+
+        assertThat(snapshot.forType(MovieType.NEW_RELEASE).getPrice()).isEqualByComparingTo("45.50");
+        assertThat(snapshot.forType(MovieType.NEW_RELEASE).getIncludedRentalDays()).isEqualTo(1);
+        assertThat(snapshot.forType(MovieType.OLD_FILM).getPrice()).isEqualByComparingTo("30");
+    }
+
+    @Test
+    public void testReloadSwapsTheSnapshot() {
+        TariffEngine tariffEngine = new PropertiesTariffEngine(new ApplicationProperties(), new MockEnvironment());
+        TariffSnapshot before = tariffEngine.current();
+
+        TariffSnapshot after = tariffEngine.reload(Collections.singletonList(
+            new MovieTariff(MovieType.REGULAR_FILM, 25_00, 2, 1)));
+
+        assertThat(tariffEngine.current()).isSameAs(after);
+        assertThat(after.getVersion()).isEqualTo(before.getVersion() + 1);
+        assertThat(after.forType(MovieType.REGULAR_FILM).calculateMoviePriceOnRental(3)).isEqualByComparingTo("50");
+        assertThat(after.forType(MovieType.NEW_RELEASE)).isSameAs(before.forType(MovieType.NEW_RELEASE));
+        assertThat(before.forType(MovieType.REGULAR_FILM).calculateMoviePriceOnRental(3)).isEqualByComparingTo("30");
+    }
+
+    @Test
+    public void testTariffsAreNotReloadableInACluster() {
+        MockEnvironment env = new MockEnvironment();
+        env.setActiveProfiles(Constants.SPRING_PROFILE_CLUSTER);
+        TariffEngine tariffEngine = new PropertiesTariffEngine(new ApplicationProperties(), env);
+
+        assertThat(tariffEngine.isReloadable()).isFalse();
+        assertThatThrownBy(() -> tariffEngine.reload(Collections.singletonList(
+            new MovieTariff(MovieType.REGULAR_FILM, 25_00, 2, 1))))
+            .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -5,6 +5,7 @@ import com.roundrobine.movie.rentals.domain.BonusHistory;
 import com.roundrobine.movie.rentals.domain.Customer;
 import com.roundrobine.movie.rentals.domain.RentalOrder;
 import com.roundrobine.movie.rentals.repository.BonusHistoryRepository;
+import com.roundrobine.movie.rentals.repository.SearchOutboxEntryRepository;
 import com.roundrobine.movie.rentals.repository.search.BonusHistorySearchRepository;
 import com.roundrobine.movie.rentals.service.BonusHistoryService;
 import com.roundrobine.movie.rentals.service.dto.BonusHistoryDTO;
@@ -68,6 +69,9 @@ public class BonusHistoryResourceIT {
     @Autowired
     private BonusHistorySearchRepository mockBonusHistorySearchRepository;
 
+    @Autowired
+    private SearchOutboxEntryRepository searchOutboxEntryRepository;
+
     @Autowired
     private EntityManager em;
 
@@ -165,7 +169,7 @@ public class BonusHistoryResourceIT {
         assertThat(testBonusHistory.getCreatedAt()).isEqualTo(DEFAULT_CREATED_AT);
 
         // Validate the BonusHistory in Elasticsearch
-        verify(mockBonusHistorySearchRepository, times(1)).save(testBonusHistory);
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("BonusHistory", testBonusHistory.getId())).isEqualTo(1);
     }
 
     @Test
@@ -299,7 +303,7 @@ public class BonusHistoryResourceIT {
         assertThat(testBonusHistory.getCreatedAt()).isEqualTo(UPDATED_CREATED_AT);
 
         // Validate the BonusHistory in Elasticsearch
-        verify(mockBonusHistorySearchRepository, times(1)).save(testBonusHistory);
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("BonusHistory", testBonusHistory.getId())).isEqualTo(1);
     }
 
     @Test
@@ -342,7 +346,7 @@ public class BonusHistoryResourceIT {
         assertThat(bonusHistoryList).hasSize(databaseSizeBeforeDelete - 1);
 
         // Validate the BonusHistory in Elasticsearch
-        verify(mockBonusHistorySearchRepository, times(1)).deleteById(bonusHistory.getId());
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("BonusHistory", bonusHistory.getId())).isEqualTo(1);
     }
 
     @Test
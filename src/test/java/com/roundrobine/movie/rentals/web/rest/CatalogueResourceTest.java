@@ -0,0 +1,103 @@
+package com.roundrobine.movie.rentals.web.rest;
+
+import com.roundrobine.movie.rentals.domain.enumeration.MovieType;
+import com.roundrobine.movie.rentals.service.CatalogueService;
+import com.roundrobine.movie.rentals.service.dto.MovieDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit tests for the streams of {@link CatalogueResource}.
+ */
+public class CatalogueResourceTest {
+
+    private CatalogueService catalogueService;
+
+    private ExecutorService taskExecutor;
+
+    private MockMvc restCatalogueMockMvc;
+
+    @BeforeEach
+    public void setup() {
+        catalogueService = mock(CatalogueService.class);
+        taskExecutor = Executors.newSingleThreadExecutor();
+        restCatalogueMockMvc = MockMvcBuilders.standaloneSetup(new CatalogueResource(catalogueService, taskExecutor))
+            .setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver())
+            .build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        taskExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testMoviesAreStreamedOnePerLine() throws Exception {
+        when(catalogueService.findMovies(any())).thenReturn(Flux.just(
+            MovieDTO.builder().id(1L).title("Alien").type(MovieType.OLD_FILM).build(),
+            MovieDTO.builder().id(2L).title("Heat").type(MovieType.REGULAR_FILM).build()));
+
+        MvcResult result = restCatalogueMockMvc.perform(get("/api/catalogue/movies?size=2")
+            .accept(MediaType.APPLICATION_STREAM_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        restCatalogueMockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_STREAM_JSON));
+
+        String[] lines = result.getResponse().getContentAsString().split("\n", -1);
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).startsWith("{\"id\":1,\"title\":\"Alien\"");
+        assertThat(lines[1]).startsWith("{\"id\":2,\"title\":\"Heat\"");
+        assertThat(lines[2]).isEmpty();
+    }
+
+    @Test
+    public void testClientThatGoesAwayCancelsTheStream() throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CountDownLatch firstEmitted = new CountDownLatch(1);
+        when(catalogueService.findMovies(any())).thenReturn(Flux.<MovieDTO>never()
+            .startWith(MovieDTO.builder().id(1L).title("Alien").type(MovieType.OLD_FILM).build())
+            .doOnCancel(cancelled::countDown)
+            .doOnNext(movie -> firstEmitted.countDown()));
+
+        MvcResult result = restCatalogueMockMvc.perform(get("/api/catalogue/movies")
+            .accept(MediaType.APPLICATION_STREAM_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        assertThat(firstEmitted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onError(new AsyncEvent(asyncContext, new IOException("Broken pipe")));
+        }
+
+        assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
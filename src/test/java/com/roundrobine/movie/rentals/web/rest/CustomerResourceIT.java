@@ -4,6 +4,7 @@ import com.roundrobine.movie.rentals.VideoRentalApp;
 import com.roundrobine.movie.rentals.domain.Customer;
 import com.roundrobine.movie.rentals.domain.User;
 import com.roundrobine.movie.rentals.repository.CustomerRepository;
+import com.roundrobine.movie.rentals.repository.SearchOutboxEntryRepository;
 import com.roundrobine.movie.rentals.repository.search.CustomerSearchRepository;
 import com.roundrobine.movie.rentals.service.CustomerService;
 import com.roundrobine.movie.rentals.service.dto.CustomerDTO;
@@ -79,6 +80,9 @@ public class CustomerResourceIT {
     @Autowired
     private CustomerSearchRepository mockCustomerSearchRepository;
 
+    @Autowired
+    private SearchOutboxEntryRepository searchOutboxEntryRepository;
+
     @Autowired
     private EntityManager em;
 
@@ -231,7 +235,31 @@ public class CustomerResourceIT {
         assertThat(testCustomer.getCurrency()).isEqualTo(UPDATED_CURRENCY);
 
         // Validate the Customer in Elasticsearch
-        verify(mockCustomerSearchRepository, times(1)).save(testCustomer);
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("Customer", testCustomer.getId())).isEqualTo(1);
+    }
+
+    @Test
+    @Transactional
+    public void updateCustomerWithoutVersion() throws Exception {
+        // Initialize the database
+        customerRepository.saveAndFlush(customer);
+
+        // Update the customer without the version it was read at
+        Customer updatedCustomer = customerRepository.findById(customer.getId()).get();
+        em.detach(updatedCustomer);
+        CustomerDTO customerDTO = customerMapper.toDto(updatedCustomer);
+        customerDTO.setVersion(null);
+
+        // Without a version the change cannot be checked against concurrent ones, it is rejected
+        restCustomerMockMvc.perform(put("/api/customers")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(customerDTO)))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.versionnull"));
+
+        // Validate the Customer in the database
+        assertThat(customerRepository.findById(customer.getId()).get().getVersion()).isEqualTo(customer.getVersion());
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("Customer", customer.getId())).isZero();
     }
 
     @Test
@@ -274,7 +302,7 @@ public class CustomerResourceIT {
         assertThat(customerList).hasSize(databaseSizeBeforeDelete - 1);
 
         // Validate the Customer in Elasticsearch
-        verify(mockCustomerSearchRepository, times(1)).deleteById(customer.getId());
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("Customer", customer.getId())).isEqualTo(1);
     }
 
     @Test
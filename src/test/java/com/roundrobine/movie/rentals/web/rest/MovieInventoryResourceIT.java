@@ -4,6 +4,7 @@ import com.roundrobine.movie.rentals.VideoRentalApp;
 import com.roundrobine.movie.rentals.domain.MovieInventory;
 import com.roundrobine.movie.rentals.domain.Movie;
 import com.roundrobine.movie.rentals.repository.MovieInventoryRepository;
+import com.roundrobine.movie.rentals.repository.SearchOutboxEntryRepository;
 import com.roundrobine.movie.rentals.repository.search.MovieInventorySearchRepository;
 import com.roundrobine.movie.rentals.service.MovieInventoryService;
 import com.roundrobine.movie.rentals.service.dto.MovieInventoryDTO;
@@ -72,6 +73,9 @@ public class MovieInventoryResourceIT {
     @Autowired
     private MovieInventorySearchRepository mockMovieInventorySearchRepository;
 
+    @Autowired
+    private SearchOutboxEntryRepository searchOutboxEntryRepository;
+
     @Autowired
     private EntityManager em;
 
@@ -152,7 +156,7 @@ public class MovieInventoryResourceIT {
         assertThat(testMovieInventory.getStatus()).isEqualTo(DEFAULT_STATUS);
 
         // Validate the MovieInventory in Elasticsearch
-        verify(mockMovieInventorySearchRepository, times(1)).save(testMovieInventory);
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("MovieInventory", testMovieInventory.getId())).isEqualTo(1);
     }
 
     @Test
@@ -252,7 +256,31 @@ public class MovieInventoryResourceIT {
         assertThat(testMovieInventory.getStatus()).isEqualTo(UPDATED_STATUS);
 
         // Validate the MovieInventory in Elasticsearch
-        verify(mockMovieInventorySearchRepository, times(1)).save(testMovieInventory);
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("MovieInventory", testMovieInventory.getId())).isEqualTo(1);
+    }
+
+    @Test
+    @Transactional
+    public void updateMovieInventoryWithoutVersion() throws Exception {
+        // Initialize the database
+        movieInventoryRepository.saveAndFlush(movieInventory);
+
+        // Update the movieInventory without the version it was read at
+        MovieInventory updatedMovieInventory = movieInventoryRepository.findById(movieInventory.getId()).get();
+        em.detach(updatedMovieInventory);
+        MovieInventoryDTO movieInventoryDTO = movieInventoryMapper.toDto(updatedMovieInventory);
+        movieInventoryDTO.setVersion(null);
+
+        // Without a version the change cannot be checked against concurrent ones, it is rejected
+        restMovieInventoryMockMvc.perform(put("/api/movie-inventories")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(movieInventoryDTO)))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.versionnull"));
+
+        // Validate the MovieInventory in the database
+        assertThat(movieInventoryRepository.findById(movieInventory.getId()).get().getVersion()).isEqualTo(movieInventory.getVersion());
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("MovieInventory", movieInventory.getId())).isZero();
     }
 
     @Test
@@ -295,7 +323,7 @@ public class MovieInventoryResourceIT {
         assertThat(movieInventoryList).hasSize(databaseSizeBeforeDelete - 1);
 
         // Validate the MovieInventory in Elasticsearch
-        verify(mockMovieInventorySearchRepository, times(1)).deleteById(movieInventory.getId());
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("MovieInventory", movieInventory.getId())).isEqualTo(1);
     }
 
     @Test
@@ -3,10 +3,12 @@ package com.roundrobine.movie.rentals.web.rest;
 import com.roundrobine.movie.rentals.VideoRentalApp;
 import com.roundrobine.movie.rentals.domain.Movie;
 import com.roundrobine.movie.rentals.repository.MovieRepository;
+import com.roundrobine.movie.rentals.repository.SearchOutboxEntryRepository;
 import com.roundrobine.movie.rentals.repository.search.MovieSearchRepository;
 import com.roundrobine.movie.rentals.service.MovieService;
 import com.roundrobine.movie.rentals.service.dto.MovieDTO;
 import com.roundrobine.movie.rentals.service.mapper.MovieMapper;
+import com.roundrobine.movie.rentals.web.rest.util.KeysetPaginationUtil;
 
 import org.elasticsearch.common.unit.Fuzziness;
 import org.elasticsearch.index.query.QueryBuilder;
@@ -33,6 +35,7 @@ import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -77,6 +80,9 @@ public class MovieResourceIT {
     @Autowired
     private MovieSearchRepository mockMovieSearchRepository;
 
+    @Autowired
+    private SearchOutboxEntryRepository searchOutboxEntryRepository;
+
     @Autowired
     private EntityManager em;
 
@@ -140,7 +146,7 @@ public class MovieResourceIT {
         assertThat(testMovie.getPosterUrl()).isEqualTo(DEFAULT_POSTER_URL);
 
         // Validate the Movie in Elasticsearch
-        verify(mockMovieSearchRepository, times(1)).save(testMovie);
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("Movie", testMovie.getId())).isEqualTo(1);
     }
 
     @Test
@@ -224,6 +230,44 @@ public class MovieResourceIT {
             .andExpect(jsonPath("$.[*].posterUrl").value(hasItem(DEFAULT_POSTER_URL)));
     }
     
+    @Test
+    @Transactional
+    public void getAllMoviesPageByPage() throws Exception {
+        // Initialize the database
+        movieRepository.saveAndFlush(movie);
+        Movie otherMovie = createUpdatedEntity(em);
+        movieRepository.saveAndFlush(otherMovie);
+
+        // Get the first page, sorted by id, and follow the continuation token
+        String continuation = restMovieMockMvc.perform(get("/api/movies?sort=id,desc&size=1&count=true"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(KeysetPaginationUtil.CONTINUATION_HEADER))
+            .andExpect(header().string("X-Total-Count", String.valueOf(movieRepository.count())))
+            .andExpect(jsonPath("$.[*].id").value(contains(otherMovie.getId().intValue())))
+            .andReturn().getResponse().getHeader(KeysetPaginationUtil.CONTINUATION_HEADER);
+        restMovieMockMvc.perform(get("/api/movies?size=1").param(KeysetPaginationUtil.CONTINUATION_PARAMETER, continuation))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(contains(movie.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void getAllMoviesWithAnInvalidContinuation() throws Exception {
+        restMovieMockMvc.perform(get("/api/movies").param(KeysetPaginationUtil.CONTINUATION_PARAMETER, "not a token"))
+            .andExpect(status().isBadRequest());
+        restMovieMockMvc.perform(get("/api/movies?sort=description,asc"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getAllMoviesWithAPageNumber() throws Exception {
+        restMovieMockMvc.perform(get("/api/movies?page=1&size=1"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.invalidContinuation"));
+    }
+
     @Test
     @Transactional
     public void getMovie() throws Exception {
@@ -240,6 +284,21 @@ public class MovieResourceIT {
             .andExpect(jsonPath("$.type").value(DEFAULT_TYPE.toString()))
             .andExpect(jsonPath("$.posterUrl").value(DEFAULT_POSTER_URL));
     }
+    @Test
+    @Transactional
+    public void getMoviesAvailability() throws Exception {
+        // Initialize the database
+        movieRepository.saveAndFlush(movie);
+
+        // Get the availability of a movie without copies
+        restMovieMockMvc.perform(get("/api/movies/availability?ids={id}", movie.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].movieId").value(contains(movie.getId().intValue())))
+            .andExpect(jsonPath("$.[0].available").value(0))
+            .andExpect(jsonPath("$.[0].rented").value(0));
+    }
+
     @Test
     @Transactional
     public void getNonExistingMovie() throws Exception {
@@ -282,7 +341,7 @@ public class MovieResourceIT {
         assertThat(testMovie.getPosterUrl()).isEqualTo(UPDATED_POSTER_URL);
 
         // Validate the Movie in Elasticsearch
-        verify(mockMovieSearchRepository, times(1)).save(testMovie);
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("Movie", testMovie.getId())).isEqualTo(1);
     }
 
     @Test
@@ -325,7 +384,7 @@ public class MovieResourceIT {
         assertThat(movieList).hasSize(databaseSizeBeforeDelete - 1);
 
         // Validate the Movie in Elasticsearch
-        verify(mockMovieSearchRepository, times(1)).deleteById(movie.getId());
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("Movie", movie.getId())).isEqualTo(1);
     }
 
     @Test
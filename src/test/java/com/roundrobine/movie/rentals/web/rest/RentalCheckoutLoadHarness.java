@@ -0,0 +1,281 @@
+package com.roundrobine.movie.rentals.web.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.Key;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of checkouts against a running instance, to compare request handling on platform threads with
+ * request handling on virtual threads.
+ * <p>
+ * Every client is a customer renting its own copy of a movie and returning it, again and again, so clients
+ * never compete for a copy. Checkouts run on the customer lanes, which bound the checkouts in flight whatever
+ * threads handle the requests, so both runs need at least as many lanes as clients: the virtual-threads profile
+ * runs 4096 lanes on virtual threads, and the platform run is started with as many platform lanes. Clients whose
+ * customer ids hash onto the same lane still wait for each other, equally in both runs. The shared resources
+ * left are the request threads, the lane threads and the JDBC connections. For each concurrency level the harness prints the throughput, the p50 and p99 latency
+ * of checkouts, the errors and the peak of checkouts in flight, then the highest level that kept the p99 latency
+ * within {@code --slo-ms} with less than 1% of errors.
+ * <p>
+ * Start the application twice with the same connection pool, once on platform threads and once, on Java 21,
+ * on virtual threads, and run the harness against each:
+ * <pre>
+ * ./mvnw -Pdev -Dspring-boot.run.arguments="--spring.datasource.hikari.maximum-pool-size=10 --application.customer-lanes.lanes=4096"
+ * ./mvnw -Pdev,virtual-threads -Dspring-boot.run.arguments=--spring.datasource.hikari.maximum-pool-size=10
+ *
+ * java -cp ... com.roundrobine.movie.rentals.web.rest.RentalCheckoutLoadHarness --label=platform \
+ *     --base-url=http://localhost:8080 --levels=50,100,200,400,800 --duration-seconds=30 --slo-ms=250
+ * </pre>
+ * The harness signs the tokens of its customers with the JWT secret of the {@code dev} profile, pass
+ * {@code --jwt-secret} when the instance uses another one. Setup uses the {@code admin} account.
+ */
+public class RentalCheckoutLoadHarness {
+
+    private static final String DEV_JWT_SECRET = "ZWRkYTg0ZmQ2YmMyYjIyYmI0ZmZjN2IyMjg0MzY4MDVjY2FjOWRlNGM1ZTIwZTNlMzlmNjE4N2Y3MjhlYjI2NDRlNDlkMGRmNzk5MzdkYzRjYmQ1NDdkNjEwYmFkOTEyOTVlZjk3ZGZjZjViNTFkNzU5ZDZmYjg2NGMxYzM2NTg=";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient httpClient;
+
+    private final String baseUrl;
+
+    private RentalCheckoutLoadHarness(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newCachedThreadPool())
+            .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String label = options.getOrDefault("label", "run");
+        int[] levels = Arrays.stream(options.getOrDefault("levels", "50,100,200,400,800").split(","))
+            .mapToInt(level -> Integer.parseInt(level.trim())).sorted().toArray();
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration-seconds", "30")));
+        long sloMs = Long.parseLong(options.getOrDefault("slo-ms", "250"));
+
+        RentalCheckoutLoadHarness harness = new RentalCheckoutLoadHarness(
+            options.getOrDefault("base-url", "http://localhost:8080"));
+        List<Client> clients = harness.setup(levels[levels.length - 1],
+            options.getOrDefault("jwt-secret", DEV_JWT_SECRET));
+
+        System.out.printf("%-10s %6s %10s %8s %8s %8s %8s%n",
+            "label", "level", "checkouts/s", "p50 ms", "p99 ms", "errors", "in-flight");
+        int maxConcurrentCheckouts = 0;
+        for (int level : levels) {
+            Result result = harness.run(clients.subList(0, level), duration);
+            System.out.printf("%-10s %6d %10.1f %8.1f %8.1f %8d %8d%n", label, level,
+                result.checkouts / (double) duration.getSeconds(), result.percentileMs(50), result.percentileMs(99),
+                result.errors, result.peakInFlight);
+            if (result.percentileMs(99) <= sloMs && result.errors * 100 < Math.max(result.checkouts, 1)) {
+                maxConcurrentCheckouts = level;
+            }
+        }
+        System.out.printf("%s: max concurrent checkouts within a p99 of %d ms: %d%n",
+            label, sloMs, maxConcurrentCheckouts);
+        System.exit(0);
+    }
+
+    /**
+     * Create a movie, and for every client a customer with enough credit and a copy to rent.
+     */
+    private List<Client> setup(int clientCount, String jwtSecret) throws IOException, InterruptedException {
+        ObjectNode credentials = objectMapper.createObjectNode()
+            .put("username", "admin")
+            .put("password", "admin");
+        String adminToken = send("POST", "/api/authenticate", null, credentials).get("id_token").asText();
+
+        ObjectNode movie = objectMapper.createObjectNode()
+            .put("title", "Load test " + System.currentTimeMillis())
+            .put("type", "REGULAR_FILM");
+        long movieId = send("POST", "/api/movies", adminToken, movie).get("id").asLong();
+
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        List<Client> clients = new ArrayList<>(clientCount);
+        for (int i = 0; i < clientCount; i++) {
+            String login = "load-" + run + "-" + i;
+            ObjectNode user = objectMapper.createObjectNode()
+                .put("login", login)
+                .put("email", login + "@localhost")
+                .put("activated", true)
+                .put("langKey", "en");
+            user.putArray("authorities").add("ROLE_USER");
+            long userId = send("POST", "/api/users", adminToken, user).get("id").asLong();
+
+            ObjectNode customer = (ObjectNode) send("GET", "/api/customers/" + userId, adminToken, null);
+            customer.put("creditAmount", new BigDecimal("1000000000.00"));
+            send("PUT", "/api/customers", adminToken, customer);
+
+            ObjectNode copy = objectMapper.createObjectNode().put("status", "AVAILABLE");
+            copy.putObject("movie").put("id", movieId);
+            long copyId = send("POST", "/api/movie-inventories", adminToken, copy).get("id").asLong();
+
+            String token = Jwts.builder()
+                .setSubject(login)
+                .claim("auth", "ROLE_USER")
+                .signWith(key, SignatureAlgorithm.HS512)
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                .compact();
+            clients.add(new Client(token, copyId));
+        }
+        return clients;
+    }
+
+    /**
+     * Let every client rent and return its copy until the end of the run.
+     */
+    private Result run(List<Client> clients, Duration duration) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(clients.size());
+        ConcurrentLinkedQueue<long[]> latencies = new ConcurrentLinkedQueue<>();
+        AtomicLong errors = new AtomicLong();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+        long deadline = System.nanoTime() + duration.toNanos();
+        for (Client client : clients) {
+            executor.execute(() -> {
+                long[] clientLatencies = new long[1024];
+                int count = 0;
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    boolean rented;
+                    try {
+                        rented = client.rent();
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                    if (!rented) {
+                        errors.incrementAndGet();
+                        continue;
+                    }
+                    if (count == clientLatencies.length) {
+                        clientLatencies = Arrays.copyOf(clientLatencies, count * 2);
+                    }
+                    clientLatencies[count++] = System.nanoTime() - start;
+                    if (!client.giveBack()) {
+                        errors.incrementAndGet();
+                    }
+                }
+                latencies.add(Arrays.copyOf(clientLatencies, count));
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(duration.getSeconds() + 120, TimeUnit.SECONDS);
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(all, errors.get(), peakInFlight.get());
+    }
+
+    private JsonNode send(String method, String path, String token, JsonNode body)
+        throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(request(method, path, token, body),
+            HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(method + " " + path + " failed with " + response.statusCode() + ": "
+                + response.body());
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private HttpRequest request(String method, String path, String token, JsonNode body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofSeconds(30))
+            .header("Content-Type", "application/json")
+            .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body.toString()));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return request.build();
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private final class Client {
+
+        private final HttpRequest rent;
+
+        private final HttpRequest giveBack;
+
+        private Client(String token, long copyId) {
+            ObjectNode order = objectMapper.createObjectNode();
+            order.putObject("order").put(Long.toString(copyId), 1);
+            this.rent = request("POST", "/api/rental-orders", token, order);
+            ObjectNode returned = objectMapper.createObjectNode();
+            returned.putArray("movieInventoryIds").add(copyId);
+            this.giveBack = request("PUT", "/api/rental-orders/return", token, returned);
+        }
+
+        private boolean rent() {
+            return succeeds(rent);
+        }
+
+        private boolean giveBack() {
+            return succeeds(giveBack);
+        }
+
+        private boolean succeeds(HttpRequest request) {
+            try {
+                return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 300;
+            } catch (IOException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private static final class Result {
+
+        private final long[] sortedLatencies;
+
+        private final long checkouts;
+
+        private final long errors;
+
+        private final int peakInFlight;
+
+        private Result(long[] sortedLatencies, long errors, int peakInFlight) {
+            this.sortedLatencies = sortedLatencies;
+            this.checkouts = sortedLatencies.length;
+            this.errors = errors;
+            this.peakInFlight = peakInFlight;
+        }
+
+        private double percentileMs(int percentile) {
+            if (sortedLatencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+}
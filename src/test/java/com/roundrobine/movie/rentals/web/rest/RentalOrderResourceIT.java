@@ -4,7 +4,9 @@ import com.roundrobine.movie.rentals.VideoRentalApp;
 import com.roundrobine.movie.rentals.domain.RentalOrder;
 import com.roundrobine.movie.rentals.domain.Customer;
 import com.roundrobine.movie.rentals.repository.RentalOrderRepository;
+import com.roundrobine.movie.rentals.repository.SearchOutboxEntryRepository;
 import com.roundrobine.movie.rentals.repository.search.RentalOrderSearchRepository;
+import com.roundrobine.movie.rentals.security.AuthoritiesConstants;
 import com.roundrobine.movie.rentals.service.RentalOrderService;
 import com.roundrobine.movie.rentals.service.dto.RentalOrderDTO;
 import com.roundrobine.movie.rentals.service.mapper.RentalOrderMapper;
@@ -31,7 +33,9 @@ import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -82,6 +86,9 @@ public class RentalOrderResourceIT {
     @Autowired
     private RentalOrderSearchRepository mockRentalOrderSearchRepository;
 
+    @Autowired
+    private SearchOutboxEntryRepository searchOutboxEntryRepository;
+
     @Autowired
     private EntityManager em;
 
@@ -254,6 +261,36 @@ public class RentalOrderResourceIT {
             .andExpect(jsonPath("$.[*].createdAt").value(hasItem(DEFAULT_CREATED_AT.toString())));
     }
     
+    @Test
+    @Transactional
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    public void exportRentalOrdersInTimeRange() throws Exception {
+        // Initialize the database
+        rentalOrderRepository.saveAndFlush(rentalOrder);
+        String exported = "\"id\":" + rentalOrder.getId() + ",";
+
+        // Export the rentalOrders created in the first second after DEFAULT_CREATED_AT
+        restRentalOrderMockMvc.perform(get("/api/rental-orders/export?createdFrom={from}&createdTo={to}",
+            DEFAULT_CREATED_AT, DEFAULT_CREATED_AT.plusSeconds(1)))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+            .andExpect(content().string(containsString(exported)))
+            .andExpect(content().string(containsString("\"createdAt\":\"" + DEFAULT_CREATED_AT + "\"")));
+
+        // Export the rentalOrders created later
+        restRentalOrderMockMvc.perform(get("/api/rental-orders/export?createdFrom={from}",
+            DEFAULT_CREATED_AT.plusSeconds(1)))
+            .andExpect(status().isOk())
+            .andExpect(content().string(not(containsString(exported))));
+    }
+
+    @Test
+    @Transactional
+    public void exportRentalOrdersIsForAdmins() throws Exception {
+        restRentalOrderMockMvc.perform(get("/api/rental-orders/export"))
+            .andExpect(status().isForbidden());
+    }
+
     @Test
     @Transactional
     public void getRentalOrder() throws Exception {
@@ -299,7 +336,7 @@ public class RentalOrderResourceIT {
         assertThat(rentalOrderList).hasSize(databaseSizeBeforeDelete - 1);
 
         // Validate the RentalOrder in Elasticsearch
-        verify(mockRentalOrderSearchRepository, times(1)).deleteById(rentalOrder.getId());
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("RentalOrder", rentalOrder.getId())).isEqualTo(1);
     }
 
     @Test
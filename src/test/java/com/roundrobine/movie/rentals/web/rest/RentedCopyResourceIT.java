@@ -5,6 +5,7 @@ import com.roundrobine.movie.rentals.domain.RentedCopy;
 import com.roundrobine.movie.rentals.domain.MovieInventory;
 import com.roundrobine.movie.rentals.domain.RentalOrder;
 import com.roundrobine.movie.rentals.repository.RentedCopyRepository;
+import com.roundrobine.movie.rentals.repository.SearchOutboxEntryRepository;
 import com.roundrobine.movie.rentals.repository.search.RentedCopySearchRepository;
 import com.roundrobine.movie.rentals.service.RentedCopyService;
 import com.roundrobine.movie.rentals.service.dto.RentedCopyDTO;
@@ -75,6 +76,9 @@ public class RentedCopyResourceIT {
     @Autowired
     private RentedCopySearchRepository mockRentedCopySearchRepository;
 
+    @Autowired
+    private SearchOutboxEntryRepository searchOutboxEntryRepository;
+
     @Autowired
     private EntityManager em;
 
@@ -178,7 +182,7 @@ public class RentedCopyResourceIT {
         assertThat(testRentedCopy.getReturnDate()).isEqualTo(DEFAULT_RETURN_DATE);
 
         // Validate the RentedCopy in Elasticsearch
-        verify(mockRentedCopySearchRepository, times(1)).save(testRentedCopy);
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("RentedCopy", testRentedCopy.getId())).isEqualTo(1);
     }
 
     @Test
@@ -319,7 +323,7 @@ public class RentedCopyResourceIT {
         assertThat(testRentedCopy.getReturnDate()).isEqualTo(UPDATED_RETURN_DATE);
 
         // Validate the RentedCopy in Elasticsearch
-        verify(mockRentedCopySearchRepository, times(1)).save(testRentedCopy);
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("RentedCopy", testRentedCopy.getId())).isEqualTo(1);
     }
 
     @Test
@@ -362,7 +366,7 @@ public class RentedCopyResourceIT {
         assertThat(rentedCopyList).hasSize(databaseSizeBeforeDelete - 1);
 
         // Validate the RentedCopy in Elasticsearch
-        verify(mockRentedCopySearchRepository, times(1)).deleteById(rentedCopy.getId());
+        assertThat(searchOutboxEntryRepository.countByEntityTypeAndEntityId("RentedCopy", rentedCopy.getId())).isEqualTo(1);
     }
 
     @Test
@@ -0,0 +1,90 @@
+package com.roundrobine.movie.rentals.web.rest.util;
+
+import com.roundrobine.movie.rentals.repository.InvalidKeysetException;
+import com.roundrobine.movie.rentals.repository.Keyset;
+import com.roundrobine.movie.rentals.repository.KeysetSlice;
+
+import java.time.Instant;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link KeysetPaginationUtil}.
+ */
+public class KeysetPaginationUtilTest {
+
+    @Test
+    public void testFirstPageIsSortedOnTheRequestedProperty() {
+        assertThat(KeysetPaginationUtil.keyset(null, null, Sort.unsorted()))
+            .isEqualTo(Keyset.first("id", Sort.Direction.ASC));
+        assertThat(KeysetPaginationUtil.keyset("", null, Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"))))
+            .isEqualTo(Keyset.first("createdAt", Sort.Direction.DESC));
+    }
+
+    @Test
+    public void testPagesCannotBeSortedOnSeveralProperties() {
+        assertThatThrownBy(() -> KeysetPaginationUtil.keyset(null, null, Sort.by("status", "createdAt")))
+            .isInstanceOf(InvalidKeysetException.class);
+    }
+
+    @Test
+    public void testPageNumbersAreRejected() {
+        assertThatThrownBy(() -> KeysetPaginationUtil.keyset(null, "0", Sort.unsorted()))
+            .isInstanceOf(InvalidKeysetException.class);
+        assertThatThrownBy(() -> KeysetPaginationUtil.keyset(KeysetPaginationUtil.encode(
+            Keyset.first("id", Sort.Direction.ASC).after(20L, 20L)), "3", Sort.unsorted()))
+            .isInstanceOf(InvalidKeysetException.class);
+    }
+
+    @Test
+    public void testContinuationTokenCarriesTheKeysetAndItsSort() {
+        Keyset keyset = Keyset.first("createdAt", Sort.Direction.DESC)
+            .after(Instant.parse("2020-10-17T12:00:00.123Z"), 42L);
+
+        String continuation = KeysetPaginationUtil.encode(keyset);
+
+        assertThat(continuation).matches("[A-Za-z0-9_-]+");
+        assertThat(KeysetPaginationUtil.keyset(continuation, null, Sort.by("title")))
+            .isEqualTo(Keyset.first("createdAt", Sort.Direction.DESC).after("2020-10-17T12:00:00.123Z", "42"));
+    }
+
+    @Test
+    public void testMalformedContinuationTokensAreRejected() {
+        assertThatThrownBy(() -> KeysetPaginationUtil.keyset("not a token", null, Sort.unsorted()))
+            .isInstanceOf(InvalidKeysetException.class);
+        assertThatThrownBy(() -> KeysetPaginationUtil.keyset("eyJwIjoiaWQifQ", null, Sort.unsorted()))
+            .isInstanceOf(InvalidKeysetException.class);
+    }
+
+    @Test
+    public void testHeadersLinkTheNextPage() {
+        Keyset next = Keyset.first("id", Sort.Direction.ASC).after(20L, 20L);
+        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUriString("http://localhost/api/movies?size=20&page=3&sort=id,asc");
+
+        HttpHeaders headers = KeysetPaginationUtil.generatePaginationHttpHeaders(uriBuilder,
+            new KeysetSlice<>(Collections.emptyList(), next), null);
+
+        String continuation = KeysetPaginationUtil.encode(next);
+        assertThat(headers.getFirst(KeysetPaginationUtil.CONTINUATION_HEADER)).isEqualTo(continuation);
+        assertThat(headers.getFirst(HttpHeaders.LINK))
+            .isEqualTo("<http://localhost/api/movies?size=20&continuation=" + continuation + ">; rel=\"next\"");
+        assertThat(headers.containsKey("X-Total-Count")).isFalse();
+    }
+
+    @Test
+    public void testHeadersOfTheLastPage() {
+        HttpHeaders headers = KeysetPaginationUtil.generatePaginationHttpHeaders(
+            UriComponentsBuilder.fromUriString("http://localhost/api/movies"), new KeysetSlice<>(Collections.emptyList(), null), 7L);
+
+        assertThat(headers.containsKey(KeysetPaginationUtil.CONTINUATION_HEADER)).isFalse();
+        assertThat(headers.containsKey(HttpHeaders.LINK)).isFalse();
+        assertThat(headers.getFirst("X-Total-Count")).isEqualTo("7");
+    }
+}
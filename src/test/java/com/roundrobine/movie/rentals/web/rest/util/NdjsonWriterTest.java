@@ -0,0 +1,53 @@
+package com.roundrobine.movie.rentals.web.rest.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.roundrobine.movie.rentals.service.dto.BonusHistoryDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link NdjsonWriter}.
+ */
+public class NdjsonWriterTest {
+
+    @Test
+    public void testEachValueIsWrittenOnItsOwnLine() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .enable(SerializationFeature.INDENT_OUTPUT);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream)) {
+            writer.accept(BonusHistoryDTO.builder().id(1L).points(2L).createdAt(Instant.EPOCH).build());
+            writer.accept(BonusHistoryDTO.builder().id(2L).points(1L).build());
+        }
+
+        assertThat(outputStream.toString(StandardCharsets.UTF_8.name())).isEqualTo(
+            "{\"id\":1,\"points\":2,\"createdAt\":\"1970-01-01T00:00:00Z\",\"customer\":null,\"oder\":null}\n" +
+            "{\"id\":2,\"points\":1,\"createdAt\":null,\"customer\":null,\"oder\":null}\n");
+    }
+
+    @Test
+    public void testTheStreamIsLeftOpen() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                throw new AssertionError("The stream belongs to the response");
+            }
+        };
+
+        new NdjsonWriter(new ObjectMapper(), outputStream).close();
+
+        assertThat(outputStream.size()).isZero();
+    }
+}